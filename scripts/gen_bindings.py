@@ -0,0 +1,583 @@
+#!/usr/bin/env python3
+"""Generate JNI glue from the libgit2 prototypes listed in scripts/bindings.json.
+
+For every prototype the script emits the `static native` declaration of the java class (between
+the GENERATED NATIVES markers) and its C implementation in j_generated.c, with marshalling picked
+from the C types:
+
+    T **out (first parameter)     returned as a handle, see j_handle_or_error
+    git_xxx *handle               long
+    const char *                  String, passed as modified UTF-8 without a copy
+    const git_oid *               byte[] (in) / returned as byte[] (out)
+    int, enums / size_t           int / long
+    a struct of bindings.json     converted with its generated marshaller
+
+Struct marshallers read and write java fields through field ids that are resolved once, instead
+of the reflective setter upcalls made per call by the hand written helpers; structs with the
+"to_array" direction are flattened into a primitive array.
+
+Usage: scripts/gen_bindings.py [--check]
+"""
+
+import json
+import os
+import re
+import sys
+
+ROOT = os.path.dirname(os.path.dirname(os.path.abspath(__file__)))
+SPEC = os.path.join(ROOT, "scripts", "bindings.json")
+C_DIR = os.path.join(ROOT, "src", "main", "c", "git24j")
+JAVA_DIR = os.path.join(ROOT, "src", "main", "java", "com", "github", "git24j", "core")
+C_OUT = "j_generated.c"
+H_OUT = "j_generated.h"
+BEGIN = "    // GENERATED NATIVES BEGIN: scripts/gen_bindings.py"
+END = "    // GENERATED NATIVES END"
+HEADER = "/* Generated by scripts/gen_bindings.py from scripts/bindings.json, do not edit. */\n"
+
+INT_TYPES = {"int", "unsigned int", "uint32_t", "int32_t", "uint16_t", "char"}
+LONG_TYPES = {"size_t", "int64_t", "git_off_t", "git_time_t"}
+# java type -> (jni type, field signature, Get/Set<X>Field)
+FIELD_KINDS = {
+    "int": ("jint", "I", "Int"),
+    "long": ("jlong", "J", "Long"),
+    "String": ("jstring", "Ljava/lang/String;", "Object"),
+    "oid_hex": ("jstring", "Ljava/lang/String;", "Object"),
+}
+
+
+def camel(name):
+    head, *rest = name.split("_")
+    return head + "".join(p[:1].upper() + p[1:] for p in rest)
+
+
+def parse_prototype(proto):
+    m = re.fullmatch(r"\s*(.+?)\s*\b(git_\w+)\s*\((.*)\)\s*;\s*", proto)
+    if not m:
+        raise ValueError("cannot parse prototype: " + proto)
+    ret = normalize(m.group(1))
+    params = []
+    for param in m.group(3).split(","):
+        param = param.strip()
+        if param in ("", "void"):
+            continue
+        pm = re.fullmatch(r"(.+?)\s*\b(\w+)", param)
+        params.append((normalize(pm.group(1)), pm.group(2)))
+    return ret, m.group(2), params
+
+
+def normalize(ctype):
+    ctype = re.sub(r"\s*\*", " *", ctype.strip())
+    return re.sub(r"\*\s+\*", "**", ctype)
+
+
+def base_type(ctype):
+    return ctype.replace("const ", "").replace("*", "").strip()
+
+
+class Param:
+    """One C parameter: its java/JNI form and the C statements converting it."""
+
+    def __init__(self, index, ctype, name, structs):
+        self.ctype = ctype
+        self.cname = "c_" + name
+        self.pre = []       # before the call
+        self.post = []      # after the call, on success
+        self.cleanup = []   # after the call, always
+        self.java = None    # (java type, java name) or None for the returned out-parameter
+        self.jni = None     # (jni type, name)
+        base = base_type(ctype)
+        struct = structs.get(base)
+        if index == 0 and ctype.endswith("**"):
+            self.kind = "out_handle"
+            self.pre.append("%s *%s = NULL;" % (base, self.cname))
+            self.arg = "&" + self.cname
+        elif struct is not None:
+            self.init_struct(struct, name, ctype.startswith("const "))
+        elif base == "char" and ctype.endswith("*"):
+            jname = camel(name)
+            self.set_java("String", jname, "jstring")
+            self.kind = "string"
+            self.pre.append("const char *%s = j_gen_utf_chars(env, %s);" % (self.cname, jname))
+            self.cleanup.append("j_gen_release_utf_chars(env, %s, %s);" % (jname, self.cname))
+            self.arg = self.cname
+        elif base == "git_oid" and ctype.endswith("*"):
+            jname = camel(name)
+            self.set_java("byte[]", jname, "jbyteArray")
+            self.kind = "oid"
+            self.pre.append("git_oid %s;" % self.cname)
+            self.pre.append("j_gen_oid_from_bytes(env, %s, &%s);" % (jname, self.cname))
+            self.arg = "&" + self.cname
+        elif ctype.endswith("*"):
+            jname = camel(name) + "Ptr"
+            self.set_java("long", jname, "jlong")
+            self.kind = "handle"
+            self.arg = "(%s)%s" % (ctype.replace("const ", ""), jname)
+        elif base in LONG_TYPES:
+            jname = camel(name)
+            self.set_java("long", jname, "jlong")
+            self.kind = "value"
+            self.arg = "(%s)%s" % (ctype, jname)
+        elif base in INT_TYPES or base.endswith("_t"):
+            jname = camel(name)
+            self.set_java("int", jname, "jint")
+            self.kind = "value"
+            self.arg = "(%s)%s" % (ctype, jname)
+        else:
+            raise ValueError("no mapping for parameter type " + ctype)
+
+    def set_java(self, java_type, java_name, jni_type):
+        self.java = (java_type, java_name)
+        self.jni = (jni_type, java_name)
+
+    def init_struct(self, struct, name, const):
+        jname = camel(name)
+        self.kind = "struct"
+        self.pre.append("%s %s = {0};" % (struct["c"], self.cname))
+        self.arg = "&" + self.cname
+        direction = struct["direction"]
+        if direction == "from_java":
+            self.set_java(java_simple(struct["java"]), jname, "jobject")
+            self.pre.append("%s(env, &%s, %s);" % (struct["function"], self.cname, jname))
+            if struct.get("release"):
+                self.cleanup.append("%s(&%s);" % (struct["release"], self.cname))
+        elif direction in ("to_java", "to_array"):
+            if const:
+                raise ValueError("%s is an input but only maps to java" % struct["c"])
+            if direction == "to_java":
+                self.set_java(java_simple(struct["java"]), jname, "jobject")
+            else:
+                elem = struct["java"][:-2]
+                self.set_java(struct["java"], jname, "j%sArray" % elem)
+            self.post.append("%s(env, &%s, %s);" % (struct["function"], self.cname, jname))
+            if struct["c"] == "git_buf":
+                self.cleanup.append("git_buf_dispose(&%s);" % self.cname)
+        else:
+            raise ValueError("unknown direction " + direction)
+
+
+def c_declarator(ctype):
+    return ctype if ctype.endswith("*") else ctype + " "
+
+
+def java_simple(java_class):
+    return java_class.split("$")[-1]
+
+
+class Function:
+    def __init__(self, clazz, native, prototype, structs):
+        self.clazz = clazz
+        self.native = native
+        self.prototype = prototype.strip()
+        self.ret, self.cname, cparams = parse_prototype(prototype)
+        self.params = [Param(i, t, n, structs) for i, (t, n) in enumerate(cparams)]
+        out = [p for p in self.params if p.kind == "out_handle"]
+        self.out_handle = out[0] if out else None
+        if self.out_handle is not None:
+            self.java_ret, self.jni_ret = "long", "jlong"
+        elif self.ret == "void":
+            self.java_ret, self.jni_ret = "void", "void"
+        elif self.ret == "const git_oid *":
+            self.java_ret, self.jni_ret = "byte[]", "jbyteArray"
+        elif self.ret == "const char *":
+            self.java_ret, self.jni_ret = "String", "jstring"
+        elif self.ret.endswith("*"):
+            self.java_ret, self.jni_ret = "long", "jlong"
+        elif base_type(self.ret) in LONG_TYPES:
+            self.java_ret, self.jni_ret = "long", "jlong"
+        elif self.ret == "int" or base_type(self.ret).endswith("_t") or self.ret in INT_TYPES:
+            self.java_ret, self.jni_ret = "int", "jint"
+        else:
+            raise ValueError("no mapping for return type " + self.ret)
+
+    def jni_name(self):
+        return "J_MAKE_METHOD(%s_%s)" % (self.clazz, self.native)
+
+    def c_signature(self):
+        args = ["JNIEnv *env", "jclass obj"]
+        args += ["%s %s" % p.jni for p in self.params if p.jni]
+        return "JNIEXPORT %s JNICALL %s(%s)" % (self.jni_ret, self.jni_name(), ", ".join(args))
+
+    def java_declaration(self):
+        args = ", ".join("%s %s" % p.java for p in self.params if p.java)
+        return "    static native %s %s(%s);" % (self.java_ret, self.native, args)
+
+    def c_body(self):
+        lines = []
+        released = []
+        for p in self.params:
+            lines.extend(p.pre)
+            if p.kind == "string":
+                # pending NullPointerException, see j_gen_utf_chars
+                lines.append("if (%s == NULL)" % p.cname)
+                lines.append("{")
+                lines.extend("    " + c for c in released)
+                lines.append("    return%s;" % self.failure_value())
+                lines.append("}")
+            released = p.cleanup + released
+        call = "%s(%s)" % (self.cname, ", ".join(p.arg for p in self.params))
+        posts = [s for p in self.params for s in p.post]
+        cleanups = [s for p in reversed(self.params) for s in p.cleanup]
+        if self.out_handle is not None or self.ret == "int" and (posts or cleanups):
+            lines.append("int error = %s;" % call)
+            if posts:
+                lines.append("if (error == 0)")
+                lines.append("{")
+                lines.extend("    " + s for s in posts)
+                lines.append("}")
+            lines.extend(cleanups)
+            if self.out_handle is not None:
+                lines.append("return j_handle_or_error(error, %s);" % self.out_handle.cname)
+            else:
+                lines.append("return error;")
+        elif self.ret == "void":
+            lines.append(call + ";")
+            lines.extend(posts + cleanups)
+        elif not posts and not cleanups and self.jni_ret in ("jint", "jlong"):
+            lines.append("return %s;" % self.convert_result(call))
+        else:
+            lines.append("%sc_result = %s;" % (c_declarator(self.ret), call))
+            lines.extend(posts + cleanups)
+            lines.append("return %s;" % self.convert_result("c_result"))
+        return lines
+
+    def failure_value(self):
+        if self.jni_ret == "void":
+            return ""
+        if self.jni_ret in ("jbyteArray", "jstring"):
+            return " NULL"
+        return " 0"
+
+    def convert_result(self, value):
+        if self.ret == "const git_oid *":
+            return "j_gen_oid_to_bytes(env, %s)" % value
+        if self.ret == "const char *":
+            return "%s == NULL ? NULL : (*env)->NewStringUTF(env, %s)" % (value, value)
+        if self.ret.endswith("*"):
+            return "(jlong)(uintptr_t)%s" % value
+        return "(%s)%s" % (self.jni_ret, value)
+
+
+def struct_code(struct):
+    """Marshaller of one struct: a field id cache and the conversion functions."""
+    c, fn, direction = struct["c"], struct["function"], struct["direction"]
+    short = c[len("git_"):] if c.startswith("git_") else c
+    cache = "s_%s_fields" % short
+    decls, body = [], []
+    if direction == "to_array":
+        fields = struct["fields"]
+        elem = struct["java"][:-2]
+        jelem = "j" + elem
+        decls.append("/** Store the fields of %s, in order %s, in a java %s. */"
+                     % (c, ", ".join(f["c"] for f in fields), struct["java"]))
+        sig = "void %s(JNIEnv *env, const %s *c_value, j%sArray out)" % (fn, c, elem)
+        decls.append(sig + ";")
+        body.append(sig)
+        body.append("{")
+        body.append("    %s values[%d];" % (jelem, len(fields)))
+        for i, f in enumerate(fields):
+            if f["type"] == "pointer":
+                body.append("    values[%d] = (%s)(uintptr_t)c_value->%s;" % (i, jelem, f["c"]))
+            else:
+                body.append("    values[%d] = (%s)c_value->%s;" % (i, jelem, f["c"]))
+        body.append("    (*env)->Set%sArrayRegion(env, out, 0, %d, values);"
+                    % (elem.capitalize(), len(fields)))
+        body.append("}")
+        return decls, body
+
+    fields = struct["fields"]
+    body.append("static struct")
+    body.append("{")
+    body.append("    /* J_GEN_UNRESOLVED, J_GEN_STORING or J_GEN_RESOLVED, the ids are valid once"
+                " RESOLVED is read with acquire. */")
+    body.append("    int state;")
+    for f in fields:
+        body.append("    jfieldID %s;" % f["java"])
+    body.append("} %s;" % cache)
+    body.append("")
+    body.append("/** Resolve the field ids of %s from the class of `obj`, once. */"
+                % struct["java"].replace("$", "."))
+    body.append("static bool %s_resolve(JNIEnv *env, jobject obj)" % cache)
+    body.append("{")
+    body.append("    if (j_atomic_load_int(&%s.state, J_ATOMIC_ACQUIRE) == J_GEN_RESOLVED)" % cache)
+    body.append("    {")
+    body.append("        return true;")
+    body.append("    }")
+    body.append("    jclass clz = (*env)->GetObjectClass(env, obj);")
+    for f in fields:
+        sig = FIELD_KINDS[f["type"]][1]
+        body.append('    jfieldID f_%s = (*env)->GetFieldID(env, clz, "%s", "%s");'
+                    % (f["java"], f["java"], sig))
+    body.append("    (*env)->DeleteLocalRef(env, clz);")
+    body.append("    if ((*env)->ExceptionCheck(env))")
+    body.append("    {")
+    body.append("        return false;")
+    body.append("    }")
+    body.append("    /* field ids stay valid while the class is loaded, racing threads found the"
+                " same values and only the first one stores them. */")
+    body.append("    int expected = J_GEN_UNRESOLVED;")
+    body.append("    if (j_atomic_cas_int(&%s.state, &expected, J_GEN_STORING, J_ATOMIC_ACQUIRE))"
+                % cache)
+    body.append("    {")
+    for f in fields:
+        body.append("        %s.%s = f_%s;" % (cache, f["java"], f["java"]))
+    body.append("        j_atomic_store_int(&%s.state, J_GEN_RESOLVED, J_ATOMIC_RELEASE);" % cache)
+    body.append("    }")
+    body.append("    else")
+    body.append("    {")
+    body.append("        while (j_atomic_load_int(&%s.state, J_ATOMIC_ACQUIRE) != J_GEN_RESOLVED)"
+                % cache)
+    body.append("        {")
+    body.append("            /* the first thread is storing the ids */")
+    body.append("        }")
+    body.append("    }")
+    body.append("    return true;")
+    body.append("}")
+    body.append("")
+
+    if direction == "to_java":
+        decls.append("/** Copy values of %s to java::%s */" % (c, java_simple(struct["java"])))
+        sig = "void %s(JNIEnv *env, const %s *c_value, jobject value)" % (fn, c)
+        decls.append(sig + ";")
+        body.append(sig)
+        body.append("{")
+        body.append("    if (!%s_resolve(env, value))" % cache)
+        body.append("    {")
+        body.append("        return;")
+        body.append("    }")
+        for f in fields:
+            jtype, _, accessor = FIELD_KINDS[f["type"]]
+            fid = "%s.%s" % (cache, f["java"])
+            if f["type"] == "String":
+                var = "j_" + f["java"]
+                body.append("    jstring %s = c_value->%s == NULL ? NULL : "
+                            "(*env)->NewStringUTF(env, c_value->%s);" % (var, f["c"], f["c"]))
+                body.append("    (*env)->SetObjectField(env, value, %s, %s);" % (fid, var))
+                body.append("    (*env)->DeleteLocalRef(env, %s);" % var)
+            else:
+                body.append("    (*env)->Set%sField(env, value, %s, (%s)c_value->%s);"
+                            % (accessor, fid, jtype, f["c"]))
+        body.append("}")
+        return decls, body
+
+    release = struct.get("release")
+    owned = [f for f in fields if f["type"] == "String"]
+    decls.append("/** copy values of java %s object to %s struct. */"
+                 % (struct["java"].replace("$", "."), c))
+    if owned:
+        decls.append("/* NOTE: %s of the result need to be free-ed, see %s. */"
+                     % (", ".join(f["c"] for f in owned), release))
+    sig = "void %s(JNIEnv *env, %s *c_value, jobject value)" % (fn, c)
+    decls.append(sig + ";")
+    body.append(sig)
+    body.append("{")
+    body.append("    if (!%s_resolve(env, value))" % cache)
+    body.append("    {")
+    body.append("        return;")
+    body.append("    }")
+    for f in fields:
+        jtype, _, accessor = FIELD_KINDS[f["type"]]
+        fid = "%s.%s" % (cache, f["java"])
+        if f["type"] in ("String", "oid_hex"):
+            var = "j_" + f["java"]
+            body.append("    jstring %s = (*env)->GetObjectField(env, value, %s);" % (var, fid))
+            if f["type"] == "String":
+                body.append("    c_value->%s = j_gen_strdup(env, %s);" % (f["c"], var))
+            else:
+                body.append("    j_gen_oid_from_hex(env, %s, &c_value->%s);" % (var, f["c"]))
+            body.append("    (*env)->DeleteLocalRef(env, %s);" % var)
+        else:
+            body.append("    c_value->%s = (*env)->Get%sField(env, value, %s);"
+                        % (f["c"], accessor, fid))
+    body.append("}")
+    if release:
+        body.append("")
+        decls.append("")
+        decls.append("/** Free the strings %s allocated. */" % fn)
+        rsig = "void %s(%s *c_value)" % (release, c)
+        decls.append(rsig + ";")
+        body.append(rsig)
+        body.append("{")
+        for f in owned:
+            body.append("    free((void *)c_value->%s);" % f["c"])
+            body.append("    c_value->%s = NULL;" % f["c"])
+        body.append("}")
+    return decls, body
+
+
+HELPERS = r'''
+/** Borrow the modified UTF-8 chars of `str`, throws NullPointerException if it is null. */
+static const char *j_gen_utf_chars(JNIEnv *env, jstring str)
+{
+    if (str == NULL)
+    {
+        j_throw_java_error(env, "java/lang/NullPointerException", "cannot cast null to c string");
+        return NULL;
+    }
+    return (*env)->GetStringUTFChars(env, str, NULL);
+}
+
+static void j_gen_release_utf_chars(JNIEnv *env, jstring str, const char *chars)
+{
+    if (chars != NULL)
+    {
+        (*env)->ReleaseStringUTFChars(env, str, chars);
+    }
+}
+
+/** Copy of `str` to be free-ed by the caller, NULL if `str` is null. */
+static char *j_gen_strdup(JNIEnv *env, jstring str)
+{
+    if (str == NULL)
+    {
+        return NULL;
+    }
+    jsize len = (*env)->GetStringUTFLength(env, str);
+    char *copy = malloc(len + 1);
+    if (copy != NULL)
+    {
+        (*env)->GetStringUTFRegion(env, str, 0, (*env)->GetStringLength(env, str), copy);
+        copy[len] = '\0';
+    }
+    return copy;
+}
+
+/** Copy up to GIT_OID_RAWSZ leading bytes of `id` into `c_oid`, zero filling the rest. */
+static void j_gen_oid_from_bytes(JNIEnv *env, jbyteArray id, git_oid *c_oid)
+{
+    memset(c_oid, 0, sizeof(git_oid));
+    if (id != NULL)
+    {
+        jsize len = (*env)->GetArrayLength(env, id);
+        (*env)->GetByteArrayRegion(env, id, 0, len < GIT_OID_RAWSZ ? len : GIT_OID_RAWSZ, (jbyte *)c_oid->id);
+    }
+}
+
+static jbyteArray j_gen_oid_to_bytes(JNIEnv *env, const git_oid *c_oid)
+{
+    if (c_oid == NULL)
+    {
+        return NULL;
+    }
+    jbyteArray raw = (*env)->NewByteArray(env, GIT_OID_RAWSZ);
+    if (raw != NULL)
+    {
+        (*env)->SetByteArrayRegion(env, raw, 0, GIT_OID_RAWSZ, (const jbyte *)c_oid->id);
+    }
+    return raw;
+}
+
+/** Parse a hex id held by a java String, a null, malformed or too long one leaves a zero id. */
+static void j_gen_oid_from_hex(JNIEnv *env, jstring hex, git_oid *c_oid)
+{
+    memset(c_oid, 0, sizeof(git_oid));
+    if (hex == NULL)
+    {
+        return;
+    }
+    char buf[GIT_OID_HEXSZ + 1] = {0};
+    jsize len = (*env)->GetStringLength(env, hex);
+    /* equal lengths mean every char is ascii and takes one byte, so the copy fits the buffer */
+    if (len > GIT_OID_HEXSZ || (*env)->GetStringUTFLength(env, hex) != len)
+    {
+        return;
+    }
+    (*env)->GetStringUTFRegion(env, hex, 0, len, buf);
+    if (git_oid_fromstrn(c_oid, buf, (size_t)len) != 0)
+    {
+        memset(c_oid, 0, sizeof(git_oid));
+    }
+}
+'''
+
+
+def generate(spec):
+    structs = {s["c"]: s for s in spec["structs"]}
+    functions = []
+    for clazz, entries in spec["functions"].items():
+        for entry in entries:
+            functions.append(Function(clazz, entry["native"], entry["prototype"], structs))
+
+    h = [HEADER + "#include \"j_common.h\"",
+         "#include <git2.h>",
+         "#include <jni.h>",
+         "#ifndef __GIT24J_GENERATED_H__",
+         "#define __GIT24J_GENERATED_H__",
+         "#ifdef __cplusplus",
+         "extern \"C\"",
+         "{",
+         "#endif"]
+    c = [HEADER + "#include \"j_generated.h\"",
+         "#include \"j_atomic.h\"",
+         "#include \"j_exception.h\"",
+         "#include \"j_util.h\"",
+         "#include <stdbool.h>",
+         "#include <stdint.h>",
+         "#include <stdlib.h>",
+         "#include <string.h>",
+         "",
+         "/* states of the field id caches below */",
+         "#define J_GEN_UNRESOLVED 0",
+         "#define J_GEN_STORING 1",
+         "#define J_GEN_RESOLVED 2",
+         HELPERS]
+    for struct in spec["structs"]:
+        decls, body = struct_code(struct)
+        h.append("")
+        h.extend("    " + d if d else "" for d in decls)
+        c.extend(body)
+        c.append("")
+    for fn in functions:
+        h.append("")
+        h.append("    /** %s */" % fn.prototype)
+        h.append("    %s;" % fn.c_signature())
+        c.append(fn.c_signature())
+        c.append("{")
+        c.extend("    " + line if line else "" for line in fn.c_body())
+        c.append("}")
+        c.append("")
+    h += ["", "#ifdef __cplusplus", "}", "#endif", "#endif", ""]
+
+    java = {}
+    for fn in functions:
+        java.setdefault(fn.clazz, []).append(fn.java_declaration())
+    return {
+        os.path.join(C_DIR, H_OUT): "\n".join(h),
+        os.path.join(C_DIR, C_OUT): "\n".join(c).rstrip("\n") + "\n",
+    }, java
+
+
+def splice_java(path, declarations):
+    with open(path) as f:
+        text = f.read()
+    start, end = text.find(BEGIN), text.find(END)
+    if start < 0 or end < start:
+        raise ValueError("%s has no generated natives block" % os.path.relpath(path, ROOT))
+    block = BEGIN + "\n" + "\n\n".join(declarations) + "\n"
+    return text[:start] + block + text[end:]
+
+
+def main():
+    check = "--check" in sys.argv[1:]
+    with open(SPEC) as f:
+        spec = json.load(f)
+    outputs, java = generate(spec)
+    for clazz, declarations in java.items():
+        path = os.path.join(JAVA_DIR, clazz + ".java")
+        outputs[path] = splice_java(path, declarations)
+    stale = []
+    for path, text in outputs.items():
+        old = open(path).read() if os.path.exists(path) else None
+        if old == text:
+            continue
+        if check:
+            stale.append(os.path.relpath(path, ROOT))
+        else:
+            with open(path, "w") as f:
+                f.write(text)
+            print("wrote " + os.path.relpath(path, ROOT))
+    if stale:
+        sys.exit("out of date, run scripts/gen_bindings.py: " + ", ".join(stale))
+
+
+if __name__ == "__main__":
+    main()
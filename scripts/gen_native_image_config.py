@@ -0,0 +1,262 @@
+#!/usr/bin/env python3
+"""Generate GraalVM native-image metadata for git24j.
+
+The C glue finds java members by name: cached method tables, GetMethodID/GetFieldID and the
+j_call_setter_* / j_get_*_field helpers in j_mappers.c. Most lookups go through GetObjectClass,
+so the class is not known from the C source alone; every candidate class that declares a member
+with the same name and descriptor is registered. Candidates are the classes of this library and
+the JDK classes that appear in the signatures of its native methods (e.g. AtomicLong). Members and
+descriptors come from javap, so run `mvn compile` first.
+
+Usage: scripts/gen_native_image_config.py [--check]
+"""
+
+import json
+import os
+import re
+import subprocess
+import sys
+
+ROOT = os.path.dirname(os.path.dirname(os.path.abspath(__file__)))
+C_DIR = os.path.join(ROOT, "src", "main", "c", "git24j")
+JAVA_DIR = os.path.join(ROOT, "src", "main", "java")
+CLASSES = os.path.join(ROOT, "target", "classes")
+PACKAGE = "com/github/git24j/core/"
+OUT_DIR = os.path.join(
+    ROOT, "src", "main", "resources", "META-INF", "native-image", "com.github.shijinglu", "lg24j")
+
+# helpers of j_mappers.c / j_util.c: name -> (kind, descriptor), the member name is the first
+# string literal of the call
+HELPERS = {
+    "j_call_setter_int": ("method", "(I)V"),
+    "j_call_setter_long": ("method", "(J)V"),
+    "j_call_setter_string": ("method", "(Ljava/lang/String;)V"),
+    "j_call_setter_string_c": ("method", "(Ljava/lang/String;)V"),
+    "j_call_setter_byte_array": ("method", "([B)V"),
+    "j_call_getter_string": ("method", "()Ljava/lang/String;"),
+    "j_call_getter_byte_array": ("method", "()[B"),
+    "j_save_c_pointer": ("method", "(J)V"),
+    "j_get_int_field": ("field", "I"),
+    "j_get_string_field": ("field", "Ljava/lang/String;"),
+    "j_set_string_field_c": ("field", "Ljava/lang/String;"),
+}
+
+PRIMITIVES = {"Z": "boolean", "B": "byte", "C": "char", "S": "short", "I": "int", "J": "long",
+              "F": "float", "D": "double", "V": "void"}
+
+
+def read_c_sources():
+    sources = {}
+    for name in sorted(os.listdir(C_DIR)):
+        if name.endswith((".c", ".h")):
+            with open(os.path.join(C_DIR, name)) as f:
+                # drop comments, they quote examples
+                text = re.sub(r"/\*.*?\*/", "", f.read(), flags=re.S)
+                sources[name] = re.sub(r"//[^\n]*", "", text)
+    return sources
+
+
+def class_literal(expr, defines):
+    """Resolve `J_CLZ_PREFIX "Foo"`, `"java/lang/Foo"` or a #define to a binary class name."""
+    expr = expr.strip()
+    if expr in defines:
+        expr = defines[expr]
+    m = re.fullmatch(r'(J_CLZ_PREFIX\s*)?"([^"]+)"', expr)
+    if not m:
+        return None
+    path = (PACKAGE if m.group(1) else "") + m.group(2)
+    return path.replace("/", ".")
+
+
+def scan_c(sources):
+    defines = {}
+    for text in sources.values():
+        for m in re.finditer(r'#define\s+(\w+)\s+((?:J_CLZ_PREFIX\s*)?"[^"]+")', text):
+            defines[m.group(1)] = m.group(2)
+    exact = set()       # (class, kind, name, descriptor)
+    by_name = set()     # (kind, name, descriptor), class unknown
+    classes = set()     # looked up with FindClass or thrown
+    for text in sources.values():
+        for m in re.finditer(
+                r'j_cached_method\s+\w+\s*=\s*\{\s*([^,]+),\s*"([^"]+)"\s*,\s*"([^"]+)"\s*\}',
+                text):
+            clz = class_literal(m.group(1), defines)
+            if clz:
+                exact.add((clz, "method", m.group(2), m.group(3)))
+        for m in re.finditer(
+                r'Get(?:Static)?(Method|Field)ID\(\s*env\s*,\s*[^,]+,\s*"([^"]+)"\s*,\s*"([^"]+)"',
+                text):
+            by_name.add((m.group(1).lower(), m.group(2), m.group(3)))
+        for helper, (kind, desc) in HELPERS.items():
+            for m in re.finditer(r'\b%s\(\s*env\s*,([^;]*?)\)\s*;' % helper, text):
+                literal = re.search(r'"([^"]+)"', m.group(1))
+                if literal:
+                    by_name.add((kind, literal.group(1), desc))
+        for m in re.finditer(r'FindClass\(\s*env\s*,\s*([^)]+)\)', text):
+            clz = class_literal(m.group(1), defines)
+            if clz:
+                classes.add(clz)
+        for m in re.finditer(r'j_throw_java_error\(\s*env\s*,\s*([^,]+),', text):
+            clz = class_literal(m.group(1), defines)
+            if clz:
+                classes.add(clz)
+        for m in re.finditer(r'const\s+char\s*\*\s*\w+\s*=\s*(J_CLZ_PREFIX\s*"[^"]+")\s*;', text):
+            classes.add(class_literal(m.group(1), defines))
+    return exact, by_name, classes
+
+
+def javap(class_names):
+    """Members of the given classes: {class: [(kind, name, descriptor, modifiers)]}."""
+    out = subprocess.run(["javap", "-p", "-s", "-cp", CLASSES] + sorted(class_names),
+                         check=True, stdout=subprocess.PIPE, universal_newlines=True).stdout
+    members = {}
+    current = None
+    pending = None
+    for line in out.splitlines():
+        header = re.match(r'^\S.*?\b(?:class|interface|enum)\s+([\w.$]+)', line)
+        if header:
+            current = header.group(1)
+            members[current] = []
+            continue
+        desc = re.match(r'^\s+descriptor: (\S+)', line)
+        if desc and pending and current:
+            kind, name, mods = pending
+            members[current].append((kind, name, desc.group(1), mods))
+            pending = None
+            continue
+        decl = re.match(r'^  (\S.*);$', line)
+        if not decl or decl.group(1) == "static {}":
+            continue
+        text = decl.group(1)
+        if "(" in text:
+            before = text[:text.index("(")].split()
+            name = before[-1]
+            simple = current.split(".")[-1]
+            if name == current or name == simple:
+                name = "<init>"
+            pending = ("method", name, before[:-1])
+        else:
+            text = re.sub(r"\s*=.*$", "", text)
+            parts = text.split()
+            pending = ("field", parts[-1], parts[:-2])
+    return members
+
+
+def java_type(desc):
+    dims = 0
+    while desc.startswith("["):
+        dims += 1
+        desc = desc[1:]
+    base = PRIMITIVES.get(desc) or desc[1:-1].replace("/", ".")
+    return base + "[]" * dims
+
+
+def parameter_types(method_desc):
+    params = method_desc[1:method_desc.index(")")]
+    return [java_type(t) for t in re.findall(r'\[*(?:[ZBCSIJFD]|L[^;]+;)', params)]
+
+
+def library_classes():
+    names = []
+    base = os.path.join(CLASSES, PACKAGE)
+    for name in sorted(os.listdir(base)):
+        if name.endswith(".class"):
+            names.append((PACKAGE + name[:-len(".class")]).replace("/", "."))
+    return names
+
+
+def native_signature_classes(members):
+    found = set()
+    for class_members in members.values():
+        for kind, _, desc, mods in class_members:
+            if kind == "method" and "native" in mods:
+                found.update(re.findall(r'L(java/[^;]+);', desc))
+    return {c.replace("/", ".") for c in found}
+
+
+def build_jni_config():
+    exact, by_name, classes = scan_c(read_c_sources())
+    members = javap(library_classes())
+    jdk = native_signature_classes(members)
+    jdk.update(c for c in classes if c.startswith("java."))
+    jdk.update(c for c, _, _, _ in exact if c.startswith("java."))
+    members.update(javap(jdk))
+
+    entries = {}
+
+    def register(clz, kind, name, desc):
+        entry = entries.setdefault(clz, {"methods": set(), "fields": set()})
+        if kind == "method":
+            entry["methods"].add((name, tuple(parameter_types(desc))))
+        else:
+            entry["fields"].add(name)
+
+    for clz in classes:
+        entries.setdefault(clz, {"methods": set(), "fields": set()})
+    for clz, kind, name, desc in exact:
+        register(clz, kind, name, desc)
+    for clz, class_members in members.items():
+        for kind, name, desc, _ in class_members:
+            if (kind, name, desc) not in by_name:
+                continue
+            # constructors only of classes the glue instantiates
+            if name == "<init>" and clz not in classes:
+                continue
+            register(clz, kind, name, desc)
+
+    config = []
+    for clz in sorted(entries):
+        entry = {"name": clz}
+        if entries[clz]["methods"]:
+            entry["methods"] = [{"name": n, "parameterTypes": list(p)}
+                                for n, p in sorted(entries[clz]["methods"])]
+        if entries[clz]["fields"]:
+            entry["fields"] = [{"name": n} for n in sorted(entries[clz]["fields"])]
+        config.append(entry)
+    return config
+
+
+def build_reflect_config():
+    """Classes the java side loads by name, e.g. the binding picked in Bindings."""
+    names = set()
+    for dirpath, _, files in os.walk(JAVA_DIR):
+        for name in files:
+            if name.endswith(".java"):
+                with open(os.path.join(dirpath, name)) as f:
+                    names.update(re.findall(r'"(com\.github\.git24j\.core\.[\w$]+)"', f.read()))
+    return [{"name": n, "methods": [{"name": "<init>", "parameterTypes": []}]}
+            for n in sorted(names)]
+
+
+def build_resource_config():
+    # natives bundled by `make package_natives`, extracted at runtime by Init
+    return {"resources": {"includes": [{"pattern": "\\Qnative/\\E.*"}]}}
+
+
+def main():
+    check = "--check" in sys.argv[1:]
+    outputs = {
+        "jni-config.json": build_jni_config(),
+        "reflect-config.json": build_reflect_config(),
+        "resource-config.json": build_resource_config(),
+    }
+    stale = []
+    os.makedirs(OUT_DIR, exist_ok=True)
+    for name, content in outputs.items():
+        path = os.path.join(OUT_DIR, name)
+        text = json.dumps(content, indent=2) + "\n"
+        old = open(path).read() if os.path.exists(path) else None
+        if old == text:
+            continue
+        if check:
+            stale.append(name)
+        else:
+            with open(path, "w") as f:
+                f.write(text)
+            print("wrote " + os.path.relpath(path, ROOT))
+    if stale:
+        sys.exit("out of date, run scripts/gen_native_image_config.py: " + ", ".join(stale))
+
+
+if __name__ == "__main__":
+    main()
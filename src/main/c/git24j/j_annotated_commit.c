@@ -4,50 +4,46 @@
 #include <assert.h>
 
 /** int git_annotated_commit_from_ref(git_annotated_commit **out, git_repository *repo, const git_reference *ref); */
-JNIEXPORT jint JNICALL J_MAKE_METHOD(AnnotatedCommit_jniFromRef)(JNIEnv *env, jclass obj, jobject outAc, long repoPtr, long refPtr)
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(AnnotatedCommit_jniFromRef)(JNIEnv *env, jclass obj, long repoPtr, long refPtr)
 {
-    git_annotated_commit *c_ac;
+    git_annotated_commit *c_ac = NULL;
     int e = git_annotated_commit_from_ref(&c_ac, (git_repository *)repoPtr, (git_reference *)refPtr);
-    j_save_c_pointer(env, (void *)c_ac, outAc, "set");
-    return e;
+    return j_handle_or_error(e, c_ac);
 }
 
 /** int git_annotated_commit_from_fetchhead(git_annotated_commit **out, git_repository *repo, const char *branch_name, const char *remote_url, const git_oid *id); */
-JNIEXPORT jint JNICALL J_MAKE_METHOD(AnnotatedCommit_jniFromFetchHead)(JNIEnv *env, jclass obj, jobject outAc, long repoPtr, jstring branchName, jstring remoteUrl, jobject oid)
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(AnnotatedCommit_jniFromFetchHead)(JNIEnv *env, jclass obj, long repoPtr, jstring branchName, jstring remoteUrl, jobject oid)
 {
     assert(repoPtr && branchName && remoteUrl && oid && "bad user input");
-    git_annotated_commit *c_ac;
+    git_annotated_commit *c_ac = NULL;
     char *branch_name = j_copy_of_jstring(env, branchName, true);
     char *remote_url = j_copy_of_jstring(env, remoteUrl, true);
     git_oid c_oid;
     j_git_oid_from_java(env, oid, &c_oid);
     int e = git_annotated_commit_from_fetchhead(&c_ac, (git_repository *)repoPtr, branch_name, remote_url, &c_oid);
-    j_save_c_pointer(env, (void *)c_ac, outAc, "set");
     free(branch_name);
     free(remote_url);
-    return e;
+    return j_handle_or_error(e, c_ac);
 }
 
 /** int git_annotated_commit_lookup(git_annotated_commit **out, git_repository *repo, const git_oid *id); */
-JNIEXPORT jint JNICALL J_MAKE_METHOD(AnnotatedCommit_jniLookup)(JNIEnv *env, jclass obj, jobject outAc, long repoPtr, jobject oid)
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(AnnotatedCommit_jniLookup)(JNIEnv *env, jclass obj, long repoPtr, jobject oid)
 {
-    git_annotated_commit *c_out;
+    git_annotated_commit *c_out = NULL;
     git_oid c_oid;
     j_git_oid_from_java(env, oid, &c_oid);
     int e = git_annotated_commit_lookup(&c_out, (git_repository *)repoPtr, &c_oid);
-    j_save_c_pointer(env, (void *)c_out, outAc, "set");
-    return e;
+    return j_handle_or_error(e, c_out);
 }
 
 /** int git_annotated_commit_from_revspec(git_annotated_commit **out, git_repository *repo, const char *revspec); */
-JNIEXPORT jint JNICALL J_MAKE_METHOD(AnnotatedCommit_jniFromRevspec)(JNIEnv *env, jclass obj, jobject outAc, long repoPtr, jstring revspec)
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(AnnotatedCommit_jniFromRevspec)(JNIEnv *env, jclass obj, long repoPtr, jstring revspec)
 {
-    git_annotated_commit *c_out;
+    git_annotated_commit *c_out = NULL;
     char *c_revspec = j_copy_of_jstring(env, revspec, false);
     int e = git_annotated_commit_from_revspec(&c_out, (git_repository *)repoPtr, c_revspec);
-    j_save_c_pointer(env, (void *)c_out, outAc, "set");
     free(c_revspec);
-    return e;
+    return j_handle_or_error(e, c_out);
 }
 
 /** const git_oid * git_annotated_commit_id(const git_annotated_commit *commit); */
@@ -0,0 +1,160 @@
+#ifndef __GIT24J_ATOMIC_H__
+#define __GIT24J_ATOMIC_H__
+#ifdef __cplusplus
+extern "C"
+{
+#endif
+
+#include <stdbool.h>
+#include <stdint.h>
+
+/**
+ * Atomic operations on `int`, `uint64_t` and pointer variables, and a once-initializer built on
+ * them. GCC and clang use the `__atomic` builtins with the given memory order; MSVC has no C11
+ * atomics in C mode and uses the Interlocked functions, which are full barriers and ignore the
+ * order. Compare-and-set is strong and uses relaxed ordering when it fails.
+ */
+#if defined(_MSC_VER)
+#ifndef WIN32_LEAN_AND_MEAN
+#define WIN32_LEAN_AND_MEAN
+#endif
+#include <windows.h>
+
+#define J_ATOMIC_INLINE static __inline
+
+#define J_ATOMIC_RELAXED 0
+#define J_ATOMIC_ACQUIRE 0
+#define J_ATOMIC_RELEASE 0
+
+    J_ATOMIC_INLINE int j_atomic_load_int(const volatile int *p, int order)
+    {
+        return (int)InterlockedCompareExchange((volatile LONG *)p, 0, 0);
+    }
+
+    J_ATOMIC_INLINE void j_atomic_store_int(volatile int *p, int v, int order)
+    {
+        InterlockedExchange((volatile LONG *)p, (LONG)v);
+    }
+
+    J_ATOMIC_INLINE bool j_atomic_cas_int(volatile int *p, int *expected, int desired, int order)
+    {
+        int old = (int)InterlockedCompareExchange((volatile LONG *)p, (LONG)desired, (LONG)*expected);
+        if (old == *expected)
+        {
+            return true;
+        }
+        *expected = old;
+        return false;
+    }
+
+    J_ATOMIC_INLINE int j_atomic_add_int(volatile int *p, int v, int order)
+    {
+        return (int)InterlockedExchangeAdd((volatile LONG *)p, (LONG)v);
+    }
+
+    J_ATOMIC_INLINE uint64_t j_atomic_load_u64(const volatile uint64_t *p, int order)
+    {
+        return (uint64_t)InterlockedCompareExchange64((volatile LONG64 *)p, 0, 0);
+    }
+
+    J_ATOMIC_INLINE void j_atomic_store_u64(volatile uint64_t *p, uint64_t v, int order)
+    {
+        InterlockedExchange64((volatile LONG64 *)p, (LONG64)v);
+    }
+
+    J_ATOMIC_INLINE bool j_atomic_cas_u64(volatile uint64_t *p, uint64_t *expected, uint64_t desired, int order)
+    {
+        uint64_t old = (uint64_t)InterlockedCompareExchange64((volatile LONG64 *)p, (LONG64)desired, (LONG64)*expected);
+        if (old == *expected)
+        {
+            return true;
+        }
+        *expected = old;
+        return false;
+    }
+
+    J_ATOMIC_INLINE uint64_t j_atomic_add_u64(volatile uint64_t *p, uint64_t v, int order)
+    {
+        return (uint64_t)InterlockedExchangeAdd64((volatile LONG64 *)p, (LONG64)v);
+    }
+
+    J_ATOMIC_INLINE uint64_t j_atomic_exchange_u64(volatile uint64_t *p, uint64_t v, int order)
+    {
+        return (uint64_t)InterlockedExchange64((volatile LONG64 *)p, (LONG64)v);
+    }
+
+    J_ATOMIC_INLINE void *j_atomic_load_ptr(void *const volatile *p, int order)
+    {
+        return InterlockedCompareExchangePointer((void *volatile *)p, NULL, NULL);
+    }
+
+    J_ATOMIC_INLINE bool j_atomic_cas_ptr(void *volatile *p, void **expected, void *desired, int order)
+    {
+        void *old = InterlockedCompareExchangePointer(p, desired, *expected);
+        if (old == *expected)
+        {
+            return true;
+        }
+        *expected = old;
+        return false;
+    }
+
+    J_ATOMIC_INLINE void *j_atomic_exchange_ptr(void *volatile *p, void *v, int order)
+    {
+        return InterlockedExchangePointer(p, v);
+    }
+#else
+#define J_ATOMIC_INLINE static inline
+#define J_ATOMIC_RELAXED __ATOMIC_RELAXED
+#define J_ATOMIC_ACQUIRE __ATOMIC_ACQUIRE
+#define J_ATOMIC_RELEASE __ATOMIC_RELEASE
+
+#define j_atomic_load_int(p, order) __atomic_load_n((p), (order))
+#define j_atomic_store_int(p, v, order) __atomic_store_n((p), (v), (order))
+#define j_atomic_cas_int(p, expected, desired, order) \
+    __atomic_compare_exchange_n((p), (expected), (desired), false, (order), __ATOMIC_RELAXED)
+#define j_atomic_add_int(p, v, order) __atomic_fetch_add((p), (v), (order))
+
+#define j_atomic_load_u64 j_atomic_load_int
+#define j_atomic_store_u64 j_atomic_store_int
+#define j_atomic_cas_u64 j_atomic_cas_int
+#define j_atomic_add_u64 j_atomic_add_int
+#define j_atomic_exchange_u64(p, v, order) __atomic_exchange_n((p), (v), (order))
+
+#define j_atomic_load_ptr j_atomic_load_int
+#define j_atomic_cas_ptr j_atomic_cas_int
+#define j_atomic_exchange_ptr j_atomic_exchange_u64
+#endif
+
+/** states of a j_once flag, which must start out as J_ONCE_INIT. */
+#define J_ONCE_INIT 0
+#define J_ONCE_RUNNING 1
+#define J_ONCE_DONE 2
+
+    /**
+     * Run `init` exactly once per `flag`. Threads that lose the race spin until it has finished,
+     * so `init` must be short and must not call back into j_once with the same flag.
+     */
+    J_ATOMIC_INLINE void j_once(volatile int *flag, void (*init)(void))
+    {
+        if (j_atomic_load_int(flag, J_ATOMIC_ACQUIRE) == J_ONCE_DONE)
+        {
+            return;
+        }
+        int expected = J_ONCE_INIT;
+        if (j_atomic_cas_int(flag, &expected, J_ONCE_RUNNING, J_ATOMIC_ACQUIRE))
+        {
+            init();
+            j_atomic_store_int(flag, J_ONCE_DONE, J_ATOMIC_RELEASE);
+            return;
+        }
+        while (j_atomic_load_int(flag, J_ATOMIC_ACQUIRE) != J_ONCE_DONE)
+        {
+            /* another thread is running init */
+        }
+    }
+
+#ifdef __cplusplus
+}
+#endif
+#endif
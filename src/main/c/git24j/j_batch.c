@@ -0,0 +1,170 @@
+#include "j_batch.h"
+#include "j_common.h"
+#include <git2.h>
+#include <stdlib.h>
+#include <string.h>
+
+#define J_BATCH_MIN_CAP 256
+
+static j_cached_method s_batch_accept = {J_CLZ_PREFIX "BatchBridge", "accept", "([B[B[II)I"};
+
+/** make sure buf can take `extra` more bytes, returns false if out of memory. */
+static bool j_batch_reserve(void **buf, size_t *cap, size_t len, size_t extra)
+{
+    if (len + extra <= *cap)
+    {
+        return true;
+    }
+    size_t new_cap = *cap < J_BATCH_MIN_CAP ? J_BATCH_MIN_CAP : *cap;
+    while (new_cap < len + extra)
+    {
+        new_cap *= 2;
+    }
+    void *grown = realloc(*buf, new_cap);
+    if (grown == NULL)
+    {
+        return false;
+    }
+    *buf = grown;
+    *cap = new_cap;
+    return true;
+}
+
+bool j_batch_init(j_batch *batch, JNIEnv *env, jobject bridgeObj, int batch_size)
+{
+    memset(batch, 0, sizeof(*batch));
+    batch->batch_size = batch_size > 0 ? batch_size : 1;
+    if (!j_cb_bridge_init(&batch->bridge, env, bridgeObj, &s_batch_accept))
+    {
+        return false;
+    }
+    /* every upcall passes up to three arrays of a whole batch, do not keep them past the call */
+    batch->bridge.frame_per_call = true;
+    return true;
+}
+
+int j_batch_add_string(j_batch *batch, const char *str)
+{
+    size_t len = str == NULL ? 0 : strlen(str);
+    if (!j_batch_reserve((void **)&batch->strings, &batch->strings_cap, batch->strings_len, len + 1))
+    {
+        git_error_set_oom();
+        return GIT_ERROR;
+    }
+    memcpy(batch->strings + batch->strings_len, str == NULL ? "" : str, len);
+    batch->strings[batch->strings_len + len] = '\0';
+    batch->strings_len += len + 1;
+    return 0;
+}
+
+int j_batch_add_id(j_batch *batch, const git_oid *oid)
+{
+    if (!j_batch_reserve((void **)&batch->ids, &batch->ids_cap, batch->ids_len, GIT_OID_RAWSZ))
+    {
+        git_error_set_oom();
+        return GIT_ERROR;
+    }
+    memcpy(batch->ids + batch->ids_len, oid->id, GIT_OID_RAWSZ);
+    batch->ids_len += GIT_OID_RAWSZ;
+    return 0;
+}
+
+int j_batch_add_int(j_batch *batch, jint val)
+{
+    size_t bytes_len = batch->ints_len * sizeof(jint);
+    size_t bytes_cap = batch->ints_cap * sizeof(jint);
+    if (!j_batch_reserve((void **)&batch->ints, &bytes_cap, bytes_len, sizeof(jint)))
+    {
+        git_error_set_oom();
+        return GIT_ERROR;
+    }
+    batch->ints_cap = bytes_cap / sizeof(jint);
+    batch->ints[batch->ints_len++] = val;
+    return 0;
+}
+
+int j_batch_end_item(j_batch *batch)
+{
+    batch->count++;
+    if (batch->count >= batch->batch_size)
+    {
+        return j_batch_flush(batch);
+    }
+    return 0;
+}
+
+/** copy `len` bytes to a new java byte array, NULL if empty. */
+static jbyteArray j_batch_bytes(JNIEnv *env, const void *buf, size_t len)
+{
+    if (len == 0)
+    {
+        return NULL;
+    }
+    jbyteArray array = (*env)->NewByteArray(env, (jsize)len);
+    if (array != NULL)
+    {
+        (*env)->SetByteArrayRegion(env, array, 0, (jsize)len, (const jbyte *)buf);
+    }
+    return array;
+}
+
+int j_batch_flush(j_batch *batch)
+{
+    if (batch->aborted)
+    {
+        return GIT_EUSER;
+    }
+    if (batch->count == 0 || !j_cb_bridge_active(&batch->bridge))
+    {
+        return 0;
+    }
+    JNIEnv *env = j_cb_enter(&batch->bridge);
+    if (env == NULL)
+    {
+        batch->aborted = true;
+        return GIT_EUSER;
+    }
+    jbyteArray strings = j_batch_bytes(env, batch->strings, batch->strings_len);
+    jbyteArray ids = j_batch_bytes(env, batch->ids, batch->ids_len);
+    jintArray ints = NULL;
+    if (batch->ints_len > 0)
+    {
+        ints = (*env)->NewIntArray(env, (jsize)batch->ints_len);
+        if (ints != NULL)
+        {
+            (*env)->SetIntArrayRegion(env, ints, 0, (jsize)batch->ints_len, batch->ints);
+        }
+    }
+    jint r = 0;
+    if (!(*env)->ExceptionCheck(env))
+    {
+        r = (*env)->CallIntMethod(env, batch->bridge.consumer, batch->bridge.method, strings, ids, ints, (jint)batch->count);
+    }
+    int e = j_cb_leave(&batch->bridge, env);
+    batch->count = 0;
+    batch->strings_len = 0;
+    batch->ids_len = 0;
+    batch->ints_len = 0;
+    if (e != 0 || r != 0)
+    {
+        batch->aborted = true;
+        return GIT_EUSER;
+    }
+    return 0;
+}
+
+int j_batch_finish(j_batch *batch, int error)
+{
+    if (error == 0)
+    {
+        error = j_batch_flush(batch);
+    }
+    j_cb_bridge_release(&batch->bridge);
+    free(batch->strings);
+    free(batch->ids);
+    free(batch->ints);
+    batch->strings = NULL;
+    batch->ids = NULL;
+    batch->ints = NULL;
+    return error;
+}
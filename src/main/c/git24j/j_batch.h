@@ -0,0 +1,66 @@
+#include "j_callback.h"
+#include "j_common.h"
+#include <git2.h>
+#include <jni.h>
+#include <stdbool.h>
+
+#ifndef __GIT24J_BATCH_H__
+#define __GIT24J_BATCH_H__
+#ifdef __cplusplus
+extern "C"
+{
+#endif
+
+    /**
+     * Accumulates callback items on the native side and hands them to a java BatchBridge in
+     * batches, instead of making one upcall per item:
+     *     - strings: utf-8 bytes, each string terminated by '\0' (NULL is stored as an empty string)
+     *     - ids: raw oids packed back to back, GIT_OID_RAWSZ bytes each
+     *     - ints: one slot per int value
+     * java: int BatchBridge.accept(byte[] strings, byte[] ids, int[] ints, int count)
+     */
+    typedef struct
+    {
+        j_cb_bridge bridge;
+        int batch_size;
+        int count;
+        bool aborted;
+        char *strings;
+        size_t strings_len;
+        size_t strings_cap;
+        unsigned char *ids;
+        size_t ids_len;
+        size_t ids_cap;
+        jint *ints;
+        size_t ints_len;
+        size_t ints_cap;
+    } j_batch;
+
+    /** Initialize batch that delivers to `bridgeObj` every `batch_size` items. Returns false if java side can not be resolved. */
+    bool j_batch_init(j_batch *batch, JNIEnv *env, jobject bridgeObj, int batch_size);
+
+    /** Append a string to the current item. */
+    int j_batch_add_string(j_batch *batch, const char *str);
+
+    /** Append an oid to the current item. */
+    int j_batch_add_id(j_batch *batch, const git_oid *oid);
+
+    /** Append an int to the current item. */
+    int j_batch_add_int(j_batch *batch, jint val);
+
+    /** Finish current item, deliver the batch if full. Returns 0 to continue, GIT_EUSER to abort. */
+    int j_batch_end_item(j_batch *batch);
+
+    /** Deliver pending items. Returns 0 to continue, GIT_EUSER if java asked to abort or threw. */
+    int j_batch_flush(j_batch *batch);
+
+    /**
+     * Flush remaining items (unless the libgit2 result `error` already failed) and release buffers.
+     * Returns the final error code, GIT_EUSER if the consumer aborted.
+     */
+    int j_batch_finish(j_batch *batch, int error);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -0,0 +1,31 @@
+#include "j_blob.h"
+#include "j_common.h"
+#include "j_mappers.h"
+#include <git2.h>
+#include <stdlib.h>
+
+/* NewDirectByteBuffer needs an address even for an empty blob */
+static char s_empty[1];
+
+JNIEXPORT jobject JNICALL J_MAKE_METHOD(Blob_jniRawContent)(JNIEnv *env, jclass obj, jlong blobPtr)
+{
+    const git_blob *blob = (const git_blob *)blobPtr;
+    const void *content = git_blob_rawcontent(blob);
+    git_off_t size = git_blob_rawsize(blob);
+    if (content == NULL || size == 0)
+    {
+        return (*env)->NewDirectByteBuffer(env, s_empty, 0);
+    }
+    return (*env)->NewDirectByteBuffer(env, (void *)content, (jlong)size);
+}
+
+/** int git_blob_create_fromworkdir(git_oid *id, git_repository *repo, const char *relative_path); */
+JNIEXPORT jint JNICALL J_MAKE_METHOD(Blob_jniCreateFromWorkdir)(JNIEnv *env, jclass obj, jobject oid, jlong repoPtr, jstring relativePath)
+{
+    char *c_relative_path = j_copy_of_jstring(env, relativePath, true);
+    git_oid c_oid;
+    int e = git_blob_create_fromworkdir(&c_oid, (git_repository *)repoPtr, c_relative_path);
+    j_git_oid_to_java(env, &c_oid, oid);
+    free(c_relative_path);
+    return e;
+}
@@ -0,0 +1,25 @@
+#include "j_common.h"
+#include <git2.h>
+#include <jni.h>
+
+#ifndef __GIT24J_BLOB_H__
+#define __GIT24J_BLOB_H__
+#ifdef __cplusplus
+extern "C"
+{
+#endif
+
+    /**
+     * const void * git_blob_rawcontent(const git_blob *blob);
+     * git_off_t git_blob_rawsize(const git_blob *blob);
+     * Wraps the content in a direct ByteBuffer without copying it, valid until the blob is freed.
+     */
+    JNIEXPORT jobject JNICALL J_MAKE_METHOD(Blob_jniRawContent)(JNIEnv *env, jclass obj, jlong blobPtr);
+
+    /** int git_blob_create_fromworkdir(git_oid *id, git_repository *repo, const char *relative_path); */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(Blob_jniCreateFromWorkdir)(JNIEnv *env, jclass obj, jobject oid, jlong repoPtr, jstring relativePath);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
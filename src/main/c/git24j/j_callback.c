@@ -0,0 +1,240 @@
+#include "j_callback.h"
+#include "j_atomic.h"
+#include "j_common.h"
+#include "j_mappers.h"
+#include <assert.h>
+#include <git2.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+
+#ifndef _WIN32
+#include <pthread.h>
+
+static pthread_key_t s_attached_key;
+static pthread_once_t s_attached_once = PTHREAD_ONCE_INIT;
+
+/** thread-exit destructor for threads attached by j_env_of_current_thread. */
+static void j_detach_on_exit(void *vm)
+{
+    (*(JavaVM *)vm)->DetachCurrentThread((JavaVM *)vm);
+}
+
+static void j_attached_key_init(void)
+{
+    pthread_key_create(&s_attached_key, j_detach_on_exit);
+}
+#endif
+
+JNIEnv *j_env_of_current_thread(JavaVM *vm)
+{
+    JNIEnv *env = NULL;
+    jint r = (*vm)->GetEnv(vm, (void **)&env, JNI_VERSION_1_6);
+    if (r == JNI_OK)
+    {
+        return env;
+    }
+    if (r != JNI_EDETACHED)
+    {
+        return NULL;
+    }
+    if ((*vm)->AttachCurrentThreadAsDaemon(vm, (void **)&env, NULL) != JNI_OK)
+    {
+        return NULL;
+    }
+#ifndef _WIN32
+    pthread_once(&s_attached_once, j_attached_key_init);
+    pthread_setspecific(s_attached_key, vm);
+#endif
+    return env;
+}
+
+jmethodID j_cached_method_id(JNIEnv *env, j_cached_method *cache)
+{
+    jmethodID mid = cache->mid;
+    if (mid != NULL)
+    {
+        return mid;
+    }
+    jclass clz = (*env)->FindClass(env, cache->clz_name);
+    if (clz == NULL)
+    {
+        return NULL;
+    }
+    /* method ids stay valid while the class is loaded, racing threads resolve the same value. */
+    mid = (*env)->GetMethodID(env, clz, cache->name, cache->sig);
+    (*env)->DeleteLocalRef(env, clz);
+    cache->mid = mid;
+    return mid;
+}
+
+bool j_cb_bridge_init(j_cb_bridge *bridge, JNIEnv *env, jobject consumer, j_cached_method *method)
+{
+    memset(bridge, 0, sizeof(*bridge));
+    bridge->owner_env = env;
+    if (consumer == NULL)
+    {
+        return true;
+    }
+    if ((*env)->GetJavaVM(env, &bridge->vm) != JNI_OK)
+    {
+        return false;
+    }
+    bridge->method = j_cached_method_id(env, method);
+    if (bridge->method == NULL)
+    {
+        return false;
+    }
+    bridge->consumer = (*env)->NewGlobalRef(env, consumer);
+    return bridge->consumer != NULL;
+}
+
+bool j_cb_bridge_active(const j_cb_bridge *bridge)
+{
+    return bridge != NULL && bridge->consumer != NULL && !j_cb_bridge_failed(bridge);
+}
+
+bool j_cb_bridge_failed(const j_cb_bridge *bridge)
+{
+    return j_atomic_load_int(&bridge->failed, J_ATOMIC_ACQUIRE) != 0;
+}
+
+JNIEnv *j_cb_enter(j_cb_bridge *bridge)
+{
+    JNIEnv *env = j_env_of_current_thread(bridge->vm);
+    if (env == NULL)
+    {
+        return NULL;
+    }
+    if (env == bridge->owner_env && !bridge->frame_per_call)
+    {
+        if (bridge->frame_calls == 0 && (*env)->PushLocalFrame(env, J_CB_FRAME_BATCH * J_CB_REFS_PER_CALL) != 0)
+        {
+            return NULL;
+        }
+        bridge->frame_calls++;
+    }
+    else if ((*env)->PushLocalFrame(env, J_CB_REFS_PER_CALL) != 0)
+    {
+        return NULL;
+    }
+    return env;
+}
+
+int j_cb_leave(j_cb_bridge *bridge, JNIEnv *env)
+{
+    int e = 0;
+    if ((*env)->ExceptionCheck(env))
+    {
+        e = GIT_EUSER;
+        j_atomic_store_int(&bridge->failed, 1, J_ATOMIC_RELEASE);
+    }
+    if (env == bridge->owner_env && !bridge->frame_per_call)
+    {
+        if (bridge->frame_calls >= J_CB_FRAME_BATCH)
+        {
+            (*env)->PopLocalFrame(env, NULL);
+            bridge->frame_calls = 0;
+        }
+        return e;
+    }
+    if (e != 0 && env != bridge->owner_env)
+    {
+        /* nobody on this thread would see the exception, report it and move on. */
+        (*env)->ExceptionDescribe(env);
+        (*env)->ExceptionClear(env);
+    }
+    (*env)->PopLocalFrame(env, NULL);
+    return e;
+}
+
+void j_cb_bridge_release(j_cb_bridge *bridge)
+{
+    JNIEnv *env = bridge->owner_env;
+    if (bridge->frame_calls > 0)
+    {
+        (*env)->PopLocalFrame(env, NULL);
+        bridge->frame_calls = 0;
+    }
+    if (bridge->consumer != NULL)
+    {
+        (*env)->DeleteGlobalRef(env, bridge->consumer);
+        bridge->consumer = NULL;
+    }
+}
+
+static j_cached_method s_to_string = {"java/lang/Object", "toString", "()Ljava/lang/String;"};
+
+/** global reference whose owner was freed on a thread that could not reach the JVM. */
+typedef struct j_orphan_ref
+{
+    jobject ref;
+    struct j_orphan_ref *next;
+} j_orphan_ref;
+
+/** head of a list of j_orphan_ref, a void pointer so that it can be swapped atomically. */
+static void *s_orphan_refs;
+
+void j_delete_global_ref_later(jobject ref)
+{
+    j_orphan_ref *node = (j_orphan_ref *)malloc(sizeof(j_orphan_ref));
+    if (node == NULL)
+    {
+        /* nothing else can be done without a JNIEnv, the reference leaks */
+        return;
+    }
+    node->ref = ref;
+    void *head = j_atomic_load_ptr(&s_orphan_refs, J_ATOMIC_RELAXED);
+    do
+    {
+        node->next = (j_orphan_ref *)head;
+    } while (!j_atomic_cas_ptr(&s_orphan_refs, &head, node, J_ATOMIC_RELEASE));
+}
+
+void j_delete_orphan_refs(JNIEnv *env)
+{
+    if (j_atomic_load_ptr(&s_orphan_refs, J_ATOMIC_RELAXED) == NULL)
+    {
+        return;
+    }
+    j_orphan_ref *node = (j_orphan_ref *)j_atomic_exchange_ptr(&s_orphan_refs, NULL, J_ATOMIC_ACQUIRE);
+    while (node != NULL)
+    {
+        j_orphan_ref *next = node->next;
+        (*env)->DeleteGlobalRef(env, node->ref);
+        free(node);
+        node = next;
+    }
+}
+
+JNIEnv *j_upcall_enter(JavaVM *vm, jint frame_size, int klass)
+{
+    JNIEnv *env = j_env_of_current_thread(vm);
+    if (env == NULL || (*env)->PushLocalFrame(env, frame_size) != 0)
+    {
+        git_error_set_str(klass, "could not call into java");
+        return NULL;
+    }
+    j_delete_orphan_refs(env);
+    /* resolve here, FindClass may not see application classes from a freshly attached thread */
+    j_cached_method_id(env, &s_to_string);
+    return env;
+}
+
+int j_upcall_leave(JNIEnv *env, int error, int klass)
+{
+    jthrowable ex = (*env)->ExceptionOccurred(env);
+    if (ex != NULL)
+    {
+        (*env)->ExceptionClear(env);
+        jmethodID mid = j_cached_method_id(env, &s_to_string);
+        jstring j_msg = mid == NULL ? NULL : (jstring)(*env)->CallObjectMethod(env, ex, mid);
+        char *c_msg = (*env)->ExceptionCheck(env) ? NULL : j_copy_of_jstring(env, j_msg, true);
+        (*env)->ExceptionClear(env);
+        git_error_set_str(klass, c_msg != NULL ? c_msg : "java callback failed");
+        free(c_msg);
+        error = GIT_ERROR;
+    }
+    (*env)->PopLocalFrame(env, NULL);
+    return error;
+}
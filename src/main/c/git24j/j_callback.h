@@ -0,0 +1,110 @@
+#include "j_common.h"
+#include <jni.h>
+#include <stdbool.h>
+
+#ifndef __GIT24J_CALLBACK_H__
+#define __GIT24J_CALLBACK_H__
+#ifdef __cplusplus
+extern "C"
+{
+#endif
+
+/** number of upcalls that share one local reference frame on the calling thread. */
+#define J_CB_FRAME_BATCH 64
+/** local references reserved per upcall inside a frame. */
+#define J_CB_REFS_PER_CALL 4
+
+    /**
+     * A cached method id, resolved once against a named class or interface.
+     * Declare them static and zero initialized, e.g.
+     *     static j_cached_method s_accept = {J_CLZ_PREFIX "Index$Callback", "accept", "(Ljava/lang/String;Ljava/lang/String;)V"};
+     */
+    typedef struct
+    {
+        const char *clz_name;
+        const char *name;
+        const char *sig;
+        jmethodID mid;
+    } j_cached_method;
+
+    /**
+     * Everything a c-callback needs to call back into java. Unlike a captured JNIEnv, the bridge
+     * can be used from any native thread: threads that are not yet known to the JVM are
+     * attached on first use and detached when they exit.
+     *
+     * Upcalls made from the thread that created the bridge share a local reference frame which
+     * is popped every J_CB_FRAME_BATCH invocations, other threads push and pop a frame around
+     * each upcall. Bridges whose upcalls pass large arrays set `frame_per_call` so that the owner
+     * thread pops the frame after every upcall too.
+     */
+    typedef struct
+    {
+        JavaVM *vm;
+        JNIEnv *owner_env;
+        jobject consumer;
+        jmethodID method;
+        int frame_calls;
+        bool frame_per_call;
+        /** non-zero once an upcall failed, written by whichever thread made it, use j_cb_bridge_failed to read. */
+        int failed;
+    } j_cb_bridge;
+
+    /** Resolve (once) and return method id of a cached method, NULL if it could not be found. */
+    jmethodID j_cached_method_id(JNIEnv *env, j_cached_method *cache);
+
+    /**
+     * Initialize bridge for `consumer` (may be NULL, in which case the bridge is inactive).
+     * Returns false if the method could not be resolved.
+     */
+    bool j_cb_bridge_init(j_cb_bridge *bridge, JNIEnv *env, jobject consumer, j_cached_method *method);
+
+    /** true if the bridge has a consumer to call. */
+    bool j_cb_bridge_active(const j_cb_bridge *bridge);
+
+    /** true once an upcall raised a java exception, on any thread. */
+    bool j_cb_bridge_failed(const j_cb_bridge *bridge);
+
+    /**
+     * Get JNIEnv for current thread and open a local reference scope for one upcall,
+     * must be paired with j_cb_leave. Returns NULL if the thread could not be attached.
+     */
+    JNIEnv *j_cb_enter(j_cb_bridge *bridge);
+
+    /**
+     * Close the scope opened by j_cb_enter. Returns 0, or GIT_EUSER if the upcall raised a java
+     * exception (which is left pending on the owner thread and reported then cleared on others).
+     */
+    int j_cb_leave(j_cb_bridge *bridge, JNIEnv *env);
+
+    /** Release local frame and global references held by the bridge, must be called on the owner thread. */
+    void j_cb_bridge_release(j_cb_bridge *bridge);
+
+    /**
+     * Open a local frame of `frame_size` references for an upcall made by a long-lived native
+     * object (e.g. a backend) on whatever thread libgit2 uses. Returns NULL and sets a git error of
+     * class `klass` on failure, otherwise the call must be paired with j_upcall_leave.
+     */
+    JNIEnv *j_upcall_enter(JavaVM *vm, jint frame_size, int klass);
+
+    /**
+     * Pop the frame opened by j_upcall_enter. A pending java exception is cleared and recorded as
+     * a git error of class `klass`, in which case GIT_ERROR is returned instead of `error`.
+     */
+    int j_upcall_leave(JNIEnv *env, int error, int klass);
+
+    /**
+     * Delete a global reference from a thread that has no JNIEnv (e.g. attaching it failed): the
+     * reference is queued and deleted by the next j_upcall_enter or j_delete_orphan_refs.
+     */
+    void j_delete_global_ref_later(jobject ref);
+
+    /** Delete the global references queued by j_delete_global_ref_later. */
+    void j_delete_orphan_refs(JNIEnv *env);
+
+    /** Get JNIEnv of the current thread, attaching it to the JVM as a daemon if necessary. */
+    JNIEnv *j_env_of_current_thread(JavaVM *vm);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -3,6 +3,10 @@
 #include <assert.h>
 #include <git2.h>
 
+/* resolved once, racing threads at worst each create a global reference to the same class */
+static jclass s_exception_clz;
+static jmethodID s_exception_ctor;
+
 JNIEXPORT jobject JNICALL J_MAKE_METHOD(Error_jniLast)(JNIEnv *env, jclass obj)
 {
     const git_error *error = git_error_last();
@@ -11,14 +15,21 @@ JNIEXPORT jobject JNICALL J_MAKE_METHOD(Error_jniLast)(JNIEnv *env, jclass obj)
         return NULL;
     }
 
-    jclass cls = (*env)->FindClass(env, J_CLZ_PREFIX "GitException");
-    assert(cls && "GitException.class not found");
-
-    jmethodID ctor = (*env)->GetMethodID(env, cls, "<init>", "(ILjava/lang/String;)V");
-    assert(cls && "GitException::new not found");
+    if (s_exception_ctor == NULL)
+    {
+        jclass cls = (*env)->FindClass(env, J_CLZ_PREFIX "GitException");
+        assert(cls && "GitException.class not found");
+        jmethodID ctor = (*env)->GetMethodID(env, cls, "<init>", "(ILjava/lang/String;)V");
+        assert(ctor && "GitException::new not found");
+        s_exception_clz = (jclass)(*env)->NewGlobalRef(env, cls);
+        (*env)->DeleteLocalRef(env, cls);
+        s_exception_ctor = ctor;
+    }
 
     jstring message = (*env)->NewStringUTF(env, error->message);
-    return (*env)->NewObject(env, cls, ctor, error->klass, message);
+    jobject exception = (*env)->NewObject(env, s_exception_clz, s_exception_ctor, error->klass, message);
+    (*env)->DeleteLocalRef(env, message);
+    return exception;
 }
 
 JNIEXPORT void JNICALL J_MAKE_METHOD(Error_jniClear)(JNIEnv *env, jclass obj)
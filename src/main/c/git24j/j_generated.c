@@ -0,0 +1,367 @@
+/* Generated by scripts/gen_bindings.py from scripts/bindings.json, do not edit. */
+#include "j_generated.h"
+#include "j_atomic.h"
+#include "j_exception.h"
+#include "j_util.h"
+#include <stdbool.h>
+#include <stdint.h>
+#include <stdlib.h>
+#include <string.h>
+
+/* states of the field id caches below */
+#define J_GEN_UNRESOLVED 0
+#define J_GEN_STORING 1
+#define J_GEN_RESOLVED 2
+
+/** Borrow the modified UTF-8 chars of `str`, throws NullPointerException if it is null. */
+static const char *j_gen_utf_chars(JNIEnv *env, jstring str)
+{
+    if (str == NULL)
+    {
+        j_throw_java_error(env, "java/lang/NullPointerException", "cannot cast null to c string");
+        return NULL;
+    }
+    return (*env)->GetStringUTFChars(env, str, NULL);
+}
+
+static void j_gen_release_utf_chars(JNIEnv *env, jstring str, const char *chars)
+{
+    if (chars != NULL)
+    {
+        (*env)->ReleaseStringUTFChars(env, str, chars);
+    }
+}
+
+/** Copy of `str` to be free-ed by the caller, NULL if `str` is null. */
+static char *j_gen_strdup(JNIEnv *env, jstring str)
+{
+    if (str == NULL)
+    {
+        return NULL;
+    }
+    jsize len = (*env)->GetStringUTFLength(env, str);
+    char *copy = malloc(len + 1);
+    if (copy != NULL)
+    {
+        (*env)->GetStringUTFRegion(env, str, 0, (*env)->GetStringLength(env, str), copy);
+        copy[len] = '\0';
+    }
+    return copy;
+}
+
+/** Copy up to GIT_OID_RAWSZ leading bytes of `id` into `c_oid`, zero filling the rest. */
+static void j_gen_oid_from_bytes(JNIEnv *env, jbyteArray id, git_oid *c_oid)
+{
+    memset(c_oid, 0, sizeof(git_oid));
+    if (id != NULL)
+    {
+        jsize len = (*env)->GetArrayLength(env, id);
+        (*env)->GetByteArrayRegion(env, id, 0, len < GIT_OID_RAWSZ ? len : GIT_OID_RAWSZ, (jbyte *)c_oid->id);
+    }
+}
+
+static jbyteArray j_gen_oid_to_bytes(JNIEnv *env, const git_oid *c_oid)
+{
+    if (c_oid == NULL)
+    {
+        return NULL;
+    }
+    jbyteArray raw = (*env)->NewByteArray(env, GIT_OID_RAWSZ);
+    if (raw != NULL)
+    {
+        (*env)->SetByteArrayRegion(env, raw, 0, GIT_OID_RAWSZ, (const jbyte *)c_oid->id);
+    }
+    return raw;
+}
+
+/** Parse a hex id held by a java String, a null, malformed or too long one leaves a zero id. */
+static void j_gen_oid_from_hex(JNIEnv *env, jstring hex, git_oid *c_oid)
+{
+    memset(c_oid, 0, sizeof(git_oid));
+    if (hex == NULL)
+    {
+        return;
+    }
+    char buf[GIT_OID_HEXSZ + 1] = {0};
+    jsize len = (*env)->GetStringLength(env, hex);
+    /* equal lengths mean every char is ascii and takes one byte, so the copy fits the buffer */
+    if (len > GIT_OID_HEXSZ || (*env)->GetStringUTFLength(env, hex) != len)
+    {
+        return;
+    }
+    (*env)->GetStringUTFRegion(env, hex, 0, len, buf);
+    if (git_oid_fromstrn(c_oid, buf, (size_t)len) != 0)
+    {
+        memset(c_oid, 0, sizeof(git_oid));
+    }
+}
+
+static struct
+{
+    /* J_GEN_UNRESOLVED, J_GEN_STORING or J_GEN_RESOLVED, the ids are valid once RESOLVED is read with acquire. */
+    int state;
+    jfieldID ptr;
+    jfieldID asize;
+    jfieldID size;
+} s_buf_fields;
+
+/** Resolve the field ids of Buf from the class of `obj`, once. */
+static bool s_buf_fields_resolve(JNIEnv *env, jobject obj)
+{
+    if (j_atomic_load_int(&s_buf_fields.state, J_ATOMIC_ACQUIRE) == J_GEN_RESOLVED)
+    {
+        return true;
+    }
+    jclass clz = (*env)->GetObjectClass(env, obj);
+    jfieldID f_ptr = (*env)->GetFieldID(env, clz, "ptr", "Ljava/lang/String;");
+    jfieldID f_asize = (*env)->GetFieldID(env, clz, "asize", "I");
+    jfieldID f_size = (*env)->GetFieldID(env, clz, "size", "I");
+    (*env)->DeleteLocalRef(env, clz);
+    if ((*env)->ExceptionCheck(env))
+    {
+        return false;
+    }
+    /* field ids stay valid while the class is loaded, racing threads found the same values and only the first one stores them. */
+    int expected = J_GEN_UNRESOLVED;
+    if (j_atomic_cas_int(&s_buf_fields.state, &expected, J_GEN_STORING, J_ATOMIC_ACQUIRE))
+    {
+        s_buf_fields.ptr = f_ptr;
+        s_buf_fields.asize = f_asize;
+        s_buf_fields.size = f_size;
+        j_atomic_store_int(&s_buf_fields.state, J_GEN_RESOLVED, J_ATOMIC_RELEASE);
+    }
+    else
+    {
+        while (j_atomic_load_int(&s_buf_fields.state, J_ATOMIC_ACQUIRE) != J_GEN_RESOLVED)
+        {
+            /* the first thread is storing the ids */
+        }
+    }
+    return true;
+}
+
+void j_git_buf_to_java(JNIEnv *env, const git_buf *c_value, jobject value)
+{
+    if (!s_buf_fields_resolve(env, value))
+    {
+        return;
+    }
+    jstring j_ptr = c_value->ptr == NULL ? NULL : (*env)->NewStringUTF(env, c_value->ptr);
+    (*env)->SetObjectField(env, value, s_buf_fields.ptr, j_ptr);
+    (*env)->DeleteLocalRef(env, j_ptr);
+    (*env)->SetIntField(env, value, s_buf_fields.asize, (jint)c_value->asize);
+    (*env)->SetIntField(env, value, s_buf_fields.size, (jint)c_value->size);
+}
+
+static struct
+{
+    /* J_GEN_UNRESOLVED, J_GEN_STORING or J_GEN_RESOLVED, the ids are valid once RESOLVED is read with acquire. */
+    int state;
+    jfieldID ctimeSec;
+    jfieldID ctimeNanoSec;
+    jfieldID mtimeSec;
+    jfieldID mtimeNanoSec;
+    jfieldID dev;
+    jfieldID ino;
+    jfieldID mode;
+    jfieldID uid;
+    jfieldID gid;
+    jfieldID fileSize;
+    jfieldID oid;
+    jfieldID flags;
+    jfieldID flagsExtended;
+    jfieldID path;
+} s_index_entry_fields;
+
+/** Resolve the field ids of Index.Entry from the class of `obj`, once. */
+static bool s_index_entry_fields_resolve(JNIEnv *env, jobject obj)
+{
+    if (j_atomic_load_int(&s_index_entry_fields.state, J_ATOMIC_ACQUIRE) == J_GEN_RESOLVED)
+    {
+        return true;
+    }
+    jclass clz = (*env)->GetObjectClass(env, obj);
+    jfieldID f_ctimeSec = (*env)->GetFieldID(env, clz, "ctimeSec", "I");
+    jfieldID f_ctimeNanoSec = (*env)->GetFieldID(env, clz, "ctimeNanoSec", "I");
+    jfieldID f_mtimeSec = (*env)->GetFieldID(env, clz, "mtimeSec", "I");
+    jfieldID f_mtimeNanoSec = (*env)->GetFieldID(env, clz, "mtimeNanoSec", "I");
+    jfieldID f_dev = (*env)->GetFieldID(env, clz, "dev", "I");
+    jfieldID f_ino = (*env)->GetFieldID(env, clz, "ino", "I");
+    jfieldID f_mode = (*env)->GetFieldID(env, clz, "mode", "I");
+    jfieldID f_uid = (*env)->GetFieldID(env, clz, "uid", "I");
+    jfieldID f_gid = (*env)->GetFieldID(env, clz, "gid", "I");
+    jfieldID f_fileSize = (*env)->GetFieldID(env, clz, "fileSize", "I");
+    jfieldID f_oid = (*env)->GetFieldID(env, clz, "oid", "Ljava/lang/String;");
+    jfieldID f_flags = (*env)->GetFieldID(env, clz, "flags", "I");
+    jfieldID f_flagsExtended = (*env)->GetFieldID(env, clz, "flagsExtended", "I");
+    jfieldID f_path = (*env)->GetFieldID(env, clz, "path", "Ljava/lang/String;");
+    (*env)->DeleteLocalRef(env, clz);
+    if ((*env)->ExceptionCheck(env))
+    {
+        return false;
+    }
+    /* field ids stay valid while the class is loaded, racing threads found the same values and only the first one stores them. */
+    int expected = J_GEN_UNRESOLVED;
+    if (j_atomic_cas_int(&s_index_entry_fields.state, &expected, J_GEN_STORING, J_ATOMIC_ACQUIRE))
+    {
+        s_index_entry_fields.ctimeSec = f_ctimeSec;
+        s_index_entry_fields.ctimeNanoSec = f_ctimeNanoSec;
+        s_index_entry_fields.mtimeSec = f_mtimeSec;
+        s_index_entry_fields.mtimeNanoSec = f_mtimeNanoSec;
+        s_index_entry_fields.dev = f_dev;
+        s_index_entry_fields.ino = f_ino;
+        s_index_entry_fields.mode = f_mode;
+        s_index_entry_fields.uid = f_uid;
+        s_index_entry_fields.gid = f_gid;
+        s_index_entry_fields.fileSize = f_fileSize;
+        s_index_entry_fields.oid = f_oid;
+        s_index_entry_fields.flags = f_flags;
+        s_index_entry_fields.flagsExtended = f_flagsExtended;
+        s_index_entry_fields.path = f_path;
+        j_atomic_store_int(&s_index_entry_fields.state, J_GEN_RESOLVED, J_ATOMIC_RELEASE);
+    }
+    else
+    {
+        while (j_atomic_load_int(&s_index_entry_fields.state, J_ATOMIC_ACQUIRE) != J_GEN_RESOLVED)
+        {
+            /* the first thread is storing the ids */
+        }
+    }
+    return true;
+}
+
+void index_entry_from_java(JNIEnv *env, git_index_entry *c_value, jobject value)
+{
+    if (!s_index_entry_fields_resolve(env, value))
+    {
+        return;
+    }
+    c_value->ctime.seconds = (*env)->GetIntField(env, value, s_index_entry_fields.ctimeSec);
+    c_value->ctime.nanoseconds = (*env)->GetIntField(env, value, s_index_entry_fields.ctimeNanoSec);
+    c_value->mtime.seconds = (*env)->GetIntField(env, value, s_index_entry_fields.mtimeSec);
+    c_value->mtime.nanoseconds = (*env)->GetIntField(env, value, s_index_entry_fields.mtimeNanoSec);
+    c_value->dev = (*env)->GetIntField(env, value, s_index_entry_fields.dev);
+    c_value->ino = (*env)->GetIntField(env, value, s_index_entry_fields.ino);
+    c_value->mode = (*env)->GetIntField(env, value, s_index_entry_fields.mode);
+    c_value->uid = (*env)->GetIntField(env, value, s_index_entry_fields.uid);
+    c_value->gid = (*env)->GetIntField(env, value, s_index_entry_fields.gid);
+    c_value->file_size = (*env)->GetIntField(env, value, s_index_entry_fields.fileSize);
+    jstring j_oid = (*env)->GetObjectField(env, value, s_index_entry_fields.oid);
+    j_gen_oid_from_hex(env, j_oid, &c_value->id);
+    (*env)->DeleteLocalRef(env, j_oid);
+    c_value->flags = (*env)->GetIntField(env, value, s_index_entry_fields.flags);
+    c_value->flags_extended = (*env)->GetIntField(env, value, s_index_entry_fields.flagsExtended);
+    jstring j_path = (*env)->GetObjectField(env, value, s_index_entry_fields.path);
+    c_value->path = j_gen_strdup(env, j_path);
+    (*env)->DeleteLocalRef(env, j_path);
+}
+
+void index_entry_release(git_index_entry *c_value)
+{
+    free((void *)c_value->path);
+    c_value->path = NULL;
+}
+
+void j_revspec_to_java(JNIEnv *env, const git_revspec *c_value, jlongArray out)
+{
+    jlong values[3];
+    values[0] = (jlong)(uintptr_t)c_value->from;
+    values[1] = (jlong)(uintptr_t)c_value->to;
+    values[2] = (jlong)c_value->flags;
+    (*env)->SetLongArrayRegion(env, out, 0, 3, values);
+}
+
+JNIEXPORT void JNICALL J_MAKE_METHOD(GitObject_jniFree)(JNIEnv *env, jclass obj, jlong objectPtr)
+{
+    git_object_free((git_object *)objectPtr);
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(GitObject_jniType)(JNIEnv *env, jclass obj, jlong objPtr)
+{
+    return (jint)git_object_type((git_object *)objPtr);
+}
+
+JNIEXPORT jbyteArray JNICALL J_MAKE_METHOD(GitObject_jniId)(JNIEnv *env, jclass obj, jlong objPtr)
+{
+    const git_oid *c_result = git_object_id((git_object *)objPtr);
+    return j_gen_oid_to_bytes(env, c_result);
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(GitObject_jniShortId)(JNIEnv *env, jclass obj, jobject out, jlong objPtr)
+{
+    git_buf c_out = {0};
+    int error = git_object_short_id(&c_out, (git_object *)objPtr);
+    if (error == 0)
+    {
+        j_git_buf_to_java(env, &c_out, out);
+    }
+    git_buf_dispose(&c_out);
+    return error;
+}
+
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(GitObject_jniOwner)(JNIEnv *env, jclass obj, jlong objPtr)
+{
+    return (jlong)(uintptr_t)git_object_owner((git_object *)objPtr);
+}
+
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(GitObject_jniPeel)(JNIEnv *env, jclass obj, jlong objectPtr, jint targetType)
+{
+    git_object *c_peeled = NULL;
+    int error = git_object_peel(&c_peeled, (git_object *)objectPtr, (git_object_t)targetType);
+    return j_handle_or_error(error, c_peeled);
+}
+
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(GitObject_jniDup)(JNIEnv *env, jclass obj, jlong sourcePtr)
+{
+    git_object *c_dest = NULL;
+    int error = git_object_dup(&c_dest, (git_object *)sourcePtr);
+    return j_handle_or_error(error, c_dest);
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(Index_jniAdd)(JNIEnv *env, jclass obj, jlong indexPtr, jobject sourceEntry)
+{
+    git_index_entry c_source_entry = {0};
+    index_entry_from_java(env, &c_source_entry, sourceEntry);
+    int error = git_index_add((git_index *)indexPtr, &c_source_entry);
+    index_entry_release(&c_source_entry);
+    return error;
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(Index_jniAddByPath)(JNIEnv *env, jclass obj, jlong indexPtr, jstring path)
+{
+    const char *c_path = j_gen_utf_chars(env, path);
+    if (c_path == NULL)
+    {
+        return 0;
+    }
+    int error = git_index_add_bypath((git_index *)indexPtr, c_path);
+    j_gen_release_utf_chars(env, path, c_path);
+    return error;
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(Index_jniWrite)(JNIEnv *env, jclass obj, jlong indexPtr)
+{
+    return (jint)git_index_write((git_index *)indexPtr);
+}
+
+JNIEXPORT void JNICALL J_MAKE_METHOD(Index_jniFree)(JNIEnv *env, jclass obj, jlong indexPtr)
+{
+    git_index_free((git_index *)indexPtr);
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(Revparse_jniCall)(JNIEnv *env, jclass obj, jlongArray revspec, jlong repoPtr, jstring spec)
+{
+    git_revspec c_revspec = {0};
+    const char *c_spec = j_gen_utf_chars(env, spec);
+    if (c_spec == NULL)
+    {
+        return 0;
+    }
+    int error = git_revparse(&c_revspec, (git_repository *)repoPtr, c_spec);
+    if (error == 0)
+    {
+        j_revspec_to_java(env, &c_revspec, revspec);
+    }
+    j_gen_release_utf_chars(env, spec, c_spec);
+    return error;
+}
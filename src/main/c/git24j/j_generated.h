@@ -0,0 +1,64 @@
+/* Generated by scripts/gen_bindings.py from scripts/bindings.json, do not edit. */
+#include "j_common.h"
+#include <git2.h>
+#include <jni.h>
+#ifndef __GIT24J_GENERATED_H__
+#define __GIT24J_GENERATED_H__
+#ifdef __cplusplus
+extern "C"
+{
+#endif
+
+    /** Copy values of git_buf to java::Buf */
+    void j_git_buf_to_java(JNIEnv *env, const git_buf *c_value, jobject value);
+
+    /** copy values of java Index.Entry object to git_index_entry struct. */
+    /* NOTE: path of the result need to be free-ed, see index_entry_release. */
+    void index_entry_from_java(JNIEnv *env, git_index_entry *c_value, jobject value);
+
+    /** Free the strings index_entry_from_java allocated. */
+    void index_entry_release(git_index_entry *c_value);
+
+    /** Store the fields of git_revspec, in order from, to, flags, in a java long[]. */
+    void j_revspec_to_java(JNIEnv *env, const git_revspec *c_value, jlongArray out);
+
+    /** void git_object_free(git_object *object); */
+    JNIEXPORT void JNICALL J_MAKE_METHOD(GitObject_jniFree)(JNIEnv *env, jclass obj, jlong objectPtr);
+
+    /** git_object_t git_object_type(const git_object *obj); */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(GitObject_jniType)(JNIEnv *env, jclass obj, jlong objPtr);
+
+    /** const git_oid * git_object_id(const git_object *obj); */
+    JNIEXPORT jbyteArray JNICALL J_MAKE_METHOD(GitObject_jniId)(JNIEnv *env, jclass obj, jlong objPtr);
+
+    /** int git_object_short_id(git_buf *out, const git_object *obj); */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(GitObject_jniShortId)(JNIEnv *env, jclass obj, jobject out, jlong objPtr);
+
+    /** git_repository * git_object_owner(const git_object *obj); */
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(GitObject_jniOwner)(JNIEnv *env, jclass obj, jlong objPtr);
+
+    /** int git_object_peel(git_object **peeled, const git_object *object, git_object_t target_type); */
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(GitObject_jniPeel)(JNIEnv *env, jclass obj, jlong objectPtr, jint targetType);
+
+    /** int git_object_dup(git_object **dest, git_object *source); */
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(GitObject_jniDup)(JNIEnv *env, jclass obj, jlong sourcePtr);
+
+    /** int git_index_add(git_index *index, const git_index_entry *source_entry); */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(Index_jniAdd)(JNIEnv *env, jclass obj, jlong indexPtr, jobject sourceEntry);
+
+    /** int git_index_add_bypath(git_index *index, const char *path); */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(Index_jniAddByPath)(JNIEnv *env, jclass obj, jlong indexPtr, jstring path);
+
+    /** int git_index_write(git_index *index); */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(Index_jniWrite)(JNIEnv *env, jclass obj, jlong indexPtr);
+
+    /** void git_index_free(git_index *index); */
+    JNIEXPORT void JNICALL J_MAKE_METHOD(Index_jniFree)(JNIEnv *env, jclass obj, jlong indexPtr);
+
+    /** int git_revparse(git_revspec *revspec, git_repository *repo, const char *spec); */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(Revparse_jniCall)(JNIEnv *env, jclass obj, jlongArray revspec, jlong repoPtr, jstring spec);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
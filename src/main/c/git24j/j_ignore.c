@@ -0,0 +1,15 @@
+#include "j_ignore.h"
+#include "j_common.h"
+#include "j_mappers.h"
+#include <git2.h>
+#include <stdlib.h>
+
+/** int git_ignore_path_is_ignored(int *ignored, git_repository *repo, const char *path); */
+JNIEXPORT jint JNICALL J_MAKE_METHOD(Ignore_jniPathIsIgnored)(JNIEnv *env, jclass obj, jlong repoPtr, jstring path)
+{
+    int ignored = 0;
+    char *c_path = j_copy_of_jstring(env, path, false);
+    int e = git_ignore_path_is_ignored(&ignored, (git_repository *)repoPtr, c_path);
+    free(c_path);
+    return e < 0 ? e : ignored;
+}
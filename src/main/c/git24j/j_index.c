@@ -1,94 +1,163 @@
 #include "j_index.h"
+#include "j_batch.h"
+#include "j_callback.h"
 #include "j_common.h"
 #include "j_ensure.h"
+#include "j_exception.h"
 #include "j_mappers.h"
 #include "j_repository.h"
 #include "j_util.h"
 #include <git2.h>
 #include <jni.h>
+#include <stdint.h>
 #include <stdio.h>
+#include <stdlib.h>
 
-/**Pack jni objects to pass to update callback. */
-typedef struct
-{
-    JNIEnv *env;
-    jobject biConsumer;
-} j_mached_cb_paylocads;
+static j_cached_method s_matched_accept = {J_CLZ_PREFIX "Index$Callback", "accept", "(Ljava/lang/String;Ljava/lang/String;)V"};
 
 int standard_matched_cb(const char *path, const char *matched_pathspec, void *payload)
 {
-    if (payload == NULL)
-    {
-        return 0;
-    }
-    j_mached_cb_paylocads *j_payload = (j_mached_cb_paylocads *)payload;
-    JNIEnv *env = j_payload->env;
-    jobject biConsumer = j_payload->biConsumer;
-    jclass jclz = (*env)->GetObjectClass(env, biConsumer);
-    if (jclz == NULL)
+    j_cb_bridge *bridge = (j_cb_bridge *)payload;
+    if (!j_cb_bridge_active(bridge))
     {
-        return 0;
+        return bridge != NULL && j_cb_bridge_failed(bridge) ? GIT_EUSER : 0;
     }
-    jmethodID accept = (*env)->GetMethodID(env, jclz, "accept", "(Ljava/lang/String;Ljava/lang/String;)V");
-    if (accept == NULL)
+    JNIEnv *env = j_cb_enter(bridge);
+    if (env == NULL)
     {
-        return 0;
+        return GIT_EUSER;
     }
     jstring j_path = (*env)->NewStringUTF(env, path);
     jstring j_pathspec = (*env)->NewStringUTF(env, matched_pathspec);
-    (*env)->CallVoidMethod(env, biConsumer, accept, j_path, j_pathspec);
-    (*env)->DeleteLocalRef(env, j_path);
-    (*env)->DeleteLocalRef(env, j_pathspec);
-    (*env)->DeleteLocalRef(env, jclz);
-    return 0;
+    (*env)->CallVoidMethod(env, bridge->consumer, bridge->method, j_path, j_pathspec);
+    return j_cb_leave(bridge, env);
 }
 
-JNIEXPORT jint JNICALL J_MAKE_METHOD(Index_jniUpdateAll)(JNIEnv *env, jclass obj, jlong index, jobjectArray pathspec, jobject biConsumer)
+JNIEXPORT jint JNICALL J_MAKE_METHOD(Index_jniUpdateAll)(JNIEnv *env, jclass obj, jlong index, jobjectArray pathspec, jobject callback)
 {
-    j_mached_cb_paylocads j_payloads = {env, biConsumer};
+    j_cb_bridge bridge;
+    if (!j_cb_bridge_init(&bridge, env, callback, &s_matched_accept))
+    {
+        return GIT_ERROR;
+    }
     git_strarray c_pathspec = {0};
     git_index *c_index = (git_index *)index;
 
     git_strarray_of_jobject_array(env, pathspec, &c_pathspec);
-    int error = git_index_update_all(c_index, &c_pathspec, standard_matched_cb, (void *)(&j_payloads));
+    int error = git_index_update_all(c_index, &c_pathspec, standard_matched_cb, (void *)(&bridge));
     git_strarray_free(&c_pathspec);
+    j_cb_bridge_release(&bridge);
     return error;
 }
 
-JNIEXPORT jint JNICALL J_MAKE_METHOD(Index_jniAddAll)(JNIEnv *env, jclass obj, jlong index, jobjectArray pathspec, jint flags, jobject biConsumer)
+JNIEXPORT jint JNICALL J_MAKE_METHOD(Index_jniAddAll)(JNIEnv *env, jclass obj, jlong index, jobjectArray pathspec, jint flags, jobject callback)
 {
-    j_mached_cb_paylocads j_payloads = {env, biConsumer};
+    j_cb_bridge bridge;
+    if (!j_cb_bridge_init(&bridge, env, callback, &s_matched_accept))
+    {
+        return GIT_ERROR;
+    }
     git_strarray c_pathspec = {0};
     git_index *c_index = (git_index *)index;
     git_strarray_of_jobject_array(env, pathspec, &c_pathspec);
-    int error = git_index_add_all(c_index, &c_pathspec, (unsigned int)flags, standard_matched_cb, (void *)(&j_payloads));
+    int error = git_index_add_all(c_index, &c_pathspec, (unsigned int)flags, standard_matched_cb, (void *)(&bridge));
     git_strarray_free(&c_pathspec);
+    j_cb_bridge_release(&bridge);
     return error;
 }
 
-JNIEXPORT jint JNICALL J_MAKE_METHOD(Index_jniAdd)(JNIEnv *env, jclass obj, jlong index, jobject srcEntry)
+int batched_matched_cb(const char *path, const char *matched_pathspec, void *payload)
 {
-    git_index *c_index = (git_index *)index;
-    git_index_entry c_source_entry;
-    index_entry_from_java(env, &c_source_entry, srcEntry);
-    return git_index_add(c_index, &c_source_entry);
+    j_batch *batch = (j_batch *)payload;
+    int e = j_batch_add_string(batch, path);
+    return e != 0 ? e : j_batch_end_item(batch);
 }
 
-JNIEXPORT jint JNICALL J_MAKE_METHOD(Index_jniWrite)(JNIEnv *env, jclass obj, jlong index)
+JNIEXPORT jint JNICALL J_MAKE_METHOD(Index_jniUpdateAllBatched)(JNIEnv *env, jclass obj, jlong index, jobjectArray pathspec, jint batchSize, jobject bridge)
 {
-    return git_index_write((git_index *)index);
+    j_batch batch;
+    if (!j_batch_init(&batch, env, bridge, batchSize))
+    {
+        return GIT_ERROR;
+    }
+    git_strarray c_pathspec = {0};
+    git_strarray_of_jobject_array(env, pathspec, &c_pathspec);
+    int error = git_index_update_all((git_index *)index, &c_pathspec, batched_matched_cb, (void *)(&batch));
+    git_strarray_free(&c_pathspec);
+    return j_batch_finish(&batch, error);
 }
 
-JNIEXPORT void JNICALL J_MAKE_METHOD(Index_jniFree)(JNIEnv *env, jclass obj, jlong index)
+JNIEXPORT jint JNICALL J_MAKE_METHOD(Index_jniAddAllBatched)(JNIEnv *env, jclass obj, jlong index, jobjectArray pathspec, jint flags, jint batchSize, jobject bridge)
 {
-    git_index_free((git_index *)index);
+    j_batch batch;
+    if (!j_batch_init(&batch, env, bridge, batchSize))
+    {
+        return GIT_ERROR;
+    }
+    git_strarray c_pathspec = {0};
+    git_strarray_of_jobject_array(env, pathspec, &c_pathspec);
+    int error = git_index_add_all((git_index *)index, &c_pathspec, (unsigned int)flags, batched_matched_cb, (void *)(&batch));
+    git_strarray_free(&c_pathspec);
+    return j_batch_finish(&batch, error);
 }
 
-JNIEXPORT jint JNICALL J_MAKE_METHOD(Index_jniAddByPath)(JNIEnv *env, jclass obj, jlong index, jstring path)
+JNIEXPORT jint JNICALL J_MAKE_METHOD(Index_jniAddEntries)(JNIEnv *env, jclass obj, jlong index, jobjectArray entries)
 {
     git_index *c_index = (git_index *)index;
-    char *c_path = j_copy_of_jstring(env, path, false);
-    int error = git_index_add_bypath(c_index, c_path);
-    free(c_path);
+    jsize len = (*env)->GetArrayLength(env, entries);
+    int error = 0;
+    for (jsize i = 0; i < len && error == 0; i++)
+    {
+        jobject entry = (*env)->GetObjectArrayElement(env, entries, i);
+        git_index_entry c_entry = {0};
+        index_entry_from_java(env, &c_entry, entry);
+        error = git_index_add(c_index, &c_entry);
+        index_entry_release(&c_entry);
+        (*env)->DeleteLocalRef(env, entry);
+    }
     return error;
 }
+
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(Index_jniOpen)(JNIEnv *env, jclass obj, jstring indexPath)
+{
+    git_index *c_index = NULL;
+    char *c_path = j_copy_of_jstring(env, indexPath, false);
+    int e = git_index_open(&c_index, c_path);
+    free(c_path);
+    return j_handle_or_error(e, c_index);
+}
+
+JNIEXPORT jbyteArray JNICALL J_MAKE_METHOD(Index_jniObjectIds)(JNIEnv *env, jclass obj, jlong index)
+{
+    git_index *c_index = (git_index *)index;
+    size_t count = git_index_entrycount(c_index);
+    size_t n = 0;
+    for (size_t i = 0; i < count; i++)
+    {
+        if (git_index_get_byindex(c_index, i)->mode != GIT_FILEMODE_COMMIT)
+        {
+            n++;
+        }
+    }
+    if (n > INT32_MAX / GIT_OID_RAWSZ)
+    {
+        j_throw_jni_error(env, "too many index entries");
+        return NULL;
+    }
+    jbyteArray ids = (*env)->NewByteArray(env, (jsize)(n * GIT_OID_RAWSZ));
+    if (ids == NULL)
+    {
+        return NULL;
+    }
+    jsize pos = 0;
+    for (size_t i = 0; i < count && pos < (jsize)(n * GIT_OID_RAWSZ); i++)
+    {
+        const git_index_entry *entry = git_index_get_byindex(c_index, i);
+        if (entry->mode != GIT_FILEMODE_COMMIT)
+        {
+            (*env)->SetByteArrayRegion(env, ids, pos, GIT_OID_RAWSZ, (const jbyte *)entry->id.id);
+            pos += GIT_OID_RAWSZ;
+        }
+    }
+    return ids;
+}
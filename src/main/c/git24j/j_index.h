@@ -10,35 +10,39 @@ extern "C"
 {
 #endif
 
-    /** standard callback that forwards c-callback to java. 
-     * c: standard_matched_cb(path, pathspec, ...)
-     * java: class IndexMachedCallback extends BiConsumer<String, String> {
-     *     @override
-     *     public void accept(String path, String pathspec) {
-     *     }
+    /** standard callback that forwards c-callback to java.
+     * c: standard_matched_cb(path, pathspec, payload), where payload is a j_cb_bridge
+     * java: interface Index.Callback {
+     *     void accept(String path, String pathspec);
      * }
-     * 
+     *
      * jniAddAll(indexPtr.get(), new String[]{"foo/", "bar/"}, 0, (path, pathSpec) -> { ... })
      */
     int standard_matched_cb(const char *path, const char *matched_pathspec, void *payload);
 
-    /**int git_index_update_all(git_index *index, const git_strarray *pathspec, git_index_matched_path_cb callback, void *payload); */
-    JNIEXPORT jint JNICALL J_MAKE_METHOD(Index_jniUpdateAll)(JNIEnv *env, jclass obj, jlong index, jobjectArray pathspec, jobject biConsumer);
+    /** matched-path callback that appends paths to a j_batch (payload) instead of calling java per path. */
+    int batched_matched_cb(const char *path, const char *matched_pathspec, void *payload);
+
+    /** git_index_update_all, delivering updated paths to an Index BatchBridge every `batchSize` paths. */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(Index_jniUpdateAllBatched)(JNIEnv *env, jclass obj, jlong index, jobjectArray pathspec, jint batchSize, jobject bridge);
 
-    /**int git_index_add(git_index *index, const git_index_entry *source_entry); */
-    JNIEXPORT jint JNICALL J_MAKE_METHOD(Index_jniAdd)(JNIEnv *env, jclass obj, jlong index, jobject srcEntry);
+    /** git_index_add_all, delivering added paths to an Index BatchBridge every `batchSize` paths. */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(Index_jniAddAllBatched)(JNIEnv *env, jclass obj, jlong index, jobjectArray pathspec, jint flags, jint batchSize, jobject bridge);
+
+    /**int git_index_update_all(git_index *index, const git_strarray *pathspec, git_index_matched_path_cb callback, void *payload); */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(Index_jniUpdateAll)(JNIEnv *env, jclass obj, jlong index, jobjectArray pathspec, jobject callback);
 
     /** int git_index_add_all(git_index *index, const git_strarray *pathspec, unsigned int flags, git_index_matched_path_cb callback, void *payload); */
-    JNIEXPORT jint JNICALL J_MAKE_METHOD(Index_jniAddAll)(JNIEnv *env, jclass obj, jlong index, jobjectArray pathspec, jint flags, jobject biConsumer);
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(Index_jniAddAll)(JNIEnv *env, jclass obj, jlong index, jobjectArray pathspec, jint flags, jobject callback);
 
-    /** int git_index_write(git_index *index); */
-    JNIEXPORT jint JNICALL J_MAKE_METHOD(Index_jniWrite)(JNIEnv *env, jclass obj, jlong index);
+    /** call git_index_add for each of the entries, stop at the first error. */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(Index_jniAddEntries)(JNIEnv *env, jclass obj, jlong index, jobjectArray entries);
 
-    /** void git_index_free(git_index *index); */
-    JNIEXPORT void JNICALL J_MAKE_METHOD(Index_jniFree)(JNIEnv *env, jclass obj, jlong index);
+    /** int git_index_open(git_index **out, const char *index_path); */
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(Index_jniOpen)(JNIEnv *env, jclass obj, jstring indexPath);
 
-    /** int git_index_add_bypath(git_index *index, const char *path);*/
-    JNIEXPORT jint JNICALL J_MAKE_METHOD(Index_jniAddByPath)(JNIEnv *env, jclass obj, jlong index, jstring path);
+    /** raw ids of all entries except submodule commits, concatenated; NULL with OutOfMemoryError pending. */
+    JNIEXPORT jbyteArray JNICALL J_MAKE_METHOD(Index_jniObjectIds)(JNIEnv *env, jclass obj, jlong index);
 
 #ifdef __cplusplus
 }
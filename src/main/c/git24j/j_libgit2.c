@@ -3,14 +3,14 @@
 #include <git2.h>
 #include <jni.h>
 
-JNIEXPORT void JNICALL J_MAKE_METHOD(Libgit2_init)(JNIEnv *env, jclass obj)
+JNIEXPORT jint JNICALL J_MAKE_METHOD(Libgit2_jniInit)(JNIEnv *env, jclass obj)
 {
-    git_libgit2_init();
+    return git_libgit2_init();
 }
 
-JNIEXPORT void JNICALL J_MAKE_METHOD(Libgit2_shutdown)(JNIEnv *env, jclass obj)
+JNIEXPORT jint JNICALL J_MAKE_METHOD(Libgit2_jniShutdown)(JNIEnv *env, jclass obj)
 {
-    git_libgit2_shutdown();
+    return git_libgit2_shutdown();
 }
 
 JNIEXPORT jobject JNICALL J_MAKE_METHOD(Libgit2_version)(JNIEnv *env, jclass obj)
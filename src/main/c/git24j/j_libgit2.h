@@ -8,9 +8,11 @@ extern "C"
 {
 #endif
 
-    JNIEXPORT void JNICALL J_MAKE_METHOD(Libgit2_init)(JNIEnv *, jclass);
+    /** int git_libgit2_init(void); */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(Libgit2_jniInit)(JNIEnv *, jclass);
 
-    JNIEXPORT void JNICALL J_MAKE_METHOD(Libgit2_shutdown)(JNIEnv *, jclass);
+    /** int git_libgit2_shutdown(void); */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(Libgit2_jniShutdown)(JNIEnv *, jclass);
 
     JNIEXPORT jobject JNICALL J_MAKE_METHOD(Libgit2_version)(JNIEnv *, jclass);
 
@@ -21,17 +21,6 @@ char *j_strdup(const char *src)
     return copy;
 }
 
-void j_git_buf_to_java(JNIEnv *env, git_buf *c_buf, jobject buf)
-{
-
-    jclass jclz = (*env)->GetObjectClass(env, buf);
-    assert(jclz && "Could not find Buf class from given buf object");
-    j_call_setter_string_c(env, jclz, buf, "setPtr", c_buf->ptr);
-    j_call_setter_int(env, jclz, buf, "setSize", c_buf->size);
-    j_call_setter_int(env, jclz, buf, "setAsize", c_buf->asize);
-    (*env)->DeleteLocalRef(env, jclz);
-}
-
 char *j_call_getter_string(JNIEnv *env, jclass clz, jobject obj, const char *methodName)
 {
     jmethodID method = (*env)->GetMethodID(env, clz, methodName, "()Ljava/lang/String;");
@@ -82,30 +71,6 @@ char *j_get_string_field(JNIEnv *env, jclass jclz, jobject obj, const char *fiel
     return cstr;
 }
 
-/** copy values of java Index.Entry object to git_index_entry struct. */
-void index_entry_from_java(JNIEnv *env, git_index_entry *c_entry, jobject entry)
-{
-    assert(c_entry);
-    jclass jclz = (*env)->GetObjectClass(env, entry);
-    assert(jclz && "Could not find Entry class from given entry object");
-    c_entry->ctime.seconds = j_get_int_field(env, jclz, entry, "ctimeSec");
-    c_entry->ctime.nanoseconds = j_get_int_field(env, jclz, entry, "ctimeNanoSec");
-    c_entry->mtime.seconds = j_get_int_field(env, jclz, entry, "mtimeSec");
-    c_entry->mtime.nanoseconds = j_get_int_field(env, jclz, entry, "mtimeNanoSec");
-    c_entry->dev = j_get_int_field(env, jclz, entry, "dev");
-    c_entry->mode = j_get_int_field(env, jclz, entry, "mode");
-    c_entry->uid = j_get_int_field(env, jclz, entry, "uid");
-    c_entry->gid = j_get_int_field(env, jclz, entry, "gid");
-    char *oid = j_get_string_field(env, jclz, entry, "oid");
-    git_oid_fromstr(&(c_entry->id), oid);
-    free(oid);
-    c_entry->file_size = j_get_int_field(env, jclz, entry, "fileSize");
-    c_entry->flags = j_get_int_field(env, jclz, entry, "flags");
-    c_entry->flags_extended = j_get_int_field(env, jclz, entry, "flagsExtended");
-    free((void *)c_entry->path);
-    c_entry->path = j_get_string_field(env, jclz, entry, "path");
-}
-
 /** create jni jbyteArray from c unsigned char array. */
 jbyteArray j_byte_array_from_c(JNIEnv *env, const unsigned char *buf, int len)
 {
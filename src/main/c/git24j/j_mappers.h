@@ -1,3 +1,4 @@
+#include "j_generated.h"
 #include <git2.h>
 #include <jni.h>
 #include <stdbool.h>
@@ -19,12 +20,6 @@ extern "C"
      */
     char *j_copy_of_jstring(JNIEnv *env, jstring jstr, bool nullable);
 
-    /** Copy values of git_buf to java::Buf */
-    void j_git_buf_to_java(JNIEnv *env, git_buf *c_buf, jobject buf);
-
-    /** copy values of java Index.Entry object to git_index_entry struct. */
-    void index_entry_from_java(JNIEnv *env, git_index_entry *c_entry, jobject entry);
-
     /** 
      * Create jni jbyteArray from c unsigned char array. 
      * Returned jbyteArray should be copied and then released.
@@ -0,0 +1,48 @@
+#include "j_object_cache.h"
+#include "j_common.h"
+#include "j_util.h"
+#include <git2.h>
+#include <stdint.h>
+
+static void j_store_error_and_type(JNIEnv *env, jintArray out, int error, int type)
+{
+    jint values[2];
+    values[0] = error;
+    values[1] = type;
+    (*env)->SetIntArrayRegion(env, out, 0, 2, values);
+}
+
+JNIEXPORT jbyteArray JNICALL J_MAKE_METHOD(ObjectCache_jniRead)(JNIEnv *env, jclass obj, jlong repoPtr, jbyteArray id, jintArray outErrorAndType)
+{
+    git_odb *odb = NULL;
+    git_odb_object *odb_obj = NULL;
+    git_oid c_oid;
+    jbyteArray data = NULL;
+    int e = git_repository_odb(&odb, (git_repository *)repoPtr);
+    if (e == 0)
+    {
+        (*env)->GetByteArrayRegion(env, id, 0, GIT_OID_RAWSZ, (jbyte *)c_oid.id);
+        e = git_odb_read(&odb_obj, odb, &c_oid);
+    }
+    if (e == 0)
+    {
+        size_t size = git_odb_object_size(odb_obj);
+        if (size <= INT32_MAX)
+        {
+            data = (*env)->NewByteArray(env, (jsize)size);
+        }
+        if (data == NULL)
+        {
+            git_error_set_str(GIT_ERROR_NOMEMORY, "object too large for a java array");
+            e = GIT_ERROR;
+        }
+        else
+        {
+            (*env)->SetByteArrayRegion(env, data, 0, (jsize)size, (const jbyte *)git_odb_object_data(odb_obj));
+        }
+    }
+    j_store_error_and_type(env, outErrorAndType, e, e == 0 ? git_odb_object_type(odb_obj) : GIT_OBJECT_INVALID);
+    git_odb_object_free(odb_obj);
+    git_odb_free(odb);
+    return e == 0 ? data : NULL;
+}
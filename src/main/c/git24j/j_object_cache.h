@@ -0,0 +1,22 @@
+#include "j_common.h"
+#include <git2.h>
+#include <jni.h>
+
+#ifndef __GIT24J_OBJECT_CACHE_H__
+#define __GIT24J_OBJECT_CACHE_H__
+#ifdef __cplusplus
+extern "C"
+{
+#endif
+
+    /**
+     * int git_odb_read(git_odb_object **out, git_odb *db, const git_oid *id);
+     * Reads through the odb of `repoPtr` and returns the raw contents as a new byte[], with
+     * the error code and the object type stored in `outErrorAndType`.
+     */
+    JNIEXPORT jbyteArray JNICALL J_MAKE_METHOD(ObjectCache_jniRead)(JNIEnv *env, jclass obj, jlong repoPtr, jbyteArray id, jintArray outErrorAndType);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
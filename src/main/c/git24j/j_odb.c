@@ -0,0 +1,325 @@
+#include "j_odb.h"
+#include "j_callback.h"
+#include "j_common.h"
+#include "j_mappers.h"
+#include "j_util.h"
+#include <git2.h>
+#include <git2/sys/odb_backend.h>
+#include <stdint.h>
+#include <stdlib.h>
+#include <string.h>
+
+/** local references an odb backend upcall may create. */
+#define J_ODB_FRAME_SIZE 16
+
+/** git_odb_backend that forwards to a java OdbBackendAdapter. */
+typedef struct
+{
+    git_odb_backend parent;
+    JavaVM *vm;
+    jobject adapter;
+} j_odb_backend;
+
+typedef struct
+{
+    git_odb_foreach_cb cb;
+    void *payload;
+} j_odb_foreach_ctx;
+
+static j_cached_method s_read = {J_CLZ_PREFIX "OdbBackendAdapter", "read", "([B[I)Ljava/nio/ByteBuffer;"};
+static j_cached_method s_read_header = {J_CLZ_PREFIX "OdbBackendAdapter", "readHeader", "([B)J"};
+static j_cached_method s_write = {J_CLZ_PREFIX "OdbBackendAdapter", "write", "([BLjava/nio/ByteBuffer;I)V"};
+static j_cached_method s_exists = {J_CLZ_PREFIX "OdbBackendAdapter", "exists", "([B)Z"};
+static j_cached_method s_foreach = {J_CLZ_PREFIX "OdbBackendAdapter", "foreach", "(J)I"};
+static j_cached_method s_refresh = {J_CLZ_PREFIX "OdbBackendAdapter", "refresh", "()V"};
+static j_cached_method s_free = {J_CLZ_PREFIX "OdbBackendAdapter", "free", "()V"};
+
+/** attach current thread if needed and open a local frame, NULL on failure. */
+static JNIEnv *j_odb_enter(j_odb_backend *jb)
+{
+    return j_upcall_enter(jb->vm, J_ODB_FRAME_SIZE, GIT_ERROR_ODB);
+}
+
+/** close frame opened by j_odb_enter, turning a pending java exception into a git error. */
+static int j_odb_leave(JNIEnv *env, int error)
+{
+    return j_upcall_leave(env, error, GIT_ERROR_ODB);
+}
+
+static jbyteArray j_odb_id(JNIEnv *env, const git_oid *oid)
+{
+    return j_byte_array_from_c(env, oid->id, GIT_OID_RAWSZ);
+}
+
+static int j_odb_read(void **data_p, size_t *len_p, git_object_t *type_p, git_odb_backend *backend, const git_oid *oid)
+{
+    j_odb_backend *jb = (j_odb_backend *)backend;
+    JNIEnv *env = j_odb_enter(jb);
+    if (env == NULL)
+    {
+        return GIT_ERROR;
+    }
+    int e = 0;
+    jintArray out_type = (*env)->NewIntArray(env, 1);
+    jobject buf = (*env)->CallObjectMethod(env, jb->adapter, j_cached_method_id(env, &s_read), j_odb_id(env, oid), out_type);
+    if ((*env)->ExceptionCheck(env))
+    {
+        return j_odb_leave(env, GIT_ERROR);
+    }
+    if (buf == NULL)
+    {
+        return j_odb_leave(env, GIT_ENOTFOUND);
+    }
+    /* adapter hands out direct buffers positioned at 0, see OdbBackendAdapter.read */
+    const char *src = (const char *)(*env)->GetDirectBufferAddress(env, buf);
+    jlong len = (*env)->GetDirectBufferCapacity(env, buf);
+    jint type = 0;
+    (*env)->GetIntArrayRegion(env, out_type, 0, 1, &type);
+    if (len < 0 || (src == NULL && len > 0))
+    {
+        git_error_set_str(GIT_ERROR_ODB, "odb backend did not return a direct buffer");
+        return j_odb_leave(env, GIT_ERROR);
+    }
+    char *out = (char *)git_odb_backend_data_alloc(backend, (size_t)len + 1);
+    if (out == NULL)
+    {
+        git_error_set_oom();
+        e = GIT_ERROR;
+    }
+    else
+    {
+        memcpy(out, src, (size_t)len);
+        out[len] = '\0';
+        *data_p = out;
+        *len_p = (size_t)len;
+        *type_p = (git_object_t)type;
+    }
+    return j_odb_leave(env, e);
+}
+
+static int j_odb_read_header(size_t *len_p, git_object_t *type_p, git_odb_backend *backend, const git_oid *oid)
+{
+    j_odb_backend *jb = (j_odb_backend *)backend;
+    JNIEnv *env = j_odb_enter(jb);
+    if (env == NULL)
+    {
+        return GIT_ERROR;
+    }
+    /* (size << 3) | type, or -1 if not found */
+    jlong header = (*env)->CallLongMethod(env, jb->adapter, j_cached_method_id(env, &s_read_header), j_odb_id(env, oid));
+    if ((*env)->ExceptionCheck(env))
+    {
+        return j_odb_leave(env, GIT_ERROR);
+    }
+    if (header < 0)
+    {
+        return j_odb_leave(env, GIT_ENOTFOUND);
+    }
+    *len_p = (size_t)(header >> 3);
+    *type_p = (git_object_t)(header & 7);
+    return j_odb_leave(env, 0);
+}
+
+static int j_odb_write(git_odb_backend *backend, const git_oid *oid, const void *data, size_t len, git_object_t type)
+{
+    j_odb_backend *jb = (j_odb_backend *)backend;
+    JNIEnv *env = j_odb_enter(jb);
+    if (env == NULL)
+    {
+        return GIT_ERROR;
+    }
+    /* java side must copy, the buffer is only valid during this call */
+    jobject buf = (*env)->NewDirectByteBuffer(env, (void *)data, (jlong)len);
+    if (buf == NULL)
+    {
+        if (!(*env)->ExceptionCheck(env))
+        {
+            git_error_set_str(GIT_ERROR_ODB, "direct buffers are not supported by this JVM");
+        }
+        return j_odb_leave(env, GIT_ERROR);
+    }
+    (*env)->CallVoidMethod(env, jb->adapter, j_cached_method_id(env, &s_write), j_odb_id(env, oid), buf, (jint)type);
+    return j_odb_leave(env, 0);
+}
+
+static int j_odb_exists(git_odb_backend *backend, const git_oid *oid)
+{
+    j_odb_backend *jb = (j_odb_backend *)backend;
+    JNIEnv *env = j_odb_enter(jb);
+    if (env == NULL)
+    {
+        return 0;
+    }
+    jboolean found = (*env)->CallBooleanMethod(env, jb->adapter, j_cached_method_id(env, &s_exists), j_odb_id(env, oid));
+    /* exists() can only answer yes or no, treat failures as not found */
+    return j_odb_leave(env, 0) == 0 && found ? 1 : 0;
+}
+
+static int j_odb_freshen(git_odb_backend *backend, const git_oid *oid)
+{
+    return j_odb_exists(backend, oid) ? 0 : GIT_ENOTFOUND;
+}
+
+static int j_odb_foreach(git_odb_backend *backend, git_odb_foreach_cb cb, void *payload)
+{
+    j_odb_backend *jb = (j_odb_backend *)backend;
+    JNIEnv *env = j_odb_enter(jb);
+    if (env == NULL)
+    {
+        return GIT_ERROR;
+    }
+    j_odb_foreach_ctx ctx = {cb, payload};
+    jint r = (*env)->CallIntMethod(env, jb->adapter, j_cached_method_id(env, &s_foreach), (jlong)(uintptr_t)&ctx);
+    return j_odb_leave(env, r);
+}
+
+static int j_odb_refresh(git_odb_backend *backend)
+{
+    j_odb_backend *jb = (j_odb_backend *)backend;
+    JNIEnv *env = j_odb_enter(jb);
+    if (env == NULL)
+    {
+        return GIT_ERROR;
+    }
+    (*env)->CallVoidMethod(env, jb->adapter, j_cached_method_id(env, &s_refresh));
+    return j_odb_leave(env, 0);
+}
+
+static void j_odb_free(git_odb_backend *backend)
+{
+    j_odb_backend *jb = (j_odb_backend *)backend;
+    JNIEnv *env = j_env_of_current_thread(jb->vm);
+    if (env == NULL)
+    {
+        /* adapter.free() is skipped, but the adapter itself must not stay reachable forever */
+        j_delete_global_ref_later(jb->adapter);
+    }
+    else
+    {
+        if ((*env)->PushLocalFrame(env, J_ODB_FRAME_SIZE) == 0)
+        {
+            (*env)->CallVoidMethod(env, jb->adapter, j_cached_method_id(env, &s_free));
+            j_odb_leave(env, 0);
+        }
+        (*env)->DeleteGlobalRef(env, jb->adapter);
+    }
+    free(jb);
+}
+
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(Odb_jniNew)(JNIEnv *env, jclass obj)
+{
+    git_odb *c_odb = NULL;
+    int e = git_odb_new(&c_odb);
+    return j_handle_or_error(e, c_odb);
+}
+
+JNIEXPORT void JNICALL J_MAKE_METHOD(Odb_jniFree)(JNIEnv *env, jclass obj, jlong odbPtr)
+{
+    git_odb_free((git_odb *)odbPtr);
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(Odb_jniAddBackend)(JNIEnv *env, jclass obj, jlong odbPtr, jobject adapter, jint priority)
+{
+    /* resolve all methods up front, callbacks may run on threads where FindClass can not see our classes */
+    j_cached_method *methods[] = {&s_read, &s_read_header, &s_write, &s_exists, &s_foreach, &s_refresh, &s_free};
+    for (size_t i = 0; i < sizeof(methods) / sizeof(methods[0]); i++)
+    {
+        if (j_cached_method_id(env, methods[i]) == NULL)
+        {
+            return GIT_ERROR;
+        }
+    }
+    j_delete_orphan_refs(env);
+    j_odb_backend *jb = (j_odb_backend *)calloc(1, sizeof(j_odb_backend));
+    if (jb == NULL)
+    {
+        git_error_set_oom();
+        return GIT_ERROR;
+    }
+    int e = git_odb_init_backend(&jb->parent, GIT_ODB_BACKEND_VERSION);
+    if (e == 0 && (*env)->GetJavaVM(env, &jb->vm) != JNI_OK)
+    {
+        e = GIT_ERROR;
+    }
+    if (e != 0)
+    {
+        free(jb);
+        return e;
+    }
+    jb->adapter = (*env)->NewGlobalRef(env, adapter);
+    jb->parent.read = j_odb_read;
+    jb->parent.read_header = j_odb_read_header;
+    jb->parent.write = j_odb_write;
+    jb->parent.exists = j_odb_exists;
+    jb->parent.freshen = j_odb_freshen;
+    jb->parent.foreach = j_odb_foreach;
+    jb->parent.refresh = j_odb_refresh;
+    jb->parent.free = j_odb_free;
+    e = git_odb_add_backend((git_odb *)odbPtr, &jb->parent, priority);
+    if (e != 0)
+    {
+        (*env)->DeleteGlobalRef(env, jb->adapter);
+        free(jb);
+    }
+    return e;
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(OdbBackendAdapter_jniForeachEmit)(JNIEnv *env, jclass obj, jlong ctx, jbyteArray ids, jint count)
+{
+    j_odb_foreach_ctx *c_ctx = (j_odb_foreach_ctx *)(uintptr_t)ctx;
+    jbyte *c_ids = (*env)->GetByteArrayElements(env, ids, NULL);
+    int r = 0;
+    for (jint i = 0; i < count && r == 0; i++)
+    {
+        git_oid c_oid;
+        git_oid_fromraw(&c_oid, (const unsigned char *)c_ids + (size_t)i * GIT_OID_RAWSZ);
+        r = c_ctx->cb(&c_oid, c_ctx->payload);
+    }
+    (*env)->ReleaseByteArrayElements(env, ids, c_ids, JNI_ABORT);
+    return r;
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(Odb_jniWrite)(JNIEnv *env, jclass obj, jobject outOid, jlong odbPtr, jobject directBuf, jbyteArray array, jint offset, jint len, jint type)
+{
+    git_oid c_oid;
+    int e;
+    if (directBuf != NULL)
+    {
+        const char *data = (const char *)(*env)->GetDirectBufferAddress(env, directBuf);
+        if (data == NULL)
+        {
+            git_error_set_str(GIT_ERROR_ODB, "direct buffers are not supported by this JVM");
+            return GIT_ERROR;
+        }
+        e = git_odb_write(&c_oid, (git_odb *)odbPtr, data + offset, (size_t)len, (git_object_t)type);
+    }
+    else
+    {
+        /* copy rather than pin: with a java odb backend attached, git_odb_write calls back into java,
+         * which is not allowed inside a critical region */
+        jbyte *data = (jbyte *)malloc(len > 0 ? (size_t)len : 1);
+        if (data == NULL)
+        {
+            git_error_set_oom();
+            return GIT_ERROR;
+        }
+        (*env)->GetByteArrayRegion(env, array, offset, len, data);
+        if ((*env)->ExceptionCheck(env))
+        {
+            free(data);
+            return GIT_ERROR;
+        }
+        e = git_odb_write(&c_oid, (git_odb *)odbPtr, data, (size_t)len, (git_object_t)type);
+        free(data);
+    }
+    if (e == 0)
+    {
+        j_git_oid_to_java(env, &c_oid, outOid);
+    }
+    return e;
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(Odb_jniRefresh)(JNIEnv *env, jclass obj, jlong odbPtr)
+{
+    return git_odb_refresh((git_odb *)odbPtr);
+}
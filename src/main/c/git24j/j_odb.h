@@ -0,0 +1,41 @@
+#include "j_common.h"
+#include <git2.h>
+#include <jni.h>
+
+#ifndef __GIT24J_ODB_H__
+#define __GIT24J_ODB_H__
+#ifdef __cplusplus
+extern "C"
+{
+#endif
+
+    /** int git_odb_new(git_odb **out); */
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(Odb_jniNew)(JNIEnv *env, jclass obj);
+
+    /** void git_odb_free(git_odb *db); */
+    JNIEXPORT void JNICALL J_MAKE_METHOD(Odb_jniFree)(JNIEnv *env, jclass obj, jlong odbPtr);
+
+    /**
+     * Create a git_odb_backend whose callbacks are forwarded to a java OdbBackendAdapter and
+     * add it to the odb with:
+     * int git_odb_add_backend(git_odb *odb, git_odb_backend *backend, int priority);
+     * The odb owns the backend from then on and releases the adapter when it is freed.
+     */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(Odb_jniAddBackend)(JNIEnv *env, jclass obj, jlong odbPtr, jobject adapter, jint priority);
+
+    /**
+     * int git_odb_write(git_oid *out, git_odb *odb, const void *data, size_t len, git_object_t type);
+     * Data is taken from `directBuf` if not NULL, else from `array` starting at `offset`.
+     */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(Odb_jniWrite)(JNIEnv *env, jclass obj, jobject outOid, jlong odbPtr, jobject directBuf, jbyteArray array, jint offset, jint len, jint type);
+
+    /** int git_odb_refresh(struct git_odb *db); */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(Odb_jniRefresh)(JNIEnv *env, jclass obj, jlong odbPtr);
+
+    /** Pass `count` packed ids to the git_odb_foreach_cb behind `ctx`, returns non-zero to stop. */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(OdbBackendAdapter_jniForeachEmit)(JNIEnv *env, jclass obj, jlong ctx, jbyteArray ids, jint count);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -0,0 +1,277 @@
+#include "j_pack_builder.h"
+#include "j_callback.h"
+#include "j_common.h"
+#include "j_mappers.h"
+#include "j_util.h"
+#include <git2.h>
+#include <stdlib.h>
+#include <string.h>
+#include <time.h>
+
+#ifdef _WIN32
+#ifndef WIN32_LEAN_AND_MEAN
+#define WIN32_LEAN_AND_MEAN
+#endif
+#include <windows.h>
+#endif
+
+static j_cached_method s_progress_accept = {J_CLZ_PREFIX "PackBuilder$ProgressBridge", "accept", "(IJJ)I"};
+static j_cached_method s_sink_accept = {J_CLZ_PREFIX "PackBuilder$SinkBridge", "accept", "(Ljava/nio/ByteBuffer;)I"};
+
+/**
+ * Delta search statistics and sampled progress reporting. libgit2 reports progress under its
+ * progress lock, possibly from worker threads, so no further locking is needed.
+ */
+typedef struct
+{
+    j_cb_bridge bridge;
+    jlong interval_ns;
+    jlong last_report_ns;
+    jlong delta_start_ns;
+    jlong delta_ns;
+    uint32_t delta_total;
+} j_pb_progress;
+
+static jlong j_pb_now_ns(void)
+{
+#ifdef _WIN32
+    LARGE_INTEGER count, freq;
+    QueryPerformanceCounter(&count);
+    QueryPerformanceFrequency(&freq);
+    return (jlong)(count.QuadPart / freq.QuadPart * 1000000000 + count.QuadPart % freq.QuadPart * 1000000000 / freq.QuadPart);
+#else
+    struct timespec ts;
+    clock_gettime(CLOCK_MONOTONIC, &ts);
+    return (jlong)ts.tv_sec * 1000000000 + ts.tv_nsec;
+#endif
+}
+
+static int j_pb_progress_cb(int stage, uint32_t current, uint32_t total, void *payload)
+{
+    j_pb_progress *progress = (j_pb_progress *)payload;
+    jlong now = j_pb_now_ns();
+    if (stage == GIT_PACKBUILDER_DELTAFICATION)
+    {
+        if (progress->delta_start_ns == 0)
+        {
+            progress->delta_start_ns = now;
+        }
+        progress->delta_ns = now - progress->delta_start_ns;
+        progress->delta_total = total;
+    }
+    if (!j_cb_bridge_active(&progress->bridge))
+    {
+        return j_cb_bridge_failed(&progress->bridge) ? GIT_EUSER : 0;
+    }
+    /* sample, but never drop the final report of a stage */
+    if (current != total && now - progress->last_report_ns < progress->interval_ns)
+    {
+        return 0;
+    }
+    progress->last_report_ns = now;
+    JNIEnv *jenv = j_cb_enter(&progress->bridge);
+    if (jenv == NULL)
+    {
+        return GIT_EUSER;
+    }
+    jint r = (*jenv)->CallIntMethod(jenv, progress->bridge.consumer, progress->bridge.method, (jint)stage, (jlong)current, (jlong)total);
+    int e = j_cb_leave(&progress->bridge, jenv);
+    return e != 0 ? e : (r != 0 ? GIT_EUSER : 0);
+}
+
+static bool j_pb_progress_init(j_pb_progress *progress, JNIEnv *env, git_packbuilder *pb, jobject bridge, jlong interval_ns)
+{
+    memset(progress, 0, sizeof(*progress));
+    progress->interval_ns = interval_ns;
+    progress->last_report_ns = j_pb_now_ns();
+    if (!j_cb_bridge_init(&progress->bridge, env, bridge, &s_progress_accept))
+    {
+        return false;
+    }
+    git_packbuilder_set_callbacks(pb, j_pb_progress_cb, progress);
+    return true;
+}
+
+static int j_pb_progress_finish(j_pb_progress *progress, JNIEnv *env, git_packbuilder *pb, int error, jlongArray outStats)
+{
+    git_packbuilder_set_callbacks(pb, NULL, NULL);
+    jlong stats[] = {progress->delta_total, progress->delta_ns};
+    (*env)->SetLongArrayRegion(env, outStats, 0, 2, stats);
+    j_cb_bridge_release(&progress->bridge);
+    return error;
+}
+
+static int j_pb_sink_cb(void *buf, size_t size, void *payload)
+{
+    j_cb_bridge *bridge = (j_cb_bridge *)payload;
+    JNIEnv *jenv = j_cb_enter(bridge);
+    if (jenv == NULL)
+    {
+        return GIT_EUSER;
+    }
+    jobject chunk = (*jenv)->NewDirectByteBuffer(jenv, buf, (jlong)size);
+    jint r = chunk == NULL ? -1 : (*jenv)->CallIntMethod(jenv, bridge->consumer, bridge->method, chunk);
+    int e = j_cb_leave(bridge, jenv);
+    return e != 0 ? e : (r != 0 ? GIT_EUSER : 0);
+}
+
+/** copy a raw java id into `out`, false if it is not GIT_OID_RAWSZ long. */
+static bool j_pb_oid(JNIEnv *env, jbyteArray id, git_oid *out)
+{
+    if ((*env)->GetArrayLength(env, id) != GIT_OID_RAWSZ)
+    {
+        git_error_set_str(GIT_ERROR_INVALID, "invalid object id");
+        return false;
+    }
+    (*env)->GetByteArrayRegion(env, id, 0, GIT_OID_RAWSZ, (jbyte *)out->id);
+    return true;
+}
+
+/** apply `fn` to each raw id packed in `ids`. */
+static int j_pb_walk_ids(JNIEnv *env, git_revwalk *walk, jbyteArray ids, int (*fn)(git_revwalk *, const git_oid *))
+{
+    if (ids == NULL)
+    {
+        return 0;
+    }
+    jsize len = (*env)->GetArrayLength(env, ids);
+    jbyte *raw = (*env)->GetByteArrayElements(env, ids, NULL);
+    int e = 0;
+    for (jsize off = 0; e == 0 && off + GIT_OID_RAWSZ <= len; off += GIT_OID_RAWSZ)
+    {
+        git_oid c_oid;
+        git_oid_fromraw(&c_oid, (const unsigned char *)raw + off);
+        e = fn(walk, &c_oid);
+    }
+    (*env)->ReleaseByteArrayElements(env, ids, raw, JNI_ABORT);
+    return e;
+}
+
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(PackBuilder_jniNew)(JNIEnv *env, jclass obj, jlong repoPtr)
+{
+    git_packbuilder *c_pb = NULL;
+    int e = git_packbuilder_new(&c_pb, (git_repository *)repoPtr);
+    return j_handle_or_error(e, c_pb);
+}
+
+JNIEXPORT void JNICALL J_MAKE_METHOD(PackBuilder_jniFree)(JNIEnv *env, jclass obj, jlong pbPtr)
+{
+    git_packbuilder_free((git_packbuilder *)pbPtr);
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(PackBuilder_jniSetThreads)(JNIEnv *env, jclass obj, jlong pbPtr, jint n)
+{
+    return (jint)git_packbuilder_set_threads((git_packbuilder *)pbPtr, (unsigned int)n);
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(PackBuilder_jniInsert)(JNIEnv *env, jclass obj, jlong pbPtr, jbyteArray id, jstring name)
+{
+    git_oid c_oid;
+    if (!j_pb_oid(env, id, &c_oid))
+    {
+        return GIT_ERROR;
+    }
+    char *c_name = j_copy_of_jstring(env, name, true);
+    int e = git_packbuilder_insert((git_packbuilder *)pbPtr, &c_oid, c_name);
+    free(c_name);
+    return e;
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(PackBuilder_jniInsertTree)(JNIEnv *env, jclass obj, jlong pbPtr, jbyteArray id)
+{
+    git_oid c_oid;
+    return j_pb_oid(env, id, &c_oid) ? git_packbuilder_insert_tree((git_packbuilder *)pbPtr, &c_oid) : GIT_ERROR;
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(PackBuilder_jniInsertCommit)(JNIEnv *env, jclass obj, jlong pbPtr, jbyteArray id)
+{
+    git_oid c_oid;
+    return j_pb_oid(env, id, &c_oid) ? git_packbuilder_insert_commit((git_packbuilder *)pbPtr, &c_oid) : GIT_ERROR;
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(PackBuilder_jniInsertRecursive)(JNIEnv *env, jclass obj, jlong pbPtr, jbyteArray id, jstring name)
+{
+    git_oid c_oid;
+    if (!j_pb_oid(env, id, &c_oid))
+    {
+        return GIT_ERROR;
+    }
+    char *c_name = j_copy_of_jstring(env, name, true);
+    int e = git_packbuilder_insert_recursive((git_packbuilder *)pbPtr, &c_oid, c_name);
+    free(c_name);
+    return e;
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(PackBuilder_jniInsertWalk)(JNIEnv *env, jclass obj, jlong pbPtr, jlong repoPtr, jstring range, jbyteArray includes, jbyteArray excludes)
+{
+    git_revwalk *walk = NULL;
+    int e = git_revwalk_new(&walk, (git_repository *)repoPtr);
+    if (e == 0 && range != NULL)
+    {
+        char *c_range = j_copy_of_jstring(env, range, false);
+        e = git_revwalk_push_range(walk, c_range);
+        free(c_range);
+    }
+    if (e == 0)
+    {
+        e = j_pb_walk_ids(env, walk, includes, git_revwalk_push);
+    }
+    if (e == 0)
+    {
+        e = j_pb_walk_ids(env, walk, excludes, git_revwalk_hide);
+    }
+    if (e == 0)
+    {
+        e = git_packbuilder_insert_walk((git_packbuilder *)pbPtr, walk);
+    }
+    git_revwalk_free(walk);
+    return e;
+}
+
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(PackBuilder_jniObjectCount)(JNIEnv *env, jclass obj, jlong pbPtr)
+{
+    return (jlong)git_packbuilder_object_count((git_packbuilder *)pbPtr);
+}
+
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(PackBuilder_jniWritten)(JNIEnv *env, jclass obj, jlong pbPtr)
+{
+    return (jlong)git_packbuilder_written((git_packbuilder *)pbPtr);
+}
+
+JNIEXPORT void JNICALL J_MAKE_METHOD(PackBuilder_jniHash)(JNIEnv *env, jclass obj, jobject outOid, jlong pbPtr)
+{
+    j_git_oid_to_java(env, git_packbuilder_hash((git_packbuilder *)pbPtr), outOid);
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(PackBuilder_jniWrite)(JNIEnv *env, jclass obj, jlong pbPtr, jstring path, jint mode, jobject progress, jlong intervalNanos, jlongArray outStats)
+{
+    git_packbuilder *c_pb = (git_packbuilder *)pbPtr;
+    j_pb_progress c_progress;
+    if (!j_pb_progress_init(&c_progress, env, c_pb, progress, intervalNanos))
+    {
+        return GIT_ERROR;
+    }
+    char *c_path = j_copy_of_jstring(env, path, true);
+    int e = git_packbuilder_write(c_pb, c_path, (unsigned int)mode, NULL, NULL);
+    free(c_path);
+    return j_pb_progress_finish(&c_progress, env, c_pb, e, outStats);
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(PackBuilder_jniForeach)(JNIEnv *env, jclass obj, jlong pbPtr, jobject sink, jobject progress, jlong intervalNanos, jlongArray outStats)
+{
+    git_packbuilder *c_pb = (git_packbuilder *)pbPtr;
+    j_cb_bridge sink_bridge;
+    if (!j_cb_bridge_init(&sink_bridge, env, sink, &s_sink_accept))
+    {
+        return GIT_ERROR;
+    }
+    j_pb_progress c_progress;
+    if (!j_pb_progress_init(&c_progress, env, c_pb, progress, intervalNanos))
+    {
+        j_cb_bridge_release(&sink_bridge);
+        return GIT_ERROR;
+    }
+    int e = git_packbuilder_foreach(c_pb, j_pb_sink_cb, &sink_bridge);
+    j_cb_bridge_release(&sink_bridge);
+    return j_pb_progress_finish(&c_progress, env, c_pb, e, outStats);
+}
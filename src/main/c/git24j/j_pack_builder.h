@@ -0,0 +1,66 @@
+#include "j_common.h"
+#include <git2.h>
+#include <jni.h>
+
+#ifndef __GIT24J_PACK_BUILDER_H__
+#define __GIT24J_PACK_BUILDER_H__
+#ifdef __cplusplus
+extern "C"
+{
+#endif
+
+    /** int git_packbuilder_new(git_packbuilder **out, git_repository *repo); */
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(PackBuilder_jniNew)(JNIEnv *env, jclass obj, jlong repoPtr);
+
+    /** void git_packbuilder_free(git_packbuilder *pb); */
+    JNIEXPORT void JNICALL J_MAKE_METHOD(PackBuilder_jniFree)(JNIEnv *env, jclass obj, jlong pbPtr);
+
+    /** unsigned int git_packbuilder_set_threads(git_packbuilder *pb, unsigned int n); */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(PackBuilder_jniSetThreads)(JNIEnv *env, jclass obj, jlong pbPtr, jint n);
+
+    /** int git_packbuilder_insert(git_packbuilder *pb, const git_oid *id, const char *name); */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(PackBuilder_jniInsert)(JNIEnv *env, jclass obj, jlong pbPtr, jbyteArray id, jstring name);
+
+    /** int git_packbuilder_insert_tree(git_packbuilder *pb, const git_oid *id); */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(PackBuilder_jniInsertTree)(JNIEnv *env, jclass obj, jlong pbPtr, jbyteArray id);
+
+    /** int git_packbuilder_insert_commit(git_packbuilder *pb, const git_oid *id); */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(PackBuilder_jniInsertCommit)(JNIEnv *env, jclass obj, jlong pbPtr, jbyteArray id);
+
+    /** int git_packbuilder_insert_recursive(git_packbuilder *pb, const git_oid *id, const char *name); */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(PackBuilder_jniInsertRecursive)(JNIEnv *env, jclass obj, jlong pbPtr, jbyteArray id, jstring name);
+
+    /**
+     * Walk the commits of `range` ("A..B", see git_revwalk_push_range) or of `includes` minus
+     * `excludes` (raw ids), and insert them with
+     * int git_packbuilder_insert_walk(git_packbuilder *pb, git_revwalk *walk);
+     */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(PackBuilder_jniInsertWalk)(JNIEnv *env, jclass obj, jlong pbPtr, jlong repoPtr, jstring range, jbyteArray includes, jbyteArray excludes);
+
+    /** size_t git_packbuilder_object_count(git_packbuilder *pb); */
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(PackBuilder_jniObjectCount)(JNIEnv *env, jclass obj, jlong pbPtr);
+
+    /** size_t git_packbuilder_written(git_packbuilder *pb); */
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(PackBuilder_jniWritten)(JNIEnv *env, jclass obj, jlong pbPtr);
+
+    /** const git_oid * git_packbuilder_hash(git_packbuilder *pb); */
+    JNIEXPORT void JNICALL J_MAKE_METHOD(PackBuilder_jniHash)(JNIEnv *env, jclass obj, jobject outOid, jlong pbPtr);
+
+    /**
+     * int git_packbuilder_write(git_packbuilder *pb, const char *path, unsigned int mode, git_transfer_progress_cb progress_cb, void *progress_cb_payload);
+     * Delta search progress goes to `progress` (may be NULL) at most every `intervalNanos`,
+     * outStats receives {delta search objects, delta search nanos}.
+     */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(PackBuilder_jniWrite)(JNIEnv *env, jclass obj, jlong pbPtr, jstring path, jint mode, jobject progress, jlong intervalNanos, jlongArray outStats);
+
+    /**
+     * int git_packbuilder_foreach(git_packbuilder *pb, git_packbuilder_foreach_cb cb, void *payload);
+     * Each chunk is passed to `sink` as a direct ByteBuffer over the libgit2 buffer, progress and
+     * outStats as in PackBuilder_jniWrite.
+     */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(PackBuilder_jniForeach)(JNIEnv *env, jclass obj, jlong pbPtr, jobject sink, jobject progress, jlong intervalNanos, jlongArray outStats);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
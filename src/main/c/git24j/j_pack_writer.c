@@ -0,0 +1,60 @@
+#include "j_pack_writer.h"
+#include "j_common.h"
+#include "j_util.h"
+#include <git2.h>
+#include <stdlib.h>
+
+typedef struct
+{
+    git_odb_writepack *writepack;
+    git_transfer_progress stats;
+} j_pack_writer;
+
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(PackWriter_jniNew)(JNIEnv *env, jclass obj, jlong odbPtr)
+{
+    j_pack_writer *writer = (j_pack_writer *)calloc(1, sizeof(j_pack_writer));
+    if (writer == NULL)
+    {
+        git_error_set_oom();
+        return GIT_ERROR;
+    }
+    int e = git_odb_write_pack(&writer->writepack, (git_odb *)odbPtr, NULL, NULL);
+    if (e != 0)
+    {
+        free(writer);
+        return e;
+    }
+    return j_handle_or_error(0, writer);
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(PackWriter_jniAppend)(JNIEnv *env, jclass obj, jlong writepackPtr, jobject directBuf, jint len)
+{
+    j_pack_writer *writer = (j_pack_writer *)writepackPtr;
+    void *data = (*env)->GetDirectBufferAddress(env, directBuf);
+    return writer->writepack->append(writer->writepack, data, (size_t)len, &writer->stats);
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(PackWriter_jniCommit)(JNIEnv *env, jclass obj, jlong writepackPtr, jlongArray outStats)
+{
+    j_pack_writer *writer = (j_pack_writer *)writepackPtr;
+    int e = writer->writepack->commit(writer->writepack, &writer->stats);
+    jlong stats[] = {
+        writer->stats.total_objects,
+        writer->stats.indexed_objects,
+        writer->stats.received_objects,
+        writer->stats.indexed_deltas,
+        (jlong)writer->stats.received_bytes};
+    (*env)->SetLongArrayRegion(env, outStats, 0, sizeof(stats) / sizeof(stats[0]), stats);
+    return e;
+}
+
+JNIEXPORT void JNICALL J_MAKE_METHOD(PackWriter_jniFree)(JNIEnv *env, jclass obj, jlong writepackPtr)
+{
+    j_pack_writer *writer = (j_pack_writer *)writepackPtr;
+    if (writer == NULL)
+    {
+        return;
+    }
+    writer->writepack->free(writer->writepack);
+    free(writer);
+}
@@ -0,0 +1,33 @@
+#include "j_common.h"
+#include <git2.h>
+#include <jni.h>
+
+#ifndef __GIT24J_PACK_WRITER_H__
+#define __GIT24J_PACK_WRITER_H__
+#ifdef __cplusplus
+extern "C"
+{
+#endif
+
+    /**
+     * int git_odb_write_pack(git_odb_writepack **out, git_odb *db, git_transfer_progress_cb progress_cb, void *progress_payload);
+     * The returned handle also holds the git_transfer_progress that appends update.
+     */
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(PackWriter_jniNew)(JNIEnv *env, jclass obj, jlong odbPtr);
+
+    /** int append(git_odb_writepack *writepack, const void *data, size_t size, git_transfer_progress *stats); */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(PackWriter_jniAppend)(JNIEnv *env, jclass obj, jlong writepackPtr, jobject directBuf, jint len);
+
+    /**
+     * int commit(git_odb_writepack *writepack, git_transfer_progress *stats);
+     * Fills outStats with total_objects, indexed_objects, received_objects, indexed_deltas, received_bytes.
+     */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(PackWriter_jniCommit)(JNIEnv *env, jclass obj, jlong writepackPtr, jlongArray outStats);
+
+    /** void free(git_odb_writepack *writepack); */
+    JNIEXPORT void JNICALL J_MAKE_METHOD(PackWriter_jniFree)(JNIEnv *env, jclass obj, jlong writepackPtr);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -0,0 +1,484 @@
+#include "j_refdb.h"
+#include "j_callback.h"
+#include "j_common.h"
+#include "j_mappers.h"
+#include "j_util.h"
+#include <git2.h>
+#include <git2/sys/refdb_backend.h>
+#include <git2/sys/refs.h>
+#include <stdlib.h>
+#include <string.h>
+
+/** local references a refdb backend upcall may create. */
+#define J_REFDB_FRAME_SIZE 16
+/** references an iterator copies out of java per upcall. */
+#define J_REFDB_ITER_BATCH 256
+
+/** git_refdb_backend that forwards to a java RefdbBackendAdapter. */
+typedef struct
+{
+    git_refdb_backend parent;
+    JavaVM *vm;
+    jobject adapter;
+} j_refdb_backend;
+
+/** iterator that copies references out of a java iterator J_REFDB_ITER_BATCH at a time. */
+typedef struct
+{
+    git_reference_iterator parent;
+    j_refdb_backend *jb;
+    jobject iter;
+    int count;
+    int pos;
+    bool done;
+    char *names[J_REFDB_ITER_BATCH];
+    char *targets[J_REFDB_ITER_BATCH];
+    unsigned char ids[J_REFDB_ITER_BATCH * GIT_OID_RAWSZ];
+} j_refdb_iterator;
+
+#define J_ADAPTER J_CLZ_PREFIX "RefdbBackendAdapter"
+static j_cached_method s_exists = {J_ADAPTER, "exists", "(Ljava/lang/String;)I"};
+static j_cached_method s_lookup = {J_ADAPTER, "lookup", "(Ljava/lang/String;[B[Ljava/lang/String;)I"};
+static j_cached_method s_iterator = {J_ADAPTER, "iterator", "(Ljava/lang/String;)Ljava/lang/Object;"};
+static j_cached_method s_next_batch = {J_ADAPTER, "nextBatch", "(Ljava/lang/Object;[Ljava/lang/String;[B[Ljava/lang/String;)I"};
+static j_cached_method s_write = {J_ADAPTER, "write", "(Ljava/lang/String;[BLjava/lang/String;Z[BLjava/lang/String;)I"};
+static j_cached_method s_rename = {J_ADAPTER, "rename", "(Ljava/lang/String;Ljava/lang/String;Z)I"};
+static j_cached_method s_delete = {J_ADAPTER, "delete", "(Ljava/lang/String;[BLjava/lang/String;)I"};
+static j_cached_method s_compress = {J_ADAPTER, "compress", "()I"};
+static j_cached_method s_lock = {J_ADAPTER, "lock", "(Ljava/lang/String;)I"};
+static j_cached_method s_unlock = {J_ADAPTER, "unlock", "(Ljava/lang/String;I[BLjava/lang/String;)I"};
+static j_cached_method s_free = {J_ADAPTER, "free", "()V"};
+
+static JNIEnv *j_refdb_enter(j_refdb_backend *jb)
+{
+    return j_upcall_enter(jb->vm, J_REFDB_FRAME_SIZE, GIT_ERROR_REFERENCE);
+}
+
+static int j_refdb_leave(JNIEnv *env, int error)
+{
+    return j_upcall_leave(env, error, GIT_ERROR_REFERENCE);
+}
+
+static jstring j_refdb_string(JNIEnv *env, const char *str)
+{
+    return str == NULL ? NULL : (*env)->NewStringUTF(env, str);
+}
+
+static jbyteArray j_refdb_id(JNIEnv *env, const git_oid *oid)
+{
+    return oid == NULL ? NULL : j_byte_array_from_c(env, oid->id, GIT_OID_RAWSZ);
+}
+
+static int j_refdb_exists(int *exists, git_refdb_backend *backend, const char *ref_name)
+{
+    j_refdb_backend *jb = (j_refdb_backend *)backend;
+    JNIEnv *env = j_refdb_enter(jb);
+    if (env == NULL)
+    {
+        return GIT_ERROR;
+    }
+    jint r = (*env)->CallIntMethod(env, jb->adapter, s_exists.mid, j_refdb_string(env, ref_name));
+    *exists = r > 0;
+    return j_refdb_leave(env, r < 0 ? r : 0);
+}
+
+static int j_refdb_lookup(git_reference **out, git_refdb_backend *backend, const char *ref_name)
+{
+    j_refdb_backend *jb = (j_refdb_backend *)backend;
+    JNIEnv *env = j_refdb_enter(jb);
+    if (env == NULL)
+    {
+        return GIT_ERROR;
+    }
+    jbyteArray out_id = (*env)->NewByteArray(env, GIT_OID_RAWSZ);
+    jobjectArray out_target = (*env)->NewObjectArray(env, 1, (*env)->FindClass(env, "java/lang/String"), NULL);
+    /* 0: direct, 1: symbolic, < 0: error */
+    jint r = (*env)->CallIntMethod(env, jb->adapter, s_lookup.mid, j_refdb_string(env, ref_name), out_id, out_target);
+    if ((*env)->ExceptionCheck(env) || r < 0)
+    {
+        return j_refdb_leave(env, r < 0 ? r : GIT_ERROR);
+    }
+    if (r == 1)
+    {
+        jstring target = (jstring)(*env)->GetObjectArrayElement(env, out_target, 0);
+        char *c_target = j_copy_of_jstring(env, target, false);
+        *out = git_reference__alloc_symbolic(ref_name, c_target);
+        free(c_target);
+    }
+    else
+    {
+        git_oid c_oid;
+        (*env)->GetByteArrayRegion(env, out_id, 0, GIT_OID_RAWSZ, (jbyte *)c_oid.id);
+        *out = git_reference__alloc(ref_name, &c_oid, NULL);
+    }
+    if (*out == NULL)
+    {
+        git_error_set_oom();
+        return j_refdb_leave(env, GIT_ERROR);
+    }
+    return j_refdb_leave(env, 0);
+}
+
+static void j_refdb_iterator_clear_batch(j_refdb_iterator *it)
+{
+    for (int i = 0; i < it->count; i++)
+    {
+        free(it->names[i]);
+        free(it->targets[i]);
+        it->names[i] = NULL;
+        it->targets[i] = NULL;
+    }
+    it->count = 0;
+    it->pos = 0;
+}
+
+/** make sure there is a reference at it->pos, returns GIT_ITEROVER at the end. */
+static int j_refdb_iterator_fill(j_refdb_iterator *it)
+{
+    if (it->pos < it->count)
+    {
+        return 0;
+    }
+    j_refdb_iterator_clear_batch(it);
+    if (it->done)
+    {
+        return GIT_ITEROVER;
+    }
+    JNIEnv *env = j_refdb_enter(it->jb);
+    if (env == NULL)
+    {
+        return GIT_ERROR;
+    }
+    jclass string_clz = (*env)->FindClass(env, "java/lang/String");
+    jobjectArray names = (*env)->NewObjectArray(env, J_REFDB_ITER_BATCH, string_clz, NULL);
+    jobjectArray targets = (*env)->NewObjectArray(env, J_REFDB_ITER_BATCH, string_clz, NULL);
+    jbyteArray ids = (*env)->NewByteArray(env, J_REFDB_ITER_BATCH * GIT_OID_RAWSZ);
+    jint n = (*env)->CallIntMethod(env, it->jb->adapter, s_next_batch.mid, it->iter, names, ids, targets);
+    if ((*env)->ExceptionCheck(env) || n < 0)
+    {
+        return j_refdb_leave(env, n < 0 ? n : GIT_ERROR);
+    }
+    (*env)->GetByteArrayRegion(env, ids, 0, n * GIT_OID_RAWSZ, (jbyte *)it->ids);
+    for (jint i = 0; i < n; i++)
+    {
+        jstring name = (jstring)(*env)->GetObjectArrayElement(env, names, i);
+        jstring target = (jstring)(*env)->GetObjectArrayElement(env, targets, i);
+        it->names[i] = j_copy_of_jstring(env, name, false);
+        it->targets[i] = j_copy_of_jstring(env, target, true);
+        (*env)->DeleteLocalRef(env, name);
+        if (target != NULL)
+        {
+            (*env)->DeleteLocalRef(env, target);
+        }
+    }
+    it->count = n;
+    it->done = n < J_REFDB_ITER_BATCH;
+    int e = j_refdb_leave(env, 0);
+    if (e == 0 && n == 0)
+    {
+        return GIT_ITEROVER;
+    }
+    return e;
+}
+
+static int j_refdb_iterator_next(git_reference **ref, git_reference_iterator *iter)
+{
+    j_refdb_iterator *it = (j_refdb_iterator *)iter;
+    int e = j_refdb_iterator_fill(it);
+    if (e != 0)
+    {
+        return e;
+    }
+    int i = it->pos++;
+    if (it->targets[i] != NULL)
+    {
+        *ref = git_reference__alloc_symbolic(it->names[i], it->targets[i]);
+    }
+    else
+    {
+        git_oid c_oid;
+        git_oid_fromraw(&c_oid, it->ids + (size_t)i * GIT_OID_RAWSZ);
+        *ref = git_reference__alloc(it->names[i], &c_oid, NULL);
+    }
+    if (*ref == NULL)
+    {
+        git_error_set_oom();
+        return GIT_ERROR;
+    }
+    return 0;
+}
+
+static int j_refdb_iterator_next_name(const char **ref_name, git_reference_iterator *iter)
+{
+    j_refdb_iterator *it = (j_refdb_iterator *)iter;
+    int e = j_refdb_iterator_fill(it);
+    if (e != 0)
+    {
+        return e;
+    }
+    *ref_name = it->names[it->pos++];
+    return 0;
+}
+
+static void j_refdb_iterator_free(git_reference_iterator *iter)
+{
+    j_refdb_iterator *it = (j_refdb_iterator *)iter;
+    j_refdb_iterator_clear_batch(it);
+    JNIEnv *env = j_env_of_current_thread(it->jb->vm);
+    if (env == NULL)
+    {
+        j_delete_global_ref_later(it->iter);
+    }
+    else
+    {
+        (*env)->DeleteGlobalRef(env, it->iter);
+    }
+    free(it);
+}
+
+static int j_refdb_iterator_new(git_reference_iterator **iter, git_refdb_backend *backend, const char *glob)
+{
+    j_refdb_backend *jb = (j_refdb_backend *)backend;
+    j_refdb_iterator *it = (j_refdb_iterator *)calloc(1, sizeof(j_refdb_iterator));
+    if (it == NULL)
+    {
+        git_error_set_oom();
+        return GIT_ERROR;
+    }
+    JNIEnv *env = j_refdb_enter(jb);
+    if (env == NULL)
+    {
+        free(it);
+        return GIT_ERROR;
+    }
+    jobject j_iter = (*env)->CallObjectMethod(env, jb->adapter, s_iterator.mid, j_refdb_string(env, glob));
+    if (j_iter != NULL && !(*env)->ExceptionCheck(env))
+    {
+        it->iter = (*env)->NewGlobalRef(env, j_iter);
+    }
+    int e = j_refdb_leave(env, it->iter == NULL ? GIT_ERROR : 0);
+    if (e != 0)
+    {
+        free(it);
+        return e;
+    }
+    it->jb = jb;
+    it->parent.next = j_refdb_iterator_next;
+    it->parent.next_name = j_refdb_iterator_next_name;
+    it->parent.free = j_refdb_iterator_free;
+    *iter = &it->parent;
+    return 0;
+}
+
+static int j_refdb_write(git_refdb_backend *backend, const git_reference *ref, int force, const git_signature *who, const char *message, const git_oid *old, const char *old_target)
+{
+    j_refdb_backend *jb = (j_refdb_backend *)backend;
+    JNIEnv *env = j_refdb_enter(jb);
+    if (env == NULL)
+    {
+        return GIT_ERROR;
+    }
+    jint r = (*env)->CallIntMethod(env, jb->adapter, s_write.mid,
+                                   j_refdb_string(env, git_reference_name(ref)),
+                                   j_refdb_id(env, git_reference_target(ref)),
+                                   j_refdb_string(env, git_reference_symbolic_target(ref)),
+                                   (jboolean)(force != 0),
+                                   j_refdb_id(env, old),
+                                   j_refdb_string(env, old_target));
+    return j_refdb_leave(env, r);
+}
+
+static int j_refdb_rename(git_reference **out, git_refdb_backend *backend, const char *old_name, const char *new_name, int force, const git_signature *who, const char *message)
+{
+    j_refdb_backend *jb = (j_refdb_backend *)backend;
+    JNIEnv *env = j_refdb_enter(jb);
+    if (env == NULL)
+    {
+        return GIT_ERROR;
+    }
+    jint r = (*env)->CallIntMethod(env, jb->adapter, s_rename.mid, j_refdb_string(env, old_name), j_refdb_string(env, new_name), (jboolean)(force != 0));
+    int e = j_refdb_leave(env, r);
+    return e != 0 ? e : j_refdb_lookup(out, backend, new_name);
+}
+
+static int j_refdb_del(git_refdb_backend *backend, const char *ref_name, const git_oid *old_id, const char *old_target)
+{
+    j_refdb_backend *jb = (j_refdb_backend *)backend;
+    JNIEnv *env = j_refdb_enter(jb);
+    if (env == NULL)
+    {
+        return GIT_ERROR;
+    }
+    jint r = (*env)->CallIntMethod(env, jb->adapter, s_delete.mid, j_refdb_string(env, ref_name), j_refdb_id(env, old_id), j_refdb_string(env, old_target));
+    return j_refdb_leave(env, r);
+}
+
+static int j_refdb_compress(git_refdb_backend *backend)
+{
+    j_refdb_backend *jb = (j_refdb_backend *)backend;
+    JNIEnv *env = j_refdb_enter(jb);
+    if (env == NULL)
+    {
+        return GIT_ERROR;
+    }
+    jint r = (*env)->CallIntMethod(env, jb->adapter, s_compress.mid);
+    return j_refdb_leave(env, r);
+}
+
+/* java backends keep no reflogs: report none, accept deletes and renames, refuse reads and writes. */
+static int j_refdb_has_log(git_refdb_backend *backend, const char *refname)
+{
+    return 0;
+}
+
+static int j_refdb_ensure_log(git_refdb_backend *backend, const char *refname)
+{
+    return 0;
+}
+
+static int j_refdb_reflog_read(git_reflog **out, git_refdb_backend *backend, const char *name)
+{
+    git_error_set_str(GIT_ERROR_REFERENCE, "reflogs are not supported by java refdb backends");
+    return GIT_ERROR;
+}
+
+static int j_refdb_reflog_write(git_refdb_backend *backend, git_reflog *reflog)
+{
+    git_error_set_str(GIT_ERROR_REFERENCE, "reflogs are not supported by java refdb backends");
+    return GIT_ERROR;
+}
+
+static int j_refdb_reflog_rename(git_refdb_backend *backend, const char *old_name, const char *new_name)
+{
+    return 0;
+}
+
+static int j_refdb_reflog_delete(git_refdb_backend *backend, const char *name)
+{
+    return 0;
+}
+
+static int j_refdb_lock(void **payload_out, git_refdb_backend *backend, const char *refname)
+{
+    j_refdb_backend *jb = (j_refdb_backend *)backend;
+    JNIEnv *env = j_refdb_enter(jb);
+    if (env == NULL)
+    {
+        return GIT_ERROR;
+    }
+    jint r = (*env)->CallIntMethod(env, jb->adapter, s_lock.mid, j_refdb_string(env, refname));
+    int e = j_refdb_leave(env, r);
+    if (e == 0)
+    {
+        *payload_out = j_strdup(refname);
+    }
+    return e;
+}
+
+/** success: 0 to just unlock, 1 to write `ref`, 2 to delete the reference. */
+static int j_refdb_unlock(git_refdb_backend *backend, void *payload, int success, int update_reflog, const git_reference *ref, const git_signature *sig, const char *message)
+{
+    j_refdb_backend *jb = (j_refdb_backend *)backend;
+    char *refname = (char *)payload;
+    JNIEnv *env = j_refdb_enter(jb);
+    if (env == NULL)
+    {
+        free(refname);
+        return GIT_ERROR;
+    }
+    jbyteArray id = success == 1 ? j_refdb_id(env, git_reference_target(ref)) : NULL;
+    jstring target = success == 1 ? j_refdb_string(env, git_reference_symbolic_target(ref)) : NULL;
+    jint r = (*env)->CallIntMethod(env, jb->adapter, s_unlock.mid, j_refdb_string(env, refname), (jint)success, id, target);
+    free(refname);
+    return j_refdb_leave(env, r);
+}
+
+static void j_refdb_free(git_refdb_backend *backend)
+{
+    j_refdb_backend *jb = (j_refdb_backend *)backend;
+    JNIEnv *env = j_env_of_current_thread(jb->vm);
+    if (env == NULL)
+    {
+        j_delete_global_ref_later(jb->adapter);
+    }
+    else
+    {
+        if ((*env)->PushLocalFrame(env, J_REFDB_FRAME_SIZE) == 0)
+        {
+            (*env)->CallVoidMethod(env, jb->adapter, s_free.mid);
+            j_refdb_leave(env, 0);
+        }
+        (*env)->DeleteGlobalRef(env, jb->adapter);
+    }
+    free(jb);
+}
+
+JNIEXPORT void JNICALL J_MAKE_METHOD(Refdb_jniFree)(JNIEnv *env, jclass obj, jlong refdbPtr)
+{
+    git_refdb_free((git_refdb *)refdbPtr);
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(Refdb_jniCompress)(JNIEnv *env, jclass obj, jlong refdbPtr)
+{
+    return git_refdb_compress((git_refdb *)refdbPtr);
+}
+
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(Refdb_jniNew)(JNIEnv *env, jclass obj, jlong repoPtr)
+{
+    git_refdb *c_refdb = NULL;
+    int e = git_refdb_new(&c_refdb, (git_repository *)repoPtr);
+    return j_handle_or_error(e, c_refdb);
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(Refdb_jniSetBackend)(JNIEnv *env, jclass obj, jlong refdbPtr, jobject adapter)
+{
+    /* resolve all methods up front, callbacks may run on threads where FindClass can not see our classes */
+    j_cached_method *methods[] = {&s_exists, &s_lookup, &s_iterator, &s_next_batch, &s_write, &s_rename, &s_delete, &s_compress, &s_lock, &s_unlock, &s_free};
+    for (size_t i = 0; i < sizeof(methods) / sizeof(methods[0]); i++)
+    {
+        if (j_cached_method_id(env, methods[i]) == NULL)
+        {
+            return GIT_ERROR;
+        }
+    }
+    j_refdb_backend *jb = (j_refdb_backend *)calloc(1, sizeof(j_refdb_backend));
+    if (jb == NULL)
+    {
+        git_error_set_oom();
+        return GIT_ERROR;
+    }
+    int e = git_refdb_init_backend(&jb->parent, GIT_REFDB_BACKEND_VERSION);
+    if (e == 0 && (*env)->GetJavaVM(env, &jb->vm) != JNI_OK)
+    {
+        e = GIT_ERROR;
+    }
+    if (e != 0)
+    {
+        free(jb);
+        return e;
+    }
+    jb->adapter = (*env)->NewGlobalRef(env, adapter);
+    jb->parent.exists = j_refdb_exists;
+    jb->parent.lookup = j_refdb_lookup;
+    jb->parent.iterator = j_refdb_iterator_new;
+    jb->parent.write = j_refdb_write;
+    jb->parent.rename = j_refdb_rename;
+    jb->parent.del = j_refdb_del;
+    jb->parent.compress = j_refdb_compress;
+    jb->parent.has_log = j_refdb_has_log;
+    jb->parent.ensure_log = j_refdb_ensure_log;
+    jb->parent.free = j_refdb_free;
+    jb->parent.reflog_read = j_refdb_reflog_read;
+    jb->parent.reflog_write = j_refdb_reflog_write;
+    jb->parent.reflog_rename = j_refdb_reflog_rename;
+    jb->parent.reflog_delete = j_refdb_reflog_delete;
+    jb->parent.lock = j_refdb_lock;
+    jb->parent.unlock = j_refdb_unlock;
+    e = git_refdb_set_backend((git_refdb *)refdbPtr, &jb->parent);
+    if (e != 0)
+    {
+        (*env)->DeleteGlobalRef(env, jb->adapter);
+        free(jb);
+    }
+    return e;
+}
@@ -0,0 +1,31 @@
+#include "j_common.h"
+#include <git2.h>
+#include <jni.h>
+
+#ifndef __GIT24J_REFDB_H__
+#define __GIT24J_REFDB_H__
+#ifdef __cplusplus
+extern "C"
+{
+#endif
+
+    /** void git_refdb_free(git_refdb *refdb); */
+    JNIEXPORT void JNICALL J_MAKE_METHOD(Refdb_jniFree)(JNIEnv *env, jclass obj, jlong refdbPtr);
+
+    /** int git_refdb_compress(git_refdb *refdb); */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(Refdb_jniCompress)(JNIEnv *env, jclass obj, jlong refdbPtr);
+
+    /** int git_refdb_new(git_refdb **out, git_repository *repo); */
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(Refdb_jniNew)(JNIEnv *env, jclass obj, jlong repoPtr);
+
+    /**
+     * Create a git_refdb_backend whose callbacks are forwarded to a java RefdbBackendAdapter and
+     * install it with: int git_refdb_set_backend(git_refdb *refdb, git_refdb_backend *backend);
+     * The refdb owns the backend from then on and releases the adapter when it is freed.
+     */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(Refdb_jniSetBackend)(JNIEnv *env, jclass obj, jlong refdbPtr, jobject adapter);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
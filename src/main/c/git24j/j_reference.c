@@ -0,0 +1,157 @@
+#include "j_reference.h"
+#include "j_common.h"
+#include "j_mappers.h"
+#include "j_util.h"
+#include <git2.h>
+#include <stdlib.h>
+#include <string.h>
+
+JNIEXPORT void JNICALL J_MAKE_METHOD(Reference_jniFree)(JNIEnv *env, jclass obj, jlong refPtr)
+{
+    git_reference_free((git_reference *)refPtr);
+}
+
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(Reference_jniLookup)(JNIEnv *env, jclass obj, jlong repoPtr, jstring name)
+{
+    git_reference *c_ref = NULL;
+    char *c_name = j_copy_of_jstring(env, name, false);
+    int e = git_reference_lookup(&c_ref, (git_repository *)repoPtr, c_name);
+    free(c_name);
+    return j_handle_or_error(e, c_ref);
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(Reference_jniNameToId)(JNIEnv *env, jclass obj, jobject outOid, jlong repoPtr, jstring name)
+{
+    git_oid c_oid;
+    char *c_name = j_copy_of_jstring(env, name, false);
+    int e = git_reference_name_to_id(&c_oid, (git_repository *)repoPtr, c_name);
+    if (e == 0)
+    {
+        j_git_oid_to_java(env, &c_oid, outOid);
+    }
+    free(c_name);
+    return e;
+}
+
+JNIEXPORT jstring JNICALL J_MAKE_METHOD(Reference_jniName)(JNIEnv *env, jclass obj, jlong refPtr)
+{
+    return (*env)->NewStringUTF(env, git_reference_name((git_reference *)refPtr));
+}
+
+JNIEXPORT jbyteArray JNICALL J_MAKE_METHOD(Reference_jniTarget)(JNIEnv *env, jclass obj, jlong refPtr)
+{
+    const git_oid *c_oid = git_reference_target((git_reference *)refPtr);
+    return c_oid == NULL ? NULL : j_byte_array_from_c(env, c_oid->id, GIT_OID_RAWSZ);
+}
+
+JNIEXPORT jstring JNICALL J_MAKE_METHOD(Reference_jniSymbolicTarget)(JNIEnv *env, jclass obj, jlong refPtr)
+{
+    const char *target = git_reference_symbolic_target((git_reference *)refPtr);
+    return target == NULL ? NULL : (*env)->NewStringUTF(env, target);
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(Reference_jniType)(JNIEnv *env, jclass obj, jlong refPtr)
+{
+    return git_reference_type((git_reference *)refPtr);
+}
+
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(Reference_jniResolve)(JNIEnv *env, jclass obj, jlong refPtr)
+{
+    git_reference *c_ref = NULL;
+    int e = git_reference_resolve(&c_ref, (git_reference *)refPtr);
+    return j_handle_or_error(e, c_ref);
+}
+
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(Reference_jniPeel)(JNIEnv *env, jclass obj, jlong refPtr, jint objType)
+{
+    git_object *c_obj = NULL;
+    int e = git_reference_peel(&c_obj, (git_reference *)refPtr, (git_object_t)objType);
+    return j_handle_or_error(e, c_obj);
+}
+
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(RefIterator_jniNew)(JNIEnv *env, jclass obj, jlong repoPtr)
+{
+    git_reference_iterator *c_iter = NULL;
+    int e = git_reference_iterator_new(&c_iter, (git_repository *)repoPtr);
+    return j_handle_or_error(e, c_iter);
+}
+
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(RefIterator_jniGlobNew)(JNIEnv *env, jclass obj, jlong repoPtr, jstring glob)
+{
+    git_reference_iterator *c_iter = NULL;
+    char *c_glob = j_copy_of_jstring(env, glob, false);
+    int e = git_reference_iterator_glob_new(&c_iter, (git_repository *)repoPtr, c_glob);
+    free(c_glob);
+    return j_handle_or_error(e, c_iter);
+}
+
+JNIEXPORT void JNICALL J_MAKE_METHOD(RefIterator_jniFree)(JNIEnv *env, jclass obj, jlong iterPtr)
+{
+    git_reference_iterator_free((git_reference_iterator *)iterPtr);
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(RefIterator_jniNextBatch)(JNIEnv *env, jclass obj, jlong iterPtr, jobjectArray names, jbyteArray ids, jobjectArray symbolicTargets, jintArray outError)
+{
+    git_reference_iterator *c_iter = (git_reference_iterator *)iterPtr;
+    jsize max = (*env)->GetArrayLength(env, names);
+    unsigned char *c_ids = (unsigned char *)calloc((size_t)max, GIT_OID_RAWSZ);
+    if (max > 0 && c_ids == NULL)
+    {
+        git_error_set_oom();
+        return GIT_ERROR;
+    }
+    jsize count = 0;
+    int e = 0;
+    while (count < max)
+    {
+        git_reference *c_ref = NULL;
+        e = git_reference_next(&c_ref, c_iter);
+        if (e != 0)
+        {
+            break;
+        }
+        jstring j_name = (*env)->NewStringUTF(env, git_reference_name(c_ref));
+        (*env)->SetObjectArrayElement(env, names, count, j_name);
+        (*env)->DeleteLocalRef(env, j_name);
+
+        jstring j_symbolic = NULL;
+        if (git_reference_type(c_ref) == GIT_REFERENCE_SYMBOLIC)
+        {
+            j_symbolic = (*env)->NewStringUTF(env, git_reference_symbolic_target(c_ref));
+        }
+        else
+        {
+            memcpy(c_ids + (size_t)count * GIT_OID_RAWSZ, git_reference_target(c_ref)->id, GIT_OID_RAWSZ);
+        }
+        (*env)->SetObjectArrayElement(env, symbolicTargets, count, j_symbolic);
+        if (j_symbolic != NULL)
+        {
+            (*env)->DeleteLocalRef(env, j_symbolic);
+        }
+        git_reference_free(c_ref);
+        count++;
+        if ((*env)->ExceptionCheck(env))
+        {
+            /* OutOfMemoryError pending, the batch is lost */
+            free(c_ids);
+            return 0;
+        }
+    }
+    if (count > 0)
+    {
+        (*env)->SetByteArrayRegion(env, ids, 0, count * GIT_OID_RAWSZ, (const jbyte *)c_ids);
+    }
+    free(c_ids);
+    if (e == GIT_ITEROVER || e == 0)
+    {
+        return count;
+    }
+    if (count > 0)
+    {
+        /* hand out what was copied, the error is reported by the next call */
+        jint c_error = e;
+        (*env)->SetIntArrayRegion(env, outError, 0, 1, &c_error);
+        return count;
+    }
+    return e;
+}
@@ -0,0 +1,63 @@
+#include "j_common.h"
+#include <git2.h>
+#include <jni.h>
+
+#ifndef __GIT24J_REFERENCE_H__
+#define __GIT24J_REFERENCE_H__
+#ifdef __cplusplus
+extern "C"
+{
+#endif
+
+    /** void git_reference_free(git_reference *ref); */
+    JNIEXPORT void JNICALL J_MAKE_METHOD(Reference_jniFree)(JNIEnv *env, jclass obj, jlong refPtr);
+
+    /** int git_reference_lookup(git_reference **out, git_repository *repo, const char *name); */
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(Reference_jniLookup)(JNIEnv *env, jclass obj, jlong repoPtr, jstring name);
+
+    /** int git_reference_name_to_id(git_oid *out, git_repository *repo, const char *name); */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(Reference_jniNameToId)(JNIEnv *env, jclass obj, jobject outOid, jlong repoPtr, jstring name);
+
+    /** const char * git_reference_name(const git_reference *ref); */
+    JNIEXPORT jstring JNICALL J_MAKE_METHOD(Reference_jniName)(JNIEnv *env, jclass obj, jlong refPtr);
+
+    /** const git_oid * git_reference_target(const git_reference *ref); NULL for symbolic references. */
+    JNIEXPORT jbyteArray JNICALL J_MAKE_METHOD(Reference_jniTarget)(JNIEnv *env, jclass obj, jlong refPtr);
+
+    /** const char * git_reference_symbolic_target(const git_reference *ref); NULL for direct references. */
+    JNIEXPORT jstring JNICALL J_MAKE_METHOD(Reference_jniSymbolicTarget)(JNIEnv *env, jclass obj, jlong refPtr);
+
+    /** git_reference_t git_reference_type(const git_reference *ref); */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(Reference_jniType)(JNIEnv *env, jclass obj, jlong refPtr);
+
+    /** int git_reference_resolve(git_reference **out, const git_reference *ref); */
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(Reference_jniResolve)(JNIEnv *env, jclass obj, jlong refPtr);
+
+    /** int git_reference_peel(git_object **out, const git_reference *ref, git_object_t type); */
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(Reference_jniPeel)(JNIEnv *env, jclass obj, jlong refPtr, jint objType);
+
+    /** int git_reference_iterator_new(git_reference_iterator **out, git_repository *repo); */
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(RefIterator_jniNew)(JNIEnv *env, jclass obj, jlong repoPtr);
+
+    /** int git_reference_iterator_glob_new(git_reference_iterator **out, git_repository *repo, const char *glob); */
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(RefIterator_jniGlobNew)(JNIEnv *env, jclass obj, jlong repoPtr, jstring glob);
+
+    /** void git_reference_iterator_free(git_reference_iterator *iter); */
+    JNIEXPORT void JNICALL J_MAKE_METHOD(RefIterator_jniFree)(JNIEnv *env, jclass obj, jlong iterPtr);
+
+    /**
+     * Call git_reference_next up to `names.length` times and copy each reference out of native memory:
+     *     names[i]: reference name
+     *     ids[i * GIT_OID_RAWSZ ...]: target id of direct references, zeros for symbolic ones
+     *     symbolicTargets[i]: target name of symbolic references, NULL for direct ones
+     *
+     * Returns number of references copied, 0 once the iterator is exhausted, or an error code.
+     * An error met after some references were copied is stored in outError[0] instead, and the
+     * references copied so far are returned.
+     */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(RefIterator_jniNextBatch)(JNIEnv *env, jclass obj, jlong iterPtr, jobjectArray names, jbyteArray ids, jobjectArray symbolicTargets, jintArray outError);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -1,4 +1,6 @@
 #include "j_repository.h"
+#include "j_batch.h"
+#include "j_callback.h"
 #include "j_common.h"
 #include "j_ensure.h"
 #include "j_exception.h"
@@ -6,37 +8,35 @@
 #include "j_util.h"
 #include <assert.h>
 #include <git2.h>
+#include <git2/sys/repository.h>
 #include <jni.h>
 #include <stdio.h>
 #include <string.h>
 
-JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniOpen)(JNIEnv *env, jclass obj, jobject ptrReceiver, jstring path)
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(Repository_jniOpen)(JNIEnv *env, jclass obj, jstring path)
 {
     git_repository *repo = NULL;
 
     char *c_path = j_copy_of_jstring(env, path, false);
     int error = git_repository_open(&repo, c_path);
-    j_save_c_pointer(env, (void *)repo, ptrReceiver, "set");
     free(c_path);
-    return error;
+    return j_handle_or_error(error, repo);
 }
 
-JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniOpenFromWorkTree)(JNIEnv *env, jclass obj, jobject ptrReceiver, jlong wtPtr)
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(Repository_jniOpenFromWorkTree)(JNIEnv *env, jclass obj, jlong wtPtr)
 {
     git_repository *repo = NULL;
     git_worktree *c_wt = (git_worktree *)wtPtr;
     int error = git_repository_open_from_worktree(&repo, c_wt);
-    j_save_c_pointer(env, (void *)repo, ptrReceiver, "set");
-    return error;
+    return j_handle_or_error(error, repo);
 }
 
-JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniWrapOdb)(JNIEnv *env, jclass obj, jobject ptrReceiver, jlong odbPtr)
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(Repository_jniWrapOdb)(JNIEnv *env, jclass obj, jlong odbPtr)
 {
     git_repository *repo = NULL;
     git_odb *c_odb = (git_odb *)odbPtr;
     int error = git_repository_wrap_odb(&repo, c_odb);
-    j_save_c_pointer(env, (void *)repo, ptrReceiver, "set");
-    return error;
+    return j_handle_or_error(error, repo);
 }
 
 JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniDiscover)(JNIEnv *env, jclass obj, jobject buf, jstring startPath, jint acrossFs, jstring ceilingDirs)
@@ -57,29 +57,26 @@ JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniDiscover)(JNIEnv *env, jclass
     return error;
 }
 
-JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniOpenExt)(JNIEnv *env, jclass obj, jobject ptrReceiver, jstring path, jint flags, jstring ceilingDirs)
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(Repository_jniOpenExt)(JNIEnv *env, jclass obj, jstring path, jint flags, jstring ceilingDirs)
 {
-    git_repository *repo;
+    git_repository *repo = NULL;
     char *c_path = j_copy_of_jstring(env, path, false);
     char *c_ceilingDirs = j_copy_of_jstring(env, ceilingDirs, true);
     int error = git_repository_open_ext(&repo, c_path, flags, c_ceilingDirs);
-
-    j_save_c_pointer(env, (void *)repo, ptrReceiver, "set");
     free(c_ceilingDirs);
     free(c_path);
-    return error;
+    return j_handle_or_error(error, repo);
 }
 
-JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniOpenBare)(JNIEnv *env, jclass obj, jobject ptrReceiver, jstring path)
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(Repository_jniOpenBare)(JNIEnv *env, jclass obj, jstring path)
 {
     git_repository *repo = NULL;
     char *c_path = j_copy_of_jstring(env, path, false);
 
     int error = git_repository_open_bare(&repo, c_path);
-    j_save_c_pointer(env, (void *)repo, ptrReceiver, "set");
 
     free(c_path);
-    return error;
+    return j_handle_or_error(error, repo);
 }
 
 JNIEXPORT void JNICALL J_MAKE_METHOD(Repository_jniFree)(JNIEnv *env, jclass obj, jlong repo)
@@ -88,14 +85,13 @@ JNIEXPORT void JNICALL J_MAKE_METHOD(Repository_jniFree)(JNIEnv *env, jclass obj
     git_repository_free(c_repo);
 }
 
-JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniInit)(JNIEnv *env, jclass obj, jobject outRepo, jstring path, jint isBare)
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(Repository_jniInit)(JNIEnv *env, jclass obj, jstring path, jint isBare)
 {
     git_repository *repo = NULL;
     char *c_path = j_copy_of_jstring(env, path, false);
     int error = git_repository_init(&repo, c_path, (unsigned int)isBare);
-    j_save_c_pointer(env, (void *)repo, outRepo, "set");
     free(c_path);
-    return error;
+    return j_handle_or_error(error, repo);
 }
 
 void init_options_copy_to_java(JNIEnv *env, git_repository_init_options *c_init_opts, jobject initOpts)
@@ -217,39 +213,36 @@ JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniInitOptionsInit)(JNIEnv *env,
     return error;
 }
 
-JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniInitExt)(JNIEnv *env, jclass obj, jobject outRepo, jstring repoPath, jobject initOpts)
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(Repository_jniInitExt)(JNIEnv *env, jclass obj, jstring repoPath, jobject initOpts)
 {
-    git_repository *repo;
+    git_repository *repo = NULL;
 
     char *repo_path = j_copy_of_jstring(env, repoPath, false);
 
     git_repository_init_options init_opts;
     init_options_copy_from_java(env, initOpts, &init_opts);
     int error = git_repository_init_ext(&repo, repo_path, &init_opts);
-    j_save_c_pointer(env, (void *)repo, outRepo, "set");
     git_repository_init_options_clear(env, &init_opts);
     free(repo_path);
-    return error;
+    return j_handle_or_error(error, repo);
 }
 
-JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniHead)(JNIEnv *env, jclass obj, jobject outRef, jlong repo)
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(Repository_jniHead)(JNIEnv *env, jclass obj, jlong repo)
 {
     git_repository *c_repo = (git_repository *)repo;
-    git_reference *c_ref;
+    git_reference *c_ref = NULL;
     int error = git_repository_head(&c_ref, c_repo);
-    j_save_c_pointer(env, (void *)c_repo, outRef, "set");
-    return error;
+    return j_handle_or_error(error, c_ref);
 }
 
-JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniHeadForWorktree)(JNIEnv *env, jclass obj, jobject outRef, jlong repo, jstring name)
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(Repository_jniHeadForWorktree)(JNIEnv *env, jclass obj, jlong repo, jstring name)
 {
     git_repository *c_repo = (git_repository *)repo;
     char *c_name = j_copy_of_jstring(env, name, false);
-    git_reference *c_ref;
+    git_reference *c_ref = NULL;
     int error = git_repository_head_for_worktree(&c_ref, c_repo, c_name);
-    j_save_c_pointer(env, (void *)c_ref, outRef, "set");
     free(c_name);
-    return error;
+    return j_handle_or_error(error, c_ref);
 }
 
 JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniHeadDetached)(JNIEnv *env, jclass obj, jlong repo)
@@ -316,46 +309,46 @@ JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniIsWorktree)(JNIEnv *env, jcla
     return git_repository_is_worktree((git_repository *)repoPtr);
 }
 
-JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniConfig)(JNIEnv *env, jclass obj, jobject outConfig, jlong repoPtr)
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(Repository_jniConfig)(JNIEnv *env, jclass obj, jlong repoPtr)
 {
-    git_config *c_config;
+    git_config *c_config = NULL;
     int e = git_repository_config(&c_config, (git_repository *)repoPtr);
-    j_save_c_pointer(env, (void *)c_config, outConfig, "set");
-    return e;
+    return j_handle_or_error(e, c_config);
 }
 
-JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniConfigSnapshot)(JNIEnv *env, jclass obj, jobject outConfig, jlong repoPtr)
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(Repository_jniConfigSnapshot)(JNIEnv *env, jclass obj, jlong repoPtr)
 {
-    git_config *c_config;
+    git_config *c_config = NULL;
     int e = git_repository_config_snapshot(&c_config, (git_repository *)repoPtr);
-    j_save_c_pointer(env, (void *)c_config, outConfig, "set");
-    return e;
+    return j_handle_or_error(e, c_config);
 }
 
-JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniOdb)(JNIEnv *env, jclass obj, jobject outOdb, jlong repoPtr)
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(Repository_jniOdb)(JNIEnv *env, jclass obj, jlong repoPtr)
 {
-    git_odb *c_odb;
+    git_odb *c_odb = NULL;
     int e = git_repository_odb(&c_odb, (git_repository *)repoPtr);
-    j_save_c_pointer(env, (void *)c_odb, outOdb, "set");
-    return e;
+    return j_handle_or_error(e, c_odb);
 }
 
 /** int git_repository_refdb(git_refdb **out, git_repository *repo); */
-JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniRefdb)(JNIEnv *env, jclass obj, jobject outRefdb, jlong repoPtr)
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(Repository_jniRefdb)(JNIEnv *env, jclass obj, jlong repoPtr)
 {
-    git_refdb *c_refdb;
+    git_refdb *c_refdb = NULL;
     int e = git_repository_refdb(&c_refdb, (git_repository *)repoPtr);
-    j_save_c_pointer(env, (void *)c_refdb, outRefdb, "set");
-    return e;
+    return j_handle_or_error(e, c_refdb);
+}
+
+JNIEXPORT void JNICALL J_MAKE_METHOD(Repository_jniSetRefdb)(JNIEnv *env, jclass obj, jlong repoPtr, jlong refdbPtr)
+{
+    git_repository_set_refdb((git_repository *)repoPtr, (git_refdb *)refdbPtr);
 }
 
 /** int git_repository_index(git_index **out, git_repository *repo); */
-JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniIndex)(JNIEnv *env, jclass obj, jobject outIndex, jlong repoPtr)
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(Repository_jniIndex)(JNIEnv *env, jclass obj, jlong repoPtr)
 {
-    git_index *c_index;
+    git_index *c_index = NULL;
     int e = git_repository_index(&c_index, (git_repository *)repoPtr);
-    j_save_c_pointer(env, (void *)c_index, outIndex, "set");
-    return e;
+    return j_handle_or_error(e, c_index);
 }
 
 /** int git_repository_message(git_buf *out, git_repository *repo); */
@@ -379,65 +372,121 @@ JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniStateCleanup)(JNIEnv *env, jc
     return git_repository_state_cleanup((git_repository *)repoPtr);
 }
 
-/**Pack jni objects to pass to update callback. */
-typedef struct
-{
-    JNIEnv *env;
-    jobject consumer;
-} j_cb_payload;
+static j_cached_method s_fetchhead_accept = {J_CLZ_PREFIX "Repository$FetchHeadForeachCb", "accept", "(Ljava/lang/String;[BI)I"};
+static j_cached_method s_mergehead_accept = {J_CLZ_PREFIX "Repository$MergeheadForeachCb", "accept", "([B)I"};
 
 /**int git_repository_fetchhead_foreach_cb(const char *ref_name, const char *remote_url, const git_oid *oid, unsigned int is_merge, void *payload);*/
 int j_fetchhead_foreach_cb(const char *ref_name, const char *remote_url, const git_oid *oid, unsigned int is_merge, void *payload)
 {
-    /* assert(payload && "jni callback cannot be null"); */
-    j_cb_payload *j_payload = (j_cb_payload *)payload;
-    JNIEnv *env = j_payload->env;
-    jobject consumer = j_payload->consumer;
-    jclass jclz = (*env)->GetObjectClass(env, consumer);
-    assert(jclz && "jni error: could not resolve consumer class");
-    /** int accetp(String remoteUrl, byte[] oid, int isMerge)*/
-    jmethodID accept = (*env)->GetMethodID(env, jclz, "accept", "(Ljava/lang/String;[BI)I");
-    assert(accept && "jni error: could not resolve method consumer method");
-
+    j_cb_bridge *bridge = (j_cb_bridge *)payload;
+    if (!j_cb_bridge_active(bridge))
+    {
+        return j_cb_bridge_failed(bridge) ? GIT_EUSER : 0;
+    }
+    JNIEnv *env = j_cb_enter(bridge);
+    if (env == NULL)
+    {
+        return GIT_EUSER;
+    }
+    /** int accept(String remoteUrl, byte[] oid, int isMerge)*/
     jstring j_remoteUrl = (*env)->NewStringUTF(env, remote_url);
     jbyteArray j_oidBytes = j_byte_array_from_c(env, oid->id, GIT_OID_RAWSZ);
-    int r = (*env)->CallIntMethod(env, consumer, accept, j_remoteUrl, j_oidBytes, (jint)is_merge);
-
-    (*env)->DeleteLocalRef(env, j_remoteUrl);
-    (*env)->DeleteLocalRef(env, j_oidBytes);
-    (*env)->DeleteLocalRef(env, jclz);
-    return r;
+    int r = (*env)->CallIntMethod(env, bridge->consumer, bridge->method, j_remoteUrl, j_oidBytes, (jint)is_merge);
+    int e = j_cb_leave(bridge, env);
+    return e != 0 ? e : r;
 }
 
 int j_mergehead_foreach_cb(const git_oid *oid, void *payload)
 {
-    j_cb_payload *j_payload = (j_cb_payload *)payload;
-    JNIEnv *env = j_payload->env;
-    jobject consumer = j_payload->consumer;
-    jclass jclz = (*env)->GetObjectClass(env, consumer);
-    assert(jclz && "jni error: could not resolve consumer class");
-    /** int accetp(String remoteUrl, byte[] oid, int isMerge)*/
-    jmethodID accept = (*env)->GetMethodID(env, jclz, "accept", "([B)I");
-    assert(accept && "jni error: could not resolve method consumer method");
+    j_cb_bridge *bridge = (j_cb_bridge *)payload;
+    if (!j_cb_bridge_active(bridge))
+    {
+        return j_cb_bridge_failed(bridge) ? GIT_EUSER : 0;
+    }
+    JNIEnv *env = j_cb_enter(bridge);
+    if (env == NULL)
+    {
+        return GIT_EUSER;
+    }
+    /** int accept(byte[] oid)*/
     jbyteArray bytes = j_byte_array_from_c(env, oid->id, GIT_OID_RAWSZ);
-    int r = (*env)->CallIntMethod(env, consumer, accept, bytes);
-    (*env)->DeleteLocalRef(env, bytes);
-    (*env)->DeleteGlobalRef(env, jclz);
-    return r;
+    int r = (*env)->CallIntMethod(env, bridge->consumer, bridge->method, bytes);
+    int e = j_cb_leave(bridge, env);
+    return e != 0 ? e : r;
 }
 
 /** int git_repository_fetchhead_foreach(git_repository *repo, git_repository_fetchhead_foreach_cb callback, void *payload); */
 JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniFetchheadForeach)(JNIEnv *env, jclass obj, jlong repoPtr, jobject consumer)
 {
-    j_cb_payload j_payloads = {env, consumer};
-    return git_repository_fetchhead_foreach((git_repository *)repoPtr, j_fetchhead_foreach_cb, &j_payloads);
+    j_cb_bridge bridge;
+    if (!j_cb_bridge_init(&bridge, env, consumer, &s_fetchhead_accept))
+    {
+        return GIT_ERROR;
+    }
+    int e = git_repository_fetchhead_foreach((git_repository *)repoPtr, j_fetchhead_foreach_cb, &bridge);
+    j_cb_bridge_release(&bridge);
+    return e;
 }
 
 /** int git_repository_mergehead_foreach(git_repository *repo, git_repository_mergehead_foreach_cb callback, void *payload); */
 JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniMergeheadForeach)(JNIEnv *env, jclass obj, jlong repoPtr, jobject consumer)
 {
-    j_cb_payload payloads = {env, consumer};
-    return git_repository_mergehead_foreach((git_repository *)repoPtr, j_mergehead_foreach_cb, &payloads);
+    j_cb_bridge bridge;
+    if (!j_cb_bridge_init(&bridge, env, consumer, &s_mergehead_accept))
+    {
+        return GIT_ERROR;
+    }
+    int e = git_repository_mergehead_foreach((git_repository *)repoPtr, j_mergehead_foreach_cb, &bridge);
+    j_cb_bridge_release(&bridge);
+    return e;
+}
+
+static int j_fetchhead_batched_cb(const char *ref_name, const char *remote_url, const git_oid *oid, unsigned int is_merge, void *payload)
+{
+    j_batch *batch = (j_batch *)payload;
+    int e = j_batch_add_string(batch, ref_name);
+    if (e == 0)
+    {
+        e = j_batch_add_string(batch, remote_url);
+    }
+    if (e == 0)
+    {
+        e = j_batch_add_id(batch, oid);
+    }
+    if (e == 0)
+    {
+        e = j_batch_add_int(batch, (jint)is_merge);
+    }
+    return e != 0 ? e : j_batch_end_item(batch);
+}
+
+static int j_mergehead_batched_cb(const git_oid *oid, void *payload)
+{
+    j_batch *batch = (j_batch *)payload;
+    int e = j_batch_add_id(batch, oid);
+    return e != 0 ? e : j_batch_end_item(batch);
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniFetchheadForeachBatched)(JNIEnv *env, jclass obj, jlong repoPtr, jint batchSize, jobject bridge)
+{
+    j_batch batch;
+    if (!j_batch_init(&batch, env, bridge, batchSize))
+    {
+        return GIT_ERROR;
+    }
+    int e = git_repository_fetchhead_foreach((git_repository *)repoPtr, j_fetchhead_batched_cb, &batch);
+    return j_batch_finish(&batch, e);
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniMergeheadForeachBatched)(JNIEnv *env, jclass obj, jlong repoPtr, jint batchSize, jobject bridge)
+{
+    j_batch batch;
+    if (!j_batch_init(&batch, env, bridge, batchSize))
+    {
+        return GIT_ERROR;
+    }
+    int e = git_repository_mergehead_foreach((git_repository *)repoPtr, j_mergehead_batched_cb, &batch);
+    return j_batch_finish(&batch, e);
 }
 
 /** int git_repository_hashfile(git_oid *out, git_repository *repo, const char *path, git_object_t type, const char *as_path); */
@@ -9,40 +9,40 @@ extern "C"
 #endif
 
     /** int git_repository_open(git_repository **out, const char *path); */
-    JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniOpen)(JNIEnv *env, jclass obj, jobject ptrReceiver, jstring path);
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(Repository_jniOpen)(JNIEnv *env, jclass obj, jstring path);
 
     /** int git_repository_open_from_worktree(git_repository **out, git_worktree *wt); */
-    JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniOpenFromWorkTree)(JNIEnv *env, jclass obj, jobject ptrReceiver, jlong wtPtr);
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(Repository_jniOpenFromWorkTree)(JNIEnv *env, jclass obj, jlong wtPtr);
 
     /** int git_repository_wrap_odb(git_repository **out, git_odb *odb); */
-    JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniWrapOdb)(JNIEnv *env, jclass obj, jobject ptrReceiver, jlong odbPtr);
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(Repository_jniWrapOdb)(JNIEnv *env, jclass obj, jlong odbPtr);
 
     /** int git_repository_discover(git_buf *out, const char *start_path, int across_fs, const char *ceiling_dirs); */
     JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniDiscover)(JNIEnv *env, jclass obj, jobject buf, jstring startPath, jint acrossFs, jstring ceilingDirs);
 
     /** int git_repository_open_ext(git_repository **out, const char *path, unsigned int flags, const char *ceiling_dirs); */
-    JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniOpenExt)(JNIEnv *env, jclass obj, jobject ptrReceiver, jstring path, jint flags, jstring ceilingDirs);
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(Repository_jniOpenExt)(JNIEnv *env, jclass obj, jstring path, jint flags, jstring ceilingDirs);
 
     /** int git_repository_open_bare(git_repository **out, const char *bare_path); */
-    JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniOpenBare)(JNIEnv *env, jclass obj, jobject ptrReceiver, jstring path);
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(Repository_jniOpenBare)(JNIEnv *env, jclass obj, jstring path);
 
     /** void git_repository_free(git_repository *repo); */
     JNIEXPORT void JNICALL J_MAKE_METHOD(Repository_jniFree)(JNIEnv *env, jclass obj, jlong repo);
 
     /** int git_repository_init(git_repository **out, const char *path, unsigned int is_bare); */
-    JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniInit)(JNIEnv *env, jclass obj, jobject outRepo, jstring path, jint isBare);
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(Repository_jniInit)(JNIEnv *env, jclass obj, jstring path, jint isBare);
 
     /** int git_repository_init_options_init(git_repository_init_options *opts, unsigned int version); */
     JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniInitOptionsInit)(JNIEnv *env, jclass obj, jobject initOpts, jint version);
 
     /** int git_repository_init_ext(git_repository **out, const char *repo_path, git_repository_init_options *opts); */
-    JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniInitExt)(JNIEnv *env, jclass obj, jobject outRepo, jstring repoPath, jobject initOpts);
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(Repository_jniInitExt)(JNIEnv *env, jclass obj, jstring repoPath, jobject initOpts);
 
     /** int git_repository_head(git_reference **out, git_repository *repo); */
-    JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniHead)(JNIEnv *env, jclass obj, jobject outRef, jlong repo);
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(Repository_jniHead)(JNIEnv *env, jclass obj, jlong repo);
 
     /** int git_repository_head_for_worktree(git_reference **out, git_repository *repo, const char *name); */
-    JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniHeadForWorktree)(JNIEnv *env, jclass obj, jobject outRef, jlong repo, jstring name);
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(Repository_jniHeadForWorktree)(JNIEnv *env, jclass obj, jlong repo, jstring name);
 
     /** int git_repository_head_detached(git_repository *repo); */
     JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniHeadDetached)(JNIEnv *env, jclass obj, jlong repo);
@@ -57,7 +57,7 @@ extern "C"
     JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniItemPath)(JNIEnv *env, jclass obj, jobject outBuf, jlong repo, jint item);
 
     /** int git_repository_index(git_index **out, git_repository *repo); */
-    JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniIndex)(JNIEnv *env, jclass obj, jobject outIndex, jlong repo);
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(Repository_jniIndex)(JNIEnv *env, jclass obj, jlong repo);
 
     /** const char * git_repository_path(const git_repository *repo); */
     JNIEXPORT jstring JNICALL J_MAKE_METHOD(Repository_jniPath)(JNIEnv *env, jclass obj, jlong repoPtr);
@@ -78,19 +78,19 @@ extern "C"
     JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniIsWorktree)(JNIEnv *env, jclass obj, jlong repoPtr);
 
     /** int git_repository_config(git_config **out, git_repository *repo); */
-    JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniConfig)(JNIEnv *env, jclass obj, jobject outConfig, jlong repoPtr);
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(Repository_jniConfig)(JNIEnv *env, jclass obj, jlong repoPtr);
 
     /** int git_repository_config_snapshot(git_config **out, git_repository *repo); */
-    JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniConfigSnapshot)(JNIEnv *env, jclass obj, jobject outConfig, jlong repoPtr);
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(Repository_jniConfigSnapshot)(JNIEnv *env, jclass obj, jlong repoPtr);
 
     /** int git_repository_odb(git_odb **out, git_repository *repo); */
-    JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniOdb)(JNIEnv *env, jclass obj, jobject outOdb, jlong repoPtr);
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(Repository_jniOdb)(JNIEnv *env, jclass obj, jlong repoPtr);
 
     /** int git_repository_refdb(git_refdb **out, git_repository *repo); */
-    JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniRefdb)(JNIEnv *env, jclass obj, jobject outRefdb, jlong repoPtr);
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(Repository_jniRefdb)(JNIEnv *env, jclass obj, jlong repoPtr);
 
-    /** int git_repository_index(git_index **out, git_repository *repo); */
-    JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniIndex)(JNIEnv *env, jclass obj, jobject outIndex, jlong repoPtr);
+    /** void git_repository_set_refdb(git_repository *repo, git_refdb *refdb); */
+    JNIEXPORT void JNICALL J_MAKE_METHOD(Repository_jniSetRefdb)(JNIEnv *env, jclass obj, jlong repoPtr, jlong refdbPtr);
 
     /** int git_repository_message(git_buf *out, git_repository *repo); */
     JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniMessage)(JNIEnv *env, jclass obj, jobject outBuf, jlong repoPtr);
@@ -107,6 +107,12 @@ extern "C"
     /** int git_repository_mergehead_foreach(git_repository *repo, git_repository_mergehead_foreach_cb callback, void *payload); */
     JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniMergeheadForeach)(JNIEnv *env, jclass obj, jlong repoPtr, jobject consumer);
 
+    /** git_repository_fetchhead_foreach, delivering (ref_name, remote_url, oid, is_merge) entries in batches. */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniFetchheadForeachBatched)(JNIEnv *env, jclass obj, jlong repoPtr, jint batchSize, jobject bridge);
+
+    /** git_repository_mergehead_foreach, delivering merge ids in batches. */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniMergeheadForeachBatched)(JNIEnv *env, jclass obj, jlong repoPtr, jint batchSize, jobject bridge);
+
     /** int git_repository_hashfile(git_oid *out, git_repository *repo, const char *path, git_object_t type, const char *as_path); */
     JNIEXPORT jint JNICALL J_MAKE_METHOD(Repository_jniHashfile)(JNIEnv *env, jclass obj, jobject oid, jlong repoPtr, jstring path, jint type, jstring asPath);
 
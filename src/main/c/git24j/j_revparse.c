@@ -3,45 +3,96 @@
 #include "j_mappers.h"
 #include "j_util.h"
 #include <assert.h>
+#include <stdint.h>
 
-void j_save_revspec_c_value(JNIEnv *env, git_revspec *rev_spec, jobject revSpec)
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(Revparse_jniSingle)(JNIEnv *env, jclass obj, jlong repoPtr, jstring spec)
 {
-    jclass clz = (*env)->GetObjectClass(env, revSpec);
-    assert(clz && "Could not find Revspec class from given revspec object");
-    j_call_setter_long(env, clz, revSpec, "setFrom", (long)(rev_spec->from));
-    j_call_setter_long(env, clz, revSpec, "setTo", (long)(rev_spec->to));
-    j_call_setter_int(env, clz, revSpec, "setFlags", (long)(rev_spec->flags));
-    (*env)->DeleteLocalRef(env, clz);
+    git_object *c_out = NULL;
+    char *c_spec = j_copy_of_jstring(env, spec, false);
+    int error = git_revparse_single(&c_out, (git_repository *)repoPtr, c_spec);
+    free(c_spec);
+    return j_handle_or_error(error, c_out);
 }
 
-JNIEXPORT jint JNICALL J_MAKE_METHOD(Revparse_jniCall)(JNIEnv *env, jclass obj, jobject revspec, jlong repoPtr, jstring spec)
+JNIEXPORT jint JNICALL J_MAKE_METHOD(Revparse_jniExt)(JNIEnv *env, jclass obj, jlongArray outObjAndRef, jlong repoPtr, jstring spec)
 {
-    git_revspec c_revspec;
+    git_object *c_out_obj = NULL;
+    git_reference *c_out_ref = NULL;
     char *c_spec = j_copy_of_jstring(env, spec, false);
-    int error = git_revparse(&c_revspec, (git_repository *)repoPtr, c_spec);
-    j_save_revspec_c_value(env, &c_revspec, revspec);
+    int error = git_revparse_ext(&c_out_obj, &c_out_ref, (git_repository *)repoPtr, c_spec);
+    if (error == 0)
+    {
+        jlong handles[2];
+        handles[0] = (jlong)(uintptr_t)c_out_obj;
+        handles[1] = (jlong)(uintptr_t)c_out_ref;
+        (*env)->SetLongArrayRegion(env, outObjAndRef, 0, 2, handles);
+    }
     free(c_spec);
     return error;
 }
 
-JNIEXPORT jint JNICALL J_MAKE_METHOD(Revparse_jniSingle)(JNIEnv *env, jclass obj, jobject outObj, jlong repoPtr, jstring spec)
+JNIEXPORT jint JNICALL J_MAKE_METHOD(Revparse_jniResolve)(JNIEnv *env, jclass obj, jobject outId, jobjectArray outRefNames, jlong repoPtr, jstring spec)
 {
-    git_object *c_out;
+    git_object *c_obj = NULL;
+    git_reference *c_ref = NULL;
     char *c_spec = j_copy_of_jstring(env, spec, false);
-    int error = git_revparse_single(&c_out, (git_repository *)repoPtr, c_spec);
-    j_save_c_pointer(env, (void *)c_out, outObj, "set");
+    int error = git_revparse_ext(&c_obj, &c_ref, (git_repository *)repoPtr, c_spec);
+    if (error == 0)
+    {
+        j_git_oid_to_java(env, git_object_id(c_obj), outId);
+        if (c_ref != NULL)
+        {
+            jstring name = (*env)->NewStringUTF(env, git_reference_name(c_ref));
+            (*env)->SetObjectArrayElement(env, outRefNames, 0, name);
+            (*env)->DeleteLocalRef(env, name);
+            if (git_reference_type(c_ref) == GIT_REFERENCE_SYMBOLIC)
+            {
+                jstring target = (*env)->NewStringUTF(env, git_reference_symbolic_target(c_ref));
+                (*env)->SetObjectArrayElement(env, outRefNames, 1, target);
+                (*env)->DeleteLocalRef(env, target);
+            }
+        }
+    }
+    git_object_free(c_obj);
+    git_reference_free(c_ref);
     free(c_spec);
     return error;
 }
 
-JNIEXPORT jint JNICALL J_MAKE_METHOD(Revparse_jniExt)(JNIEnv *env, jclass obj, jobject outObj, jobject outRef, jlong repoPtr, jstring spec)
+JNIEXPORT jint JNICALL J_MAKE_METHOD(Revparse_jniResolveAll)(JNIEnv *env, jclass obj, jlong repoPtr, jobjectArray specs, jbyteArray outIds, jintArray outStatus)
 {
-    git_object *c_out_obj;
-    git_reference *c_out_ref;
-    char *c_spec = j_copy_of_jstring(env, spec, false);
-    int error = git_revparse_ext(&c_out_obj, &c_out_ref, (git_repository *)repoPtr, c_spec);
-    j_save_c_pointer(env, (void *)c_out_obj, outObj, "set");
-    j_save_c_pointer(env, (void *)c_out_ref, outRef, "set");
-    free(c_spec);
-    return error;
+    jsize count = (*env)->GetArrayLength(env, specs);
+    jint resolved = 0;
+    jsize i;
+    for (i = 0; i < count; i++)
+    {
+        jint error;
+        jstring spec = (jstring)(*env)->GetObjectArrayElement(env, specs, i);
+        if (spec == NULL)
+        {
+            git_error_set_str(GIT_ERROR_INVALID, "revision spec must not be null");
+            error = GIT_EINVALIDSPEC;
+        }
+        else
+        {
+            /* no copy: the modified UTF-8 chars are only borrowed for the duration of the lookup */
+            const char *c_spec = (*env)->GetStringUTFChars(env, spec, NULL);
+            git_object *c_obj = NULL;
+            if (c_spec == NULL)
+            {
+                return resolved;
+            }
+            error = git_revparse_single(&c_obj, (git_repository *)repoPtr, c_spec);
+            (*env)->ReleaseStringUTFChars(env, spec, c_spec);
+            (*env)->DeleteLocalRef(env, spec);
+            if (error == 0)
+            {
+                (*env)->SetByteArrayRegion(env, outIds, i * GIT_OID_RAWSZ, GIT_OID_RAWSZ, (const jbyte *)git_object_id(c_obj)->id);
+                git_object_free(c_obj);
+                resolved++;
+            }
+        }
+        (*env)->SetIntArrayRegion(env, outStatus, i, 1, &error);
+    }
+    return resolved;
 }
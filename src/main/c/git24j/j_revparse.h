@@ -9,14 +9,25 @@ extern "C"
 {
 #endif
 
-    /**int git_revparse(git_revspec *revspec, git_repository *repo, const char *spec); */
-    JNIEXPORT jint JNICALL J_MAKE_METHOD(Revparse_jniCall)(JNIEnv *env, jclass obj, jobject revspec, jlong repoPtr, jstring spec);
-
     /** int git_revparse_single(git_object **out, git_repository *repo, const char *spec); */
-    JNIEXPORT jint JNICALL J_MAKE_METHOD(Revparse_jniSingle)(JNIEnv *env, jclass obj, jobject outObj, jlong repoPtr, jstring spec);
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(Revparse_jniSingle)(JNIEnv *env, jclass obj, jlong repoPtr, jstring spec);
 
     /** int git_revparse_ext(git_object **object_out, git_reference **reference_out, git_repository *repo, const char *spec); */
-    JNIEXPORT jint JNICALL J_MAKE_METHOD(Revparse_jniExt)(JNIEnv *env, jclass obj, jobject outObj, jobject outRef, jlong repoPtr, jstring spec);
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(Revparse_jniExt)(JNIEnv *env, jclass obj, jlongArray outObjAndRef, jlong repoPtr, jstring spec);
+
+    /**
+     * int git_revparse_ext(git_object **object_out, git_reference **reference_out, git_repository *repo, const char *spec);
+     * Stores the id of the object in `outId`, and the name and symbolic target of the intermediate
+     * reference, if any, in `outRefNames[0]` and `outRefNames[1]`. Both are freed before returning.
+     */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(Revparse_jniResolve)(JNIEnv *env, jclass obj, jobject outId, jobjectArray outRefNames, jlong repoPtr, jstring spec);
+
+    /**
+     * Resolve `specs` with git_revparse_single, storing the id of the i-th object at `outIds[20 * i]`
+     * and its error code, 0 on success, at `outStatus[i]`. Failing specs do not stop the others.
+     * @return number of specs that resolved
+     */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(Revparse_jniResolveAll)(JNIEnv *env, jclass obj, jlong repoPtr, jobjectArray specs, jbyteArray outIds, jintArray outStatus);
 
 #ifdef __cplusplus
 }
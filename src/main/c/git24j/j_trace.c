@@ -0,0 +1,200 @@
+#include "j_trace.h"
+#include "j_atomic.h"
+#include "j_common.h"
+#include <git2.h>
+#include <jni.h>
+#include <stdint.h>
+#include <string.h>
+#include <time.h>
+
+#define J_TRACE_MASK (J_TRACE_SLOTS - 1)
+/** messages moved per Set*ArrayRegion call. */
+#define J_TRACE_DRAIN_CHUNK 64
+
+/**
+ * One message of the ring buffer. `seq` tells whose turn it is: a writer may fill the slot when it
+ * equals the writer's position, the reader may take it when it equals that position + 1.
+ */
+typedef struct
+{
+    uint64_t seq;
+    jint level;
+    jlong time_ns;
+    char msg[J_TRACE_MSG_MAX];
+} j_trace_slot;
+
+static j_trace_slot s_slots[J_TRACE_SLOTS];
+static int s_slots_once = J_ONCE_INIT;
+/** next position to write, claimed by writers with a compare-and-set. */
+static uint64_t s_head;
+/** next position to read, only touched by the draining thread. */
+static uint64_t s_tail;
+
+static int s_sample_every = 1;
+static uint64_t s_sample_counter;
+static int s_max_per_second;
+static uint64_t s_window;
+static int s_window_count;
+static uint64_t s_dropped;
+
+static void j_trace_slots_init(void)
+{
+    for (uint64_t i = 0; i < J_TRACE_SLOTS; i++)
+    {
+        j_atomic_store_u64(&s_slots[i].seq, i, J_ATOMIC_RELAXED);
+    }
+}
+
+static int64_t j_trace_now_ns(void)
+{
+    struct timespec ts;
+#ifdef _WIN32
+    timespec_get(&ts, TIME_UTC);
+#else
+    clock_gettime(CLOCK_REALTIME, &ts);
+#endif
+    return (int64_t)ts.tv_sec * 1000000000 + ts.tv_nsec;
+}
+
+/** false if the message is over the per second limit. */
+static int j_trace_rate_ok(int64_t now_ns)
+{
+    int max = j_atomic_load_int(&s_max_per_second, J_ATOMIC_RELAXED);
+    if (max <= 0)
+    {
+        return 1;
+    }
+    uint64_t second = (uint64_t)(now_ns / 1000000000);
+    uint64_t window = j_atomic_load_u64(&s_window, J_ATOMIC_RELAXED);
+    if (window != second && j_atomic_cas_u64(&s_window, &window, second, J_ATOMIC_RELAXED))
+    {
+        /* racing writers of the old second may still count against the new one, which is fine for a limit */
+        j_atomic_store_int(&s_window_count, 0, J_ATOMIC_RELAXED);
+    }
+    return j_atomic_add_int(&s_window_count, 1, J_ATOMIC_RELAXED) < max;
+}
+
+/** Copy at most `max - 1` bytes of `src`, without cutting a UTF-8 sequence in half. */
+static void j_trace_copy_msg(char *dst, const char *src, size_t max)
+{
+    size_t len = src == NULL ? 0 : strlen(src);
+    if (len >= max)
+    {
+        len = max - 1;
+        while (len > 0 && ((unsigned char)src[len] & 0xC0) == 0x80)
+        {
+            len--;
+        }
+    }
+    if (len > 0)
+    {
+        memcpy(dst, src, len);
+    }
+    dst[len] = '\0';
+}
+
+/** git_trace_callback: runs on whatever thread libgit2 traces from, never blocks or calls into java. */
+static void j_trace_cb(git_trace_level_t level, const char *msg)
+{
+    int every = j_atomic_load_int(&s_sample_every, J_ATOMIC_RELAXED);
+    if (every > 1 && j_atomic_add_u64(&s_sample_counter, 1, J_ATOMIC_RELAXED) % every != 0)
+    {
+        return;
+    }
+    int64_t now_ns = j_trace_now_ns();
+    if (!j_trace_rate_ok(now_ns))
+    {
+        j_atomic_add_u64(&s_dropped, 1, J_ATOMIC_RELAXED);
+        return;
+    }
+    uint64_t pos = j_atomic_load_u64(&s_head, J_ATOMIC_RELAXED);
+    j_trace_slot *slot;
+    while (1)
+    {
+        slot = &s_slots[pos & J_TRACE_MASK];
+        uint64_t seq = j_atomic_load_u64(&slot->seq, J_ATOMIC_ACQUIRE);
+        int64_t diff = (int64_t)(seq - pos);
+        if (diff == 0)
+        {
+            if (j_atomic_cas_u64(&s_head, &pos, pos + 1, J_ATOMIC_RELAXED))
+            {
+                break;
+            }
+        }
+        else if (diff < 0)
+        {
+            /* full, the reader has not caught up */
+            j_atomic_add_u64(&s_dropped, 1, J_ATOMIC_RELAXED);
+            return;
+        }
+        else
+        {
+            pos = j_atomic_load_u64(&s_head, J_ATOMIC_RELAXED);
+        }
+    }
+    slot->level = (jint)level;
+    slot->time_ns = (jlong)now_ns;
+    j_trace_copy_msg(slot->msg, msg, J_TRACE_MSG_MAX);
+    j_atomic_store_u64(&slot->seq, pos + 1, J_ATOMIC_RELEASE);
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(Libgit2_jniTraceSet)(JNIEnv *env, jclass obj, jint level, jint sampleEvery, jint maxPerSecond)
+{
+    j_once(&s_slots_once, j_trace_slots_init);
+    j_atomic_store_int(&s_sample_every, sampleEvery < 1 ? 1 : sampleEvery, J_ATOMIC_RELAXED);
+    j_atomic_store_int(&s_max_per_second, maxPerSecond < 0 ? 0 : maxPerSecond, J_ATOMIC_RELAXED);
+    git_trace_level_t c_level = (git_trace_level_t)level;
+    return git_trace_set(c_level, c_level == GIT_TRACE_NONE ? NULL : j_trace_cb);
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(Libgit2_jniTraceDrain)(JNIEnv *env, jclass obj, jintArray outLevels, jlongArray outTimes, jobjectArray outMessages)
+{
+    j_once(&s_slots_once, j_trace_slots_init);
+    jsize capacity = (*env)->GetArrayLength(env, outMessages);
+    jint levels[J_TRACE_DRAIN_CHUNK];
+    jlong times[J_TRACE_DRAIN_CHUNK];
+    char msg[J_TRACE_MSG_MAX];
+    jsize count = 0;
+    while (count < capacity)
+    {
+        jsize chunk = 0;
+        while (chunk < J_TRACE_DRAIN_CHUNK && count + chunk < capacity)
+        {
+            j_trace_slot *slot = &s_slots[s_tail & J_TRACE_MASK];
+            uint64_t seq = j_atomic_load_u64(&slot->seq, J_ATOMIC_ACQUIRE);
+            if (seq != s_tail + 1)
+            {
+                /* empty, or the next writer has not finished its copy yet */
+                break;
+            }
+            levels[chunk] = slot->level;
+            times[chunk] = slot->time_ns;
+            memcpy(msg, slot->msg, J_TRACE_MSG_MAX);
+            j_atomic_store_u64(&slot->seq, s_tail + J_TRACE_SLOTS, J_ATOMIC_RELEASE);
+            s_tail++;
+
+            jstring j_msg = (*env)->NewStringUTF(env, msg);
+            if (j_msg == NULL)
+            {
+                /* OutOfMemoryError pending, the messages of this chunk are lost */
+                return count;
+            }
+            (*env)->SetObjectArrayElement(env, outMessages, count + chunk, j_msg);
+            (*env)->DeleteLocalRef(env, j_msg);
+            chunk++;
+        }
+        if (chunk == 0)
+        {
+            break;
+        }
+        (*env)->SetIntArrayRegion(env, outLevels, count, chunk, levels);
+        (*env)->SetLongArrayRegion(env, outTimes, count, chunk, times);
+        count += chunk;
+    }
+    return count;
+}
+
+JNIEXPORT jlong JNICALL J_MAKE_METHOD(Libgit2_jniTraceDropped)(JNIEnv *env, jclass obj)
+{
+    return (jlong)j_atomic_exchange_u64(&s_dropped, 0, J_ATOMIC_RELAXED);
+}
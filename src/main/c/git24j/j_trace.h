@@ -0,0 +1,39 @@
+#include "j_common.h"
+#include <jni.h>
+
+#ifndef __GIT24J_TRACE_H__
+#define __GIT24J_TRACE_H__
+#ifdef __cplusplus
+extern "C"
+{
+#endif
+
+/** number of messages the ring buffer holds, a power of two. */
+#define J_TRACE_SLOTS 1024
+/** longest message kept in a slot, including the terminating zero; longer ones are truncated. */
+#define J_TRACE_MSG_MAX 512
+
+    /**
+     * int git_trace_set(git_trace_level_t level, git_trace_callback cb);
+     *
+     * Trace messages up to `level` are copied into a fixed ring buffer without calling into java,
+     * to be picked up by jniTraceDrain. Only every `sampleEvery`-th message is kept and at most
+     * `maxPerSecond` (0 for no limit) per second; messages that find the buffer full or exceed the
+     * limit are counted as dropped. GIT_TRACE_NONE turns tracing off.
+     */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(Libgit2_jniTraceSet)(JNIEnv *env, jclass obj, jint level, jint sampleEvery, jint maxPerSecond);
+
+    /**
+     * Move up to as many buffered messages as fit into the arrays, oldest first: their level,
+     * wall clock time in nanoseconds since the epoch and text. Returns the number of messages
+     * moved. Must not be called from more than one thread at a time.
+     */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(Libgit2_jniTraceDrain)(JNIEnv *env, jclass obj, jintArray outLevels, jlongArray outTimes, jobjectArray outMessages);
+
+    /** Number of messages dropped since the last call. */
+    JNIEXPORT jlong JNICALL J_MAKE_METHOD(Libgit2_jniTraceDropped)(JNIEnv *env, jclass obj);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -0,0 +1,118 @@
+#include "j_transaction.h"
+#include "j_common.h"
+#include "j_mappers.h"
+#include <git2.h>
+#include <stdio.h>
+#include <stdlib.h>
+
+/** check that `name` currently points to `expected`, or does not exist if `expected` is zero. */
+static int j_tx_verify(git_repository *repo, const char *name, const git_oid *expected)
+{
+    char msg[512];
+    git_reference *c_ref = NULL;
+    int e = git_reference_lookup(&c_ref, repo, name);
+    if (e == GIT_ENOTFOUND && git_oid_iszero(expected))
+    {
+        git_error_clear();
+        return 0;
+    }
+    if (e == GIT_ENOTFOUND)
+    {
+        snprintf(msg, sizeof(msg), "reference '%s' does not exist", name);
+        git_error_set_str(GIT_ERROR_REFERENCE, msg);
+        return GIT_EMODIFIED;
+    }
+    if (e < 0)
+    {
+        return e;
+    }
+    const git_oid *current = git_reference_target(c_ref);
+    int matches = current != NULL && !git_oid_iszero(expected) && git_oid_equal(current, expected);
+    git_reference_free(c_ref);
+    if (matches)
+    {
+        return 0;
+    }
+    if (git_oid_iszero(expected))
+    {
+        snprintf(msg, sizeof(msg), "reference '%s' already exists", name);
+        git_error_set_str(GIT_ERROR_REFERENCE, msg);
+        return GIT_EEXISTS;
+    }
+    snprintf(msg, sizeof(msg), "reference '%s' does not have the expected value", name);
+    git_error_set_str(GIT_ERROR_REFERENCE, msg);
+    return GIT_EMODIFIED;
+}
+
+JNIEXPORT jint JNICALL J_MAKE_METHOD(RefTransaction_jniCommit)(JNIEnv *env, jclass obj, jlong repoPtr, jobjectArray names, jbyteArray oldIds, jbyteArray newIds, jintArray flags, jstring message, jintArray outFailed)
+{
+    git_repository *c_repo = (git_repository *)repoPtr;
+    jsize len = (*env)->GetArrayLength(env, names);
+    char **c_names = (char **)calloc(len > 0 ? (size_t)len : 1, sizeof(char *));
+    if (c_names == NULL)
+    {
+        git_error_set_oom();
+        return GIT_ERROR;
+    }
+    for (jsize i = 0; i < len; i++)
+    {
+        jstring name = (jstring)(*env)->GetObjectArrayElement(env, names, i);
+        c_names[i] = j_copy_of_jstring(env, name, false);
+        (*env)->DeleteLocalRef(env, name);
+    }
+    jbyte *c_old = (*env)->GetByteArrayElements(env, oldIds, NULL);
+    jbyte *c_new = (*env)->GetByteArrayElements(env, newIds, NULL);
+    jint *c_flags = (*env)->GetIntArrayElements(env, flags, NULL);
+    char *c_message = j_copy_of_jstring(env, message, true);
+    jint failed = -1;
+
+    git_transaction *c_tx = NULL;
+    int e = git_transaction_new(&c_tx, c_repo);
+    for (jsize i = 0; i < len && e == 0; i++)
+    {
+        e = git_transaction_lock_ref(c_tx, c_names[i]);
+        failed = e == 0 ? -1 : i;
+    }
+    for (jsize i = 0; i < len && e == 0; i++)
+    {
+        if (c_flags[i] & J_TX_CHECK_OLD)
+        {
+            git_oid c_oid;
+            git_oid_fromraw(&c_oid, (const unsigned char *)c_old + (size_t)i * GIT_OID_RAWSZ);
+            e = j_tx_verify(c_repo, c_names[i], &c_oid);
+            failed = e == 0 ? -1 : i;
+        }
+    }
+    for (jsize i = 0; i < len && e == 0; i++)
+    {
+        git_oid c_oid;
+        git_oid_fromraw(&c_oid, (const unsigned char *)c_new + (size_t)i * GIT_OID_RAWSZ);
+        if (git_oid_iszero(&c_oid))
+        {
+            e = git_transaction_remove(c_tx, c_names[i]);
+        }
+        else
+        {
+            e = git_transaction_set_target(c_tx, c_names[i], &c_oid, NULL, c_message);
+        }
+        failed = e == 0 ? -1 : i;
+    }
+    if (e == 0)
+    {
+        e = git_transaction_commit(c_tx);
+    }
+    /* frees the lock files of references that were not committed. */
+    git_transaction_free(c_tx);
+
+    (*env)->SetIntArrayRegion(env, outFailed, 0, 1, &failed);
+    free(c_message);
+    (*env)->ReleaseIntArrayElements(env, flags, c_flags, JNI_ABORT);
+    (*env)->ReleaseByteArrayElements(env, newIds, c_new, JNI_ABORT);
+    (*env)->ReleaseByteArrayElements(env, oldIds, c_old, JNI_ABORT);
+    for (jsize i = 0; i < len; i++)
+    {
+        free(c_names[i]);
+    }
+    free(c_names);
+    return e;
+}
@@ -0,0 +1,30 @@
+#include "j_common.h"
+#include <git2.h>
+#include <jni.h>
+
+#ifndef __GIT24J_TRANSACTION_H__
+#define __GIT24J_TRANSACTION_H__
+#ifdef __cplusplus
+extern "C"
+{
+#endif
+
+/** flag of RefTransaction_jniCommit: verify current value of the reference against old id under the lock. */
+#define J_TX_CHECK_OLD 1
+
+    /**
+     * Update `names.length` references in one git_transaction:
+     *     1. git_transaction_lock_ref every reference
+     *     2. for references flagged J_TX_CHECK_OLD, verify that the current target equals
+     *        oldIds[i] (an all-zero id means the reference must not exist)
+     *     3. git_transaction_remove if newIds[i] is all-zero, git_transaction_set_target otherwise
+     *     4. git_transaction_commit
+     * oldIds and newIds hold GIT_OID_RAWSZ bytes per reference. On failure, index of the reference
+     * that caused it is stored in outFailed[0] (-1 if the failure is not specific to one reference).
+     */
+    JNIEXPORT jint JNICALL J_MAKE_METHOD(RefTransaction_jniCommit)(JNIEnv *env, jclass obj, jlong repoPtr, jobjectArray names, jbyteArray oldIds, jbyteArray newIds, jintArray flags, jstring message, jintArray outFailed);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -3,23 +3,12 @@
 #include "j_exception.h"
 #include <assert.h>
 #include <stdio.h>
+#include <stdint.h>
 #include <string.h>
 
-void j_save_c_pointer(JNIEnv *env, void *ptr, jobject object, const char *setterName)
+jlong j_handle_or_error(int error, void *ptr)
 {
-    jclass clz = (*env)->GetObjectClass(env, object);
-    if (clz == NULL)
-    {
-        j_throw_jni_error(env, "cannot save native pointer because the receiver is not identifiable");
-    }
-
-    jmethodID method = NULL;
-    if ((method = (*env)->GetMethodID(env, clz, setterName, "(J)V")) == NULL)
-    {
-        j_throw_jni_error(env, "cannot find setter to save native pointer.");
-    }
-
-    (*env)->CallVoidMethod(env, object, method, (long)ptr);
+    return error < 0 ? (jlong)(((uint64_t)(int64_t)error << 1) | 1) : (jlong)(uintptr_t)ptr;
 }
 
 void git_strarray_of_jobject_array(JNIEnv *env, jobjectArray jstrarr, git_strarray *out)
@@ -10,9 +10,14 @@ extern "C"
 #include <jni.h>
 #include <stdbool.h>
 
-    /**TODO: move this to mappers.h */
-    /** cast c pointer to long and save it in jobject, which should have method like "object.setterName(long ptr)". */
-    void j_save_c_pointer(JNIEnv *env, void *ptr, jobject object, const char *setterName);
+    /**
+     * Pack the outcome of a call with a pointer out-parameter into the return value of a native:
+     * the pointer as an unsigned value, or `error << 1 | 1` if `error` is negative. Allocations are
+     * at least two byte aligned, so the low bit tells errors from pointers even when the high bit
+     * of a pointer is set (see Error.handleOrThrow). Saves an AtomicLong receiver and a reflective
+     * setter call per handle.
+     */
+    jlong j_handle_or_error(int error, void *ptr);
 
     /**
      * Copy values from java String[] to git_strarray.
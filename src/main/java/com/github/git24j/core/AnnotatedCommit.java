@@ -1,6 +1,5 @@
 package com.github.git24j.core;
 
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * An annotated commit contains information about how it was looked up, which may be useful for
@@ -14,7 +13,7 @@ public class AnnotatedCommit extends CAutoCloseable {
         super(rawPointer);
     }
 
-    static native int jniFromRef(AtomicLong outAc, long repoPtr, long refPtr);
+    static native long jniFromRef(long repoPtr, long refPtr);
 
     /**
      * Initialize {@link AnnotatedCommit} from a {@link Reference} of a repository.
@@ -25,13 +24,11 @@ public class AnnotatedCommit extends CAutoCloseable {
      * @throws GitException git error
      */
     public static AnnotatedCommit fromRef(Repository repo, Reference ref) {
-        AtomicLong outAc = new AtomicLong();
-        Error.throwIfNeeded(jniFromRef(outAc, repo.getRawPointer(), ref.getRawPointer()));
-        return new AnnotatedCommit(outAc.get());
+        long acPtr = Error.handleOrThrow(jniFromRef(repo.getRawPointer(), ref.getRawPointer()));
+        return new AnnotatedCommit(acPtr);
     }
 
-    static native int jniFromFetchHead(
-            AtomicLong outAc, long repoPtr, String branchName, String remoteUrl, Oid oid);
+    static native long jniFromFetchHead(long repoPtr, String branchName, String remoteUrl, Oid oid);
 
     /**
      * Initialize {@link AnnotatedCommit} from FETCH_HEAD data
@@ -44,13 +41,13 @@ public class AnnotatedCommit extends CAutoCloseable {
      */
     public static AnnotatedCommit fromFetchHead(
             Repository repo, String branchName, String remoteUrl, Oid oid) {
-        AtomicLong outAc = new AtomicLong();
-        Error.throwIfNeeded(
-                jniFromFetchHead(outAc, repo.getRawPointer(), branchName, remoteUrl, oid));
-        return new AnnotatedCommit(outAc.get());
+        long acPtr =
+                Error.handleOrThrow(
+                        jniFromFetchHead(repo.getRawPointer(), branchName, remoteUrl, oid));
+        return new AnnotatedCommit(acPtr);
     }
 
-    static native int jniLookup(AtomicLong outAc, long repoPtr, Oid oid);
+    static native long jniLookup(long repoPtr, Oid oid);
 
     /**
      * Initialize {@link AnnotatedCommit} from Oid
@@ -60,17 +57,15 @@ public class AnnotatedCommit extends CAutoCloseable {
      * @return
      */
     public static AnnotatedCommit lookup(Repository repo, Oid oid) {
-        AtomicLong outAc = new AtomicLong();
-        Error.throwIfNeeded(jniLookup(outAc, repo.getRawPointer(), oid));
-        return new AnnotatedCommit(outAc.get());
+        long acPtr = Error.handleOrThrow(jniLookup(repo.getRawPointer(), oid));
+        return new AnnotatedCommit(acPtr);
     }
 
-    static native int jniFromRevspec(AtomicLong outAc, long repoPtr, String revspec);
+    static native long jniFromRevspec(long repoPtr, String revspec);
 
     public static AnnotatedCommit fromRevspec(Repository repo, String revspec) {
-        AtomicLong outAc = new AtomicLong();
-        Error.throwIfNeeded(jniFromRevspec(outAc, repo.getRawPointer(), revspec));
-        return new AnnotatedCommit(outAc.get());
+        long acPtr = Error.handleOrThrow(jniFromRevspec(repo.getRawPointer(), revspec));
+        return new AnnotatedCommit(acPtr);
     }
 
     static native void jniId(Oid outId, long acPtr);
@@ -90,7 +85,7 @@ public class AnnotatedCommit extends CAutoCloseable {
     }
 
     @Override
-    public void close() {
-        jniFree(_rawPtr.getAndSet(0));
+    protected void freeOnce(long rawPtr) {
+        jniFree(rawPtr);
     }
 }
@@ -0,0 +1,121 @@
+package com.github.git24j.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Receives batches accumulated by {@code j_batch} in native code, decodes them and forwards them to
+ * a {@link BatchConsumer}.
+ *
+ * <p>A batch of {@code count} items is passed as three packed arrays, any of which may be null if
+ * the operation does not produce that kind of value:
+ *
+ * <ul>
+ *   <li>{@code strings}: utf-8 strings, each terminated by {@code '\0'}
+ *   <li>{@code ids}: raw oids, {@link Oid#RAWSZ} bytes each
+ *   <li>{@code ints}: int values
+ * </ul>
+ *
+ * @param <T> item type
+ */
+abstract class BatchBridge<T> {
+    private final BatchConsumer<T> consumer;
+    private boolean aborted;
+
+    BatchBridge(BatchConsumer<T> consumer) {
+        this.consumer = consumer;
+    }
+
+    /** Called from native code, see {@code j_batch_flush}. */
+    int accept(byte[] strings, byte[] ids, int[] ints, int count) {
+        List<T> items = decode(new Cursor(strings, ids, ints), count);
+        int r = consumer.accept(items);
+        if (r != 0) {
+            aborted = true;
+        }
+        return r;
+    }
+
+    /** Decode {@code count} items from {@code cursor}. */
+    abstract List<T> decode(Cursor cursor, int count);
+
+    /**
+     * Check result of the native operation this bridge was passed to.
+     *
+     * @return true if the operation ran to completion, false if the consumer aborted it
+     * @throws GitException git error
+     */
+    boolean completed(int error) {
+        if (aborted && GitException.ErrorCode.of(error) == GitException.ErrorCode.EUSER) {
+            return false;
+        }
+        Error.throwIfNeeded(error);
+        return true;
+    }
+
+    /** Sequential reader over the packed arrays of one batch. */
+    static final class Cursor {
+        private final byte[] strings;
+        private final byte[] ids;
+        private final int[] ints;
+        private int stringPos;
+        private int idPos;
+        private int intPos;
+
+        Cursor(byte[] strings, byte[] ids, int[] ints) {
+            this.strings = strings;
+            this.ids = ids;
+            this.ints = ints;
+        }
+
+        String nextString() {
+            int end = stringPos;
+            while (strings[end] != 0) {
+                end++;
+            }
+            String s = new String(strings, stringPos, end - stringPos, StandardCharsets.UTF_8);
+            stringPos = end + 1;
+            return s;
+        }
+
+        Oid nextId() {
+            byte[] raw = new byte[Oid.RAWSZ];
+            System.arraycopy(ids, idPos, raw, 0, Oid.RAWSZ);
+            idPos += Oid.RAWSZ;
+            return Oid.of(raw);
+        }
+
+        int nextInt() {
+            return ints[intPos++];
+        }
+    }
+
+    /** Bridge for operations that report one path per item. */
+    static BatchBridge<String> ofPaths(BatchConsumer<String> consumer) {
+        return new BatchBridge<String>(consumer) {
+            @Override
+            List<String> decode(Cursor cursor, int count) {
+                List<String> items = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    items.add(cursor.nextString());
+                }
+                return items;
+            }
+        };
+    }
+
+    /** Bridge for operations that report one oid per item. */
+    static BatchBridge<Oid> ofIds(BatchConsumer<Oid> consumer) {
+        return new BatchBridge<Oid>(consumer) {
+            @Override
+            List<Oid> decode(Cursor cursor, int count) {
+                List<Oid> items = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    items.add(cursor.nextId());
+                }
+                return items;
+            }
+        };
+    }
+}
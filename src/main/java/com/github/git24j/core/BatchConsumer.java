@@ -0,0 +1,24 @@
+package com.github.git24j.core;
+
+import java.util.List;
+
+/**
+ * Receives callback items in batches rather than one at a time, see e.g. {@link
+ * Index#addAll(String[], java.util.EnumSet, int, BatchConsumer)}.
+ *
+ * <p>Native code accumulates items and crosses into java once every {@code batchSize} items (and
+ * once more for the remainder), which is considerably cheaper than one upcall per item for large
+ * working trees. Since items are delivered after the fact, a batch consumer can only observe items
+ * or stop the operation, it can not veto individual items.
+ *
+ * @param <T> type of item
+ */
+@FunctionalInterface
+public interface BatchConsumer<T> {
+    /**
+     * @param batch items collected since the previous batch, never empty. The list is only valid
+     *     for the duration of the call.
+     * @return 0 to continue, non-zero to abort the operation
+     */
+    int accept(List<T> batch);
+}
@@ -0,0 +1,50 @@
+package com.github.git24j.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Layer through which the API classes reach libgit2, see {@link Bindings} for how one is chosen.
+ *
+ * <p>Handles are raw pointers in both implementations, so objects created through one binding can
+ * be passed to the JNI methods of the API classes that are not routed through a binding. Methods
+ * that create a handle return it, or the libgit2 error code encoded with {@link Error#handleOf}
+ * (see {@link Error#handleOrThrow}); methods returning {@code int} return the libgit2 error code.
+ */
+interface Binding {
+    /** Name used to select this binding, e.g. {@code jni}. */
+    String name();
+
+    /** Last error of the calling thread, or null. */
+    GitException lastError();
+
+    long repositoryOpen(String path);
+
+    void repositoryFree(long repoPtr);
+
+    String repositoryPath(long repoPtr);
+
+    long repositoryHead(long repoPtr);
+
+    long repositoryIndex(long repoPtr);
+
+    long objectLookup(long repoPtr, byte[] id, int objType);
+
+    int objectType(long objPtr);
+
+    void objectId(Oid outId, long objPtr);
+
+    int objectShortId(Buf outBuf, long objPtr);
+
+    void objectFree(long objPtr);
+
+    long revparseSingle(long repoPtr, String spec);
+
+    int indexAddByPath(long idxPtr, String path);
+
+    int indexWrite(long idxPtr);
+
+    void indexFree(long idxPtr);
+
+    /** Content of a blob, without copying it. Valid until the blob is freed. */
+    ByteBuffer blobRawContent(long blobPtr);
+}
@@ -0,0 +1,56 @@
+package com.github.git24j.core;
+
+/**
+ * Chooses the {@link Binding} once per JVM from the system property {@code git24j.binding}:
+ *
+ * <ul>
+ *   <li>{@code jni} (default): through the libgit24j glue library.
+ *   <li>{@code ffm}: libgit2 is called directly with {@code java.lang.foreign} downcalls, without
+ *       JNI marshalling. Needs JDK 22+, the multi-release jar built with the {@code jdk22} profile
+ *       and {@code --enable-native-access=ALL-UNNAMED}.
+ * </ul>
+ */
+final class Bindings {
+    static final String PROPERTY = "git24j.binding";
+    static final String FFM = "ffm";
+    private static final String FFM_CLASS = "com.github.git24j.core.FfmBinding";
+
+    private Bindings() {}
+
+    static Binding current() {
+        return Holder.CURRENT;
+    }
+
+    /**
+     * Create the binding with a given name.
+     *
+     * @throws IllegalArgumentException unknown name
+     * @throws IllegalStateException the binding is not available in this runtime
+     */
+    static Binding select(String name) {
+        if (JniBinding.NAME.equals(name)) {
+            return new JniBinding();
+        }
+        if (!FFM.equals(name)) {
+            throw new IllegalArgumentException("Unknown " + PROPERTY + ": " + name);
+        }
+        Class<?> clz;
+        try {
+            clz = Class.forName(FFM_CLASS, false, Bindings.class.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            throw new IllegalStateException(
+                    "ffm binding needs JDK 22+ and the multi-release jar", e);
+        }
+        // downcalls are linked against the libraries loaded by this class loader
+        Init.loadLibraries();
+        try {
+            return (Binding) clz.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new IllegalStateException("Could not create the ffm binding", e);
+        }
+    }
+
+    private static final class Holder {
+        static final Binding CURRENT = select(System.getProperty(PROPERTY, JniBinding.NAME));
+    }
+}
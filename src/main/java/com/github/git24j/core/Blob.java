@@ -1,7 +1,41 @@
 package com.github.git24j.core;
 
+import java.nio.ByteBuffer;
+
 public class Blob extends GitObject {
+    static native ByteBuffer jniRawContent(long blobPtr);
+
+    static native int jniCreateFromWorkdir(Oid oid, long repoPtr, String relativePath);
+
     Blob(long rawPointer) {
         super(rawPointer);
     }
+
+    /**
+     * Read a file from the working directory, apply the repository filters and write it to the
+     * object database as a blob.
+     *
+     * @param repo repository where the blob will be written, must not be bare
+     * @param relativePath file path relative to the working directory
+     * @return id of the written blob
+     * @throws GitException git errors
+     */
+    public static Oid createFromWorkdir(Repository repo, String relativePath) {
+        Oid oid = new Oid(0);
+        Error.throwIfNeeded(
+                repo.withPointerInt(
+                        repoPtr -> jniCreateFromWorkdir(oid, repoPtr, relativePath)));
+        return oid;
+    }
+
+    /**
+     * Get a read-only view of the content of this blob. Nothing is copied: the buffer reads the
+     * memory libgit2 holds for the blob and must not be used after the blob is closed.
+     *
+     * @return read-only buffer of the raw content
+     */
+    public ByteBuffer rawContent() {
+        return withPointer(blobPtr -> Bindings.current().blobRawContent(blobPtr))
+                .asReadOnlyBuffer();
+    }
 }
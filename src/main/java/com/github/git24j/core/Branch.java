@@ -1,10 +1,8 @@
 package com.github.git24j.core;
 
-import java.util.concurrent.atomic.AtomicLong;
 
 public class Branch {
-    static native int jniCreate(
-            AtomicLong outRef, long repoPtr, String branchName, long targetPtr, int force);
+    static native long jniCreate(long repoPtr, String branchName, long targetPtr, int force);
 
     /**
      * Create a new branch pointing at a target commit.
@@ -20,9 +18,9 @@ public class Branch {
      * @throws IllegalStateException if repository has already been closed.
      */
     public static Reference create(Repository repo, String branchName, Commit target, int force) {
-        AtomicLong outRef = new AtomicLong();
-        Error.throwIfNeeded(
-                jniCreate(outRef, repo.getRawPointer(), branchName, target.getRawPointer(), force));
-        return new Reference(outRef.get());
+        long refPtr =
+                Error.handleOrThrow(
+                        jniCreate(repo.getRawPointer(), branchName, target.getRawPointer(), force));
+        return new Reference(refPtr);
     }
 }
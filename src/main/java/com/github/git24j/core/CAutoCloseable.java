@@ -1,21 +1,44 @@
 package com.github.git24j.core;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import java.util.function.LongFunction;
+import java.util.function.LongToIntFunction;
+import java.util.function.LongUnaryOperator;
 
-/** Base bridge that manages raw c pointer. */
+/**
+ * Base bridge that manages raw c pointer.
+ *
+ * <p>Native calls made through {@link #acquire()}/{@link #release()} (or the {@code withPointer}
+ * helpers) are counted, and {@link #close()} never frees the pointer under them: if calls are in
+ * flight, the last one to finish frees it. An object can therefore be shared by threads and closed
+ * by any of them. Uncontended, a call costs one compare-and-set and one decrement.
+ */
 public abstract class CAutoCloseable implements AutoCloseable {
+    private static final AtomicIntegerFieldUpdater<CAutoCloseable> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(CAutoCloseable.class, "_state");
+    /** set in {@link #_state} by close, the remaining bits count the calls in flight. */
+    private static final int CLOSED = Integer.MIN_VALUE;
+
     /** C Pointer. */
     protected final AtomicLong _rawPtr = new AtomicLong();
 
+    private volatile int _state;
+
     public CAutoCloseable(long rawPointer) {
         _rawPtr.set(rawPointer);
     }
 
+    /** Free the c pointer, called once, after close and the last call in flight. */
+    protected abstract void freeOnce(long rawPtr);
+
     /**
-     * Get raw pointer of the repo.
+     * Get raw pointer of the object without guarding it, for callers that keep the object open
+     * themselves. Prefer {@link #acquire()} when another thread may close it.
      *
      * @return pointer value in long
-     * @throws IllegalStateException if repository has already been closed.
+     * @throws IllegalStateException if object has already been closed.
      */
     long getRawPointer() {
         long ptr = _rawPtr.get();
@@ -25,4 +48,108 @@ public abstract class CAutoCloseable implements AutoCloseable {
         }
         return ptr;
     }
+
+    /**
+     * Get the pointer for a native call, it stays valid until the matching {@link #release()}.
+     *
+     * @return pointer value in long
+     * @throws IllegalStateException if object has already been closed.
+     */
+    long acquire() {
+        while (true) {
+            int state = _state;
+            if ((state & CLOSED) != 0) {
+                throw new IllegalStateException(
+                        "Object has invalid memory address, likely it has been closed.");
+            }
+            if (STATE.compareAndSet(this, state, state + 1)) {
+                break;
+            }
+        }
+        long ptr = _rawPtr.get();
+        if (ptr == 0) {
+            release();
+            throw new IllegalStateException("Object has invalid memory address.");
+        }
+        return ptr;
+    }
+
+    /** End a call started by {@link #acquire()}, freeing the pointer if it was closed meanwhile. */
+    void release() {
+        if (STATE.decrementAndGet(this) == CLOSED) {
+            free();
+        }
+    }
+
+    /** Call {@code call} with the pointer, guarded by {@link #acquire()}/{@link #release()}. */
+    <T> T withPointer(LongFunction<T> call) {
+        long ptr = acquire();
+        try {
+            return call.apply(ptr);
+        } finally {
+            release();
+        }
+    }
+
+    /** Int version of {@link #withPointer}. */
+    int withPointerInt(LongToIntFunction call) {
+        long ptr = acquire();
+        try {
+            return call.applyAsInt(ptr);
+        } finally {
+            release();
+        }
+    }
+
+    /** Long version of {@link #withPointer}. */
+    long withPointerLong(LongUnaryOperator call) {
+        long ptr = acquire();
+        try {
+            return call.applyAsLong(ptr);
+        } finally {
+            release();
+        }
+    }
+
+    /** Void version of {@link #withPointer}. */
+    void withPointerDo(LongConsumer call) {
+        long ptr = acquire();
+        try {
+            call.accept(ptr);
+        } finally {
+            release();
+        }
+    }
+
+    /** @return true once {@link #close()} was called, the pointer may still wait for calls. */
+    boolean isClosed() {
+        return (_state & CLOSED) != 0;
+    }
+
+    /**
+     * Free the c pointer, or leave it to the last call in flight. Further calls are rejected;
+     * closing again is a no-op.
+     */
+    @Override
+    public void close() {
+        while (true) {
+            int state = _state;
+            if ((state & CLOSED) != 0) {
+                return;
+            }
+            if (STATE.compareAndSet(this, state, state | CLOSED)) {
+                if (state == 0) {
+                    free();
+                }
+                return;
+            }
+        }
+    }
+
+    private void free() {
+        long ptr = _rawPtr.getAndSet(0);
+        if (ptr != 0) {
+            freeOnce(ptr);
+        }
+    }
 }
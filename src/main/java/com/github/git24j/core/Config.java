@@ -6,6 +6,7 @@ import java.util.Optional;
 
 /** Memory representation of a set of config files */
 public class Config extends CAutoCloseable {
+    private static final Metrics.Operation GET_STRING = Metrics.operation("Config.getString");
 
     public Config(long rawPointer) {
         super(rawPointer);
@@ -32,8 +33,8 @@ public class Config extends CAutoCloseable {
     }
 
     @Override
-    public void close() {
-        jniFree(_rawPtr.getAndSet(0));
+    protected void freeOnce(long rawPtr) {
+        jniFree(rawPtr);
     }
 
     /**
@@ -44,7 +45,30 @@ public class Config extends CAutoCloseable {
      */
     public Optional<String> getString(String name) {
         Buf buf = new Buf();
-        Error.throwIfNeeded(jniGetStringBuf(buf, getRawPointer(), name));
+        long start = Metrics.start();
+        int e = jniGetStringBuf(buf, getRawPointer(), name);
+        GET_STRING.record(start, e);
+        Error.throwIfNeeded(e);
+        return buf.getString();
+    }
+
+    /**
+     * Like {@link #getString}, but a variable that is not set is reported as empty instead of
+     * with an exception.
+     *
+     * @param name the variable's name
+     * @return value of the variable, or empty if it is not set
+     * @throws GitException git errors other than ENOTFOUND
+     */
+    public Optional<String> tryGetString(String name) {
+        Buf buf = new Buf();
+        long start = Metrics.start();
+        int e = jniGetStringBuf(buf, getRawPointer(), name);
+        GET_STRING.record(start, e);
+        if (e == GitException.ErrorCode.ENOTFOUND.getValue()) {
+            return Optional.empty();
+        }
+        Error.throwIfNeeded(e);
         return buf.getString();
     }
 }
@@ -16,11 +16,72 @@ public class Error {
      */
     public static void throwIfNeeded(int error) {
         if (error < 0) {
-            GitException e = jniLast();
+            GitException e = Bindings.current().lastError();
             if (e != null) {
                 e.setCode(error);
                 throw e;
             }
         }
     }
+
+    /**
+     * Unpack the result of a native that returns a handle instead of filling an out-parameter.
+     * Pointers are passed as they are and errors as {@code error << 1 | 1} (see {@link
+     * #handleOf}): allocations are at least two byte aligned, so an odd value is never a pointer,
+     * while a pointer with the high bit set, e.g. above 2GB in a 32 bit process or tagged on
+     * Android, is negative but no error.
+     *
+     * @param handleOrError pointer or encoded error code
+     * @return the pointer
+     * @throws GitException if {@code handleOrError} is an error code
+     */
+    static long handleOrThrow(long handleOrError) {
+        int error = codeOf(handleOrError);
+        if (error != 0) {
+            throw exceptionOf(error);
+        }
+        return handleOrError;
+    }
+
+    /** Error code carried by the result of a handle returning native, 0 if it is a pointer. */
+    static int codeOf(long handleOrError) {
+        return (handleOrError & 1) != 0 ? (int) (handleOrError >> 1) : 0;
+    }
+
+    /** Encode a negative error code as the result of a handle returning native. */
+    static long handleOf(int error) {
+        return ((long) error << 1) | 1;
+    }
+
+    /**
+     * Exception for an error code, built right away from the last error of this thread so that it
+     * can be thrown later.
+     *
+     * @param error negative error code
+     * @return exception with the recorded message, or a generic one if none was recorded
+     */
+    static GitException exceptionOf(int error) {
+        GitException e = Bindings.current().lastError();
+        if (e == null) {
+            e = new GitException(GitException.ErrorClass.NONE.ordinal(), "git error " + error);
+        }
+        e.setCode(error);
+        return e;
+    }
+
+    /**
+     * Like {@link #handleOrThrow}, but ENOTFOUND yields 0 instead of an exception. The message of
+     * a not found error is never fetched, so probing for something that does not exist costs no
+     * more than finding it.
+     *
+     * @param handleOrError pointer or encoded error code
+     * @return the pointer, or 0 if nothing was found
+     * @throws GitException if {@code handleOrError} is another error code
+     */
+    static long handleOrZero(long handleOrError) {
+        if (codeOf(handleOrError) == GitException.ErrorCode.ENOTFOUND.getValue()) {
+            return 0;
+        }
+        return handleOrThrow(handleOrError);
+    }
 }
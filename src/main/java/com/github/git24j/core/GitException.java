@@ -2,6 +2,7 @@ package com.github.git24j.core;
 
 /** @author shijing */
 public class GitException extends RuntimeException {
+    private static volatile boolean stackless = Boolean.getBoolean("git24j.stacklessExceptions");
 
     private final String message;
     private ErrorCode code;
@@ -19,6 +20,25 @@ public class GitException extends RuntimeException {
         this.message = "";
     }
 
+    /**
+     * Stop recording stack traces in new exceptions. Filling in the stack is the dominating cost of
+     * an exception; services that treat git errors as expected outcomes can turn it off, at the
+     * price of traces that show only the message. Defaults to the system property {@code
+     * git24j.stacklessExceptions}.
+     */
+    public static void setStackless(boolean enabled) {
+        stackless = enabled;
+    }
+
+    public static boolean isStackless() {
+        return stackless;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return stackless ? this : super.fillInStackTrace();
+    }
+
     /**
      * @see {@code git_error_t }
      * @return git error class or null if we could not retrieve error class.
@@ -112,6 +132,11 @@ public class GitException extends RuntimeException {
             this.code = code;
         }
 
+        /** Raw libgit2 error code. */
+        public int getValue() {
+            return code;
+        }
+
         public static ErrorCode of(int gitErrorCode) {
             for (ErrorCode c : ErrorCode.values()) {
                 if (c.code == gitErrorCode) {
@@ -1,33 +1,34 @@
 package com.github.git24j.core;
 
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.Optional;
 
 /** Generic git object. */
-public class GitObject implements AutoCloseable {
-    private final AtomicLong rawPtr = new AtomicLong();
+public class GitObject extends CAutoCloseable {
+    private static final Metrics.Operation LOOKUP = Metrics.operation("GitObject.lookup");
 
     protected GitObject(long rawPointer) {
-        rawPtr.set(rawPointer);
+        super(rawPointer);
     }
 
-    static native int jniFree(long objPtr);
+    // GENERATED NATIVES BEGIN: scripts/gen_bindings.py
+    static native void jniFree(long objectPtr);
 
     static native int jniType(long objPtr);
 
-    static native long jniId(long objPtr);
+    static native byte[] jniId(long objPtr);
 
-    static native int jniShortId(Buf buf, long objPtr);
+    static native int jniShortId(Buf out, long objPtr);
 
-    static native int jniLookup(AtomicLong outObj, long repoPtr, long oidPtr, int objType);
+    static native long jniOwner(long objPtr);
 
-    static native int jniLookupPrefix(
-            AtomicLong outObj, long repoPtr, long oidPtr, int len, int objType);
+    static native long jniPeel(long objectPtr, int targetType);
 
-    static native long jniOwner(long objPtr);
+    static native long jniDup(long sourcePtr);
+    // GENERATED NATIVES END
 
-    static native int jniPeel(AtomicLong outObj, long objPtr, int objType);
+    static native long jniLookup(long repoPtr, byte[] id, int objType);
 
-    static native int jniDup(AtomicLong outObj, long objPtr);
+    static native long jniLookupPrefix(long repoPtr, byte[] id, int len, int objType);
 
     /**
      * Create Right object according to GitObject's type. We need this because c does not have
@@ -39,7 +40,7 @@ public class GitObject implements AutoCloseable {
         if (objPtr == 0) {
             throw new IllegalStateException("object address is NULL, has it been closed?");
         }
-        switch (Type.valueOf(jniType(objPtr))) {
+        switch (Type.valueOf(Bindings.current().objectType(objPtr))) {
             case INVALID:
                 throw new IllegalStateException("invalid git object");
             case COMMIT:
@@ -64,10 +65,31 @@ public class GitObject implements AutoCloseable {
      * @throws IllegalStateException required objects are not open or have been closed.
      */
     public static GitObject lookup(Repository repository, Oid oid, Type type) {
-        AtomicLong outObj = new AtomicLong();
-        Error.throwIfNeeded(
-                jniLookup(outObj, repository.getRawPointer(), oid.getRawPointer(), type.value));
-        return GitObject.create(outObj.get());
+        long start = Metrics.start();
+        long objPtr =
+                repository.withPointerLong(
+                        repoPtr ->
+                                Bindings.current().objectLookup(repoPtr, oid.getId(), type.value));
+        LOOKUP.record(start, Error.codeOf(objPtr), repository, 1);
+        return GitObject.create(Error.handleOrThrow(objPtr));
+    }
+
+    /**
+     * Like {@link #lookup}, but a missing object is a normal outcome: no exception is created for
+     * it, which makes probing for objects cheap.
+     *
+     * @return found object, or empty if there is no object with this id and type
+     * @throws GitException git errors other than ENOTFOUND
+     */
+    public static Optional<GitObject> tryLookup(Repository repository, Oid oid, Type type) {
+        long start = Metrics.start();
+        long objPtr =
+                repository.withPointerLong(
+                        repoPtr ->
+                                Bindings.current().objectLookup(repoPtr, oid.getId(), type.value));
+        LOOKUP.record(start, Error.codeOf(objPtr), repository, 1);
+        objPtr = Error.handleOrZero(objPtr);
+        return objPtr == 0 ? Optional.empty() : Optional.of(GitObject.create(objPtr));
     }
 
     /**
@@ -82,37 +104,37 @@ public class GitObject implements AutoCloseable {
      * @return looked-up object
      */
     public static GitObject lookupPrefix(Repository repository, Oid oid, int len, Type type) {
-        AtomicLong outObj = new AtomicLong();
-        Error.throwIfNeeded(
-                jniLookupPrefix(
-                        outObj, repository.getRawPointer(), oid.getRawPointer(), len, type.value));
-        return GitObject.create(outObj.get());
+        long objPtr =
+                Error.handleOrThrow(
+                        repository.withPointerLong(
+                                repoPtr -> jniLookupPrefix(repoPtr, oid.getId(), len, type.value)));
+        return GitObject.create(objPtr);
     }
 
     /**
-     * Get raw pointer of the repo.
+     * Like {@link #lookupPrefix}, but without creating an exception if no object matches.
      *
-     * @return pointer value in long
-     * @throws IllegalStateException if repository has already been closed.
+     * @return looked-up object, or empty if no object of this type has the prefix
+     * @throws GitException git errors other than ENOTFOUND, e.g. EAMBIGUOUS
      */
-    long getRawPointer() {
-        long ptr = rawPtr.get();
-        if (ptr == 0) {
-            throw new IllegalStateException(
-                    "Object has invalid memory address, likely it has been closed.");
-        }
-        return ptr;
+    public static Optional<GitObject> tryLookupPrefix(
+            Repository repository, Oid oid, int len, Type type) {
+        long objPtr =
+                Error.handleOrZero(
+                        repository.withPointerLong(
+                                repoPtr -> jniLookupPrefix(repoPtr, oid.getId(), len, type.value)));
+        return objPtr == 0 ? Optional.empty() : Optional.of(GitObject.create(objPtr));
     }
 
     /** Free the given reference. */
     @Override
-    public void close() {
-        jniFree(rawPtr.getAndSet(0));
+    protected void freeOnce(long rawPtr) {
+        Bindings.current().objectFree(rawPtr);
     }
 
     /** TODO: change to type() Get the object type of an object. */
     public Type type() {
-        return Type.valueOf(jniType(rawPtr.get()));
+        return Type.valueOf(withPointerInt(objPtr -> Bindings.current().objectType(objPtr)));
     }
 
     /**
@@ -121,7 +143,9 @@ public class GitObject implements AutoCloseable {
      * @return the SHA1 id
      */
     public Oid id() {
-        return new Oid(jniId(rawPtr.get()));
+        Oid oid = new Oid();
+        withPointerDo(objPtr -> Bindings.current().objectId(oid, objPtr));
+        return oid;
     }
 
     /**
@@ -132,7 +156,8 @@ public class GitObject implements AutoCloseable {
      */
     public Buf shortId() {
         Buf buf = new Buf();
-        Error.throwIfNeeded(jniShortId(buf, rawPtr.get()));
+        Error.throwIfNeeded(
+                withPointerInt(objPtr -> Bindings.current().objectShortId(buf, objPtr)));
         return buf;
     }
 
@@ -143,9 +168,9 @@ public class GitObject implements AutoCloseable {
      * @return Peeled GitObject (need to be closed to avoid resource leak).
      */
     public GitObject peel(Type targetType) {
-        AtomicLong outPtr = new AtomicLong();
-        Error.throwIfNeeded(jniPeel(outPtr, getRawPointer(), targetType.value));
-        return new GitObject(outPtr.get());
+        long ptr =
+                Error.handleOrThrow(withPointerLong(objPtr -> jniPeel(objPtr, targetType.value)));
+        return GitObject.create(ptr);
     }
 
     /**
@@ -154,9 +179,8 @@ public class GitObject implements AutoCloseable {
      * @return copy of the object.
      */
     public GitObject dup() {
-        AtomicLong out = new AtomicLong();
-        Error.throwIfNeeded(jniDup(out, getRawPointer()));
-        return new GitObject(out.get());
+        long ptr = Error.handleOrThrow(withPointerLong(GitObject::jniDup));
+        return GitObject.create(ptr);
     }
 
     /**
@@ -166,7 +190,7 @@ public class GitObject implements AutoCloseable {
      * @return the repository who owns this object
      */
     public Repository owner() {
-        return Repository.ofRaw(jniOwner(rawPtr.get()));
+        return Repository.ofRaw(withPointerLong(GitObject::jniOwner));
     }
 
     public enum Type {
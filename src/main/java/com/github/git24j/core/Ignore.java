@@ -0,0 +1,21 @@
+package com.github.git24j.core;
+
+/** Delegate git_ignore_* methods. */
+public class Ignore {
+    static native int jniPathIsIgnored(long repoPtr, String path);
+
+    /**
+     * Test if the ignore rules apply to a given path.
+     *
+     * @param repository a repository object
+     * @param path the file to check ignores for, relative to the repo's workdir. Directories should
+     *     end with a '/'.
+     * @return true if the path is ignored
+     * @throws GitException git error
+     */
+    public static boolean pathIsIgnored(Repository repository, String path) {
+        int r = repository.withPointerInt(repoPtr -> jniPathIsIgnored(repoPtr, path));
+        Error.throwIfNeeded(r);
+        return r == 1;
+    }
+}
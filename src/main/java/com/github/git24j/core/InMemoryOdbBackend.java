@@ -0,0 +1,276 @@
+package com.github.git24j.core;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * {@link OdbBackend} that keeps objects in memory.
+ *
+ * <p>Object contents are appended to off-heap slabs (direct buffers), so they neither count
+ * against nor get copied by the java heap and can be handed to native code without a copy. Objects
+ * are located through an open-addressing hash table keyed by the raw object id, which needs no
+ * per-object java allocation. Objects can not be removed individually; {@link #close()} releases
+ * everything.
+ *
+ * <pre>{@code
+ * try (Odb odb = Odb.create()) {
+ *     odb.addBackend(new InMemoryOdbBackend(), 1);
+ *     try (Repository repo = Repository.wrapOdb(odb)) {
+ *         ...
+ *     }
+ * }
+ * }</pre>
+ */
+public class InMemoryOdbBackend implements OdbBackend {
+    /** Default size of a slab. */
+    public static final int DEFAULT_SLAB_SIZE = 4 << 20;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int slabSize;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    /** index of the slab new objects are appended to, -1 if none. */
+    private int current = -1;
+
+    /** raw ids, {@link Oid#RAWSZ} bytes per slot. */
+    private byte[] keys;
+    /** {@code (slab + 1) << 32 | offset}, 0 for an empty slot. */
+    private long[] locations;
+
+    private int[] sizes;
+    private byte[] types;
+    private int count;
+    private long dataSize;
+
+    /**
+     * @param slabSize size of the direct buffers objects are appended to. Objects larger than a
+     *     quarter slab get a buffer of their own.
+     */
+    public InMemoryOdbBackend(int slabSize) {
+        if (slabSize <= 0) {
+            throw new IllegalArgumentException("slabSize must be positive: " + slabSize);
+        }
+        this.slabSize = slabSize;
+        allocateTable(INITIAL_CAPACITY);
+    }
+
+    public InMemoryOdbBackend() {
+        this(DEFAULT_SLAB_SIZE);
+    }
+
+    @Override
+    public RawObject read(Oid id) {
+        lock.readLock().lock();
+        try {
+            int slot = find(id.getId());
+            if (slot < 0) {
+                return null;
+            }
+            long loc = locations[slot];
+            ByteBuffer data = slabs.get((int) (loc >>> 32) - 1).asReadOnlyBuffer();
+            int offset = (int) loc;
+            data.limit(offset + sizes[slot]).position(offset);
+            return new RawObject(GitObject.Type.valueOf(types[slot]), data.slice());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public RawObject readHeader(Oid id) {
+        lock.readLock().lock();
+        try {
+            int slot = find(id.getId());
+            return slot < 0
+                    ? null
+                    : new RawObject(GitObject.Type.valueOf(types[slot]), sizes[slot]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean exists(Oid id) {
+        lock.readLock().lock();
+        try {
+            return find(id.getId()) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void write(Oid id, GitObject.Type type, ByteBuffer data) {
+        byte[] key = id.getId();
+        int size = data.remaining();
+        lock.writeLock().lock();
+        try {
+            if (find(key) >= 0) {
+                return;
+            }
+            if ((count + 1) * 2 > locations.length) {
+                rehash(locations.length * 2);
+            }
+            long loc = append(data, size);
+            int slot = probe(key);
+            System.arraycopy(key, 0, keys, slot * Oid.RAWSZ, Oid.RAWSZ);
+            locations[slot] = loc;
+            sizes[slot] = size;
+            types[slot] = (byte) type.getValue();
+            count++;
+            dataSize += size;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void forEach(Predicate<Oid> visitor) {
+        List<Oid> ids;
+        lock.readLock().lock();
+        try {
+            ids = new ArrayList<>(count);
+            byte[] raw = new byte[Oid.RAWSZ];
+            for (int slot = 0; slot < locations.length; slot++) {
+                if (locations[slot] != 0) {
+                    System.arraycopy(keys, slot * Oid.RAWSZ, raw, 0, Oid.RAWSZ);
+                    ids.add(Oid.of(raw));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (Oid id : ids) {
+            if (!visitor.test(id)) {
+                return;
+            }
+        }
+    }
+
+    /** Number of objects stored. */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Total size of stored object contents in bytes. */
+    public long dataSize() {
+        lock.readLock().lock();
+        try {
+            return dataSize;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Drop all objects and release their memory. */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            slabs.clear();
+            current = -1;
+            count = 0;
+            dataSize = 0;
+            allocateTable(INITIAL_CAPACITY);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Copy data into a slab, returns its location. */
+    private long append(ByteBuffer data, int size) {
+        int slab;
+        int offset;
+        if (size > slabSize / 4) {
+            slabs.add(ByteBuffer.allocateDirect(size));
+            slab = slabs.size() - 1;
+            offset = 0;
+        } else {
+            if (current < 0 || slabs.get(current).remaining() < size) {
+                slabs.add(ByteBuffer.allocateDirect(slabSize));
+                current = slabs.size() - 1;
+            }
+            slab = current;
+            offset = slabs.get(slab).position();
+        }
+        ByteBuffer target = slabs.get(slab);
+        target.position(offset);
+        target.put(data.duplicate());
+        return ((long) (slab + 1) << 32) | offset;
+    }
+
+    /** Slot holding {@code key}, or -1. */
+    private int find(byte[] key) {
+        int mask = locations.length - 1;
+        for (int slot = hash(key) & mask; locations[slot] != 0; slot = (slot + 1) & mask) {
+            if (keyEquals(slot, key)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /** First empty slot for {@code key}, which must not be in the table. */
+    private int probe(byte[] key) {
+        int mask = locations.length - 1;
+        int slot = hash(key) & mask;
+        while (locations[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private boolean keyEquals(int slot, byte[] key) {
+        int base = slot * Oid.RAWSZ;
+        for (int i = 0; i < Oid.RAWSZ; i++) {
+            if (keys[base + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash(int capacity) {
+        byte[] oldKeys = keys;
+        long[] oldLocations = locations;
+        int[] oldSizes = sizes;
+        byte[] oldTypes = types;
+        allocateTable(capacity);
+        byte[] key = new byte[Oid.RAWSZ];
+        for (int old = 0; old < oldLocations.length; old++) {
+            if (oldLocations[old] == 0) {
+                continue;
+            }
+            System.arraycopy(oldKeys, old * Oid.RAWSZ, key, 0, Oid.RAWSZ);
+            int slot = probe(key);
+            System.arraycopy(key, 0, keys, slot * Oid.RAWSZ, Oid.RAWSZ);
+            locations[slot] = oldLocations[old];
+            sizes[slot] = oldSizes[old];
+            types[slot] = oldTypes[old];
+        }
+    }
+
+    private void allocateTable(int capacity) {
+        keys = new byte[capacity * Oid.RAWSZ];
+        locations = new long[capacity];
+        sizes = new int[capacity];
+        types = new byte[capacity];
+    }
+
+    /** Object ids are SHA-1 hashes, their leading bytes are already uniformly distributed. */
+    private static int hash(byte[] key) {
+        return (key[0] & 0xff) << 24
+                | (key[1] & 0xff) << 16
+                | (key[2] & 0xff) << 8
+                | (key[3] & 0xff);
+    }
+}
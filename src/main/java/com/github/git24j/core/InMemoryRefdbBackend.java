@@ -0,0 +1,167 @@
+package com.github.git24j.core;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * {@link RefdbBackend} that keeps references in memory.
+ *
+ * <p>References live in a {@link ConcurrentSkipListMap} keyed by name: lookups and updates never
+ * block each other, conditional updates are applied with compare-and-set, and glob iteration only
+ * visits the range of names sharing the literal prefix of the glob (e.g. {@code refs/tags/} for
+ * {@code refs/tags/v1.*}). Iterators are weakly consistent, they never fail on concurrent updates.
+ *
+ * <p>{@link #lock(String)} only excludes other transactions, plain writes to a locked reference
+ * still go through.
+ *
+ * <pre>{@code
+ * try (Refdb refdb = Refdb.create(repo)) {
+ *     refdb.setBackend(new InMemoryRefdbBackend());
+ *     repo.setRefdb(refdb);
+ * }
+ * }</pre>
+ */
+public class InMemoryRefdbBackend implements RefdbBackend {
+    private final ConcurrentSkipListMap<String, RefIterator.Entry> refs =
+            new ConcurrentSkipListMap<>();
+    private final Set<String> locked = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public RefIterator.Entry lookup(String name) {
+        return refs.get(name);
+    }
+
+    @Override
+    public boolean exists(String name) {
+        return refs.containsKey(name);
+    }
+
+    @Override
+    public Iterator<RefIterator.Entry> iterator(String glob) {
+        if (glob == null) {
+            return refs.values().iterator();
+        }
+        String prefix = RefGlob.literalPrefix(glob);
+        if (prefix.length() == glob.length()) {
+            RefIterator.Entry ref = refs.get(glob);
+            return ref == null
+                    ? Collections.<RefIterator.Entry>emptyIterator()
+                    : Collections.singletonList(ref).iterator();
+        }
+        ConcurrentNavigableMap<String, RefIterator.Entry> range =
+                prefix.isEmpty() ? refs : refs.subMap(prefix, prefix + Character.MAX_VALUE);
+        return new Matching(glob, range.values());
+    }
+
+    @Override
+    public void write(RefIterator.Entry ref, boolean force, Oid oldId, String oldTarget) {
+        refs.compute(
+                ref.getName(),
+                (name, current) -> {
+                    if (current != null && !force) {
+                        throw RefdbBackend.conflict(
+                                GitException.ErrorCode.EEXISTS,
+                                "reference already exists: " + name);
+                    }
+                    checkOld(name, current, oldId, oldTarget);
+                    return ref;
+                });
+    }
+
+    @Override
+    public void delete(String name, Oid oldId, String oldTarget) {
+        refs.compute(
+                name,
+                (n, current) -> {
+                    if (current == null) {
+                        throw RefdbBackend.conflict(
+                                GitException.ErrorCode.ENOTFOUND, "reference not found: " + n);
+                    }
+                    checkOld(n, current, oldId, oldTarget);
+                    return null;
+                });
+    }
+
+    @Override
+    public void lock(String name) {
+        if (!locked.add(name)) {
+            throw RefdbBackend.conflict(
+                    GitException.ErrorCode.ELOCKED, "reference is locked: " + name);
+        }
+    }
+
+    @Override
+    public void unlock(String name) {
+        locked.remove(name);
+    }
+
+    /** Number of references stored. */
+    public int size() {
+        return refs.size();
+    }
+
+    /** Drop all references. */
+    @Override
+    public void close() {
+        refs.clear();
+        locked.clear();
+    }
+
+    private static void checkOld(
+            String name, RefIterator.Entry current, Oid oldId, String oldTarget) {
+        if (oldId != null
+                && (current == null
+                        || current.getTarget() == null
+                        || !Arrays.equals(current.getTarget().getId(), oldId.getId()))) {
+            throw RefdbBackend.conflict(
+                    GitException.ErrorCode.EMODIFIED,
+                    "old reference value does not match: " + name);
+        }
+        if (oldTarget != null
+                && (current == null || !oldTarget.equals(current.getSymbolicTarget()))) {
+            throw RefdbBackend.conflict(
+                    GitException.ErrorCode.EMODIFIED,
+                    "old reference target does not match: " + name);
+        }
+    }
+
+    /** References of a name range that match a glob. */
+    private static class Matching implements Iterator<RefIterator.Entry> {
+        private final String glob;
+        private final Iterator<RefIterator.Entry> range;
+        private RefIterator.Entry next;
+
+        Matching(String glob, Collection<RefIterator.Entry> range) {
+            this.glob = glob;
+            this.range = range.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && range.hasNext()) {
+                RefIterator.Entry ref = range.next();
+                if (RefdbBackend.matches(glob, ref.getName())) {
+                    next = ref;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public RefIterator.Entry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            RefIterator.Entry ref = next;
+            next = null;
+            return ref;
+        }
+    }
+}
@@ -1,29 +1,67 @@
 package com.github.git24j.core;
 
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
 
 public class Index implements AutoCloseable {
+    private static final Metrics.Operation WRITE = Metrics.operation("Index.write");
     private final AtomicLong idxPtr;
 
     public Index(AtomicLong idxPtr) {
         this.idxPtr = idxPtr;
     }
 
-    static native int jniUpdateAll(
-            long idxPtr, String[] pathSpec, BiConsumer<String, String> callback);
+    // GENERATED NATIVES BEGIN: scripts/gen_bindings.py
+    static native int jniAdd(long indexPtr, Entry sourceEntry);
 
-    static native int jniAdd(long idxPtr, Entry sourceEntry);
+    static native int jniAddByPath(long indexPtr, String path);
 
-    static native int jniAddByPath(long idxPtr, String path);
+    static native int jniWrite(long indexPtr);
+
+    static native void jniFree(long indexPtr);
+    // GENERATED NATIVES END
+
+    static native int jniUpdateAll(long idxPtr, String[] pathSpec, Callback callback);
+
+    static native int jniAddEntries(long idxPtr, Entry[] entries);
 
     static native int jniAddAll(long idxPtr, String[] pathSpec, int flags, Callback callback);
 
-    static native int jniWrite(long idxPtr);
+    static native int jniAddAllBatched(
+            long idxPtr, String[] pathSpec, int flags, int batchSize, BatchBridge<String> bridge);
+
+    static native int jniUpdateAllBatched(
+            long idxPtr, String[] pathSpec, int batchSize, BatchBridge<String> bridge);
+
+    static native long jniOpen(String indexPath);
 
-    static native void jniFree(long idxPtr);
+    static native byte[] jniObjectIds(long idxPtr);
+
+    /**
+     * Open a bare index file, e.g. the index of another worktree. Paths of entries can not be
+     * added from disk as the index has no repository.
+     *
+     * @param indexPath path to the index file, which need not exist
+     * @throws GitException git error
+     */
+    public static Index open(String indexPath) {
+        return new Index(new AtomicLong(Error.handleOrThrow(jniOpen(indexPath))));
+    }
+
+    /** Ids of all staged objects, without the commits of submodules. */
+    List<Oid> objectIds() {
+        byte[] raw = jniObjectIds(idxPtr.get());
+        List<Oid> ids = new ArrayList<>(raw.length / Oid.RAWSZ);
+        byte[] id = new byte[Oid.RAWSZ];
+        for (int pos = 0; pos < raw.length; pos += Oid.RAWSZ) {
+            System.arraycopy(raw, pos, id, 0, Oid.RAWSZ);
+            ids.add(Oid.of(id));
+        }
+        return ids;
+    }
 
     /**
      * Update all index entries to match the working directory
@@ -34,7 +72,8 @@ public class Index implements AutoCloseable {
      * @throws GitException git error.
      */
     public void updateAll(String[] pathSpec, BiConsumer<String, String> callback) {
-        Error.throwIfNeeded(jniUpdateAll(idxPtr.get(), pathSpec, callback));
+        Error.throwIfNeeded(
+                jniUpdateAll(idxPtr.get(), pathSpec, callback == null ? null : callback::accept));
     }
 
     /** See also {@link #updateAll(String[], BiConsumer)}. */
@@ -42,20 +81,36 @@ public class Index implements AutoCloseable {
         updateAll(pathSpec.toArray(new String[0]), callback);
     }
 
+    /**
+     * Same as {@link #updateAll(String[], BiConsumer)}, but updated paths are delivered in batches.
+     *
+     * @param pathSpec array of path patterns
+     * @param batchSize maximum number of paths per batch
+     * @param consumer receives updated paths; return non-zero to abort the scan
+     * @return true if all matching entries were updated, false if the consumer aborted
+     * @throws GitException git error.
+     */
+    public boolean updateAll(String[] pathSpec, int batchSize, BatchConsumer<String> consumer) {
+        BatchBridge<String> bridge = BatchBridge.ofPaths(consumer);
+        return bridge.completed(jniUpdateAllBatched(idxPtr.get(), pathSpec, batchSize, bridge));
+    }
+
     /**
      * Write an existing index object from memory back to disk using an atomic file lock.
      *
      * @throws GitException git error.
      */
     public void write() {
-        Error.throwIfNeeded(jniWrite(idxPtr.get()));
+        long start = Metrics.start();
+        int e = Bindings.current().indexWrite(idxPtr.get());
+        WRITE.record(start, e);
+        Error.throwIfNeeded(e);
     }
 
     /** Delegate {@code git_index_free} Free an existing index object. */
     @Override
     public void close() {
-        jniFree(idxPtr.get());
-        idxPtr.set(0);
+        Bindings.current().indexFree(idxPtr.getAndSet(0));
     }
 
     /**
@@ -75,7 +130,17 @@ public class Index implements AutoCloseable {
      * @throws GitException git error
      */
     public void add(String path) {
-        Error.throwIfNeeded(jniAddByPath(idxPtr.get(), path));
+        Error.throwIfNeeded(Bindings.current().indexAddByPath(idxPtr.get(), path));
+    }
+
+    /**
+     * Add or update a batch of index entries from in-memory structs in a single native call.
+     *
+     * @param entries new entry objects, e.g. produced by {@link ParallelIndexUpdater}
+     * @throws GitException git error, entries before the failing one have been added.
+     */
+    public void add(Entry[] entries) {
+        Error.throwIfNeeded(jniAddEntries(idxPtr.get(), entries));
     }
 
     /**
@@ -90,7 +155,34 @@ public class Index implements AutoCloseable {
     public void addAll(
             String[] pathSpec, EnumSet<AddOption> flags, BiConsumer<String, String> callback) {
         Error.throwIfNeeded(
-                jniAddAll(idxPtr.get(), pathSpec, IBitEnum.bitOrAll(flags), callback::accept));
+                jniAddAll(
+                        idxPtr.get(),
+                        pathSpec,
+                        IBitEnum.bitOrAll(flags),
+                        callback == null ? null : callback::accept));
+    }
+
+    /**
+     * Same as {@link #addAll(String[], EnumSet, BiConsumer)}, but added paths are delivered in
+     * batches of up to {@code batchSize} rather than one java call per path. Paths can not be
+     * skipped individually.
+     *
+     * @param pathSpec array of path patterns
+     * @param flags combination of git_index_add_option_t flags
+     * @param batchSize maximum number of paths per batch
+     * @param consumer receives added/updated paths; return non-zero to abort the scan
+     * @return true if all matching files were added, false if the consumer aborted
+     * @throws GitException git error
+     */
+    public boolean addAll(
+            String[] pathSpec,
+            EnumSet<AddOption> flags,
+            int batchSize,
+            BatchConsumer<String> consumer) {
+        BatchBridge<String> bridge = BatchBridge.ofPaths(consumer);
+        return bridge.completed(
+                jniAddAllBatched(
+                        idxPtr.get(), pathSpec, IBitEnum.bitOrAll(flags), batchSize, bridge));
     }
 
     public enum AddOption implements IBitEnum {
@@ -112,6 +204,7 @@ public class Index implements AutoCloseable {
         }
     }
 
+    /** Receives matched paths from native code, see {@code standard_matched_cb}. */
     public interface Callback {
         void accept(String path, String pathSpec);
     }
@@ -122,6 +215,7 @@ public class Index implements AutoCloseable {
         private final int mtimeSec;
         private final int mtimeNanoSec;
         private final int dev;
+        private final int ino;
         private final int mode;
         private final int uid;
         private final int gid;
@@ -137,6 +231,7 @@ public class Index implements AutoCloseable {
                 int mtimeSec,
                 int mtimeNanoSec,
                 int dev,
+                int ino,
                 int mode,
                 int uid,
                 int gid,
@@ -150,6 +245,7 @@ public class Index implements AutoCloseable {
             this.mtimeSec = mtimeSec;
             this.mtimeNanoSec = mtimeNanoSec;
             this.dev = dev;
+            this.ino = ino;
             this.mode = mode;
             this.uid = uid;
             this.gid = gid;
@@ -166,6 +262,7 @@ public class Index implements AutoCloseable {
             private int mtimeSec;
             private int mtimeNanoSec;
             private int dev;
+            private int ino;
             private int mode;
             private int uid;
             private int gid;
@@ -200,6 +297,11 @@ public class Index implements AutoCloseable {
                 return this;
             }
 
+            public EntryBuilder setIno(int ino) {
+                this.ino = ino;
+                return this;
+            }
+
             public EntryBuilder setMode(int mode) {
                 this.mode = mode;
                 return this;
@@ -247,6 +349,7 @@ public class Index implements AutoCloseable {
                         mtimeSec,
                         mtimeNanoSec,
                         dev,
+                        ino,
                         mode,
                         uid,
                         gid,
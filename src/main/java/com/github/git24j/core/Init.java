@@ -1,69 +1,330 @@
 package com.github.git24j.core;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystem;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 /** @author shijing Setup functions */
 public class Init {
 
     private static final String CUSTOM_LIB_PATH_PROP = "com.github.shijinglu.lg24j.library_path";
+    private static final String CACHE_DIR_PROP = "git24j.native.cache";
     private static final String JAVA_LIB_PATH_PROP = "java.library.path";
     private static final String DEFAULT_LIB_PATH = "target";
+    private static final String RESOURCE_ROOT = "native/";
     private static AtomicBoolean _loaded = new AtomicBoolean(false);
+    private static Path _bundledDir;
+    private static boolean _bundledChecked;
 
     /**
-     * Search following paths(in order) for the native library, load if found, throw exceptions if
-     * not.
+     * Find the native libraries. Following places are searched in order, the first one having
+     * libgit24j is used:
      *
      * <ul>
      *   <li>paths defined in {@code com.github.shijinglu.lg24j.library_path}
+     *   <li>the libraries bundled in the jar under {@code native/<os>/<arch>/}, see {@link
+     *       #extractBundled()}
      *   <li>paths defined in {@code java.library.path}
      *   <li>hard coded path in ${project.dir}/target/${lib}/
      * </ul>
      *
-     * @param lib library to load
-     * @throws FileNotFoundException could not load the shared library
+     * <p>libgit2 is taken from the same place. If it has none, libgit2 is assumed to be linked
+     * into libgit24j statically (the {@code PROFILE=performance} build) and only libgit24j is
+     * loaded.
+     *
+     * @return paths of libgit2 (or null) and libgit24j
+     * @throws FileNotFoundException libgit24j was not found
      */
-    static synchronized void loadLibrary(NativeLib lib) throws FileNotFoundException {
+    static Path[] locateLibraries() throws FileNotFoundException {
+        List<Function<NativeLib, Path>> places = new ArrayList<>(4);
         String customPath = System.getProperty(CUSTOM_LIB_PATH_PROP, null);
         if (customPath != null) {
-            System.setProperty(
-                    JAVA_LIB_PATH_PROP,
-                    customPath + ":" + System.getProperty(JAVA_LIB_PATH_PROP, ""));
+            places.add(lib -> findIn(customPath, lib));
+        }
+        places.add(
+                lib -> {
+                    Path bundled = extractBundled();
+                    return bundled == null ? null : existing(bundled, lib);
+                });
+        places.add(lib -> findIn(System.getProperty(JAVA_LIB_PATH_PROP, ""), lib));
+        places.add(lib -> existing(Paths.get(DEFAULT_LIB_PATH, lib.shortName()), lib));
+        for (Function<NativeLib, Path> place : places) {
+            Path git24j = place.apply(NativeLib.GIT24J);
+            if (git24j != null) {
+                return new Path[] {place.apply(NativeLib.GIT2), git24j};
+            }
+        }
+        throw new FileNotFoundException(
+                "Could not load library: " + NativeLib.GIT24J.mappedLibraryName());
+    }
+
+    private static Path findIn(String searchPath, NativeLib lib) {
+        for (String dir : searchPath.split(File.pathSeparator)) {
+            if (!dir.isEmpty()) {
+                Path found = existing(Paths.get(dir), lib);
+                if (found != null) {
+                    return found;
+                }
+            }
         }
+        return null;
+    }
+
+    private static Path existing(Path dir, NativeLib lib) {
+        Path libPath = dir.resolve(lib.mappedLibraryName()).toAbsolutePath();
+        return Files.exists(libPath) ? libPath : null;
+    }
+
+    /**
+     * Copy the libraries bundled in the jar to the cache directory ({@code git24j.native.cache},
+     * default {@code ${java.io.tmpdir}/git24j-${user.name}}) unless an earlier run did already.
+     *
+     * <p>A jar without libgit2 carries a libgit24j that has it linked in. All libraries go to one
+     * directory named after the SHA-256 of their contents, so different
+     * versions never overwrite each other and libgit24j finds libgit2 next to itself. The build
+     * stores each digest in {@code <lib>.sha256} beside the library; with them, a warm start hashes
+     * the cached files instead of reading the jar, and replaces any that do not match. Files are
+     * written to a temporary name and renamed, so concurrent processes never load a partial
+     * library.
+     *
+     * <p>On POSIX file systems the cache directory is created readable by its owner only, and an
+     * existing one must belong to the current user and must not be writable by others. Otherwise
+     * another user could swap a library between the check and {@link System#load}.
+     *
+     * @return directory holding the extracted libraries, or null if the jar has none for this
+     *     platform
+     */
+    static synchronized Path extractBundled() {
+        if (!_bundledChecked) {
+            _bundledDir = extractBundled(Init.class.getClassLoader(), cacheDir());
+            _bundledChecked = true;
+        }
+        return _bundledDir;
+    }
+
+    static Path extractBundled(ClassLoader loader, Path cacheDir) {
+        NativeLib[] libs = NativeLib.values();
+        String prefix = RESOURCE_ROOT + platform() + "/";
+        byte[][] contents = new byte[libs.length][];
+        String[] expected = new String[libs.length];
+        StringBuilder digests = new StringBuilder();
         try {
-            System.loadLibrary(lib.shortName());
-        } catch (UnsatisfiedLinkError ignore) {
-            // ignore
+            for (int i = 0; i < libs.length; i++) {
+                String resource = prefix + libs[i].mappedLibraryName();
+                if (loader.getResource(resource) == null) {
+                    if (libs[i] == NativeLib.GIT24J) {
+                        return null;
+                    }
+                    // linked into libgit24j
+                    continue;
+                }
+                String digest = readDigest(loader, resource + ".sha256");
+                if (digest == null) {
+                    contents[i] = readAll(loader, resource);
+                    digest = sha256(contents[i]);
+                }
+                expected[i] = digest;
+                digests.append(digest);
+            }
+            ensurePrivate(cacheDir);
+            byte[] key = digests.toString().getBytes(StandardCharsets.US_ASCII);
+            Path dir = cacheDir.resolve(sha256(key));
+            for (int i = 0; i < libs.length; i++) {
+                Path target = dir.resolve(libs[i].mappedLibraryName());
+                if (expected[i] == null || expected[i].equals(sha256Of(target))) {
+                    continue;
+                }
+                String resource = prefix + libs[i].mappedLibraryName();
+                byte[] content = contents[i];
+                if (content == null) {
+                    content = readAll(loader, resource);
+                }
+                Files.createDirectories(dir);
+                Path tmp = Files.createTempFile(dir, libs[i].shortName(), ".tmp");
+                try {
+                    Files.write(tmp, content);
+                    try {
+                        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (AtomicMoveNotSupportedException | FileAlreadyExistsException e) {
+                        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                } finally {
+                    Files.deleteIfExists(tmp);
+                }
+            }
+            return dir;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not extract native libraries to " + cacheDir, e);
+        }
+    }
+
+    /**
+     * Create {@code dir} accessible by the current user only, or check that an existing one is. The
+     * checks need POSIX attributes, elsewhere (Windows) the temporary directory is per user.
+     */
+    static void ensurePrivate(Path dir) throws IOException {
+        FileSystem fs = dir.getFileSystem();
+        boolean posix = fs.supportedFileAttributeViews().contains("posix");
+        if (!Files.exists(dir, LinkOption.NOFOLLOW_LINKS)) {
+            Path parent = dir.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try {
+                if (posix) {
+                    Files.createDirectory(
+                            dir,
+                            PosixFilePermissions.asFileAttribute(
+                                    PosixFilePermissions.fromString("rwx------")));
+                } else {
+                    Files.createDirectory(dir);
+                }
+            } catch (FileAlreadyExistsException e) {
+                // created concurrently, checked like any other existing directory
+            }
         }
-        Path libPath = Paths.get(DEFAULT_LIB_PATH, lib.shortName(), lib.mappedLibraryName());
-        if (!Files.exists(libPath)) {
-            throw new FileNotFoundException("Could not load library: " + lib.mappedLibraryName());
+        if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+            throw new IOException(dir + " is not a directory");
+        }
+        if (!posix) {
+            return;
+        }
+        UserPrincipal owner = Files.getOwner(dir, LinkOption.NOFOLLOW_LINKS);
+        UserPrincipal user =
+                fs.getUserPrincipalLookupService()
+                        .lookupPrincipalByName(System.getProperty("user.name"));
+        if (!owner.equals(user)) {
+            throw new IOException(dir + " belongs to " + owner.getName());
+        }
+        Set<PosixFilePermission> perms =
+                Files.getPosixFilePermissions(dir, LinkOption.NOFOLLOW_LINKS);
+        if (perms.contains(PosixFilePermission.GROUP_WRITE)
+                || perms.contains(PosixFilePermission.OTHERS_WRITE)) {
+            throw new IOException(dir + " is writable by other users");
+        }
+    }
+
+    /** Platform directory the Makefile packages natives into, e.g. {@code linux/x86_64}. */
+    static String platform() {
+        String os = System.getProperty("os.name", "").toLowerCase(Locale.ROOT);
+        if (os.startsWith("mac") || os.startsWith("darwin")) {
+            return "macosx";
+        }
+        String arch = System.getProperty("os.arch", "").toLowerCase(Locale.ROOT);
+        if (arch.equals("amd64")) {
+            arch = "x86_64";
+        } else if (arch.equals("arm64")) {
+            arch = "aarch64";
+        } else if (arch.matches("i[3-6]86")) {
+            arch = "x86";
+        }
+        return (os.startsWith("windows") ? "windows" : os.replace(' ', '_')) + "/" + arch;
+    }
+
+    static Path cacheDir() {
+        String dir = System.getProperty(CACHE_DIR_PROP);
+        if (dir != null) {
+            return Paths.get(dir);
+        }
+        return Paths.get(
+                System.getProperty("java.io.tmpdir"),
+                "git24j-" + System.getProperty("user.name", "user"));
+    }
+
+    private static String readDigest(ClassLoader loader, String resource) throws IOException {
+        if (loader.getResource(resource) == null) {
+            return null;
+        }
+        String digest = new String(readAll(loader, resource), StandardCharsets.US_ASCII).trim();
+        return digest.matches("[0-9a-f]{64}") ? digest : null;
+    }
+
+    private static byte[] readAll(ClassLoader loader, String resource) throws IOException {
+        try (InputStream in = loader.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new FileNotFoundException(resource);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 20);
+            byte[] buf = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /** Digest of a file, or null if it does not exist. */
+    private static String sha256Of(Path file) throws IOException {
+        try {
+            return sha256(Files.readAllBytes(file));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    static String sha256(byte[] content) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                sb.append(String.format("%02x", b & 0xff));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
         }
-        System.load(libPath.toAbsolutePath().toString());
     }
 
     /**
      * Load necessary libraries.
      *
-     * @throws RuntimeException if
+     * @throws RuntimeException if a library could not be found
      */
     public static void loadLibraries() {
         if (!_loaded.get()) {
-            try {
-                loadLibrary(NativeLib.GIT2);
-                loadLibrary(NativeLib.GIT24J);
-            } catch (FileNotFoundException e) {
-                throw new RuntimeException(e);
+            synchronized (Init.class) {
+                if (_loaded.get()) {
+                    return;
+                }
+                try {
+                    Path[] libs = locateLibraries();
+                    if (libs[0] != null) {
+                        System.load(libs[0].toString());
+                    }
+                    System.load(libs[1].toString());
+                } catch (FileNotFoundException e) {
+                    throw new RuntimeException(e);
+                }
+                _loaded.set(true);
             }
-            _loaded.set(true);
         }
     }
 
-    private enum NativeLib {
+    enum NativeLib {
         /** libgit2 */
         GIT2("git2"),
         /** libgit24j */
@@ -0,0 +1,93 @@
+package com.github.git24j.core;
+
+import java.nio.ByteBuffer;
+
+/** Default {@link Binding}, calls the libgit24j glue library. */
+final class JniBinding implements Binding {
+    static final String NAME = "jni";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public GitException lastError() {
+        return Error.jniLast();
+    }
+
+    @Override
+    public long repositoryOpen(String path) {
+        return Repository.jniOpen(path);
+    }
+
+    @Override
+    public void repositoryFree(long repoPtr) {
+        Repository.jniFree(repoPtr);
+    }
+
+    @Override
+    public String repositoryPath(long repoPtr) {
+        return Repository.jniPath(repoPtr);
+    }
+
+    @Override
+    public long repositoryHead(long repoPtr) {
+        return Repository.jniHead(repoPtr);
+    }
+
+    @Override
+    public long repositoryIndex(long repoPtr) {
+        return Repository.jniIndex(repoPtr);
+    }
+
+    @Override
+    public long objectLookup(long repoPtr, byte[] id, int objType) {
+        return GitObject.jniLookup(repoPtr, id, objType);
+    }
+
+    @Override
+    public int objectType(long objPtr) {
+        return GitObject.jniType(objPtr);
+    }
+
+    @Override
+    public void objectId(Oid outId, long objPtr) {
+        outId.setId(GitObject.jniId(objPtr));
+    }
+
+    @Override
+    public int objectShortId(Buf outBuf, long objPtr) {
+        return GitObject.jniShortId(outBuf, objPtr);
+    }
+
+    @Override
+    public void objectFree(long objPtr) {
+        GitObject.jniFree(objPtr);
+    }
+
+    @Override
+    public long revparseSingle(long repoPtr, String spec) {
+        return Revparse.jniSingle(repoPtr, spec);
+    }
+
+    @Override
+    public int indexAddByPath(long idxPtr, String path) {
+        return Index.jniAddByPath(idxPtr, path);
+    }
+
+    @Override
+    public int indexWrite(long idxPtr) {
+        return Index.jniWrite(idxPtr);
+    }
+
+    @Override
+    public void indexFree(long idxPtr) {
+        Index.jniFree(idxPtr);
+    }
+
+    @Override
+    public ByteBuffer blobRawContent(long blobPtr) {
+        return Blob.jniRawContent(blobPtr);
+    }
+}
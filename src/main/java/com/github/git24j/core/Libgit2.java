@@ -1,11 +1,30 @@
 package com.github.git24j.core;
 
 import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
 
 public class Libgit2 {
-    static native void init();
+    /** How long the trace drain waits when the buffer was not full. */
+    private static final long TRACE_DRAIN_INTERVAL_MS = 20;
 
-    static native void shutdown();
+    /** {@link #init()} calls not yet released, guarded by the class lock */
+    private static int refCount;
+
+    /**
+     * Serializes {@link #setTrace} without the class lock, so that a sink may still call {@link
+     * #init()} or {@link #shutdown()} while its drain is being stopped.
+     */
+    private static final Object TRACE_LOCK = new Object();
+
+    /** guarded by {@link #TRACE_LOCK} */
+    private static TraceDrain traceDrain;
+
+    /** set once by {@link #ensureInit()} under the class lock, never released */
+    private static volatile boolean implicitRef;
+
+    static native int jniInit();
+
+    static native int jniShutdown();
 
     static native Version version();
 
@@ -13,8 +32,169 @@ public class Libgit2 {
     // TODO: git_libgit2_opts
     /// static native int opts();
 
+    static native int jniTraceSet(int level, int sampleEvery, int maxPerSecond);
+
+    static native int jniTraceDrain(int[] outLevels, long[] outTimes, String[] outMessages);
+
+    static native long jniTraceDropped();
+
+    /**
+     * Load the native libraries if needed and initialize the global state of libgit2. Calls are
+     * counted: the state is torn down when {@link #shutdown()} was called as often as this.
+     *
+     * <p>Calling this is optional, {@link Repository} and {@link Odb} initialize libgit2 on first
+     * use and keep it initialized for the life of the JVM.
+     */
+    public static synchronized void init() {
+        if (refCount == 0 && !implicitRef) {
+            Init.loadLibraries();
+            Error.throwIfNeeded(jniInit());
+        }
+        refCount++;
+    }
+
+    /**
+     * Release one {@link #init()}, no-op if there is none to release. Never tears down the state
+     * that implicit initialization keeps for the life of the JVM.
+     */
+    public static synchronized void shutdown() {
+        if (refCount == 0) {
+            return;
+        }
+        refCount--;
+        if (refCount == 0 && !implicitRef) {
+            jniShutdown();
+        }
+    }
+
+    /**
+     * Take the reference held on behalf of implicit initialization, once per JVM. It is counted
+     * apart from {@link #init()}, so an unbalanced {@link #shutdown()} can not release it.
+     */
+    static void ensureInit() {
+        if (!implicitRef) {
+            synchronized (Libgit2.class) {
+                if (!implicitRef) {
+                    if (refCount == 0) {
+                        Init.loadLibraries();
+                        Error.throwIfNeeded(jniInit());
+                    }
+                    implicitRef = true;
+                }
+            }
+        }
+    }
+
     /** Wapper of features that returns an enum set. */
     public static EnumSet<GitFeature> featuresSet() {
         return GitFeature.valuesOf(features());
     }
+
+    /**
+     * Deliver libgit2's trace messages up to {@code level} to {@code sink}, replacing the previous
+     * sink. Same as {@link #setTrace(TraceLevel, TraceSink, int, int)} with every message kept.
+     */
+    public static void setTrace(TraceLevel level, TraceSink sink) {
+        setTrace(level, sink, 1, 0);
+    }
+
+    /**
+     * Deliver libgit2's trace messages up to {@code level} to {@code sink}, replacing the previous
+     * sink. {@link TraceLevel#NONE}, a null level or a null sink turns tracing off.
+     *
+     * <p>The thread that traces only copies the message into a fixed native ring buffer, it never
+     * waits and never calls into java. A daemon thread, {@code git24j-trace}, drains the buffer in
+     * batches and calls the sink. Messages that find the buffer full, or exceed {@code
+     * maxPerSecond}, are dropped and reported through {@link TraceSink#dropped(long)}. Sampled out
+     * messages are not reported.
+     *
+     * <p>libgit2 only traces if it was built with {@code ENABLE_TRACE}, which the default build of
+     * git24j does.
+     *
+     * @param sampleEvery keep one message out of this many, 1 to keep all
+     * @param maxPerSecond most messages kept per second, 0 for no limit
+     * @throws GitException if libgit2 was built without tracing
+     * @throws IllegalStateException if called from a {@link TraceSink}
+     */
+    public static void setTrace(
+            TraceLevel level, TraceSink sink, int sampleEvery, int maxPerSecond) {
+        if (sampleEvery < 1 || maxPerSecond < 0) {
+            throw new IllegalArgumentException(
+                    "sampleEvery must be positive and maxPerSecond not negative");
+        }
+        if (TraceDrain.isDrainThread()) {
+            // would wait for itself to finish
+            throw new IllegalStateException("setTrace must not be called from a TraceSink");
+        }
+        ensureInit();
+        boolean off = level == null || level == TraceLevel.NONE || sink == null;
+        synchronized (TRACE_LOCK) {
+            Error.throwIfNeeded(
+                    jniTraceSet(
+                            off ? TraceLevel.NONE.code : level.code, sampleEvery, maxPerSecond));
+            if (traceDrain != null) {
+                // hands what the old level left in the buffer to the old sink
+                traceDrain.stop();
+                traceDrain = null;
+            }
+            if (!off) {
+                traceDrain =
+                        new TraceDrain(
+                                TraceDrain.NATIVE,
+                                sink,
+                                TRACE_DRAIN_INTERVAL_MS,
+                                TimeUnit.MILLISECONDS);
+                traceDrain.start();
+            }
+        }
+    }
+
+    /** Detail of trace messages, each level includes the ones before it. */
+    public enum TraceLevel {
+        /** No tracing will be performed. */
+        NONE(0),
+        /** Severe errors that may impact the program's execution */
+        FATAL(1),
+        /** Errors that do not impact the program's execution */
+        ERROR(2),
+        /** Warnings that suggest abnormal data */
+        WARN(3),
+        /** Informational messages about program execution */
+        INFO(4),
+        /** Detailed data that allows for debugging */
+        DEBUG(5),
+        /** Exceptionally detailed debugging data */
+        TRACE(6);
+
+        private static final TraceLevel[] BY_CODE = values();
+
+        public final int code;
+
+        TraceLevel(int code) {
+            this.code = code;
+        }
+
+        static TraceLevel valueOf(int code) {
+            return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : TRACE;
+        }
+    }
+
+    /**
+     * Receives trace messages on the {@code git24j-trace} thread, in the order they were made.
+     * Must not call {@link #setTrace}, which waits for the sink to finish and therefore throws
+     * {@link IllegalStateException} there. Other calls, including {@link #init()} and {@link
+     * #shutdown()}, are fine: the drain is stopped without holding the lock they take.
+     */
+    @FunctionalInterface
+    public interface TraceSink {
+        /**
+         * @param level level of the message
+         * @param epochNanos when the message was made, in nanoseconds since the epoch
+         * @param message text of the message, cut after 511 bytes
+         */
+        void trace(TraceLevel level, long epochNanos, String message);
+
+        /** @param count number of messages dropped since the last call, never 0 */
+        default void dropped(long count) {}
+    }
 }
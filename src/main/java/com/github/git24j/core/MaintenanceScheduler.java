@@ -0,0 +1,126 @@
+package com.github.git24j.core;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Run maintenance tasks (e.g. {@link RefMaintenance#compactTask(int)}) for repositories on a
+ * background scheduler.
+ *
+ * <p>Every run opens its own {@link Repository} for the task and closes it afterwards, so tasks
+ * never share a native repository handle with application threads. Runs for the same repository
+ * path never overlap: a run that finds another task of the same repository still in progress is
+ * skipped.
+ */
+public class MaintenanceScheduler implements AutoCloseable {
+    /** A unit of maintenance work. */
+    @FunctionalInterface
+    public interface Task {
+        /**
+         * @param repo repository opened for this run, closed once the task returns
+         */
+        void run(Repository repo);
+    }
+
+    private final AtomicInteger threadIds = new AtomicInteger();
+    private final ScheduledExecutorService executor;
+    private final Consumer<Throwable> errorHandler;
+    private final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+    private final Map<String, List<ScheduledFuture<?>>> scheduled = new ConcurrentHashMap<>();
+
+    /**
+     * @param threads number of scheduler threads
+     * @param errorHandler receives exceptions and errors thrown by tasks, the task stays
+     *     scheduled
+     */
+    public MaintenanceScheduler(int threads, Consumer<Throwable> errorHandler) {
+        this.executor =
+                Executors.newScheduledThreadPool(
+                        threads,
+                        r -> {
+                            Thread t =
+                                    new Thread(
+                                            r, "git24j-maintenance-" + threadIds.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        });
+        this.errorHandler = errorHandler;
+    }
+
+    /** Create a single threaded scheduler that ignores task errors. */
+    public MaintenanceScheduler() {
+        this(1, e -> {});
+    }
+
+    /**
+     * Run {@code task} for the repository at {@code repoPath} every {@code period}, starting after
+     * {@code initialDelay}.
+     *
+     * @param repoPath path passed to {@link Repository#open(String)}
+     * @return handle to cancel this task alone
+     */
+    public ScheduledFuture<?> schedule(
+            String repoPath, Task task, long initialDelay, long period, TimeUnit unit) {
+        ReentrantLock lock = locks.computeIfAbsent(repoPath, p -> new ReentrantLock());
+        ScheduledFuture<?> future =
+                executor.scheduleWithFixedDelay(
+                        () -> runGuarded(repoPath, task, lock), initialDelay, period, unit);
+        scheduled.computeIfAbsent(repoPath, p -> new CopyOnWriteArrayList<>()).add(future);
+        return future;
+    }
+
+    /**
+     * Run {@code task} for the repository once, as soon as a scheduler thread is free.
+     *
+     * @return handle of the run
+     */
+    public ScheduledFuture<?> runNow(String repoPath, Task task) {
+        ReentrantLock lock = locks.computeIfAbsent(repoPath, p -> new ReentrantLock());
+        return executor.schedule(() -> runGuarded(repoPath, task, lock), 0, TimeUnit.MILLISECONDS);
+    }
+
+    /** Cancel all periodic tasks of a repository, runs in progress are not interrupted. */
+    public void cancel(String repoPath) {
+        List<ScheduledFuture<?>> futures = scheduled.remove(repoPath);
+        if (futures == null) {
+            return;
+        }
+        for (ScheduledFuture<?> f : futures) {
+            f.cancel(false);
+        }
+    }
+
+    /** Stop scheduling and wait for runs in progress to finish. */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runGuarded(String repoPath, Task task, ReentrantLock lock) {
+        if (!lock.tryLock()) {
+            return;
+        }
+        try (Repository repo = Repository.open(repoPath)) {
+            task.run(repo);
+        } catch (Throwable e) {
+            // anything escaping would cancel the periodic task without a trace
+            errorHandler.accept(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
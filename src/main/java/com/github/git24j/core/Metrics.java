@@ -0,0 +1,362 @@
+package com.github.git24j.core;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Count, error count and latency histogram of libgit2 operations, such as {@code
+ * Repository.open} or {@code GitObject.lookup}.
+ *
+ * <p>Recording is off unless the system property {@code git24j.metrics} is true, and can be
+ * switched at runtime with {@link #setEnabled}. Off, an instrumented call costs one volatile
+ * read. On, it adds two {@link System#nanoTime()} calls and a few uncontended atomic increments;
+ * nothing is locked or allocated.
+ *
+ * <p>When Java Flight Recorder is available (JDK 8u272+, 11+), each recorded call is also
+ * committed as a {@code com.github.git24j.NativeCall} event, carrying the operation, the
+ * repository path and the number of objects involved. The event type is disabled by default and
+ * is turned on and off like any other event, e.g. in a {@code .jfc} settings file.
+ */
+public final class Metrics {
+    static final String PROPERTY = "git24j.metrics";
+    private static final String EVENTS_CLASS = "com.github.git24j.core.NativeCallEvents";
+    private static final Map<String, Operation> OPERATIONS = new ConcurrentHashMap<>();
+    private static volatile boolean _enabled = Boolean.getBoolean(PROPERTY);
+
+    private Metrics() {}
+
+    /** @return true if operations are being recorded */
+    public static boolean isEnabled() {
+        return _enabled;
+    }
+
+    /** Start or stop recording, recorded values are kept until {@link #reset()}. */
+    public static void setEnabled(boolean enabled) {
+        _enabled = enabled;
+    }
+
+    /** @return snapshots of all operations called so far, by operation name */
+    public static Map<String, Snapshot> snapshot() {
+        Map<String, Snapshot> snapshots = new TreeMap<>();
+        for (Operation op : OPERATIONS.values()) {
+            snapshots.put(op.name, op.snapshot());
+        }
+        return Collections.unmodifiableMap(snapshots);
+    }
+
+    /**
+     * Clear all recorded values. Calls that finish concurrently may be counted in part, e.g. in
+     * the count but not in the histogram.
+     */
+    public static void reset() {
+        for (Operation op : OPERATIONS.values()) {
+            op.reset();
+        }
+    }
+
+    /** The operation with this name, created on first use. */
+    static Operation operation(String name) {
+        return OPERATIONS.computeIfAbsent(name, Operation::new);
+    }
+
+    /** @return start time to pass to {@link Operation#record}, 0 if recording is off */
+    static long start() {
+        return _enabled ? System.nanoTime() : 0;
+    }
+
+    /** Recorded values of one operation. */
+    static final class Operation {
+        private final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final Histogram latency = new Histogram();
+
+        private Operation(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Record a call started at {@code start}.
+         *
+         * @param start value of {@link Metrics#start()}, the call is ignored if it is 0
+         * @param error libgit2 return code, negative values are errors
+         * @param repository repository the call worked on, may be null
+         * @param objects number of objects the call handled
+         */
+        void record(long start, int error, Repository repository, int objects) {
+            if (start == 0) {
+                return;
+            }
+            long elapsed = add(start, error < 0 ? 1 : 0);
+            EventSink sink = Events.SINK;
+            if (sink.isEnabled()) {
+                sink.commit(name, elapsed, Math.min(error, 0), pathOf(repository), objects);
+            }
+        }
+
+        /**
+         * Record a call over {@code objects} items started at {@code start}, where each of the
+         * {@code failed} items that did not succeed counts as an error. A call that threw before
+         * it could tell which items failed passes all of them.
+         */
+        void recordBatch(long start, Repository repository, int objects, int failed) {
+            if (start == 0) {
+                return;
+            }
+            long elapsed = add(start, failed);
+            EventSink sink = Events.SINK;
+            if (sink.isEnabled()) {
+                int error = failed > 0 ? GitException.ErrorCode.ERROR.getValue() : 0;
+                sink.commit(name, elapsed, error, pathOf(repository), objects);
+            }
+        }
+
+        /** Record a call that is not tied to a repository. */
+        void record(long start, int error) {
+            record(start, error, (String) null, 0);
+        }
+
+        /** Like {@link #record(long, int, Repository, int)}, with the repository path. */
+        void record(long start, int error, String repositoryPath, int objects) {
+            if (start == 0) {
+                return;
+            }
+            long elapsed = add(start, error < 0 ? 1 : 0);
+            EventSink sink = Events.SINK;
+            if (sink.isEnabled()) {
+                sink.commit(name, elapsed, Math.min(error, 0), repositoryPath, objects);
+            }
+        }
+
+        private long add(long start, int failures) {
+            long elapsed = Math.max(System.nanoTime() - start, 0);
+            count.increment();
+            if (failures > 0) {
+                errors.add(failures);
+            }
+            totalNanos.add(elapsed);
+            maxNanos.accumulate(elapsed);
+            latency.record(elapsed);
+            return elapsed;
+        }
+
+        private static String pathOf(Repository repository) {
+            if (repository == null) {
+                return null;
+            }
+            try {
+                return repository.cachedPath();
+            } catch (IllegalStateException closed) {
+                // closed meanwhile, report the call without the path
+                return null;
+            }
+        }
+
+        Snapshot snapshot() {
+            return new Snapshot(
+                    name,
+                    count.sum(),
+                    errors.sum(),
+                    totalNanos.sum(),
+                    maxNanos.get(),
+                    latency.counts());
+        }
+
+        void reset() {
+            count.reset();
+            errors.reset();
+            totalNanos.reset();
+            maxNanos.reset();
+            latency.reset();
+        }
+    }
+
+    /** Values of one operation at the time of {@link Metrics#snapshot()}. */
+    public static final class Snapshot {
+        private final String operation;
+        private final long count;
+        private final long errors;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long[] buckets;
+
+        Snapshot(
+                String operation,
+                long count,
+                long errors,
+                long totalNanos,
+                long maxNanos,
+                long[] buckets) {
+            this.operation = operation;
+            this.count = count;
+            this.errors = errors;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.buckets = buckets;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        /** @return number of calls */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return number of calls that returned a libgit2 error, including ENOTFOUND of the
+         *     {@code try} lookups; batch calls such as {@link Revparse#resolveAll} count each
+         *     item that failed
+         */
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public double getMeanNanos() {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+
+        /**
+         * Latency below which the given fraction of calls finished, within the 12.5% resolution
+         * of the histogram.
+         *
+         * @param quantile fraction of calls between 0 and 1, e.g. 0.99
+         * @return latency in nanoseconds, 0 if there were no calls
+         */
+        public long percentile(double quantile) {
+            long total = 0;
+            for (long c : buckets) {
+                total += c;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return Math.min(Histogram.upperBound(i), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "%s count=%d errors=%d mean=%.0fns p50=%dns p99=%dns max=%dns",
+                    operation,
+                    count,
+                    errors,
+                    getMeanNanos(),
+                    percentile(0.5),
+                    percentile(0.99),
+                    maxNanos);
+        }
+    }
+
+    /**
+     * Lock-free log-linear histogram: every power of two is split into {@code 2^SUB_BITS} equal
+     * buckets, so a value is known within 12.5% over the whole range of long.
+     */
+    static final class Histogram {
+        static final int SUB_BITS = 3;
+        private static final int SUB = 1 << SUB_BITS;
+        private static final int SIZE = (Long.SIZE - SUB_BITS) * SUB;
+        private final AtomicLongArray counts = new AtomicLongArray(SIZE);
+
+        static int index(long value) {
+            if (value < SUB) {
+                return (int) Math.max(value, 0);
+            }
+            int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+            int sub = (int) (value >>> shift) & (SUB - 1);
+            return (shift + 1) * SUB + sub;
+        }
+
+        /** Smallest value of bucket {@code index}. */
+        static long lowerBound(int index) {
+            if (index < SUB) {
+                return index;
+            }
+            int shift = index / SUB - 1;
+            return (long) (SUB + index % SUB) << shift;
+        }
+
+        /** Largest value of bucket {@code index}. */
+        static long upperBound(int index) {
+            return index + 1 >= SIZE ? Long.MAX_VALUE : lowerBound(index + 1) - 1;
+        }
+
+        void record(long value) {
+            counts.incrementAndGet(index(value));
+        }
+
+        long[] counts() {
+            long[] copy = new long[SIZE];
+            for (int i = 0; i < SIZE; i++) {
+                copy[i] = counts.get(i);
+            }
+            return copy;
+        }
+
+        void reset() {
+            for (int i = 0; i < SIZE; i++) {
+                counts.set(i, 0);
+            }
+        }
+    }
+
+    /** Receives recorded calls, e.g. to commit flight recorder events. */
+    interface EventSink {
+        /** @return false if events would be dropped, callers then skip collecting them */
+        boolean isEnabled();
+
+        void commit(
+                String operation, long elapsedNanos, int error, String repositoryPath, int objects);
+    }
+
+    private static final class Events {
+        static final EventSink SINK = load();
+
+        private static EventSink load() {
+            try {
+                Class<?> clz = Class.forName(EVENTS_CLASS, true, Metrics.class.getClassLoader());
+                return (EventSink) clz.getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // no jdk.jfr in this runtime
+                return new EventSink() {
+                    @Override
+                    public boolean isEnabled() {
+                        return false;
+                    }
+
+                    @Override
+                    public void commit(
+                            String operation,
+                            long elapsedNanos,
+                            int error,
+                            String repositoryPath,
+                            int objects) {}
+                };
+            }
+        }
+    }
+}
@@ -0,0 +1,568 @@
+package com.github.git24j.core;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A multi-pack-index: one sorted index over the objects of all packs of a repository, in git's
+ * {@code objects/pack/multi-pack-index} format (version 1, SHA-1).
+ *
+ * <p>Looking an object up in N packs probes N pack indexes; {@link #find(Oid)} does a single
+ * binary search instead. Objects present in several packs are attributed to the most recently
+ * modified one. {@link #write(Path)} merges the already sorted pack indexes, so it needs memory
+ * for neither the ids nor a sort.
+ *
+ * <p>libgit2 0.28 does not read multi-pack-indexes, object lookups through libgit2 keep probing
+ * the packs. The file is used by git itself and by lookups made through this class. A repack
+ * through {@link ObjectMaintenance#repack} rewrites an existing multi-pack-index. Like {@link
+ * PackIndex}, the file is read into memory rather than mapped, so it can be replaced while open.
+ */
+public class MultiPackIndex {
+    /** File name of the multi-pack-index inside the pack directory. */
+    public static final String FILE_NAME = "multi-pack-index";
+
+    private static final int SIGNATURE = 0x4d494458; // MIDX
+    private static final int CHUNK_PACK_NAMES = 0x504e414d; // PNAM
+    private static final int CHUNK_FANOUT = 0x4f494446; // OIDF
+    private static final int CHUNK_LOOKUP = 0x4f49444c; // OIDL
+    private static final int CHUNK_OFFSETS = 0x4f4f4646; // OOFF
+    private static final int CHUNK_LARGE_OFFSETS = 0x4c4f4646; // LOFF
+    private static final int HEADER_SIZE = 12;
+    private static final int CHUNK_ENTRY_SIZE = 12;
+    private static final int FANOUT_SIZE = 256 * 4;
+    private static final int LARGE_OFFSET_NEEDED = 0x80000000;
+
+    private final Path packDir;
+    private final ByteBuffer buf;
+    private final List<String> packNames;
+    private final int count;
+    private final int fanoutOffset;
+    private final int lookupOffset;
+    private final int offsetsOffset;
+    private final int largeOffsetsOffset;
+
+    private MultiPackIndex(Path packDir, ByteBuffer buf) throws IOException {
+        this.packDir = packDir;
+        this.buf = buf;
+        if (buf.limit() < HEADER_SIZE + Oid.RAWSZ || buf.getInt(0) != SIGNATURE) {
+            throw new IOException("not a multi-pack-index");
+        }
+        if (buf.get(4) != 1 || buf.get(5) != 1) {
+            throw new IOException("unsupported multi-pack-index version");
+        }
+        int chunks = buf.get(6) & 0xff;
+        int packs = buf.getInt(8);
+        int names = -1;
+        int fanout = -1;
+        int lookup = -1;
+        int offsets = -1;
+        int largeOffsets = -1;
+        for (int i = 0; i < chunks; i++) {
+            int entry = HEADER_SIZE + i * CHUNK_ENTRY_SIZE;
+            int id = buf.getInt(entry);
+            long offset = buf.getLong(entry + 4);
+            if (offset < 0 || offset > buf.limit() - Oid.RAWSZ) {
+                throw new IOException("multi-pack-index chunk out of bounds");
+            }
+            if (id == CHUNK_PACK_NAMES) {
+                names = (int) offset;
+            } else if (id == CHUNK_FANOUT) {
+                fanout = (int) offset;
+            } else if (id == CHUNK_LOOKUP) {
+                lookup = (int) offset;
+            } else if (id == CHUNK_OFFSETS) {
+                offsets = (int) offset;
+            } else if (id == CHUNK_LARGE_OFFSETS) {
+                largeOffsets = (int) offset;
+            }
+        }
+        if (names < 0 || fanout < 0 || lookup < 0 || offsets < 0) {
+            throw new IOException("multi-pack-index misses a required chunk");
+        }
+        fanoutOffset = fanout;
+        lookupOffset = lookup;
+        offsetsOffset = offsets;
+        largeOffsetsOffset = largeOffsets;
+        count = buf.getInt(fanout + 255 * 4);
+        if (count < 0 || (long) offsets + count * 8L > buf.limit()) {
+            throw new IOException("truncated multi-pack-index");
+        }
+        packNames = new ArrayList<>(packs);
+        int pos = names;
+        for (int i = 0; i < packs; i++) {
+            int end = pos;
+            while (end < buf.limit() && buf.get(end) != 0) {
+                end++;
+            }
+            byte[] name = new byte[end - pos];
+            ByteBuffer src = buf.duplicate();
+            src.position(pos);
+            src.get(name);
+            packNames.add(new String(name, StandardCharsets.UTF_8));
+            pos = end + 1;
+        }
+    }
+
+    /**
+     * Open the multi-pack-index of a pack directory.
+     *
+     * @return the index, or null if there is none
+     * @throws UncheckedIOException if it could not be read or is malformed
+     */
+    public static MultiPackIndex open(Path packDir) {
+        try {
+            return new MultiPackIndex(packDir, PackIndex.read(packDir.resolve(FILE_NAME)));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Open the multi-pack-index of a repository, see {@link #open(Path)}. */
+    public static MultiPackIndex open(Repository repo) {
+        return open(packDir(repo));
+    }
+
+    /**
+     * Write a multi-pack-index covering all packs of a pack directory, replacing the existing one
+     * atomically. If there are no packs, an existing multi-pack-index is removed.
+     *
+     * @return number of objects indexed
+     * @throws UncheckedIOException if pack indexes could not be read or the file not written
+     */
+    public static int write(Path packDir) {
+        try {
+            List<String> names = new ArrayList<>();
+            try (DirectoryStream<Path> entries =
+                    Files.newDirectoryStream(packDir, "pack-*.idx")) {
+                for (Path idx : entries) {
+                    String name = idx.getFileName().toString();
+                    if (Files.exists(packDir.resolve(packOf(name)))) {
+                        names.add(name);
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                // no pack directory, no packs
+            }
+            if (names.isEmpty()) {
+                Files.deleteIfExists(packDir.resolve(FILE_NAME));
+                return 0;
+            }
+            names.sort(null);
+            PackIndex[] packs = new PackIndex[names.size()];
+            long[] mtimes = new long[names.size()];
+            for (int i = 0; i < packs.length; i++) {
+                Path idx = packDir.resolve(names.get(i));
+                packs[i] = PackIndex.open(idx);
+                Path pack = packDir.resolve(packOf(names.get(i)));
+                mtimes[i] = Files.getLastModifiedTime(pack).toMillis();
+            }
+            return writeFile(packDir, names, packs, mtimes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Write the multi-pack-index of a repository, see {@link #write(Path)}. */
+    public static int write(Repository repo) {
+        return write(packDir(repo));
+    }
+
+    /** Number of objects indexed. */
+    public int objectCount() {
+        return count;
+    }
+
+    /** Names of the indexed packs ({@code pack-<hash>.idx}), sorted. */
+    public List<String> packNames() {
+        return packNames;
+    }
+
+    /**
+     * Find the pack and offset of an object.
+     *
+     * @return location of the object, or null if it is in none of the indexed packs
+     */
+    public Location find(Oid id) {
+        int pos = position(id.getId());
+        return pos < 0 ? null : location(pos);
+    }
+
+    /** Check whether one of the indexed packs contains an object. */
+    public boolean contains(Oid id) {
+        return position(id.getId()) >= 0;
+    }
+
+    /**
+     * Check the multi-pack-index against its checksum and against the pack indexes it covers.
+     *
+     * @return descriptions of the problems found, empty if the index is valid
+     */
+    public List<String> verify() {
+        List<String> problems = new ArrayList<>();
+        MessageDigest digest = sha1();
+        ByteBuffer content = buf.duplicate();
+        content.limit(buf.limit() - Oid.RAWSZ);
+        digest.update(content);
+        byte[] stored = new byte[Oid.RAWSZ];
+        ByteBuffer trailer = buf.duplicate();
+        trailer.position(buf.limit() - Oid.RAWSZ);
+        trailer.get(stored);
+        if (!Arrays.equals(digest.digest(), stored)) {
+            problems.add("checksum mismatch");
+        }
+        for (int i = 1; i < packNames.size(); i++) {
+            if (packNames.get(i - 1).compareTo(packNames.get(i)) >= 0) {
+                problems.add("pack names not sorted: " + packNames.get(i));
+            }
+        }
+        PackIndex[] packs = new PackIndex[packNames.size()];
+        for (int i = 0; i < packs.length; i++) {
+            try {
+                packs[i] = PackIndex.open(packDir.resolve(packNames.get(i)));
+            } catch (IOException e) {
+                problems.add("can not read " + packNames.get(i) + ": " + e.getMessage());
+            }
+        }
+        byte[] prev = new byte[Oid.RAWSZ];
+        byte[] id = new byte[Oid.RAWSZ];
+        int[] fanout = new int[256];
+        for (int i = 0; i < count; i++) {
+            id(i, id);
+            if (i > 0 && compare(prev, id) >= 0) {
+                problems.add("object ids not sorted at " + Oid.of(id));
+            }
+            fanout[id[0] & 0xff]++;
+            int pack = buf.getInt(offsetsOffset + i * 8);
+            if (pack < 0 || pack >= packs.length) {
+                problems.add("invalid pack for " + Oid.of(id));
+            } else if (packs[pack] != null) {
+                int inPack = packs[pack].find(id);
+                if (inPack < 0) {
+                    problems.add(Oid.of(id) + " not in " + packNames.get(pack));
+                } else if (packs[pack].offset(inPack) != offset(i)) {
+                    problems.add("wrong offset for " + Oid.of(id));
+                }
+            }
+            System.arraycopy(id, 0, prev, 0, Oid.RAWSZ);
+        }
+        int total = 0;
+        for (int b = 0; b < 256; b++) {
+            total += fanout[b];
+            if (buf.getInt(fanoutOffset + b * 4) != total) {
+                problems.add("fanout mismatch at " + b);
+                break;
+            }
+        }
+        for (int p = 0; p < packs.length; p++) {
+            if (packs[p] == null) {
+                continue;
+            }
+            for (int i = 0; i < packs[p].count(); i++) {
+                packs[p].id(i, id, 0);
+                if (position(id) < 0) {
+                    problems.add(Oid.of(id) + " of " + packNames.get(p) + " is missing");
+                    break;
+                }
+            }
+        }
+        return problems;
+    }
+
+    /**
+     * Verify the multi-pack-index of a pack directory, see {@link #verify()}.
+     *
+     * @return problems found, empty if valid or if there is no multi-pack-index
+     */
+    public static List<String> verify(Path packDir) {
+        MultiPackIndex midx;
+        try {
+            midx = open(packDir);
+        } catch (UncheckedIOException e) {
+            List<String> problems = new ArrayList<>();
+            problems.add(e.getCause().getMessage());
+            return problems;
+        }
+        return midx == null ? new ArrayList<>() : midx.verify();
+    }
+
+    /** Pack and offset of an object. */
+    public static class Location {
+        private final String packName;
+        private final long offset;
+
+        Location(String packName, long offset) {
+            this.packName = packName;
+            this.offset = offset;
+        }
+
+        /** Index file name of the pack, {@code pack-<hash>.idx}. */
+        public String getPackName() {
+            return packName;
+        }
+
+        /** Offset of the object in the pack file. */
+        public long getOffset() {
+            return offset;
+        }
+
+        @Override
+        public String toString() {
+            return packName + "@" + offset;
+        }
+    }
+
+    static Path packDir(Repository repo) {
+        return Paths.get(repo.getCommondir()).resolve("objects").resolve("pack");
+    }
+
+    private Location location(int pos) {
+        return new Location(packNames.get(buf.getInt(offsetsOffset + pos * 8)), offset(pos));
+    }
+
+    private long offset(int pos) {
+        int offset = buf.getInt(offsetsOffset + pos * 8 + 4);
+        if ((offset & LARGE_OFFSET_NEEDED) != 0 && largeOffsetsOffset >= 0) {
+            return buf.getLong(largeOffsetsOffset + (offset & ~LARGE_OFFSET_NEEDED) * 8);
+        }
+        return offset & 0xffffffffL;
+    }
+
+    private void id(int pos, byte[] out) {
+        ByteBuffer src = buf.duplicate();
+        src.position(lookupOffset + pos * Oid.RAWSZ);
+        src.get(out);
+    }
+
+    private int position(byte[] id) {
+        int first = id[0] & 0xff;
+        int lo = first == 0 ? 0 : buf.getInt(fanoutOffset + (first - 1) * 4);
+        int hi = buf.getInt(fanoutOffset + first * 4) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int base = lookupOffset + mid * Oid.RAWSZ;
+            int c = 0;
+            for (int k = 0; k < Oid.RAWSZ && c == 0; k++) {
+                c = (buf.get(base + k) & 0xff) - (id[k] & 0xff);
+            }
+            if (c == 0) {
+                return mid;
+            }
+            if (c < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return -1;
+    }
+
+    private static String packOf(String idxName) {
+        return idxName.substring(0, idxName.length() - ".idx".length()) + ".pack";
+    }
+
+    /** Merge the packs in two passes: count and lay out, then write. */
+    private static int writeFile(
+            Path packDir, List<String> names, PackIndex[] packs, long[] mtimes)
+            throws IOException {
+        int[] fanout = new int[256];
+        int count = 0;
+        boolean largeNeeded = false;
+        int largeCount = 0;
+        Merge merge = new Merge(packs, mtimes);
+        while (merge.next()) {
+            fanout[merge.id[0] & 0xff]++;
+            long offset = merge.offset();
+            largeNeeded |= offset > 0xffffffffL;
+            if (offset > 0x7fffffffL) {
+                largeCount++;
+            }
+            count++;
+        }
+        for (int b = 1; b < 256; b++) {
+            fanout[b] += fanout[b - 1];
+        }
+
+        ByteArrayOutputStream namesChunk = new ByteArrayOutputStream();
+        for (String name : names) {
+            namesChunk.write(name.getBytes(StandardCharsets.UTF_8));
+            namesChunk.write(0);
+        }
+        while (namesChunk.size() % 4 != 0) {
+            namesChunk.write(0);
+        }
+
+        int chunks = largeNeeded ? 5 : 4;
+        long[] chunkOffsets = new long[chunks + 1];
+        chunkOffsets[0] = HEADER_SIZE + (chunks + 1) * CHUNK_ENTRY_SIZE;
+        chunkOffsets[1] = chunkOffsets[0] + namesChunk.size();
+        chunkOffsets[2] = chunkOffsets[1] + FANOUT_SIZE;
+        chunkOffsets[3] = chunkOffsets[2] + (long) count * Oid.RAWSZ;
+        chunkOffsets[4] = chunkOffsets[3] + (long) count * 8;
+        if (largeNeeded) {
+            chunkOffsets[5] = chunkOffsets[4] + (long) largeCount * 8;
+        }
+        int[] chunkIds = {
+            CHUNK_PACK_NAMES, CHUNK_FANOUT, CHUNK_LOOKUP, CHUNK_OFFSETS, CHUNK_LARGE_OFFSETS
+        };
+
+        Path tmp = Files.createTempFile(packDir, "tmp_midx", null);
+        try {
+            MessageDigest digest = sha1();
+            try (OutputStream file = Files.newOutputStream(tmp)) {
+                DataOutputStream out =
+                        new DataOutputStream(
+                                new DigestOutputStream(
+                                        new BufferedOutputStream(file, 65536), digest));
+                out.writeInt(SIGNATURE);
+                out.writeByte(1);
+                out.writeByte(1);
+                out.writeByte(chunks);
+                out.writeByte(0);
+                out.writeInt(names.size());
+                for (int c = 0; c <= chunks; c++) {
+                    out.writeInt(c < chunks ? chunkIds[c] : 0);
+                    out.writeLong(chunkOffsets[c]);
+                }
+                out.write(namesChunk.toByteArray());
+                for (int b = 0; b < 256; b++) {
+                    out.writeInt(fanout[b]);
+                }
+                merge = new Merge(packs, mtimes);
+                while (merge.next()) {
+                    out.write(merge.id);
+                }
+                merge = new Merge(packs, mtimes);
+                int large = 0;
+                while (merge.next()) {
+                    long offset = merge.offset();
+                    out.writeInt(merge.pack);
+                    if (largeNeeded && offset > 0x7fffffffL) {
+                        out.writeInt(LARGE_OFFSET_NEEDED | large++);
+                    } else {
+                        out.writeInt((int) offset);
+                    }
+                }
+                if (largeNeeded) {
+                    merge = new Merge(packs, mtimes);
+                    while (merge.next()) {
+                        if (merge.offset() > 0x7fffffffL) {
+                            out.writeLong(merge.offset());
+                        }
+                    }
+                }
+                out.flush();
+                file.write(digest.digest());
+            }
+            Files.move(
+                    tmp,
+                    packDir.resolve(FILE_NAME),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return count;
+    }
+
+    private static int compare(byte[] a, byte[] b) {
+        for (int k = 0; k < Oid.RAWSZ; k++) {
+            int c = (a[k] & 0xff) - (b[k] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+
+    /**
+     * K-way merge over sorted pack indexes yielding each id once, from the most recently modified
+     * pack that has it.
+     */
+    private static final class Merge {
+        private final PackIndex[] packs;
+        private final long[] mtimes;
+        private final int[] pos;
+        private final byte[][] heads;
+        private final PriorityQueue<Integer> queue;
+        final byte[] id = new byte[Oid.RAWSZ];
+        int pack;
+        private int packPos;
+
+        Merge(PackIndex[] packs, long[] mtimes) {
+            this.packs = packs;
+            this.mtimes = mtimes;
+            this.pos = new int[packs.length];
+            this.heads = new byte[packs.length][Oid.RAWSZ];
+            this.queue =
+                    new PriorityQueue<>(
+                            Math.max(1, packs.length),
+                            (a, b) -> {
+                                int c = compare(heads[a], heads[b]);
+                                if (c != 0) {
+                                    return c;
+                                }
+                                c = Long.compare(mtimes[b], mtimes[a]);
+                                return c != 0 ? c : Integer.compare(a, b);
+                            });
+            for (int p = 0; p < packs.length; p++) {
+                advance(p);
+            }
+        }
+
+        boolean next() {
+            Integer p = queue.poll();
+            if (p == null) {
+                return false;
+            }
+            System.arraycopy(heads[p], 0, id, 0, Oid.RAWSZ);
+            pack = p;
+            packPos = pos[p] - 1;
+            advance(p);
+            // drop copies of the same object in other packs
+            while (!queue.isEmpty() && compare(heads[queue.peek()], id) == 0) {
+                advance(queue.poll());
+            }
+            return true;
+        }
+
+        long offset() {
+            return packs[pack].offset(packPos);
+        }
+
+        private void advance(int p) {
+            if (pos[p] < packs[p].count()) {
+                packs[p].id(pos[p]++, heads[p], 0);
+                queue.add(p);
+            }
+        }
+    }
+}
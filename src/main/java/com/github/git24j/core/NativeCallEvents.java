@@ -0,0 +1,61 @@
+package com.github.git24j.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * {@link Metrics.EventSink} committing flight recorder events. Loaded by name from {@link
+ * Metrics}, so runtimes without {@code jdk.jfr} never link it.
+ */
+final class NativeCallEvents implements Metrics.EventSink {
+    private final EventType type = EventType.getEventType(NativeCallEvent.class);
+
+    @Override
+    public boolean isEnabled() {
+        return type.isEnabled();
+    }
+
+    @Override
+    public void commit(
+            String operation, long elapsedNanos, int error, String repositoryPath, int objects) {
+        NativeCallEvent event = new NativeCallEvent();
+        event.operation = operation;
+        event.elapsed = elapsedNanos;
+        event.error = error;
+        event.repository = repositoryPath;
+        event.objects = objects;
+        event.commit();
+    }
+
+    @Name("com.github.git24j.NativeCall")
+    @Label("libgit2 Call")
+    @Category({"git24j"})
+    @Description("A libgit2 operation recorded by git24j Metrics")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class NativeCallEvent extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+
+        @Label("Error Code")
+        @Description("libgit2 error code, 0 on success")
+        int error;
+
+        @Label("Repository")
+        String repository;
+
+        @Label("Objects")
+        int objects;
+    }
+}
@@ -0,0 +1,643 @@
+package com.github.git24j.core;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size bounded cache of decoded objects, shareable between {@link Repository} handles.
+ *
+ * <p>libgit2 caches parsed objects per repository handle. Pools of handles on the same repository
+ * therefore decode the same hot commits and trees once per handle. Since objects never change, an
+ * {@code ObjectCache} keyed by id can serve them to all handles of a repository: commits as {@link
+ * CommitInfo}, trees as {@link TreeEntries} and small blobs as read-only bytes. A miss costs a
+ * single native call that reads the raw object, which is then decoded in java.
+ *
+ * <p>Entries are weighed by their approximate heap size and evicted in segmented LRU order: new
+ * entries go to a probation segment and are promoted to a protected segment, which holds up to
+ * 80% of the budget, when hit again. One-off scans therefore do not flush the hot set. All
+ * methods are thread safe.
+ *
+ * <pre>{@code
+ * ObjectCache cache = ObjectCache.shared(repo, 64 << 20);
+ * ObjectCache.TreeEntries root = cache.tree(repo, cache.commit(repo, head).getTree());
+ * }</pre>
+ */
+public final class ObjectCache {
+    /** Blobs larger than this are returned but not cached, unless configured otherwise. */
+    public static final int DEFAULT_MAX_BLOB_SIZE = 64 * 1024;
+
+    /** Approximate heap cost of an entry besides its contents: key, map node and value object. */
+    static final int ENTRY_OVERHEAD = 128;
+
+    private static final Map<Path, ObjectCache> SHARED = new ConcurrentHashMap<>();
+
+    private final long maxBytes;
+    private final long maxProtectedBytes;
+    private final int maxBlobSize;
+    private final Object lock = new Object();
+    private final LinkedHashMap<ByteBuffer, Entry> probation = new LinkedHashMap<>(64, 0.75f, true);
+    private final LinkedHashMap<ByteBuffer, Entry> protectedSegment =
+            new LinkedHashMap<>(64, 0.75f, true);
+    private long probationBytes;
+    private long protectedBytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Read an object from the object database of a repository.
+     *
+     * @param outErrorAndType receives the error code and the object type
+     * @return the raw contents, or null on error
+     */
+    static native byte[] jniRead(long repoPtr, byte[] id, int[] outErrorAndType);
+
+    /**
+     * @param maxBytes budget for the approximate heap size of all entries
+     * @param maxBlobSize largest blob that is cached
+     */
+    public ObjectCache(long maxBytes, int maxBlobSize) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("cache budget must be positive: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.maxProtectedBytes = maxBytes / 5 * 4;
+        this.maxBlobSize = maxBlobSize;
+    }
+
+    /** Cache with a byte budget that caches blobs up to {@link #DEFAULT_MAX_BLOB_SIZE}. */
+    public ObjectCache(long maxBytes) {
+        this(maxBytes, DEFAULT_MAX_BLOB_SIZE);
+    }
+
+    /**
+     * Cache shared by all callers asking for the same repository. The budget only applies when
+     * the cache is created by this call.
+     *
+     * @param repo any handle on the repository
+     * @param maxBytes budget for a newly created cache
+     */
+    public static ObjectCache shared(Repository repo, long maxBytes) {
+        return shared(Paths.get(repo.getPath()), maxBytes);
+    }
+
+    /**
+     * Cache shared by all callers asking for the same repository directory.
+     *
+     * @param gitDir path of the repository, see {@link Repository#getPath()}
+     * @param maxBytes budget for a newly created cache
+     */
+    public static ObjectCache shared(Path gitDir, long maxBytes) {
+        return SHARED.computeIfAbsent(sharedKey(gitDir), p -> new ObjectCache(maxBytes));
+    }
+
+    /** Forget the shared cache of a repository directory, e.g. once the repository is deleted. */
+    public static void removeShared(Path gitDir) {
+        SHARED.remove(sharedKey(gitDir));
+    }
+
+    /**
+     * Decoded commit.
+     *
+     * @throws GitException ENOTFOUND if there is no such object or it is not a commit, or other
+     *     git errors
+     */
+    public CommitInfo commit(Repository repo, Oid id) {
+        return get(repo, id, GitObject.Type.COMMIT, CommitInfo.class);
+    }
+
+    /**
+     * Decoded tree.
+     *
+     * @throws GitException ENOTFOUND if there is no such object or it is not a tree, or other git
+     *     errors
+     */
+    public TreeEntries tree(Repository repo, Oid id) {
+        return get(repo, id, GitObject.Type.TREE, TreeEntries.class);
+    }
+
+    /**
+     * Contents of a blob, as a read-only buffer. Blobs larger than the configured maximum are read
+     * every time.
+     *
+     * @throws GitException ENOTFOUND if there is no such object or it is not a blob, or other git
+     *     errors
+     */
+    public ByteBuffer blob(Repository repo, Oid id) {
+        return ByteBuffer.wrap(get(repo, id, GitObject.Type.BLOB, byte[].class)).asReadOnlyBuffer();
+    }
+
+    /** Drop the entry of an object, e.g. after it has been removed from the object database. */
+    public void invalidate(Oid id) {
+        ByteBuffer key = ByteBuffer.wrap(id.getId());
+        synchronized (lock) {
+            Entry e = probation.remove(key);
+            if (e != null) {
+                probationBytes -= e.weight;
+            }
+            e = protectedSegment.remove(key);
+            if (e != null) {
+                protectedBytes -= e.weight;
+            }
+        }
+    }
+
+    /** Drop all entries. Counters are kept. */
+    public void invalidateAll() {
+        synchronized (lock) {
+            probation.clear();
+            protectedSegment.clear();
+            probationBytes = 0;
+            protectedBytes = 0;
+        }
+    }
+
+    /** Budget of this cache in bytes. */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /** Snapshot of the counters and the current size. */
+    public Stats stats() {
+        int entries;
+        long weight;
+        synchronized (lock) {
+            entries = probation.size() + protectedSegment.size();
+            weight = probationBytes + protectedBytes;
+        }
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), entries, weight);
+    }
+
+    private <T> T get(Repository repo, Oid id, GitObject.Type type, Class<T> valueClass) {
+        byte[] raw = id.getId();
+        Object value = getIfPresent(raw);
+        if (value != null) {
+            hits.increment();
+            return checkType(value, id, type, valueClass);
+        }
+        misses.increment();
+        int[] outErrorAndType = new int[2];
+        byte[] data = repo.withPointer(repoPtr -> jniRead(repoPtr, raw, outErrorAndType));
+        Error.throwIfNeeded(outErrorAndType[0]);
+        if (outErrorAndType[1] != type.getValue()) {
+            throw typeMismatch(id, type);
+        }
+        Object decoded;
+        long weight;
+        switch (type) {
+            case COMMIT:
+                CommitInfo commit = CommitInfo.parse(data);
+                decoded = commit;
+                weight = commit.weight;
+                break;
+            case TREE:
+                TreeEntries tree = TreeEntries.parse(data);
+                decoded = tree;
+                weight = tree.weight;
+                break;
+            default:
+                decoded = data;
+                weight = data.length <= maxBlobSize ? data.length + ENTRY_OVERHEAD : -1;
+                break;
+        }
+        if (weight >= 0) {
+            put(raw, decoded, weight);
+        }
+        return valueClass.cast(decoded);
+    }
+
+    /** Cached value of an id, promoting it on a hit, or null. Does not count hits or misses. */
+    Object getIfPresent(byte[] id) {
+        ByteBuffer key = ByteBuffer.wrap(id);
+        synchronized (lock) {
+            Entry e = protectedSegment.get(key);
+            if (e != null) {
+                return e.value;
+            }
+            e = probation.remove(key);
+            if (e == null) {
+                return null;
+            }
+            probationBytes -= e.weight;
+            protectedSegment.put(e.key, e);
+            protectedBytes += e.weight;
+            demoteOverflow();
+            return e.value;
+        }
+    }
+
+    /** Add a value unless the id is already cached, evicting entries over the budget. */
+    void put(byte[] id, Object value, long weight) {
+        if (weight > maxBytes) {
+            return;
+        }
+        ByteBuffer key = ByteBuffer.wrap(Arrays.copyOf(id, Oid.RAWSZ));
+        synchronized (lock) {
+            if (protectedSegment.containsKey(key) || probation.containsKey(key)) {
+                return;
+            }
+            probation.put(key, new Entry(key, value, weight));
+            probationBytes += weight;
+            evictOverflow();
+        }
+    }
+
+    /** Move least recently used protected entries back to probation while over its share. */
+    private void demoteOverflow() {
+        Iterator<Entry> it = protectedSegment.values().iterator();
+        while (protectedBytes > maxProtectedBytes && it.hasNext()) {
+            Entry e = it.next();
+            it.remove();
+            protectedBytes -= e.weight;
+            probation.put(e.key, e);
+            probationBytes += e.weight;
+        }
+        evictOverflow();
+    }
+
+    /** Evict from the probation segment first, then from the protected one. */
+    private void evictOverflow() {
+        Iterator<Entry> it = probation.values().iterator();
+        while (probationBytes + protectedBytes > maxBytes && it.hasNext()) {
+            probationBytes -= it.next().weight;
+            it.remove();
+            evictions.increment();
+        }
+        it = protectedSegment.values().iterator();
+        while (probationBytes + protectedBytes > maxBytes && it.hasNext()) {
+            protectedBytes -= it.next().weight;
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    private static <T> T checkType(
+            Object value, Oid id, GitObject.Type type, Class<T> valueClass) {
+        if (!valueClass.isInstance(value)) {
+            throw typeMismatch(id, type);
+        }
+        return valueClass.cast(value);
+    }
+
+    /** Same error as libgit2 reports for a lookup with the wrong type. */
+    private static GitException typeMismatch(Oid id, GitObject.Type type) {
+        GitException e =
+                new GitException(
+                        GitException.ErrorClass.INVALID.ordinal(),
+                        "the requested type does not match the type in the ODB: "
+                                + id
+                                + " is not a "
+                                + type.name().toLowerCase());
+        e.setCode(GitException.ErrorCode.ENOTFOUND);
+        return e;
+    }
+
+    private static Path sharedKey(Path gitDir) {
+        return gitDir.toAbsolutePath().normalize();
+    }
+
+    private static final class Entry {
+        final ByteBuffer key;
+        final Object value;
+        final long weight;
+
+        Entry(ByteBuffer key, Object value, long weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /** Counters and size of a cache. */
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final int entries;
+        private final long weight;
+
+        Stats(long hits, long misses, long evictions, int entries, long weight) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.entries = entries;
+            this.weight = weight;
+        }
+
+        /** Lookups answered from the cache. */
+        public long getHits() {
+            return hits;
+        }
+
+        /** Lookups that read the object database. */
+        public long getMisses() {
+            return misses;
+        }
+
+        /** Entries evicted to stay within the budget. */
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /** Number of cached objects. */
+        public int getEntries() {
+            return entries;
+        }
+
+        /** Approximate heap size of the cached objects. */
+        public long getWeight() {
+            return weight;
+        }
+
+        /** Fraction of lookups answered from the cache, 0 before the first lookup. */
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return "hits: "
+                    + hits
+                    + ", misses: "
+                    + misses
+                    + ", evictions: "
+                    + evictions
+                    + ", entries: "
+                    + entries
+                    + ", bytes: "
+                    + weight;
+        }
+    }
+
+    /** Author or committer of a commit. */
+    public static final class Signature {
+        private final String name;
+        private final String email;
+        private final long time;
+        private final int offsetMinutes;
+
+        Signature(String name, String email, long time, int offsetMinutes) {
+            this.name = name;
+            this.email = email;
+            this.time = time;
+            this.offsetMinutes = offsetMinutes;
+        }
+
+        /** Parse {@code "Name <email> 1234567890 +0100"}. */
+        static Signature parse(String s) {
+            int lt = s.indexOf('<');
+            int gt = s.lastIndexOf('>');
+            if (lt < 0 || gt < lt) {
+                return new Signature(s.trim(), "", 0, 0);
+            }
+            String name = s.substring(0, lt).trim();
+            String email = s.substring(lt + 1, gt);
+            String[] when = s.substring(gt + 1).trim().split(" ");
+            long time = 0;
+            int offset = 0;
+            try {
+                time = Long.parseLong(when[0]);
+                if (when.length > 1 && when[1].length() == 5) {
+                    int hhmm = Integer.parseInt(when[1].substring(1));
+                    offset = (hhmm / 100 * 60 + hhmm % 100) * (when[1].charAt(0) == '-' ? -1 : 1);
+                }
+            } catch (NumberFormatException e) {
+                // malformed date, keep what could be parsed like git does
+            }
+            return new Signature(name, email, time, offset);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        /** Seconds since the epoch. */
+        public long getTime() {
+            return time;
+        }
+
+        /** Timezone offset from UTC in minutes. */
+        public int getOffsetMinutes() {
+            return offsetMinutes;
+        }
+
+        @Override
+        public String toString() {
+            return name + " <" + email + "> " + time;
+        }
+    }
+
+    /** Decoded commit metadata. */
+    public static final class CommitInfo {
+        private final Oid tree;
+        private final List<Oid> parents;
+        private final Signature author;
+        private final Signature committer;
+        private final String messageEncoding;
+        private final String message;
+        final long weight;
+
+        CommitInfo(
+                Oid tree,
+                List<Oid> parents,
+                Signature author,
+                Signature committer,
+                String messageEncoding,
+                String message,
+                long weight) {
+            this.tree = tree;
+            this.parents = parents;
+            this.author = author;
+            this.committer = committer;
+            this.messageEncoding = messageEncoding;
+            this.message = message;
+            this.weight = weight;
+        }
+
+        /** Decode the raw contents of a commit object. */
+        static CommitInfo parse(byte[] raw) {
+            Oid tree = null;
+            List<Oid> parents = new ArrayList<>(1);
+            Signature author = null;
+            Signature committer = null;
+            String encoding = null;
+            int pos = 0;
+            while (pos < raw.length && raw[pos] != '\n') {
+                int eol = find(raw, (byte) '\n', pos);
+                String line = new String(raw, pos, eol - pos, StandardCharsets.UTF_8);
+                pos = eol + 1;
+                if (line.startsWith("tree ")) {
+                    tree = Oid.of(line.substring(5));
+                } else if (line.startsWith("parent ")) {
+                    parents.add(Oid.of(line.substring(7)));
+                } else if (line.startsWith("author ")) {
+                    author = Signature.parse(line.substring(7));
+                } else if (line.startsWith("committer ")) {
+                    committer = Signature.parse(line.substring(10));
+                } else if (line.startsWith("encoding ")) {
+                    encoding = line.substring(9);
+                }
+                // other headers and their continuation lines, e.g. gpgsig, are not kept
+            }
+            int start = Math.min(pos + 1, raw.length);
+            String message = new String(raw, start, raw.length - start, StandardCharsets.UTF_8);
+            long weight = ENTRY_OVERHEAD + 2L * raw.length;
+            return new CommitInfo(
+                    tree,
+                    Collections.unmodifiableList(parents),
+                    author,
+                    committer,
+                    encoding,
+                    message,
+                    weight);
+        }
+
+        public Oid getTree() {
+            return tree;
+        }
+
+        /** Parent ids in order, empty for a root commit. */
+        public List<Oid> getParents() {
+            return parents;
+        }
+
+        public Signature getAuthor() {
+            return author;
+        }
+
+        public Signature getCommitter() {
+            return committer;
+        }
+
+        /** Value of the encoding header, or null if the message is UTF-8. */
+        public String getMessageEncoding() {
+            return messageEncoding;
+        }
+
+        /** Full message, decoded as UTF-8. */
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    /** Decoded entries of a tree, in tree order. */
+    public static final class TreeEntries {
+        private final String[] names;
+        private final byte[] ids;
+        private final int[] modes;
+        final long weight;
+
+        TreeEntries(String[] names, byte[] ids, int[] modes, long weight) {
+            this.names = names;
+            this.ids = ids;
+            this.modes = modes;
+            this.weight = weight;
+        }
+
+        /** Decode the raw contents of a tree object: {@code <octal mode> <name>\0<raw id>}. */
+        static TreeEntries parse(byte[] raw) {
+            List<String> names = new ArrayList<>();
+            List<Integer> modes = new ArrayList<>();
+            byte[] ids = new byte[raw.length / 2];
+            int count = 0;
+            int pos = 0;
+            long chars = 0;
+            while (pos < raw.length) {
+                int mode = 0;
+                while (pos < raw.length && raw[pos] != ' ') {
+                    mode = (mode << 3) | (raw[pos++] - '0');
+                }
+                int nul = find(raw, (byte) 0, ++pos);
+                String name = new String(raw, pos, nul - pos, StandardCharsets.UTF_8);
+                pos = nul + 1;
+                if (pos + Oid.RAWSZ > raw.length) {
+                    throw new IllegalArgumentException("truncated tree entry " + name);
+                }
+                if ((count + 1) * Oid.RAWSZ > ids.length) {
+                    ids = Arrays.copyOf(ids, ids.length * 2 + Oid.RAWSZ);
+                }
+                System.arraycopy(raw, pos, ids, count * Oid.RAWSZ, Oid.RAWSZ);
+                pos += Oid.RAWSZ;
+                names.add(name);
+                modes.add(mode);
+                chars += name.length();
+                count++;
+            }
+            int[] modeArray = new int[count];
+            for (int i = 0; i < count; i++) {
+                modeArray[i] = modes.get(i);
+            }
+            long weight = ENTRY_OVERHEAD + count * (Oid.RAWSZ + 4L + 48) + 2 * chars;
+            return new TreeEntries(
+                    names.toArray(new String[0]),
+                    Arrays.copyOf(ids, count * Oid.RAWSZ),
+                    modeArray,
+                    weight);
+        }
+
+        /** Number of entries. */
+        public int size() {
+            return names.length;
+        }
+
+        public String getName(int i) {
+            return names[i];
+        }
+
+        public Oid getId(int i) {
+            return Oid.of(Arrays.copyOfRange(ids, i * Oid.RAWSZ, (i + 1) * Oid.RAWSZ));
+        }
+
+        /** File mode, e.g. {@code 0100644}, {@code 040000} for trees. */
+        public int getMode(int i) {
+            return modes[i];
+        }
+
+        /** Type of the object an entry points to, {@code COMMIT} for submodules. */
+        public GitObject.Type getType(int i) {
+            switch (modes[i] & 0170000) {
+                case 0040000:
+                    return GitObject.Type.TREE;
+                case 0160000:
+                    return GitObject.Type.COMMIT;
+                default:
+                    return GitObject.Type.BLOB;
+            }
+        }
+
+        /** Position of the entry with the given name, or -1. */
+        public int indexOf(String name) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static int find(byte[] raw, byte b, int from) {
+        for (int i = from; i < raw.length; i++) {
+            if (raw[i] == b) {
+                return i;
+            }
+        }
+        return raw.length;
+    }
+}
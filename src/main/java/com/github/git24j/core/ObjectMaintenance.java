@@ -0,0 +1,599 @@
+package com.github.git24j.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Keep objects of a repository packed.
+ *
+ * <p>Every object lookup probes the index of each pack in turn before falling back to loose
+ * files, so read latency grows with the number of packs. {@link #repack} consolidates all packs
+ * and reachable loose objects into one new pack built with a multithreaded {@link PackBuilder},
+ * removes the old packs and prunes loose objects, and {@link #repackTask} does so from a {@link
+ * MaintenanceScheduler} once a repository has accumulated enough packs or loose objects. Between
+ * repacks, {@link #multiPackIndexTask} keeps a {@link MultiPackIndex} over all packs.
+ *
+ * <p>Objects already in packs are always carried over, reachable or not. Loose objects that are
+ * not reachable from a reference, or from the {@code HEAD}, index or reflogs of any worktree, are
+ * deleted once they are older than {@link Options#getPruneAge}, which protects objects written by
+ * operations still in progress. Packs with a {@code .keep} file are neither rewritten nor copied.
+ */
+public class ObjectMaintenance {
+    private static final String PACK_PREFIX = "pack-";
+    private static final String ZERO_HEX = "0000000000000000000000000000000000000000";
+
+    /** Object storage statistics of a repository. */
+    public static class Stats {
+        private final int looseObjects;
+        private final long looseSize;
+        private final int packs;
+        private final long packSize;
+
+        public Stats(int looseObjects, long looseSize, int packs, long packSize) {
+            this.looseObjects = looseObjects;
+            this.looseSize = looseSize;
+            this.packs = packs;
+            this.packSize = packSize;
+        }
+
+        /** Number of loose object files. */
+        public int getLooseObjects() {
+            return looseObjects;
+        }
+
+        /** Total size of loose object files in bytes. */
+        public long getLooseSize() {
+            return looseSize;
+        }
+
+        /** Number of packs. */
+        public int getPacks() {
+            return packs;
+        }
+
+        /** Total size of pack files in bytes, without their indexes. */
+        public long getPackSize() {
+            return packSize;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{looseObjects="
+                    + looseObjects
+                    + ", looseSize="
+                    + looseSize
+                    + ", packs="
+                    + packs
+                    + ", packSize="
+                    + packSize
+                    + '}';
+        }
+    }
+
+    /** Settings of a {@link #repack}. */
+    public static class Options {
+        private int threads;
+        private long pruneAgeMillis = TimeUnit.DAYS.toMillis(14);
+
+        /** Delta search threads, 0 (the default) for one per cpu. */
+        public int getThreads() {
+            return threads;
+        }
+
+        public Options setThreads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /** Minimum age of unreachable loose objects before they are deleted, 14 days by default. */
+        public long getPruneAge(TimeUnit unit) {
+            return unit.convert(pruneAgeMillis, TimeUnit.MILLISECONDS);
+        }
+
+        public Options setPruneAge(long age, TimeUnit unit) {
+            this.pruneAgeMillis = unit.toMillis(age);
+            return this;
+        }
+    }
+
+    /** Outcome of a {@link #repack}. */
+    public static class Result {
+        private final Oid pack;
+        private final long objects;
+        private final int removedPacks;
+        private final int removedLoose;
+        private final int prunedLoose;
+
+        Result(Oid pack, long objects, int removedPacks, int removedLoose, int prunedLoose) {
+            this.pack = pack;
+            this.objects = objects;
+            this.removedPacks = removedPacks;
+            this.removedLoose = removedLoose;
+            this.prunedLoose = prunedLoose;
+        }
+
+        /** Checksum naming the new pack, null if there was nothing to pack. */
+        public Oid getPack() {
+            return pack;
+        }
+
+        /** Number of objects in the new pack. */
+        public long getObjects() {
+            return objects;
+        }
+
+        /** Number of packs replaced by the new pack. */
+        public int getRemovedPacks() {
+            return removedPacks;
+        }
+
+        /** Number of loose objects deleted because the new pack or a kept pack has them. */
+        public int getRemovedLoose() {
+            return removedLoose;
+        }
+
+        /** Number of unreachable loose objects deleted because they were old enough. */
+        public int getPrunedLoose() {
+            return prunedLoose;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{pack="
+                    + pack
+                    + ", objects="
+                    + objects
+                    + ", removedPacks="
+                    + removedPacks
+                    + ", removedLoose="
+                    + removedLoose
+                    + ", prunedLoose="
+                    + prunedLoose
+                    + '}';
+        }
+    }
+
+    /**
+     * Count loose objects and packs of a repository.
+     *
+     * @throws UncheckedIOException if the object directory could not be read
+     */
+    public static Stats stats(Repository repo) {
+        Path objects = objectsDir(repo);
+        int looseObjects = 0;
+        long looseSize = 0;
+        for (Path file : looseObjects(objects)) {
+            looseObjects++;
+            looseSize += sizeOf(file);
+        }
+        int packs = 0;
+        long packSize = 0;
+        for (Path pack : packs(objects)) {
+            packs++;
+            packSize += sizeOf(pack);
+        }
+        return new Stats(looseObjects, looseSize, packs, packSize);
+    }
+
+    /**
+     * Consolidate all packs and reachable loose objects into a single pack and prune old
+     * unreachable loose objects. Packs with a {@code .keep} file are left alone and their objects
+     * are not copied into the new pack.
+     *
+     * @throws GitException git error
+     * @throws UncheckedIOException if object files could not be read or deleted
+     */
+    public static Result repack(Repository repo, Options options) {
+        Path objects = objectsDir(repo);
+        Path packDir = objects.resolve("pack");
+        List<Path> oldPacks = new ArrayList<>();
+        List<PackIndex> keptPacks = new ArrayList<>();
+        for (Path pack : packs(objects)) {
+            if (Files.exists(sibling(pack, ".keep"))) {
+                keptPacks.add(openIndex(sibling(pack, ".idx")));
+            } else {
+                oldPacks.add(pack);
+            }
+        }
+        long pruneBefore = System.currentTimeMillis() - options.pruneAgeMillis;
+
+        Oid packId;
+        long packed;
+        try (PackBuilder pb = PackBuilder.create(repo)) {
+            pb.setThreads(options.threads);
+            insertReachable(repo, pb);
+            byte[] raw = new byte[Oid.RAWSZ];
+            for (Path pack : oldPacks) {
+                PackIndex idx = openIndex(sibling(pack, ".idx"));
+                for (int i = 0; i < idx.count(); i++) {
+                    idx.id(i, raw, 0);
+                    pb.insert(Oid.of(raw), null);
+                }
+            }
+            if (pb.objectCount() == 0) {
+                return new Result(null, 0, 0, 0, 0);
+            }
+            Files.createDirectories(packDir);
+            if (keptPacks.isEmpty()) {
+                pb.write(packDir);
+                packId = pb.hash();
+                packed = pb.objectCount();
+            } else {
+                try (PackBuilder unkept = withoutKept(repo, options, pb, packDir, keptPacks)) {
+                    if (unkept.objectCount() == 0) {
+                        return new Result(null, 0, 0, 0, 0);
+                    }
+                    unkept.write(packDir);
+                    packId = unkept.hash();
+                    packed = unkept.objectCount();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        Path newPack = packDir.resolve(PACK_PREFIX + packId + ".pack");
+        // never leave a multi-pack-index pointing at removed packs
+        Path midx = packDir.resolve(MultiPackIndex.FILE_NAME);
+        boolean hadMidx = Files.exists(midx);
+        delete(midx);
+        int removedPacks = 0;
+        for (Path pack : oldPacks) {
+            if (!pack.equals(newPack)) {
+                deletePack(pack);
+                removedPacks++;
+            }
+        }
+
+        PackIndex idx = openIndex(sibling(newPack, ".idx"));
+        int removedLoose = 0;
+        int prunedLoose = 0;
+        for (Path file : looseObjects(objects)) {
+            String hex = file.getParent().getFileName().toString() + file.getFileName();
+            byte[] raw = Oid.hexStringToByteArray(hex);
+            if (idx.find(raw) >= 0 || inAny(keptPacks, raw)) {
+                delete(file);
+                removedLoose++;
+            } else if (lastModified(file) < pruneBefore) {
+                delete(file);
+                prunedLoose++;
+            }
+        }
+        if (hadMidx) {
+            MultiPackIndex.write(packDir);
+        }
+        try (Odb odb = repo.odb()) {
+            odb.refresh();
+        }
+        return new Result(packId, packed, removedPacks, removedLoose, prunedLoose);
+    }
+
+    /**
+     * A maintenance task that repacks a repository once it has at least {@code minPacks} packs or
+     * {@code minLooseObjects} loose objects. At most {@code maxConcurrent} repacks started by
+     * tasks of this call run at the same time, a run that would exceed it is skipped.
+     */
+    public static MaintenanceScheduler.Task repackTask(
+            int minPacks, int minLooseObjects, int maxConcurrent, Options options) {
+        Semaphore permits = new Semaphore(maxConcurrent);
+        return repo -> {
+            Stats stats = stats(repo);
+            if (stats.getPacks() < minPacks && stats.getLooseObjects() < minLooseObjects) {
+                return;
+            }
+            if (!permits.tryAcquire()) {
+                return;
+            }
+            try {
+                repack(repo, options);
+            } finally {
+                permits.release();
+            }
+        };
+    }
+
+    /**
+     * A maintenance task that rewrites the {@link MultiPackIndex} of a repository once it has at
+     * least {@code minPacks} packs and the multi-pack-index is missing or does not index exactly
+     * those packs.
+     */
+    public static MaintenanceScheduler.Task multiPackIndexTask(int minPacks) {
+        return repo -> {
+            Path objects = objectsDir(repo);
+            List<Path> packs = packs(objects);
+            if (packs.size() < minPacks) {
+                return;
+            }
+            Set<String> names = new HashSet<>();
+            for (Path pack : packs) {
+                names.add(sibling(pack, ".idx").getFileName().toString());
+            }
+            MultiPackIndex midx = MultiPackIndex.open(objects.resolve("pack"));
+            if (midx == null || !names.equals(new HashSet<>(midx.packNames()))) {
+                MultiPackIndex.write(objects.resolve("pack"));
+            }
+        };
+    }
+
+    /**
+     * A builder with the objects of {@code all} that none of the kept packs has. Builders can only
+     * add objects, so {@code all} is written to a scratch directory first and its index tells what
+     * it holds.
+     */
+    private static PackBuilder withoutKept(
+            Repository repo, Options options, PackBuilder all, Path packDir, List<PackIndex> kept)
+            throws IOException {
+        Path scratch = Files.createTempDirectory(packDir, "tmp-repack-");
+        try {
+            all.write(scratch);
+            PackIndex idx = openIndex(scratch.resolve(PACK_PREFIX + all.hash() + ".idx"));
+            PackBuilder pb = PackBuilder.create(repo);
+            try {
+                pb.setThreads(options.threads);
+                byte[] raw = new byte[Oid.RAWSZ];
+                for (int i = 0; i < idx.count(); i++) {
+                    idx.id(i, raw, 0);
+                    if (!inAny(kept, raw)) {
+                        pb.insert(Oid.of(raw), null);
+                    }
+                }
+                return pb;
+            } catch (RuntimeException e) {
+                pb.close();
+                throw e;
+            }
+        } finally {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(scratch)) {
+                for (Path file : files) {
+                    delete(file);
+                }
+            }
+            delete(scratch);
+        }
+    }
+
+    private static boolean inAny(List<PackIndex> packs, byte[] id) {
+        for (PackIndex idx : packs) {
+            if (idx.find(id) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Insert everything reachable from a reference, or from the {@code HEAD}, index or reflogs of
+     * the main and every linked worktree. These are the roots {@code git gc} protects too.
+     */
+    private static void insertReachable(Repository repo, PackBuilder pb) throws IOException {
+        List<Oid> commits = new ArrayList<>();
+        for (RefIterator.Entry entry : RefIterator.list(repo, null)) {
+            if (entry.getSymbolicTarget() != null) {
+                continue;
+            }
+            Reference ref;
+            try {
+                ref = Reference.lookup(repo, entry.getName());
+            } catch (GitException e) {
+                // concurrently deleted
+                continue;
+            }
+            try (Reference direct = ref.resolve();
+                    GitObject target = direct.peel(GitObject.Type.ANY)) {
+                Oid id = direct.target();
+                pb.insertRecursive(id, null);
+                if (target.type() == GitObject.Type.COMMIT) {
+                    commits.add(id);
+                }
+            } catch (GitException e) {
+                // references to missing objects can not be packed
+            } finally {
+                ref.close();
+            }
+        }
+
+        Path common = Paths.get(repo.getCommondir());
+        List<Path> gitDirs = new ArrayList<>();
+        gitDirs.add(common);
+        try (DirectoryStream<Path> worktrees =
+                Files.newDirectoryStream(common.resolve("worktrees"), Files::isDirectory)) {
+            for (Path gitDir : worktrees) {
+                gitDirs.add(gitDir);
+            }
+        } catch (NoSuchFileException e) {
+            // no linked worktrees
+        }
+        Set<String> seen = new HashSet<>();
+        for (Path gitDir : gitDirs) {
+            List<String> roots = new ArrayList<>();
+            String head = readFirstLine(gitDir.resolve("HEAD"));
+            if (head != null && isHex(head)) {
+                roots.add(head);
+            }
+            for (Path log : reflogs(gitDir.resolve("logs"))) {
+                for (String line : Files.readAllLines(log, StandardCharsets.UTF_8)) {
+                    // "<old> <new> <committer> <time> <tz>\t<message>"
+                    if (line.length() > 2 * Oid.HEXSZ) {
+                        roots.add(line.substring(0, Oid.HEXSZ));
+                        roots.add(line.substring(Oid.HEXSZ + 1, 2 * Oid.HEXSZ + 1));
+                    }
+                }
+            }
+            for (String hex : roots) {
+                if (isHex(hex) && !hex.equals(ZERO_HEX) && seen.add(hex)) {
+                    insertRoot(repo, pb, Oid.of(hex), commits);
+                }
+            }
+            Path index = gitDir.resolve("index");
+            if (Files.exists(index)) {
+                try (Index idx = Index.open(index.toString())) {
+                    for (Oid id : idx.objectIds()) {
+                        if (seen.add(id.toString())) {
+                            insertRoot(repo, pb, id, commits);
+                        }
+                    }
+                } catch (GitException e) {
+                    // unreadable index, e.g. written by a newer git
+                }
+            }
+        }
+        if (!commits.isEmpty()) {
+            pb.insertWalk(commits, new ArrayList<>());
+        }
+    }
+
+    /** Insert {@code id} and what it refers to, and remember commits for the history walk. */
+    private static void insertRoot(Repository repo, PackBuilder pb, Oid id, List<Oid> commits) {
+        try (GitObject obj = GitObject.lookup(repo, id, GitObject.Type.ANY)) {
+            pb.insertRecursive(id, null);
+            if (obj.type() == GitObject.Type.COMMIT) {
+                commits.add(id);
+            }
+        } catch (GitException e) {
+            // reflogs may name objects that are long gone
+        }
+    }
+
+    /** Files under a {@code logs} directory, if there is one. */
+    private static List<Path> reflogs(Path logs) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (Files.isDirectory(logs)) {
+            try (Stream<Path> walk = Files.walk(logs)) {
+                walk.filter(Files::isRegularFile).forEach(files::add);
+            }
+        }
+        return files;
+    }
+
+    private static String readFirstLine(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            return line == null ? null : line.trim();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static boolean isHex(String s) {
+        if (s.length() != Oid.HEXSZ) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Path objectsDir(Repository repo) {
+        return Paths.get(repo.getCommondir()).resolve("objects");
+    }
+
+    /** Files under the two hex digit fan-out directories. */
+    private static List<Path> looseObjects(Path objects) {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(objects, "[0-9a-f][0-9a-f]")) {
+            for (Path dir : dirs) {
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                    for (Path file : entries) {
+                        if (file.getFileName().toString().length() == Oid.HEXSZ - 2) {
+                            files.add(file);
+                        }
+                    }
+                } catch (NoSuchFileException e) {
+                    // emptied and removed concurrently
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return files;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return files;
+    }
+
+    /** Pack files that have an index. */
+    private static List<Path> packs(Path objects) {
+        List<Path> packs = new ArrayList<>();
+        try (DirectoryStream<Path> entries =
+                Files.newDirectoryStream(objects.resolve("pack"), PACK_PREFIX + "*.pack")) {
+            for (Path pack : entries) {
+                if (Files.exists(sibling(pack, ".idx"))) {
+                    packs.add(pack);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return packs;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return packs;
+    }
+
+    /** {@code pack-<hash>.pack} to {@code pack-<hash><ext>}. */
+    private static Path sibling(Path pack, String ext) {
+        String name = pack.getFileName().toString();
+        return pack.resolveSibling(name.substring(0, name.length() - ".pack".length()) + ext);
+    }
+
+    private static PackIndex openIndex(Path idx) {
+        try {
+            return PackIndex.open(idx);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Delete the index first, so readers never see a pack without one. */
+    private static void deletePack(Path pack) {
+        delete(sibling(pack, ".idx"));
+        delete(pack);
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (NoSuchFileException e) {
+            return 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class)
+                    .lastModifiedTime()
+                    .toMillis();
+        } catch (NoSuchFileException e) {
+            return Long.MAX_VALUE;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
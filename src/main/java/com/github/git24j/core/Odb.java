@@ -1,12 +1,104 @@
 package com.github.git24j.core;
 
+import java.nio.ByteBuffer;
+
+/** An object database, see {@link Repository#odb()}. */
 public class Odb extends CAutoCloseable {
+    static {
+        Libgit2.ensureInit();
+    }
+
     public Odb(long rawPointer) {
         super(rawPointer);
     }
 
+    static native long jniNew();
+
+    static native void jniFree(long odbPtr);
+
+    static native int jniAddBackend(long odbPtr, OdbBackendAdapter adapter, int priority);
+
+    static native int jniWrite(
+            Oid outOid,
+            long odbPtr,
+            ByteBuffer directBuf,
+            byte[] array,
+            int offset,
+            int len,
+            int type);
+
+    static native int jniRefresh(long odbPtr);
+
+    /**
+     * Create a new object database with no backends. Use {@link #addBackend} to give it storage
+     * and {@link Repository#wrapOdb(Odb)} to operate on it.
+     *
+     * @throws GitException git error
+     */
+    public static Odb create() {
+        long odbPtr = Error.handleOrThrow(jniNew());
+        return new Odb(odbPtr);
+    }
+
+    /**
+     * Add a java backend to this object database. Reads consult backends in order of descending
+     * priority (the default loose and packed backends use 1 and 2); writes go to the first backend
+     * that accepts writes.
+     *
+     * <p>The database keeps the backend until it is freed, then calls {@link OdbBackend#close()}.
+     * Backend methods may be called from any thread that uses the database.
+     *
+     * @param backend the backend
+     * @param priority value for ordering the backends queue
+     * @throws GitException git error
+     */
+    public void addBackend(OdbBackend backend, int priority) {
+        Error.throwIfNeeded(
+                jniAddBackend(getRawPointer(), new OdbBackendAdapter(backend), priority));
+    }
+
+    /**
+     * Write an object directly into the object database, as a loose object with the default
+     * backends. Use a {@link PackWriter} to insert many objects at once.
+     *
+     * @param type type of the object
+     * @param data content of the object, from its position to its limit. Direct buffers are
+     *     passed to native code without a copy, heap buffers are copied once.
+     * @return id of the written object
+     * @throws GitException git error
+     */
+    public Oid write(GitObject.Type type, ByteBuffer data) {
+        Oid oid = new Oid();
+        int len = data.remaining();
+        int e;
+        if (data.isDirect()) {
+            e = jniWrite(oid, getRawPointer(), data.slice(), null, 0, len, type.getValue());
+        } else if (data.hasArray()) {
+            int offset = data.arrayOffset() + data.position();
+            e = jniWrite(oid, getRawPointer(), null, data.array(), offset, len, type.getValue());
+        } else {
+            byte[] copy = new byte[len];
+            data.duplicate().get(copy);
+            e = jniWrite(oid, getRawPointer(), null, copy, 0, len, type.getValue());
+        }
+        Error.throwIfNeeded(e);
+        return oid;
+    }
+
+    /**
+     * Rescan the object directories, making packs added or removed by others (e.g. a repack)
+     * visible. Lookups of missing objects already rescan, so this is only needed to drop removed
+     * packs or to see new objects ahead of time.
+     *
+     * @throws GitException git error
+     */
+    public void refresh() {
+        Error.throwIfNeeded(jniRefresh(getRawPointer()));
+    }
+
+    /** Close an open object database, objects are freed once no repository uses it. */
     @Override
-    public void close() {
-        // TODO: implement this
+    protected void freeOnce(long rawPtr) {
+        jniFree(rawPtr);
     }
 }
@@ -0,0 +1,93 @@
+package com.github.git24j.core;
+
+import java.nio.ByteBuffer;
+import java.util.function.Predicate;
+
+/**
+ * Storage of git objects implemented in java, attached to an object database with {@link
+ * Odb#addBackend(OdbBackend, int)}. See {@link InMemoryOdbBackend} for an implementation.
+ *
+ * <p>Objects are identified by the id libgit2 computed for them, backends do not need to hash
+ * content. Implementations must be thread safe.
+ */
+public interface OdbBackend extends AutoCloseable {
+    /**
+     * Read an object.
+     *
+     * @param id object id
+     * @return type and content of the object, or null if this backend does not have it
+     */
+    RawObject read(Oid id);
+
+    /**
+     * Read type and size of an object without its content.
+     *
+     * @param id object id
+     * @return type and size, the content may be left null; or null if the object does not exist
+     */
+    default RawObject readHeader(Oid id) {
+        return read(id);
+    }
+
+    /** Check whether this backend has an object. */
+    default boolean exists(Oid id) {
+        return readHeader(id) != null;
+    }
+
+    /**
+     * Store an object.
+     *
+     * @param id id of the object
+     * @param type type of the object
+     * @param data content of the object, only valid during the call
+     */
+    void write(Oid id, GitObject.Type type, ByteBuffer data);
+
+    /**
+     * Visit ids of all objects.
+     *
+     * @param visitor returns false to stop
+     */
+    void forEach(Predicate<Oid> visitor);
+
+    /** Re-read any external state, e.g. after another process added objects. */
+    default void refresh() {}
+
+    /** Called when the object database no longer uses this backend. */
+    @Override
+    default void close() {}
+
+    /** Type, size and optionally content of an object. */
+    final class RawObject {
+        private final GitObject.Type type;
+        private final long size;
+        private final ByteBuffer data;
+
+        /** Object with content, size is {@code data.remaining()}. */
+        public RawObject(GitObject.Type type, ByteBuffer data) {
+            this.type = type;
+            this.size = data.remaining();
+            this.data = data;
+        }
+
+        /** Object header without content. */
+        public RawObject(GitObject.Type type, long size) {
+            this.type = type;
+            this.size = size;
+            this.data = null;
+        }
+
+        public GitObject.Type getType() {
+            return type;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /** Content between position and limit, null for a header-only object. */
+        public ByteBuffer getData() {
+            return data;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.git24j.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Called from {@code j_odb_backend} callbacks, translates between raw jni values and {@link
+ * OdbBackend}.
+ */
+final class OdbBackendAdapter {
+    /** Number of ids passed to native code per foreach batch. */
+    static final int FOREACH_BATCH = 512;
+
+    private static final ThreadLocal<ByteBuffer> SCRATCH = new ThreadLocal<>();
+
+    private final OdbBackend backend;
+
+    OdbBackendAdapter(OdbBackend backend) {
+        this.backend = backend;
+    }
+
+    static native int jniForeachEmit(long ctx, byte[] ids, int count);
+
+    /**
+     * @return direct buffer holding exactly the content (position 0, limit == capacity), which
+     *     native code copies immediately; null if not found
+     */
+    ByteBuffer read(byte[] id, int[] outType) {
+        OdbBackend.RawObject obj = backend.read(Oid.of(id));
+        if (obj == null) {
+            return null;
+        }
+        outType[0] = obj.getType().getValue();
+        ByteBuffer data = obj.getData();
+        if (data.isDirect()) {
+            return data.slice();
+        }
+        ByteBuffer scratch = SCRATCH.get();
+        if (scratch == null || scratch.capacity() < data.remaining()) {
+            scratch = ByteBuffer.allocateDirect(Math.max(data.remaining(), 8192));
+            SCRATCH.set(scratch);
+        }
+        scratch.clear();
+        scratch.put(data.duplicate());
+        scratch.flip();
+        return scratch.slice();
+    }
+
+    /** @return {@code (size << 3) | type}, or -1 if not found */
+    long readHeader(byte[] id) {
+        OdbBackend.RawObject obj = backend.readHeader(Oid.of(id));
+        if (obj == null) {
+            return -1;
+        }
+        return (obj.getSize() << 3) | obj.getType().getValue();
+    }
+
+    boolean exists(byte[] id) {
+        return backend.exists(Oid.of(id));
+    }
+
+    void write(byte[] id, ByteBuffer data, int type) {
+        backend.write(Oid.of(id), GitObject.Type.valueOf(type), data.asReadOnlyBuffer());
+    }
+
+    /** Stream ids to native code in batches, returns non-zero if the native callback stopped. */
+    int foreach(long ctx) {
+        byte[] batch = new byte[FOREACH_BATCH * Oid.RAWSZ];
+        int[] count = {0};
+        int[] result = {0};
+        backend.forEach(
+                oid -> {
+                    System.arraycopy(oid.getId(), 0, batch, count[0] * Oid.RAWSZ, Oid.RAWSZ);
+                    if (++count[0] == FOREACH_BATCH) {
+                        result[0] = jniForeachEmit(ctx, batch, count[0]);
+                        count[0] = 0;
+                    }
+                    return result[0] == 0;
+                });
+        if (result[0] == 0 && count[0] > 0) {
+            result[0] = jniForeachEmit(ctx, batch, count[0]);
+        }
+        return result[0];
+    }
+
+    void refresh() {
+        backend.refresh();
+    }
+
+    void free() {
+        backend.close();
+    }
+}
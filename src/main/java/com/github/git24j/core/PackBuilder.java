@@ -0,0 +1,368 @@
+package com.github.git24j.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Build a pack from objects of a repository, see {@code git_packbuilder}.
+ *
+ * <p>Objects are inserted individually, as whole trees or commits, or by walking a commit range.
+ * The pack is then written next to its index into a directory, or streamed to a {@link
+ * WritableByteChannel} straight from libgit2's buffers, without a temporary file. Delta search
+ * runs on {@link #setThreads(int) several threads} and reports progress through a {@link
+ * ProgressListener} at most once per sampling interval.
+ *
+ * <pre>{@code
+ * try (PackBuilder pb = PackBuilder.create(repo)) {
+ *     pb.setThreads(0);
+ *     pb.insertRange("v1.0..master");
+ *     PackBuilder.Stats stats = pb.writeTo(channel);
+ * }
+ * }</pre>
+ */
+public class PackBuilder extends CAutoCloseable {
+    /** Default interval between two progress reports. */
+    public static final long DEFAULT_PROGRESS_INTERVAL_MILLIS = 500;
+
+    private final Repository repo;
+    private ProgressListener listener;
+    private long progressIntervalNanos =
+            TimeUnit.MILLISECONDS.toNanos(DEFAULT_PROGRESS_INTERVAL_MILLIS);
+
+    PackBuilder(Repository repo, long rawPointer) {
+        super(rawPointer);
+        this.repo = repo;
+    }
+
+    static native long jniNew(long repoPtr);
+
+    static native void jniFree(long pbPtr);
+
+    static native int jniSetThreads(long pbPtr, int n);
+
+    static native int jniInsert(long pbPtr, byte[] id, String name);
+
+    static native int jniInsertTree(long pbPtr, byte[] id);
+
+    static native int jniInsertCommit(long pbPtr, byte[] id);
+
+    static native int jniInsertRecursive(long pbPtr, byte[] id, String name);
+
+    static native int jniInsertWalk(
+            long pbPtr, long repoPtr, String range, byte[] includes, byte[] excludes);
+
+    static native long jniObjectCount(long pbPtr);
+
+    static native long jniWritten(long pbPtr);
+
+    static native void jniHash(Oid outOid, long pbPtr);
+
+    static native int jniWrite(
+            long pbPtr,
+            String path,
+            int mode,
+            ProgressBridge progress,
+            long intervalNanos,
+            long[] outStats);
+
+    static native int jniForeach(
+            long pbPtr,
+            SinkBridge sink,
+            ProgressBridge progress,
+            long intervalNanos,
+            long[] outStats);
+
+    /**
+     * Create a pack builder for objects of a repository.
+     *
+     * @throws GitException git error
+     */
+    public static PackBuilder create(Repository repo) {
+        long pbPtr = Error.handleOrThrow(jniNew(repo.getRawPointer()));
+        return new PackBuilder(repo, pbPtr);
+    }
+
+    /**
+     * Set the number of threads used for delta search.
+     *
+     * @param n number of threads, 0 to use one per cpu
+     * @return the number of threads that will be used, 1 if libgit2 was built without threads
+     */
+    public int setThreads(int n) {
+        return jniSetThreads(getRawPointer(), n);
+    }
+
+    /**
+     * Report delta search progress to {@code listener}, at most once per {@code interval} plus the
+     * final report. The listener may be called from delta search threads, but never concurrently.
+     *
+     * @param listener listener, or null to stop reporting
+     */
+    public void setProgress(ProgressListener listener, long interval, TimeUnit unit) {
+        this.listener = listener;
+        this.progressIntervalNanos = unit.toNanos(interval);
+    }
+
+    /**
+     * Insert a single object. Names are used to find good delta bases, e.g. the path of a blob.
+     *
+     * @throws GitException git error
+     */
+    public void insert(Oid id, String name) {
+        Error.throwIfNeeded(jniInsert(getRawPointer(), id.getId(), name));
+    }
+
+    /**
+     * Insert a tree with all its subtrees and blobs.
+     *
+     * @throws GitException git error
+     */
+    public void insertTree(Oid id) {
+        Error.throwIfNeeded(jniInsertTree(getRawPointer(), id.getId()));
+    }
+
+    /**
+     * Insert a commit and its complete tree.
+     *
+     * @throws GitException git error
+     */
+    public void insertCommit(Oid id) {
+        Error.throwIfNeeded(jniInsertCommit(getRawPointer(), id.getId()));
+    }
+
+    /**
+     * Insert an object and everything it references.
+     *
+     * @throws GitException git error
+     */
+    public void insertRecursive(Oid id, String name) {
+        Error.throwIfNeeded(jniInsertRecursive(getRawPointer(), id.getId(), name));
+    }
+
+    /**
+     * Insert the commits of a range together with their trees.
+     *
+     * @param range revision range, e.g. {@code "v1.0..master"}
+     * @throws GitException git error
+     */
+    public void insertRange(String range) {
+        Error.throwIfNeeded(
+                jniInsertWalk(getRawPointer(), repo.getRawPointer(), range, null, null));
+    }
+
+    /**
+     * Insert commits reachable from {@code includes} but not from {@code excludes}, together with
+     * their trees, like the objects a fetch negotiated with these wants and haves would need.
+     *
+     * @throws GitException git error
+     */
+    public void insertWalk(Collection<Oid> includes, Collection<Oid> excludes) {
+        Error.throwIfNeeded(
+                jniInsertWalk(
+                        getRawPointer(),
+                        repo.getRawPointer(),
+                        null,
+                        rawIds(includes),
+                        rawIds(excludes)));
+    }
+
+    /** Number of objects inserted. */
+    public long objectCount() {
+        return jniObjectCount(getRawPointer());
+    }
+
+    /** Number of objects written so far. */
+    public long written() {
+        return jniWritten(getRawPointer());
+    }
+
+    /** Checksum of the pack, available once it has been written. */
+    public Oid hash() {
+        Oid oid = new Oid();
+        jniHash(oid, getRawPointer());
+        return oid;
+    }
+
+    /**
+     * Write the pack and its index into a directory, as {@code pack-<hash>.pack} and {@code
+     * .idx}.
+     *
+     * @param dir target directory, e.g. {@code objects/pack} of a repository
+     * @throws GitException git error, or if the progress listener threw or cancelled
+     */
+    public Stats write(Path dir) {
+        ProgressBridge progress = progressBridge();
+        long[] outStats = new long[2];
+        int e =
+                jniWrite(
+                        getRawPointer(),
+                        dir.toString(),
+                        0,
+                        progress,
+                        progressIntervalNanos,
+                        outStats);
+        rethrow(progress);
+        Error.throwIfNeeded(e);
+        return stats(outStats);
+    }
+
+    /**
+     * Stream the pack into a channel. Chunks are direct buffers over native memory that are only
+     * valid during the {@link WritableByteChannel#write} call.
+     *
+     * @throws IOException if writing to the channel failed
+     * @throws GitException git error, or if the progress listener threw or cancelled
+     */
+    public Stats writeTo(WritableByteChannel channel) throws IOException {
+        SinkBridge sink = new SinkBridge(channel);
+        ProgressBridge progress = progressBridge();
+        long[] outStats = new long[2];
+        int e = jniForeach(getRawPointer(), sink, progress, progressIntervalNanos, outStats);
+        if (sink.failure != null) {
+            throw sink.failure;
+        }
+        rethrow(progress);
+        Error.throwIfNeeded(e);
+        return stats(outStats);
+    }
+
+    @Override
+    protected void freeOnce(long rawPtr) {
+        jniFree(rawPtr);
+    }
+
+    private ProgressBridge progressBridge() {
+        return listener == null ? null : new ProgressBridge(listener);
+    }
+
+    private static void rethrow(ProgressBridge progress) {
+        if (progress != null && progress.failure != null) {
+            throw progress.failure;
+        }
+    }
+
+    private Stats stats(long[] outStats) {
+        return new Stats(objectCount(), written(), outStats[0], outStats[1]);
+    }
+
+    private static byte[] rawIds(Collection<Oid> ids) {
+        byte[] raw = new byte[ids.size() * Oid.RAWSZ];
+        int offset = 0;
+        for (Oid id : ids) {
+            System.arraycopy(id.getId(), 0, raw, offset, Oid.RAWSZ);
+            offset += Oid.RAWSZ;
+        }
+        return raw;
+    }
+
+    /** Pack building stages, see {@code git_packbuilder_stage_t}. */
+    public enum Stage {
+        ADDING_OBJECTS,
+        DELTAFICATION
+    }
+
+    /** Receives sampled progress of a pack build. */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * @param stage current stage
+         * @param current objects processed in this stage
+         * @param total objects to process in this stage
+         * @return true to continue, false to cancel the build
+         */
+        boolean progress(Stage stage, long current, long total);
+    }
+
+    /** Outcome of writing a pack. */
+    public static class Stats {
+        private final long objectCount;
+        private final long written;
+        private final long deltaSearchObjects;
+        private final long deltaSearchNanos;
+
+        Stats(long objectCount, long written, long deltaSearchObjects, long deltaSearchNanos) {
+            this.objectCount = objectCount;
+            this.written = written;
+            this.deltaSearchObjects = deltaSearchObjects;
+            this.deltaSearchNanos = deltaSearchNanos;
+        }
+
+        /** Number of objects in the pack. */
+        public long getObjectCount() {
+            return objectCount;
+        }
+
+        /** Number of objects written. */
+        public long getWritten() {
+            return written;
+        }
+
+        /** Number of objects considered as delta candidates. */
+        public long getDeltaSearchObjects() {
+            return deltaSearchObjects;
+        }
+
+        /** Wall clock time spent in delta search, as seen by progress reports. */
+        public long getDeltaSearchNanos() {
+            return deltaSearchNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "objects: "
+                    + objectCount
+                    + ", written: "
+                    + written
+                    + ", delta search: "
+                    + deltaSearchObjects
+                    + " objects in "
+                    + TimeUnit.NANOSECONDS.toMillis(deltaSearchNanos)
+                    + "ms";
+        }
+    }
+
+    /** Called from {@code j_pb_progress_cb}. */
+    static final class ProgressBridge {
+        private final ProgressListener listener;
+        private volatile RuntimeException failure;
+
+        ProgressBridge(ProgressListener listener) {
+            this.listener = listener;
+        }
+
+        int accept(int stage, long current, long total) {
+            try {
+                return listener.progress(Stage.values()[stage], current, total) ? 0 : -1;
+            } catch (RuntimeException e) {
+                failure = e;
+                return -1;
+            }
+        }
+    }
+
+    /** Called from {@code j_pb_sink_cb} with a chunk of the pack. */
+    static final class SinkBridge {
+        private final WritableByteChannel channel;
+        private IOException failure;
+
+        SinkBridge(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        int accept(ByteBuffer chunk) {
+            try {
+                while (chunk.hasRemaining()) {
+                    channel.write(chunk);
+                }
+                return 0;
+            } catch (IOException e) {
+                failure = e;
+                return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.github.git24j.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only view of a version 2 pack index ({@code .idx}) file.
+ *
+ * <p>The file is read into memory rather than mapped: a mapping stays in place until the buffer is
+ * garbage collected, and on Windows keeps the pack from being deleted or replaced until then.
+ *
+ * <p>Layout: magic {@code \377tOc}, version, 256 cumulative fan-out counts, the sorted object ids,
+ * their crc32s, their 31 bit offsets (or, with the high bit set, indices into a table of 64 bit
+ * offsets), the 64 bit offset table, then pack and index checksums.
+ */
+final class PackIndex {
+    private static final int MAGIC = 0xff744f63;
+    private static final int HEADER_SIZE = 8;
+    private static final int FANOUT_SIZE = 256 * 4;
+
+    private final ByteBuffer buf;
+    private final int count;
+    private final int idsOffset;
+    private final int offsetsOffset;
+    private final int largeOffsetsOffset;
+
+    private PackIndex(ByteBuffer buf) throws IOException {
+        this.buf = buf;
+        if (buf.limit() < HEADER_SIZE + FANOUT_SIZE || buf.getInt(0) != MAGIC) {
+            throw new IOException("not a version 2 pack index");
+        }
+        if (buf.getInt(4) != 2) {
+            throw new IOException("unsupported pack index version " + buf.getInt(4));
+        }
+        count = buf.getInt(HEADER_SIZE + 255 * 4);
+        idsOffset = HEADER_SIZE + FANOUT_SIZE;
+        // in longs, a corrupt count must not wrap around into a plausible offset
+        long offsets = idsOffset + (long) count * (Oid.RAWSZ + 4);
+        long largeOffsets = offsets + (long) count * 4;
+        if (count < 0 || largeOffsets + 2 * Oid.RAWSZ > buf.limit()) {
+            throw new IOException("truncated pack index");
+        }
+        offsetsOffset = (int) offsets;
+        largeOffsetsOffset = (int) largeOffsets;
+    }
+
+    /** Read an index file. */
+    static PackIndex open(Path idx) throws IOException {
+        return new PackIndex(read(idx));
+    }
+
+    /** Read a whole index file into a heap buffer, the class comment says why it is not mapped. */
+    static ByteBuffer read(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("index too large: " + file);
+            }
+            ByteBuffer buf = ByteBuffer.allocate((int) size);
+            while (buf.hasRemaining()) {
+                if (ch.read(buf) < 0) {
+                    throw new IOException("truncated index: " + file);
+                }
+            }
+            buf.flip();
+            return buf;
+        }
+    }
+
+    /** Number of objects in the pack. */
+    int count() {
+        return count;
+    }
+
+    /** Copy the i-th id (in sorted order) into {@code out} at {@code outOffset}. */
+    void id(int i, byte[] out, int outOffset) {
+        ByteBuffer src = buf.duplicate();
+        src.position(idsOffset + i * Oid.RAWSZ);
+        src.get(out, outOffset, Oid.RAWSZ);
+    }
+
+    /** Offset of the i-th object in the pack file. */
+    long offset(int i) {
+        int off = buf.getInt(offsetsOffset + i * 4);
+        if (off >= 0) {
+            return off;
+        }
+        return buf.getLong(largeOffsetsOffset + (off & 0x7fffffff) * 8);
+    }
+
+    /** Position of {@code id} in sorted order, or -1 if the pack does not contain it. */
+    int find(byte[] id) {
+        int first = id[0] & 0xff;
+        int lo = first == 0 ? 0 : buf.getInt(HEADER_SIZE + (first - 1) * 4);
+        int hi = buf.getInt(HEADER_SIZE + first * 4) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = compare(mid, id);
+            if (c == 0) {
+                return mid;
+            }
+            if (c < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return -1;
+    }
+
+    /** Checksum of the pack file this index belongs to. */
+    byte[] packChecksum() {
+        byte[] sum = new byte[Oid.RAWSZ];
+        ByteBuffer src = buf.duplicate();
+        src.position(buf.limit() - 2 * Oid.RAWSZ);
+        src.get(sum);
+        return sum;
+    }
+
+    private int compare(int i, byte[] id) {
+        int base = idsOffset + i * Oid.RAWSZ;
+        for (int k = 0; k < Oid.RAWSZ; k++) {
+            int c = (buf.get(base + k) & 0xff) - (id[k] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,270 @@
+package com.github.git24j.core;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+/**
+ * Insert many objects into an object database as a single new pack.
+ *
+ * <p>Writing objects one by one with {@link Odb#write} creates a zlib compressed loose file per
+ * object. A pack writer instead computes object ids in java, compresses each object into a spool
+ * file and on {@link #commit()} streams the finished pack through {@code git_odb_write_pack}, which
+ * stores it together with its index in {@code objects/pack}. Objects become visible once the
+ * commit succeeds; closing a writer without committing discards them.
+ *
+ * <p>Objects are stored whole, without delta compression; a later repack can delta compress
+ * them. A writer must not be shared between threads.
+ *
+ * <pre>{@code
+ * try (PackWriter writer = new PackWriter(odb)) {
+ *     for (byte[] content : contents) {
+ *         ids.add(writer.write(GitObject.Type.BLOB, content));
+ *     }
+ *     writer.commit();
+ * }
+ * }</pre>
+ */
+public class PackWriter implements AutoCloseable {
+    /** Size of the buffer the pack is streamed to native code with. */
+    static final int CHUNK_SIZE = 1 << 20;
+
+    private static final int PACK_VERSION = 2;
+
+    private final Odb odb;
+    private final Path spoolPath;
+    private final OutputStream spool;
+    private final Deflater deflater;
+    private final MessageDigest objectDigest = sha1();
+    private final Set<ByteBuffer> written = new HashSet<>();
+    private byte[] scratch = new byte[8192];
+    private final byte[] deflated = new byte[65536];
+    private boolean done;
+
+    static native long jniNew(long odbPtr);
+
+    static native int jniAppend(long writepackPtr, ByteBuffer directBuf, int len);
+
+    static native int jniCommit(long writepackPtr, long[] outStats);
+
+    static native void jniFree(long writepackPtr);
+
+    /**
+     * @param odb object database to insert into
+     * @param spoolDir directory for the temporary spool file
+     * @param level zlib compression level, see {@link Deflater}
+     * @throws UncheckedIOException if the spool file can not be created
+     */
+    public PackWriter(Odb odb, Path spoolDir, int level) {
+        this.odb = odb;
+        try {
+            spoolPath = Files.createTempFile(spoolDir, "git24j-pack", ".spool");
+            spool = new BufferedOutputStream(Files.newOutputStream(spoolPath), 65536);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        deflater = new Deflater(level);
+    }
+
+    /** Pack writer spooling to the default temporary directory with default compression. */
+    public PackWriter(Odb odb) {
+        this(odb, Paths.get(System.getProperty("java.io.tmpdir")), Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Add an object to the pack. Adding an object twice stores it once.
+     *
+     * @param type commit, tree, blob or tag
+     * @param data content of the object, from its position to its limit; not modified
+     * @return id of the object
+     * @throws IllegalArgumentException if type is not a base object type
+     * @throws IllegalStateException if the writer has been committed or closed
+     * @throws UncheckedIOException if the spool file can not be written
+     */
+    public Oid write(GitObject.Type type, ByteBuffer data) {
+        if (type != GitObject.Type.COMMIT
+                && type != GitObject.Type.TREE
+                && type != GitObject.Type.BLOB
+                && type != GitObject.Type.TAG) {
+            throw new IllegalArgumentException("can not pack object of type " + type);
+        }
+        if (done) {
+            throw new IllegalStateException("pack writer is already committed or closed");
+        }
+        int size = data.remaining();
+        byte[] content;
+        int offset;
+        if (data.hasArray()) {
+            content = data.array();
+            offset = data.arrayOffset() + data.position();
+        } else {
+            if (scratch.length < size) {
+                scratch = new byte[Math.max(size, scratch.length * 2)];
+            }
+            data.duplicate().get(scratch, 0, size);
+            content = scratch;
+            offset = 0;
+        }
+
+        String header = typeName(type) + " " + size + "\0";
+        objectDigest.update(header.getBytes(StandardCharsets.US_ASCII));
+        objectDigest.update(content, offset, size);
+        byte[] id = objectDigest.digest();
+        if (!written.add(ByteBuffer.wrap(id))) {
+            return Oid.of(id);
+        }
+        try {
+            writeEntryHeader(type, size);
+            deflater.reset();
+            deflater.setInput(content, offset, size);
+            deflater.finish();
+            while (!deflater.finished()) {
+                int n = deflater.deflate(deflated);
+                spool.write(deflated, 0, n);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Oid.of(id);
+    }
+
+    /** Add an object to the pack, see {@link #write(GitObject.Type, ByteBuffer)}. */
+    public Oid write(GitObject.Type type, byte[] data) {
+        return write(type, ByteBuffer.wrap(data));
+    }
+
+    /** Number of distinct objects added so far. */
+    public int size() {
+        return written.size();
+    }
+
+    /**
+     * Stream the pack into the object database, which indexes it and makes its objects
+     * available. The writer can not be used afterwards.
+     *
+     * @return number of objects indexed
+     * @throws GitException git error
+     * @throws UncheckedIOException if the spool file can not be read
+     */
+    public long commit() {
+        if (done) {
+            throw new IllegalStateException("pack writer is already committed or closed");
+        }
+        done = true;
+        deflater.end();
+        long writepackPtr = 0;
+        try {
+            spool.close();
+            if (written.isEmpty()) {
+                return 0;
+            }
+            writepackPtr = Error.handleOrThrow(jniNew(odb.getRawPointer()));
+            long[] stats = new long[5];
+            streamPack(writepackPtr);
+            Error.throwIfNeeded(jniCommit(writepackPtr, stats));
+            return stats[1];
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            jniFree(writepackPtr);
+            deleteSpool();
+        }
+    }
+
+    /** Discard objects that have not been committed. */
+    @Override
+    public void close() {
+        if (done) {
+            return;
+        }
+        done = true;
+        deflater.end();
+        try {
+            spool.close();
+        } catch (IOException e) {
+            // the spool is deleted anyway
+        }
+        deleteSpool();
+    }
+
+    /** Send header, spooled entries and trailing checksum of the pack to the native writepack. */
+    private void streamPack(long writepackPtr) throws IOException {
+        MessageDigest packDigest = sha1();
+        ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        chunk.put(new byte[] {'P', 'A', 'C', 'K'}).putInt(PACK_VERSION).putInt(written.size());
+        try (FileChannel in = FileChannel.open(spoolPath, StandardOpenOption.READ)) {
+            while (in.read(chunk) >= 0) {
+                if (!chunk.hasRemaining()) {
+                    append(writepackPtr, chunk, packDigest);
+                }
+            }
+        }
+        if (chunk.position() > 0) {
+            append(writepackPtr, chunk, packDigest);
+        }
+        chunk.put(packDigest.digest());
+        chunk.flip();
+        Error.throwIfNeeded(jniAppend(writepackPtr, chunk, chunk.limit()));
+    }
+
+    private static void append(long writepackPtr, ByteBuffer chunk, MessageDigest packDigest) {
+        chunk.flip();
+        packDigest.update(chunk.duplicate());
+        Error.throwIfNeeded(jniAppend(writepackPtr, chunk, chunk.limit()));
+        chunk.clear();
+    }
+
+    /** Type and inflated size of a pack entry: 3 type bits, then the size in 4 + 7n bits. */
+    private void writeEntryHeader(GitObject.Type type, long size) throws IOException {
+        int b = (type.getValue() << 4) | (int) (size & 0x0f);
+        size >>>= 4;
+        while (size != 0) {
+            spool.write(b | 0x80);
+            b = (int) (size & 0x7f);
+            size >>>= 7;
+        }
+        spool.write(b);
+    }
+
+    private void deleteSpool() {
+        try {
+            Files.deleteIfExists(spoolPath);
+        } catch (IOException e) {
+            // temporary file, nothing else to do
+        }
+    }
+
+    private static String typeName(GitObject.Type type) {
+        switch (type) {
+            case COMMIT:
+                return "commit";
+            case TREE:
+                return "tree";
+            case TAG:
+                return "tag";
+            default:
+                return "blob";
+        }
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+}
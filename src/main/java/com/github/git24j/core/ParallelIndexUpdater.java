@@ -0,0 +1,276 @@
+package com.github.git24j.core;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Stage working-tree files into an {@link Index} while hashing file contents on a pool of worker
+ * threads.
+ *
+ * <p>{@link Index#addAll} hashes every file serially inside libgit2. This updater walks the
+ * working directory in java (honoring ignore rules), writes regular files to the object database
+ * concurrently through {@code git_blob_create_fromworkdir}, then applies all resulting entries to
+ * the index in one native call and writes it. Every running worker uses a {@link Repository}
+ * handle of its own, because a single {@code git_repository} must not be used from several
+ * threads at once.
+ *
+ * <p>Paths that are not regular files (symbolic links) are added serially through {@link
+ * Index#add(String)}. Nested repositories are skipped.
+ */
+public class ParallelIndexUpdater {
+    /** Number of paths a worker hashes before handing its results back. */
+    static final int CHUNK_SIZE = 256;
+
+    private static final String DOT_GIT = ".git";
+    private static final int MODE_FILE = 0100644;
+    private static final int MODE_EXECUTABLE = 0100755;
+
+    private final Repository repository;
+    private final int threads;
+
+    /**
+     * @param repository non-bare repository whose working directory will be staged
+     * @param threads number of hashing threads, must be positive
+     */
+    public ParallelIndexUpdater(Repository repository, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+        this.repository = repository;
+        this.threads = threads;
+    }
+
+    /** Create an updater that uses one hashing thread per available processor. */
+    public ParallelIndexUpdater(Repository repository) {
+        this(repository, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Add or update index entries for all non-ignored files under the given paths and write the
+     * index back to disk.
+     *
+     * @param index index of {@code repository}
+     * @param paths paths relative to the working directory to walk, e.g. {@code "."} or {@code
+     *     "src/"}
+     * @return number of entries added or updated
+     * @throws GitException git error
+     * @throws UncheckedIOException if the working directory could not be walked
+     */
+    public int addAll(Index index, List<String> paths) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            return addAll(index, paths, executor);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Same as {@link #addAll(Index, List)} but hashes on a caller-provided executor, which is not
+     * shut down.
+     */
+    public int addAll(Index index, List<String> paths, ExecutorService executor) {
+        Path workdir = repository.workdir();
+        List<String> files = new ArrayList<>();
+        List<String> others = new ArrayList<>();
+        for (String p : paths) {
+            collect(workdir, workdir.resolve(p).normalize(), files, others);
+        }
+
+        String gitDir = repository.getPath();
+        // repositories not in use by a worker; borrowed per chunk rather than bound to the
+        // executor's threads, so nothing outlives this call on a shared executor
+        ConcurrentLinkedQueue<Repository> idle = new ConcurrentLinkedQueue<>();
+        ConcurrentLinkedQueue<Repository> opened = new ConcurrentLinkedQueue<>();
+        AtomicBoolean failed = new AtomicBoolean();
+        List<Future<Index.Entry[]>> futures = new ArrayList<>();
+        try {
+            for (int start = 0; start < files.size(); start += CHUNK_SIZE) {
+                List<String> chunk =
+                        files.subList(start, Math.min(start + CHUNK_SIZE, files.size()));
+                futures.add(
+                        executor.submit(
+                                () -> {
+                                    if (failed.get()) {
+                                        return new Index.Entry[0];
+                                    }
+                                    Repository repo = idle.poll();
+                                    if (repo == null) {
+                                        repo = Repository.open(gitDir);
+                                        opened.add(repo);
+                                    }
+                                    try {
+                                        return hashChunk(repo, workdir, chunk);
+                                    } finally {
+                                        idle.add(repo);
+                                    }
+                                }));
+            }
+            List<Index.Entry> entries = new ArrayList<>(files.size());
+            for (Future<Index.Entry[]> f : futures) {
+                Collections.addAll(entries, await(f, failed));
+            }
+            index.add(entries.toArray(new Index.Entry[0]));
+        } finally {
+            // workers may still be inside native calls if one of them failed, let them drain
+            // before their repositories are closed.
+            failed.set(true);
+            for (Future<Index.Entry[]> f : futures) {
+                awaitQuietly(f);
+            }
+            for (Repository repo : opened) {
+                repo.close();
+            }
+            idle.clear();
+        }
+        for (String p : others) {
+            index.add(p);
+        }
+        index.write();
+        return files.size() + others.size();
+    }
+
+    /** Walk {@code root} and split non-ignored paths into regular files and everything else. */
+    private void collect(Path workdir, Path root, List<String> files, List<String> others) {
+        try {
+            Files.walkFileTree(
+                    root,
+                    new SimpleFileVisitor<Path>() {
+                        @Override
+                        public FileVisitResult preVisitDirectory(
+                                Path dir, BasicFileAttributes attrs) {
+                            if (dir.equals(workdir)) {
+                                return FileVisitResult.CONTINUE;
+                            }
+                            if (DOT_GIT.equals(dir.getFileName().toString())
+                                    || Files.exists(dir.resolve(DOT_GIT), LinkOption.NOFOLLOW_LINKS)
+                                    || Ignore.pathIsIgnored(
+                                            repository, relative(workdir, dir) + "/")) {
+                                return FileVisitResult.SKIP_SUBTREE;
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                            String rel = relative(workdir, file);
+                            if (Ignore.pathIsIgnored(repository, rel)) {
+                                return FileVisitResult.CONTINUE;
+                            }
+                            if (attrs.isRegularFile()) {
+                                files.add(rel);
+                            } else if (attrs.isSymbolicLink()) {
+                                others.add(rel);
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Write a chunk of files as blobs and build index entries from their on-disk stat data. */
+    static Index.Entry[] hashChunk(Repository repo, Path workdir, List<String> chunk)
+            throws IOException {
+        Index.Entry[] entries = new Index.Entry[chunk.size()];
+        for (int i = 0; i < entries.length; i++) {
+            String rel = chunk.get(i);
+            Path file = workdir.resolve(rel);
+            Oid oid = Blob.createFromWorkdir(repo, rel);
+            entries[i] = entryOf(file, rel, oid);
+        }
+        return entries;
+    }
+
+    static Index.Entry entryOf(Path file, String rel, Oid oid) throws IOException {
+        Index.Entry.EntryBuilder builder =
+                new Index.Entry.EntryBuilder().setPath(rel).setOid(oid.toString());
+        BasicFileAttributes basic =
+                Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        FileTime ctime = basic.creationTime();
+        builder.setFileSize((int) basic.size())
+                .setMode(Files.isExecutable(file) ? MODE_EXECUTABLE : MODE_FILE);
+        try {
+            Map<String, Object> unix =
+                    Files.readAttributes(
+                            file, "unix:dev,ino,uid,gid,ctime", LinkOption.NOFOLLOW_LINKS);
+            ctime = (FileTime) unix.get("ctime");
+            builder.setDev((int) (long) (Long) unix.get("dev"))
+                    .setIno((int) (long) (Long) unix.get("ino"))
+                    .setUid((Integer) unix.get("uid"))
+                    .setGid((Integer) unix.get("gid"));
+        } catch (UnsupportedOperationException | IllegalArgumentException ignore) {
+            // not a unix file system, leave dev/ino/uid/gid as zero
+        }
+        setTimes(builder, basic.lastModifiedTime(), ctime);
+        return builder.build();
+    }
+
+    private static void setTimes(Index.Entry.EntryBuilder builder, FileTime mtime, FileTime ctime) {
+        long mtimeNanos = mtime.to(TimeUnit.NANOSECONDS);
+        long ctimeNanos = ctime.to(TimeUnit.NANOSECONDS);
+        builder.setMtimeSec((int) TimeUnit.NANOSECONDS.toSeconds(mtimeNanos))
+                .setMtimeNanoSec((int) (mtimeNanos % 1_000_000_000L))
+                .setCtimeSec((int) TimeUnit.NANOSECONDS.toSeconds(ctimeNanos))
+                .setCtimeNanoSec((int) (ctimeNanos % 1_000_000_000L));
+    }
+
+    private static String relative(Path workdir, Path path) {
+        return workdir.relativize(path).toString().replace('\\', '/');
+    }
+
+    private static <T> T await(Future<T> future, AtomicBoolean failed) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            failed.set(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while hashing files", e);
+        } catch (ExecutionException e) {
+            failed.set(true);
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw new UncheckedIOException((IOException) cause);
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static void awaitQuietly(Future<?> future) {
+        boolean interrupted = false;
+        while (!future.isDone()) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (Exception ignore) {
+                // already reported
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.git24j.core;
+
+/** Reference name globbing for java refdb backends, see {@link RefdbBackend#matches}. */
+final class RefGlob {
+    private RefGlob() {}
+
+    /** Literal prefix of a glob, every name matching the glob starts with it. */
+    static String literalPrefix(String glob) {
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '\\') {
+                return glob.substring(0, i);
+            }
+        }
+        return glob;
+    }
+
+    static boolean matches(String glob, int g, String name, int n) {
+        while (g < glob.length()) {
+            char c = glob.charAt(g);
+            if (c == '*') {
+                while (g < glob.length() && glob.charAt(g) == '*') {
+                    g++;
+                }
+                if (g == glob.length()) {
+                    return true;
+                }
+                for (int i = n; i < name.length(); i++) {
+                    if (matches(glob, g, name, i)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            if (n == name.length()) {
+                return false;
+            }
+            char ch = name.charAt(n);
+            int end = c == '[' ? glob.indexOf(']', g + 2) : -1;
+            if (c == '?') {
+                g++;
+            } else if (end > 0) {
+                if (!inClass(glob, g + 1, end, ch)) {
+                    return false;
+                }
+                g = end + 1;
+            } else {
+                if (c == '\\' && g + 1 < glob.length()) {
+                    c = glob.charAt(++g);
+                }
+                if (ch != c) {
+                    return false;
+                }
+                g++;
+            }
+            n++;
+        }
+        return n == name.length();
+    }
+
+    /** Whether {@code ch} is in the class {@code glob[start, end)}, the part between brackets. */
+    private static boolean inClass(String glob, int start, int end, char ch) {
+        boolean negate = glob.charAt(start) == '!' || glob.charAt(start) == '^';
+        boolean hit = false;
+        for (int i = negate ? start + 1 : start; i < end; i++) {
+            if (i + 2 < end && glob.charAt(i + 1) == '-') {
+                hit |= ch >= glob.charAt(i) && ch <= glob.charAt(i + 2);
+                i += 2;
+            } else {
+                hit |= ch == glob.charAt(i);
+            }
+        }
+        return hit != negate;
+    }
+}
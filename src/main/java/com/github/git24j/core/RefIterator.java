@@ -0,0 +1,214 @@
+package com.github.git24j.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Iterate over references of a repository, optionally filtered by a glob.
+ *
+ * <p>References are copied out of native memory in batches: each call to {@link #next(Batch)}
+ * transfers up to {@link Batch#capacity()} (name, target) pairs in a single JNI call, and no
+ * {@link Reference} handle is allocated per reference. The iterator is bound to the repository
+ * it was created from and must not be shared between threads.
+ *
+ * <pre>{@code
+ * try (RefIterator iter = RefIterator.glob(repo, "refs/heads/*")) {
+ *     RefIterator.Batch batch = new RefIterator.Batch(1024);
+ *     while (iter.next(batch)) {
+ *         for (int i = 0; i < batch.size(); i++) {
+ *             advertise(batch.name(i), batch.target(i));
+ *         }
+ *     }
+ * }
+ * }</pre>
+ */
+public class RefIterator extends CAutoCloseable {
+    /** Default number of references transferred per native call. */
+    static final int DEFAULT_BATCH_SIZE = 1024;
+
+    /** receives the error that ended a partial batch. */
+    private final int[] error = new int[1];
+    /** error met while filling the last batch, thrown by the next call. */
+    private GitException pendingError;
+
+    RefIterator(long rawPointer) {
+        super(rawPointer);
+    }
+
+    static native long jniNew(long repoPtr);
+
+    static native long jniGlobNew(long repoPtr, String glob);
+
+    static native void jniFree(long iterPtr);
+
+    static native int jniNextBatch(
+            long iterPtr, String[] names, byte[] ids, String[] symbolicTargets, int[] outError);
+
+    /**
+     * Create an iterator over all references of a repository.
+     *
+     * @throws GitException git error
+     */
+    public static RefIterator create(Repository repo) {
+        long iterPtr = Error.handleOrThrow(jniNew(repo.getRawPointer()));
+        return new RefIterator(iterPtr);
+    }
+
+    /**
+     * Create an iterator over references whose names match a glob pattern.
+     *
+     * @param repo the repository
+     * @param glob the glob to match against the reference names, e.g. {@code "refs/tags/*"}
+     * @throws GitException git error
+     */
+    public static RefIterator glob(Repository repo, String glob) {
+        long iterPtr = Error.handleOrThrow(jniGlobNew(repo.getRawPointer(), glob));
+        return new RefIterator(iterPtr);
+    }
+
+    /**
+     * List name and target of all references matching {@code glob}.
+     *
+     * @param repo the repository
+     * @param glob glob pattern, or null for all references
+     * @return references in iteration order
+     * @throws GitException git error
+     */
+    public static List<Entry> list(Repository repo, String glob) {
+        List<Entry> entries = new ArrayList<>();
+        try (RefIterator iter = glob == null ? create(repo) : glob(repo, glob)) {
+            Batch batch = new Batch(DEFAULT_BATCH_SIZE);
+            while (iter.next(batch)) {
+                for (int i = 0; i < batch.size(); i++) {
+                    entries.add(batch.entry(i));
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Fill {@code batch} with the next references, replacing its previous content. If an error
+     * ends a batch that already holds references, the batch is returned and the error is thrown
+     * by the following call.
+     *
+     * @return false if there are no more references, in which case the batch is empty
+     * @throws GitException git error
+     */
+    public boolean next(Batch batch) {
+        batch.size = 0;
+        if (pendingError != null) {
+            GitException e = pendingError;
+            pendingError = null;
+            throw e;
+        }
+        error[0] = 0;
+        int count =
+                jniNextBatch(
+                        getRawPointer(), batch.names, batch.ids, batch.symbolicTargets, error);
+        Error.throwIfNeeded(count);
+        batch.size = Math.max(count, 0);
+        if (error[0] < 0) {
+            pendingError = Error.exceptionOf(error[0]);
+        }
+        return batch.size > 0;
+    }
+
+    @Override
+    protected void freeOnce(long rawPtr) {
+        jniFree(rawPtr);
+    }
+
+    /** Reusable buffer of references transferred by one {@link #next(Batch)} call. */
+    public static class Batch {
+        private final String[] names;
+        private final byte[] ids;
+        private final String[] symbolicTargets;
+        private int size;
+
+        /** @param capacity maximum number of references per batch, must be positive */
+        public Batch(int capacity) {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("capacity must be positive: " + capacity);
+            }
+            names = new String[capacity];
+            ids = new byte[capacity * Oid.RAWSZ];
+            symbolicTargets = new String[capacity];
+        }
+
+        public int capacity() {
+            return names.length;
+        }
+
+        /** Number of references in this batch. */
+        public int size() {
+            return size;
+        }
+
+        /** Full name of the i-th reference. */
+        public String name(int i) {
+            checkIndex(i);
+            return names[i];
+        }
+
+        /** Target id of the i-th reference, or null if it is symbolic. */
+        public Oid target(int i) {
+            checkIndex(i);
+            if (symbolicTargets[i] != null) {
+                return null;
+            }
+            byte[] raw = new byte[Oid.RAWSZ];
+            System.arraycopy(ids, i * Oid.RAWSZ, raw, 0, Oid.RAWSZ);
+            return Oid.of(raw);
+        }
+
+        /** Target name of the i-th reference, or null if it is direct. */
+        public String symbolicTarget(int i) {
+            checkIndex(i);
+            return symbolicTargets[i];
+        }
+
+        /** Copy of the i-th reference. */
+        public Entry entry(int i) {
+            return new Entry(name(i), target(i), symbolicTarget(i));
+        }
+
+        private void checkIndex(int i) {
+            if (i < 0 || i >= size) {
+                throw new IndexOutOfBoundsException("index " + i + ", size " + size);
+            }
+        }
+    }
+
+    /** Name and target of a reference. */
+    public static class Entry {
+        private final String name;
+        private final Oid target;
+        private final String symbolicTarget;
+
+        public Entry(String name, Oid target, String symbolicTarget) {
+            this.name = name;
+            this.target = target;
+            this.symbolicTarget = symbolicTarget;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /** Target id, null for symbolic references. */
+        public Oid getTarget() {
+            return target;
+        }
+
+        /** Target reference name, null for direct references. */
+        public String getSymbolicTarget() {
+            return symbolicTarget;
+        }
+
+        @Override
+        public String toString() {
+            return name + " -> " + (symbolicTarget != null ? symbolicTarget : target);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.github.git24j.core;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Keep references of a repository packed.
+ *
+ * <p>Each loose reference is a file under {@code refs/}, so looking up references or resolving
+ * revisions costs one file system lookup per loose reference touched. {@link #compact} moves all
+ * loose references into {@code packed-refs} through {@link Refdb#compress()}, and {@link
+ * #compactTask(int)} does so periodically from a {@link MaintenanceScheduler}.
+ */
+public class RefMaintenance {
+    private static final String LOCK_SUFFIX = ".lock";
+
+    /** Reference storage statistics of a repository. */
+    public static class Stats {
+        private final int looseRefs;
+        private final long packedRefsSize;
+
+        public Stats(int looseRefs, long packedRefsSize) {
+            this.looseRefs = looseRefs;
+            this.packedRefsSize = packedRefsSize;
+        }
+
+        /** Number of loose reference files under {@code refs/}. */
+        public int getLooseRefs() {
+            return looseRefs;
+        }
+
+        /** Size of the {@code packed-refs} file in bytes, 0 if there is none. */
+        public long getPackedRefsSize() {
+            return packedRefsSize;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{looseRefs=" + looseRefs + ", packedRefsSize=" + packedRefsSize + '}';
+        }
+    }
+
+    /**
+     * Count loose references and measure packed-refs of a repository.
+     *
+     * @throws UncheckedIOException if the reference directory could not be read
+     */
+    public static Stats stats(Repository repo) {
+        Path commondir = Paths.get(repo.getCommondir());
+        return new Stats(
+                countLooseRefs(commondir.resolve("refs")),
+                sizeOf(commondir.resolve("packed-refs")));
+    }
+
+    /**
+     * Pack all loose references of a repository.
+     *
+     * @throws GitException git error
+     */
+    public static void compact(Repository repo) {
+        try (Refdb refdb = repo.refdb()) {
+            refdb.compress();
+        }
+    }
+
+    /**
+     * A maintenance task that packs references once a repository has at least {@code
+     * minLooseRefs} loose references.
+     */
+    public static MaintenanceScheduler.Task compactTask(int minLooseRefs) {
+        return repo -> {
+            if (stats(repo).getLooseRefs() >= minLooseRefs) {
+                compact(repo);
+            }
+        };
+    }
+
+    private static int countLooseRefs(Path refs) {
+        int[] count = {0};
+        try {
+            Files.walkFileTree(
+                    refs,
+                    new SimpleFileVisitor<Path>() {
+                        @Override
+                        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                            if (attrs.isRegularFile()
+                                    && !file.getFileName().toString().endsWith(LOCK_SUFFIX)) {
+                                count[0]++;
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFileFailed(Path file, IOException e)
+                                throws IOException {
+                            // refs may be packed or deleted concurrently
+                            if (e instanceof NoSuchFileException) {
+                                return FileVisitResult.CONTINUE;
+                            }
+                            throw e;
+                        }
+                    });
+        } catch (NoSuchFileException e) {
+            return 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return count[0];
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (NoSuchFileException e) {
+            return 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.github.git24j.core;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Update many references at once through a single {@code git_transaction}.
+ *
+ * <p>Updates are collected in java and handed to native code in one call by {@link #commit()},
+ * which locks every reference, verifies expected old values while holding the locks, then writes
+ * all new values. If any lock or verification fails, no reference is touched. Note that the
+ * filesystem reference backend writes the locked references one after another during the final
+ * commit step, so an I/O error at that point may leave some of them updated.
+ *
+ * <p>Ids follow the convention of git's push protocol: an all-zero id as old value means "must
+ * not exist" and as new value means "delete".
+ *
+ * <pre>{@code
+ * RefTransaction tx = new RefTransaction(repo, "push");
+ * tx.create("refs/heads/topic", newTip);
+ * tx.update("refs/heads/master", oldTip, newTip);
+ * tx.delete("refs/heads/stale", staleTip);
+ * tx.commit();
+ * }</pre>
+ */
+public class RefTransaction {
+    /** See {@code J_TX_CHECK_OLD}. */
+    static final int CHECK_OLD = 1;
+
+    private static final byte[] ZERO_ID = new byte[Oid.RAWSZ];
+
+    private final Repository repo;
+    private final String message;
+    private final Set<String> seen = new HashSet<>();
+    private String[] names = new String[16];
+    private byte[] oldIds = new byte[16 * Oid.RAWSZ];
+    private byte[] newIds = new byte[16 * Oid.RAWSZ];
+    private int[] flags = new int[16];
+    private int size;
+    private int failedIndex = -1;
+
+    static native int jniCommit(
+            long repoPtr,
+            String[] names,
+            byte[] oldIds,
+            byte[] newIds,
+            int[] flags,
+            String message,
+            int[] outFailed);
+
+    /**
+     * @param repo repository whose references are updated
+     * @param message reflog message for updated references, may be null
+     */
+    public RefTransaction(Repository repo, String message) {
+        this.repo = repo;
+        this.message = message;
+    }
+
+    /** Create {@code name} pointing at {@code newId}, fail if it already exists. */
+    public RefTransaction create(String name, Oid newId) {
+        return add(name, ZERO_ID, idOf(newId), CHECK_OLD);
+    }
+
+    /** Move {@code name} from {@code oldId} to {@code newId}, fail if it does not point at oldId. */
+    public RefTransaction update(String name, Oid oldId, Oid newId) {
+        return add(name, idOf(oldId), idOf(newId), CHECK_OLD);
+    }
+
+    /** Delete {@code name}, fail if it does not point at {@code oldId}. */
+    public RefTransaction delete(String name, Oid oldId) {
+        return add(name, idOf(oldId), ZERO_ID, CHECK_OLD);
+    }
+
+    /** Point {@code name} at {@code newId} regardless of its current value, creating it if needed. */
+    public RefTransaction force(String name, Oid newId) {
+        return add(name, ZERO_ID, idOf(newId), 0);
+    }
+
+    /**
+     * Add updates in bulk, e.g. straight from the commands of a push.
+     *
+     * @param names reference names
+     * @param oldIds raw expected old ids, {@link Oid#RAWSZ} bytes per reference, all-zero for
+     *     references that must not exist yet
+     * @param newIds raw new ids, {@link Oid#RAWSZ} bytes per reference, all-zero for references to
+     *     delete
+     * @return this transaction
+     * @throws IllegalArgumentException if array lengths do not match or a name repeats
+     */
+    public RefTransaction updateAll(String[] names, byte[] oldIds, byte[] newIds) {
+        if (oldIds.length != names.length * Oid.RAWSZ || newIds.length != oldIds.length) {
+            throw new IllegalArgumentException(
+                    "expected " + names.length * Oid.RAWSZ + " bytes of old and new ids");
+        }
+        ensureCapacity(size + names.length);
+        for (int i = 0; i < names.length; i++) {
+            addAt(names[i], oldIds, newIds, i * Oid.RAWSZ, CHECK_OLD);
+        }
+        return this;
+    }
+
+    /** Number of references in this transaction. */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Lock, verify and update all references.
+     *
+     * @throws GitException git error, e.g. {@code ELOCKED} if a reference is locked by someone
+     *     else, {@code EEXISTS} or {@code EMODIFIED} if a reference does not have its expected old
+     *     value. {@link #failedRef()} tells which reference caused the failure.
+     */
+    public void commit() {
+        int[] outFailed = {-1};
+        int e =
+                jniCommit(
+                        repo.getRawPointer(),
+                        Arrays.copyOf(names, size),
+                        oldIds,
+                        newIds,
+                        flags,
+                        message,
+                        outFailed);
+        failedIndex = outFailed[0];
+        Error.throwIfNeeded(e);
+    }
+
+    /** Name of the reference that made the last {@link #commit()} fail, or null. */
+    public String failedRef() {
+        return failedIndex < 0 ? null : names[failedIndex];
+    }
+
+    private static byte[] idOf(Oid oid) {
+        return oid == null ? ZERO_ID : oid.getId();
+    }
+
+    private RefTransaction add(String name, byte[] oldId, byte[] newId, int flag) {
+        ensureCapacity(size + 1);
+        addAt(name, oldId, newId, 0, flag);
+        return this;
+    }
+
+    private void addAt(String name, byte[] oldSrc, byte[] newSrc, int offset, int flag) {
+        if (!seen.add(name)) {
+            throw new IllegalArgumentException("reference updated twice: " + name);
+        }
+        names[size] = name;
+        System.arraycopy(oldSrc, offset, oldIds, size * Oid.RAWSZ, Oid.RAWSZ);
+        System.arraycopy(newSrc, offset, newIds, size * Oid.RAWSZ, Oid.RAWSZ);
+        flags[size] = flag;
+        size++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= names.length) {
+            return;
+        }
+        int grown = Math.max(capacity, names.length * 2);
+        names = Arrays.copyOf(names, grown);
+        oldIds = Arrays.copyOf(oldIds, grown * Oid.RAWSZ);
+        newIds = Arrays.copyOf(newIds, grown * Oid.RAWSZ);
+        flags = Arrays.copyOf(flags, grown);
+    }
+}
@@ -1,12 +1,62 @@
 package com.github.git24j.core;
 
+/** Reference database of a repository. */
 public class Refdb extends CAutoCloseable {
     public Refdb(long rawPointer) {
         super(rawPointer);
     }
 
+    static native void jniFree(long refdbPtr);
+
+    static native int jniCompress(long refdbPtr);
+
+    static native long jniNew(long repoPtr);
+
+    static native int jniSetBackend(long refdbPtr, RefdbBackendAdapter adapter);
+
+    /**
+     * Create a new reference database with no backend. Use {@link #setBackend} to give it storage
+     * and {@link Repository#setRefdb(Refdb)} to use it for a repository.
+     *
+     * @param repo repository the references belong to
+     * @throws GitException git error
+     */
+    public static Refdb create(Repository repo) {
+        long refdbPtr = Error.handleOrThrow(jniNew(repo.getRawPointer()));
+        return new Refdb(refdbPtr);
+    }
+
+    /**
+     * Store references of this database in a java backend, replacing the current backend. The
+     * backend is closed when this database is freed.
+     *
+     * <pre>{@code
+     * try (Refdb refdb = Refdb.create(repo)) {
+     *     refdb.setBackend(new InMemoryRefdbBackend());
+     *     repo.setRefdb(refdb);
+     * }
+     * }</pre>
+     *
+     * @throws GitException git error
+     */
+    public void setBackend(RefdbBackend backend) {
+        Error.throwIfNeeded(jniSetBackend(getRawPointer(), new RefdbBackendAdapter(backend)));
+    }
+
+    /**
+     * Suggests that the given refdb compress or optimize its references. For the filesystem
+     * backend this packs all loose references into the packed-refs file and removes the loose
+     * files.
+     *
+     * @throws GitException git error
+     */
+    public void compress() {
+        Error.throwIfNeeded(jniCompress(getRawPointer()));
+    }
+
+    /** Close an open reference database, it is freed once no repository uses it. */
     @Override
-    public void close() {
-        // TODO: add jniFree
+    protected void freeOnce(long rawPtr) {
+        jniFree(rawPtr);
     }
 }
@@ -0,0 +1,114 @@
+package com.github.git24j.core;
+
+import java.util.Iterator;
+
+/**
+ * Storage of references implemented in java, installed with {@link
+ * Refdb#setBackend(RefdbBackend)}. See {@link InMemoryRefdbBackend} for an implementation.
+ *
+ * <p>Backends store plain (name, target) pairs; libgit2 keeps handling name validation, peeling
+ * and symbolic resolution. Reflogs are not supported: reading or writing one fails, deleting or
+ * renaming one is a no-op. Implementations must be thread safe.
+ *
+ * <p>Conditional updates report conflicts by throwing a {@link GitException} whose code is set,
+ * e.g. {@code EEXISTS} or {@code EMODIFIED}; the code is passed on to libgit2 as is.
+ */
+public interface RefdbBackend extends AutoCloseable {
+    /**
+     * Look up a reference.
+     *
+     * @param name full reference name
+     * @return the reference, or null if it does not exist
+     */
+    RefIterator.Entry lookup(String name);
+
+    /** Check whether a reference exists. */
+    default boolean exists(String name) {
+        return lookup(name) != null;
+    }
+
+    /**
+     * Iterate over references in name order.
+     *
+     * @param glob glob the names must match (see {@link #matches(String, String)}), or null for all
+     *     references
+     */
+    Iterator<RefIterator.Entry> iterator(String glob);
+
+    /**
+     * Create or update a reference.
+     *
+     * @param ref new name and target
+     * @param force overwrite an existing reference; if false, fail with {@code EEXISTS} if it
+     *     exists
+     * @param oldId if not null, fail with {@code EMODIFIED} unless the reference points at this id
+     * @param oldTarget if not null, fail with {@code EMODIFIED} unless the reference is symbolic
+     *     and points at this name
+     * @throws GitException on conflict, with its code set
+     */
+    void write(RefIterator.Entry ref, boolean force, Oid oldId, String oldTarget);
+
+    /**
+     * Delete a reference.
+     *
+     * @param name full reference name
+     * @param oldId if not null, fail with {@code EMODIFIED} unless the reference points at this id
+     * @param oldTarget if not null, fail with {@code EMODIFIED} unless the reference is symbolic
+     *     and points at this name
+     * @throws GitException {@code ENOTFOUND} if the reference does not exist, {@code EMODIFIED} on
+     *     conflict
+     */
+    void delete(String name, Oid oldId, String oldTarget);
+
+    /**
+     * Rename a reference. The default implementation is a lookup, write and delete; backends that
+     * can do this atomically should override it.
+     *
+     * @throws GitException {@code ENOTFOUND} if the reference does not exist, {@code EEXISTS} if
+     *     {@code newName} exists and {@code force} is false
+     */
+    default void rename(String oldName, String newName, boolean force) {
+        RefIterator.Entry ref = lookup(oldName);
+        if (ref == null) {
+            throw conflict(GitException.ErrorCode.ENOTFOUND, "reference not found: " + oldName);
+        }
+        RefIterator.Entry renamed =
+                new RefIterator.Entry(newName, ref.getTarget(), ref.getSymbolicTarget());
+        write(renamed, force, null, null);
+        delete(oldName, ref.getTarget(), ref.getSymbolicTarget());
+    }
+
+    /** Optimize storage, see {@link Refdb#compress()}. Does nothing by default. */
+    default void compress() {}
+
+    /**
+     * Lock a reference for a {@link RefTransaction}. The transaction later calls {@link
+     * #write}/{@link #delete} for it, followed by {@link #unlock(String)}. Does nothing by default.
+     *
+     * @throws GitException {@code ELOCKED} if already locked
+     */
+    default void lock(String name) {}
+
+    /** Release a lock taken by {@link #lock(String)}. Does nothing by default. */
+    default void unlock(String name) {}
+
+    /** Release resources, called when the refdb is freed. */
+    @Override
+    default void close() {}
+
+    /** Exception carrying a libgit2 error code, for reporting conflicts from backends. */
+    static GitException conflict(GitException.ErrorCode code, String message) {
+        GitException e = new GitException(GitException.ErrorClass.REFERENCE.ordinal(), message);
+        e.setCode(code);
+        return e;
+    }
+
+    /**
+     * Match a reference name against a glob the way libgit2 matches reference globs: {@code *}
+     * matches any run of characters including {@code /}, {@code ?} matches one character and
+     * {@code [...]} a character class.
+     */
+    static boolean matches(String glob, String name) {
+        return RefGlob.matches(glob, 0, name, 0);
+    }
+}
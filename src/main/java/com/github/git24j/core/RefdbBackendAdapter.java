@@ -0,0 +1,186 @@
+package com.github.git24j.core;
+
+import java.util.Iterator;
+
+/**
+ * Called from {@code j_refdb_backend} callbacks, translates between raw jni values and {@link
+ * RefdbBackend}.
+ *
+ * <p>Methods returning an int report failures as libgit2 error codes: a {@link GitException} with
+ * a code becomes that code with the exception message as libgit2 error message. Any other
+ * exception is left pending and turned into a generic error on the native side.
+ */
+final class RefdbBackendAdapter {
+    /** {@code success} values of {@link #unlock}. */
+    static final int UNLOCK_WRITE = 1;
+
+    static final int UNLOCK_DELETE = 2;
+
+    private static final int KLASS = GitException.ErrorClass.REFERENCE.ordinal();
+
+    private final RefdbBackend backend;
+
+    RefdbBackendAdapter(RefdbBackend backend) {
+        this.backend = backend;
+    }
+
+    /** @return 1 if the reference exists, 0 if not */
+    int exists(String name) {
+        try {
+            return backend.exists(name) ? 1 : 0;
+        } catch (GitException e) {
+            return report(e);
+        }
+    }
+
+    /**
+     * @param outId receives the target id of a direct reference
+     * @param outTarget receives the target name of a symbolic reference at index 0
+     * @return 0 for direct, 1 for symbolic references, {@code ENOTFOUND} if it does not exist
+     */
+    int lookup(String name, byte[] outId, String[] outTarget) {
+        try {
+            RefIterator.Entry ref = backend.lookup(name);
+            if (ref == null) {
+                return report(
+                        RefdbBackend.conflict(
+                                GitException.ErrorCode.ENOTFOUND, "reference not found: " + name));
+            }
+            if (ref.getSymbolicTarget() != null) {
+                outTarget[0] = ref.getSymbolicTarget();
+                return 1;
+            }
+            System.arraycopy(ref.getTarget().getId(), 0, outId, 0, Oid.RAWSZ);
+            return 0;
+        } catch (GitException e) {
+            return report(e);
+        }
+    }
+
+    /** @return the iterator, passed back to {@link #nextBatch} */
+    Object iterator(String glob) {
+        return backend.iterator(glob);
+    }
+
+    /**
+     * Copy up to {@code names.length} references into the arrays. Symbolic references have their
+     * target in {@code targets}, direct ones their id in {@code ids}.
+     *
+     * @return number of references copied, less than the capacity at the end of the iteration
+     */
+    @SuppressWarnings("unchecked")
+    int nextBatch(Object iterator, String[] names, byte[] ids, String[] targets) {
+        Iterator<RefIterator.Entry> it = (Iterator<RefIterator.Entry>) iterator;
+        int n = 0;
+        try {
+            while (n < names.length && it.hasNext()) {
+                RefIterator.Entry ref = it.next();
+                names[n] = ref.getName();
+                targets[n] = ref.getSymbolicTarget();
+                if (ref.getSymbolicTarget() == null) {
+                    System.arraycopy(ref.getTarget().getId(), 0, ids, n * Oid.RAWSZ, Oid.RAWSZ);
+                }
+                n++;
+            }
+            return n;
+        } catch (GitException e) {
+            return report(e);
+        }
+    }
+
+    int write(
+            String name,
+            byte[] id,
+            String symbolicTarget,
+            boolean force,
+            byte[] oldId,
+            String oldTarget) {
+        try {
+            backend.write(entry(name, id, symbolicTarget), force, oidOf(oldId), oldTarget);
+            return 0;
+        } catch (GitException e) {
+            return report(e);
+        }
+    }
+
+    int rename(String oldName, String newName, boolean force) {
+        try {
+            backend.rename(oldName, newName, force);
+            return 0;
+        } catch (GitException e) {
+            return report(e);
+        }
+    }
+
+    int delete(String name, byte[] oldId, String oldTarget) {
+        try {
+            backend.delete(name, oidOf(oldId), oldTarget);
+            return 0;
+        } catch (GitException e) {
+            return report(e);
+        }
+    }
+
+    int compress() {
+        try {
+            backend.compress();
+            return 0;
+        } catch (GitException e) {
+            return report(e);
+        }
+    }
+
+    int lock(String name) {
+        try {
+            backend.lock(name);
+            return 0;
+        } catch (GitException e) {
+            return report(e);
+        }
+    }
+
+    /**
+     * Apply the outcome of a transaction to a locked reference and release the lock.
+     *
+     * @param success 0 to only unlock, {@link #UNLOCK_WRITE} to store {@code id} or {@code target},
+     *     {@link #UNLOCK_DELETE} to delete the reference
+     */
+    int unlock(String name, int success, byte[] id, String symbolicTarget) {
+        try {
+            if (success == UNLOCK_WRITE) {
+                backend.write(entry(name, id, symbolicTarget), true, null, null);
+            } else if (success == UNLOCK_DELETE) {
+                backend.delete(name, null, null);
+            }
+            return 0;
+        } catch (GitException e) {
+            return report(e);
+        } finally {
+            backend.unlock(name);
+        }
+    }
+
+    void free() {
+        backend.close();
+    }
+
+    private static RefIterator.Entry entry(String name, byte[] id, String symbolicTarget) {
+        return symbolicTarget != null
+                ? new RefIterator.Entry(name, null, symbolicTarget)
+                : new RefIterator.Entry(name, Oid.of(id), null);
+    }
+
+    private static Oid oidOf(byte[] id) {
+        return id == null ? null : Oid.of(id);
+    }
+
+    /** Hand the exception over as libgit2 error, returns its code. */
+    private static int report(GitException e) {
+        GitException.ErrorCode code = e.getCode();
+        int klass = e.getErrorClass() == null ? KLASS : e.getErrorClass().ordinal();
+        Error.jniSetStr(klass, e.getMessage());
+        return code == null || code == GitException.ErrorCode.UNKNOWN
+                ? GitException.ErrorCode.ERROR.getValue()
+                : code.getValue();
+    }
+}
@@ -1,7 +1,141 @@
 package com.github.git24j.core;
 
-public class Reference extends GitObject {
+/** In-memory representation of a reference, e.g. {@code refs/heads/master} or {@code HEAD}. */
+public class Reference extends CAutoCloseable {
     public Reference(long rawPointer) {
         super(rawPointer);
     }
+
+    static native void jniFree(long refPtr);
+
+    static native long jniLookup(long repoPtr, String name);
+
+    static native int jniNameToId(Oid outOid, long repoPtr, String name);
+
+    static native String jniName(long refPtr);
+
+    static native byte[] jniTarget(long refPtr);
+
+    static native String jniSymbolicTarget(long refPtr);
+
+    static native int jniType(long refPtr);
+
+    static native long jniResolve(long refPtr);
+
+    static native long jniPeel(long refPtr, int objType);
+
+    /**
+     * Lookup a reference by name in a repository.
+     *
+     * @param repo the repository to look up the reference
+     * @param name the long name for the reference (e.g. HEAD, refs/heads/master, refs/tags/v0.1.0)
+     * @return found reference, must be closed by the caller
+     * @throws GitException git error, e.g. ENOTFOUND or EINVALIDSPEC
+     */
+    public static Reference lookup(Repository repo, String name) {
+        long refPtr =
+                Error.handleOrThrow(repo.withPointerLong(repoPtr -> jniLookup(repoPtr, name)));
+        return new Reference(refPtr);
+    }
+
+    /**
+     * Lookup a reference by name and resolve immediately to OID, without allocating a reference
+     * handle.
+     *
+     * @param repo the repository to look up the reference
+     * @param name the long name for the reference
+     * @return id the reference (recursively) points to
+     * @throws GitException git error
+     */
+    public static Oid nameToId(Repository repo, String name) {
+        Oid oid = new Oid();
+        Error.throwIfNeeded(repo.withPointerInt(repoPtr -> jniNameToId(oid, repoPtr, name)));
+        return oid;
+    }
+
+    /** Free the given reference. */
+    @Override
+    protected void freeOnce(long rawPtr) {
+        jniFree(rawPtr);
+    }
+
+    /** Get the full name of a reference. */
+    public String name() {
+        return jniName(getRawPointer());
+    }
+
+    /**
+     * Get the OID pointed to by a direct reference.
+     *
+     * @return target id, or null if this is a symbolic reference
+     */
+    public Oid target() {
+        byte[] raw = jniTarget(getRawPointer());
+        return raw == null ? null : Oid.of(raw);
+    }
+
+    /**
+     * Get full name of the reference pointed to by a symbolic reference.
+     *
+     * @return target name, or null if this is a direct reference
+     */
+    public String symbolicTarget() {
+        return jniSymbolicTarget(getRawPointer());
+    }
+
+    /** Get the type of a reference, either direct (has a target id) or symbolic. */
+    public ReferenceType type() {
+        return ReferenceType.valueOf(jniType(getRawPointer()));
+    }
+
+    /**
+     * Resolve a symbolic reference to a direct reference, following symbolic links as needed.
+     *
+     * @return the resolved direct reference, must be closed by the caller
+     * @throws GitException git error
+     */
+    public Reference resolve() {
+        long refPtr = Error.handleOrThrow(jniResolve(getRawPointer()));
+        return new Reference(refPtr);
+    }
+
+    /**
+     * Recursively peel reference until an object of the specified type is found.
+     *
+     * @param type the type of the requested object, {@link GitObject.Type#ANY} peels until a
+     *     non-tag object is met
+     * @return the peeled object, must be closed by the caller
+     * @throws GitException git error, e.g. EPEEL if the object can not be peeled to the type
+     */
+    public GitObject peel(GitObject.Type type) {
+        long objPtr = Error.handleOrThrow(jniPeel(getRawPointer(), type.getValue()));
+        return GitObject.create(objPtr);
+    }
+
+    /** Basic type of any Git reference. */
+    public enum ReferenceType {
+        INVALID(0),
+        DIRECT(1),
+        SYMBOLIC(2),
+        ;
+        private final int value;
+
+        ReferenceType(int value) {
+            this.value = value;
+        }
+
+        static ReferenceType valueOf(int iVal) {
+            for (ReferenceType x : ReferenceType.values()) {
+                if (x.value == iVal) {
+                    return x;
+                }
+            }
+            return INVALID;
+        }
+
+        /** Get associated value. */
+        public int getValue() {
+            return value;
+        }
+    }
 }
@@ -2,44 +2,48 @@ package com.github.git24j.core;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicLong;
 
-public class Repository implements AutoCloseable {
-    /**
-     * C Pointer.
-     */
-    private final AtomicLong _rawPtr = new AtomicLong();
+public class Repository extends CAutoCloseable {
+    static {
+        Libgit2.ensureInit();
+    }
+
+    private static final Metrics.Operation OPEN = Metrics.operation("Repository.open");
+    private volatile String _path;
 
     private Repository(long rawPtr) {
-        _rawPtr.set(rawPtr);
+        super(rawPtr);
     }
 
-    static native int jniOpen(AtomicLong outRepo, String path);
+    static native long jniOpen(String path);
 
-    static native int jniOpenFromWorkTree(AtomicLong outRepo, long wtPtr);
+    static native long jniOpenFromWorkTree(long wtPtr);
 
-    static native int jniWrapOdb(AtomicLong outRepo, long odbPtr);
+    static native long jniWrapOdb(long odbPtr);
 
     static native int jniDiscover(String startPath, int accessFs, String ceilingDirs);
 
-    static native int jniOpenExt(AtomicLong outRepo, String path, int flags, String ceilingDirs);
+    static native long jniOpenExt(String path, int flags, String ceilingDirs);
 
-    static native int jniOpenBare(AtomicLong outRepo, String path);
+    static native long jniOpenBare(String path);
 
     static native int jniFree(long repoPtr);
 
-    static native int jniInit(AtomicLong outRepo, String path, int isBare);
+    static native long jniInit(String path, int isBare);
 
     static native int jniInitOptionsInit(InitOptions initOpts, int version);
 
-    static native int jniInitExt(AtomicLong outRepo, String repoPath, InitOptions initOpts);
+    static native long jniInitExt(String repoPath, InitOptions initOpts);
 
-    static native int jniHead(AtomicLong gitRef, long repoPtr);
+    static native long jniHead(long repoPtr);
 
-    static native int jniHeadForWorktree(AtomicLong outRef, long repoPtr, String name);
+    static native long jniHeadForWorktree(long repoPtr, String name);
 
     static native int jniHeadDetached(long repoPtr);
 
@@ -49,7 +53,7 @@ public class Repository implements AutoCloseable {
 
     static native int jniItemPath(Buf buf, long repoPtr, int item);
 
-    static native int jniIndex(AtomicLong outIndex, long repoPtr);
+    static native long jniIndex(long repoPtr);
 
     static native String jniPath(long repoPtr);
 
@@ -63,13 +67,15 @@ public class Repository implements AutoCloseable {
 
     static native int jniIsWorktree(long repoPtr);
 
-    static native int jniConfig(AtomicLong outCfg, long repoPtr);
+    static native long jniConfig(long repoPtr);
+
+    static native long jniConfigSnapshot(long repoPtr);
 
-    static native int jniConfigSnapshot(AtomicLong outCfg, long repoPtr);
+    static native long jniOdb(long repoPtr);
 
-    static native int jniOdb(AtomicLong outOdb, long repoPtr);
+    static native long jniRefdb(long repoPtr);
 
-    static native int jniRefdb(AtomicLong outRefdb, long repoPtr);
+    static native void jniSetRefdb(long repoPtr, long refdbPtr);
 
     static native int jniMessage(Buf buf, long repoPtr);
 
@@ -81,6 +87,12 @@ public class Repository implements AutoCloseable {
 
     static native int jniMergeheadForeach(long repoPtr, MergeheadForeachCb cb);
 
+    static native int jniFetchheadForeachBatched(
+            long repoPtr, int batchSize, BatchBridge<FetchHead> bridge);
+
+    static native int jniMergeheadForeachBatched(
+            long repoPtr, int batchSize, BatchBridge<Oid> bridge);
+
     static native int jniHashfile(Oid oid, long repoPtr, String path, int type, String asPath);
 
     static native int jniSetHead(long repoPtr, String refName);
@@ -115,10 +127,24 @@ public class Repository implements AutoCloseable {
      * @throws GitException git error.
      */
     public static Repository open(String path) {
-        AtomicLong outRepo = new AtomicLong();
-        int error = jniOpen(outRepo, path);
-        Error.throwIfNeeded(error);
-        return new Repository(outRepo.get());
+        long start = Metrics.start();
+        long repoPtr = Bindings.current().repositoryOpen(path);
+        OPEN.record(start, Error.codeOf(repoPtr), path, 0);
+        return new Repository(Error.handleOrThrow(repoPtr));
+    }
+
+    /**
+     * Create a "fake" repository to wrap an object database. The repository has no working
+     * directory, index or references of its own, which makes it suitable for operating on objects
+     * held by a custom {@link OdbBackend}.
+     *
+     * @param odb the object database to wrap, may be closed once the repository is created
+     * @return the repository
+     * @throws GitException git error.
+     */
+    public static Repository wrapOdb(Odb odb) {
+        long repoPtr = Error.handleOrThrow(jniWrapOdb(odb.getRawPointer()));
+        return new Repository(repoPtr);
     }
 
     /**
@@ -132,10 +158,8 @@ public class Repository implements AutoCloseable {
      * @throws GitException git error.
      */
     public static Repository init(String path, boolean isBare) {
-        AtomicLong out = new AtomicLong();
-        int error = jniInit(out, path, isBare ? 1 : 0);
-        Error.throwIfNeeded(error);
-        return new Repository(out.get());
+        long ptr = Error.handleOrThrow(jniInit(path, isBare ? 1 : 0));
+        return new Repository(ptr);
     }
 
     /**
@@ -147,9 +171,8 @@ public class Repository implements AutoCloseable {
      * @throws GitException git error
      */
     public static Repository initExt(String path, InitOptions initOpts) {
-        AtomicLong out = new AtomicLong();
-        Error.throwIfNeeded(jniInitExt(out, path, initOpts));
-        return new Repository(out.get());
+        long ptr = Error.handleOrThrow(jniInitExt(path, initOpts));
+        return new Repository(ptr);
     }
 
     /**
@@ -166,10 +189,8 @@ public class Repository implements AutoCloseable {
      * @throws GitException git error.
      */
     public static Repository openExt(String path, EnumSet<OpenFlag> flags, String ceilingDirs) {
-        AtomicLong out = new AtomicLong();
-        int error = jniOpenExt(out, path, IBitEnum.bitOrAll(flags), ceilingDirs);
-        Error.throwIfNeeded(error);
-        return new Repository(out.get());
+        long ptr = Error.handleOrThrow(jniOpenExt(path, IBitEnum.bitOrAll(flags), ceilingDirs));
+        return new Repository(ptr);
     }
 
     /**
@@ -180,9 +201,8 @@ public class Repository implements AutoCloseable {
      * @throws GitException git error.
      */
     public static Repository openBare(String path) {
-        AtomicLong out = new AtomicLong();
-        Error.throwIfNeeded(jniOpenBare(out, path));
-        return new Repository(out.get());
+        long ptr = Error.handleOrThrow(jniOpenBare(path));
+        return new Repository(ptr);
     }
 
     /**
@@ -191,7 +211,17 @@ public class Repository implements AutoCloseable {
      * @return the path to the common dir.
      */
     public String getPath() {
-        return jniPath(getRawPointer());
+        return withPointer(repoPtr -> Bindings.current().repositoryPath(repoPtr));
+    }
+
+    /** {@link #getPath()}, looked up once, for {@link Metrics}. */
+    String cachedPath() {
+        String path = _path;
+        if (path == null) {
+            path = getPath();
+            _path = path;
+        }
+        return path;
     }
 
     /**
@@ -200,7 +230,7 @@ public class Repository implements AutoCloseable {
      * @return the path to the working dir, if it exists
      */
     public Path workdir() {
-        String wd = jniWorkdir(getRawPointer());
+        String wd = withPointer(Repository::jniWorkdir);
         return Paths.get(wd);
     }
 
@@ -213,7 +243,10 @@ public class Repository implements AutoCloseable {
      * @throws GitException git error
      */
     public void setWorkdir(Path path, boolean updateGitLink) {
-        Error.throwIfNeeded(jniSetWorkdir(getRawPointer(), path.toString(), updateGitLink ? 1 : 0));
+        Error.throwIfNeeded(
+                withPointerInt(
+                        repoPtr ->
+                                jniSetWorkdir(repoPtr, path.toString(), updateGitLink ? 1 : 0)));
     }
 
     /**
@@ -222,7 +255,7 @@ public class Repository implements AutoCloseable {
      * @return the path to the common dir.
      */
     public String getCommondir() {
-        return jniCommondir(getRawPointer());
+        return withPointer(Repository::jniCommondir);
     }
 
     /**
@@ -231,7 +264,7 @@ public class Repository implements AutoCloseable {
      * @return true if the repository is bare
      */
     public boolean isBare() {
-        return jniIsBare(getRawPointer()) == 1;
+        return withPointerInt(Repository::jniIsBare) == 1;
     }
 
     /**
@@ -240,7 +273,7 @@ public class Repository implements AutoCloseable {
      * @return true if the repository is a linked work tree
      */
     public boolean isWorktree() {
-        return jniIsWorktree(getRawPointer()) == 1;
+        return withPointerInt(Repository::jniIsWorktree) == 1;
     }
 
     /**
@@ -250,9 +283,8 @@ public class Repository implements AutoCloseable {
      * @throws GitException git error
      */
     public Config config() {
-        AtomicLong outCfg = new AtomicLong();
-        Error.throwIfNeeded(jniConfig(outCfg, getRawPointer()));
-        return new Config(outCfg.get());
+        long cfgPtr = Error.handleOrThrow(withPointerLong(Repository::jniConfig));
+        return new Config(cfgPtr);
     }
 
     /**
@@ -262,9 +294,8 @@ public class Repository implements AutoCloseable {
      * @throws GitException git error
      */
     public Config configSnapshot() {
-        AtomicLong outCfg = new AtomicLong();
-        Error.throwIfNeeded(jniConfigSnapshot(outCfg, getRawPointer()));
-        return new Config(outCfg.get());
+        long cfgPtr = Error.handleOrThrow(withPointerLong(Repository::jniConfigSnapshot));
+        return new Config(cfgPtr);
     }
 
     /**
@@ -274,9 +305,8 @@ public class Repository implements AutoCloseable {
      * @throws GitException git error
      */
     public Odb odb() {
-        AtomicLong outOdb = new AtomicLong();
-        Error.throwIfNeeded(jniOdb(outOdb, getRawPointer()));
-        return new Odb(outOdb.get());
+        long odbPtr = Error.handleOrThrow(withPointerLong(Repository::jniOdb));
+        return new Odb(odbPtr);
     }
 
     /**
@@ -286,9 +316,16 @@ public class Repository implements AutoCloseable {
      * @throws GitException git error
      */
     public Refdb refdb() {
-        AtomicLong outRefdb = new AtomicLong();
-        Error.throwIfNeeded(jniRefdb(outRefdb, getRawPointer()));
-        return new Refdb(outRefdb.get());
+        long refdbPtr = Error.handleOrThrow(withPointerLong(Repository::jniRefdb));
+        return new Refdb(refdbPtr);
+    }
+
+    /**
+     * Set the reference database of this repository. The repository takes its own reference on
+     * the refdb, the caller may close it afterwards.
+     */
+    public void setRefdb(Refdb refdb) {
+        withPointerDo(repoPtr -> jniSetRefdb(repoPtr, refdb.getRawPointer()));
     }
 
     /**
@@ -297,7 +334,7 @@ public class Repository implements AutoCloseable {
      */
     public Optional<String> message() {
         Buf buf = new Buf();
-        Error.throwIfNeeded(jniMessage(buf, getRawPointer()));
+        Error.throwIfNeeded(withPointerInt(repoPtr -> jniMessage(buf, repoPtr)));
         return buf.getString();
     }
     //    static native int jniMessageRemove(long repoPtr);
@@ -308,7 +345,7 @@ public class Repository implements AutoCloseable {
      * @throws GitException git error
      */
     public void messageRemove() {
-        Error.throwIfNeeded(jniMessageRemove(getRawPointer()));
+        Error.throwIfNeeded(withPointerInt(Repository::jniMessageRemove));
     }
 
     /**
@@ -318,7 +355,7 @@ public class Repository implements AutoCloseable {
      * @throws GitException git error
      */
     public void stateCleanup() {
-        Error.throwIfNeeded(jniStateCleanup(getRawPointer()));
+        Error.throwIfNeeded(withPointerInt(Repository::jniStateCleanup));
     }
     //
     //    static native int jniFetchheadForeach(long repoPtr, FetchHeadForeachCb cb);
@@ -330,7 +367,7 @@ public class Repository implements AutoCloseable {
      * @throws GitException git error
      */
     public void fetchheadForeach(FetchHeadForeachCb cb) {
-        Error.throwIfNeeded(jniFetchheadForeach(getRawPointer(), cb));
+        Error.throwIfNeeded(withPointerInt(repoPtr -> jniFetchheadForeach(repoPtr, cb)));
     }
 
     /**
@@ -340,7 +377,35 @@ public class Repository implements AutoCloseable {
      * @throws GitException git error
      */
     public void mergeHeadForeach(MergeheadForeachCb cb) {
-        Error.throwIfNeeded(jniMergeheadForeach(getRawPointer(), cb));
+        Error.throwIfNeeded(withPointerInt(repoPtr -> jniMergeheadForeach(repoPtr, cb)));
+    }
+
+    /**
+     * Deliver entries of the FETCH_HEAD file in batches of up to {@code batchSize}.
+     *
+     * @param batchSize maximum number of entries per batch
+     * @param consumer receives entries; return non-zero to stop the iteration
+     * @return true if all entries were delivered, false if the consumer stopped the iteration
+     * @throws GitException git error
+     */
+    public boolean fetchheadForeach(int batchSize, BatchConsumer<FetchHead> consumer) {
+        BatchBridge<FetchHead> bridge = FetchHead.bridge(consumer);
+        return bridge.completed(
+                withPointerInt(repoPtr -> jniFetchheadForeachBatched(repoPtr, batchSize, bridge)));
+    }
+
+    /**
+     * Deliver commit ids of the MERGE_HEAD file in batches of up to {@code batchSize}.
+     *
+     * @param batchSize maximum number of ids per batch
+     * @param consumer receives merge ids; return non-zero to stop the iteration
+     * @return true if all ids were delivered, false if the consumer stopped the iteration
+     * @throws GitException git error
+     */
+    public boolean mergeHeadForeach(int batchSize, BatchConsumer<Oid> consumer) {
+        BatchBridge<Oid> bridge = BatchBridge.ofIds(consumer);
+        return bridge.completed(
+                withPointerInt(repoPtr -> jniMergeheadForeachBatched(repoPtr, batchSize, bridge)));
     }
 
     /**
@@ -358,7 +423,10 @@ public class Repository implements AutoCloseable {
     public Oid hashfile(Path path, GitObject.Type type, String asPath) {
         Oid oid = new Oid(0);
         Error.throwIfNeeded(
-                jniHashfile(oid, getRawPointer(), path.toString(), type.getValue(), asPath));
+                withPointerInt(
+                        repoPtr ->
+                                jniHashfile(
+                                        oid, repoPtr, path.toString(), type.getValue(), asPath)));
         return oid;
     }
 
@@ -369,7 +437,7 @@ public class Repository implements AutoCloseable {
      * @throws GitException git errors
      */
     public void setHead(String refName) {
-        Error.throwIfNeeded(jniSetHead(getRawPointer(), refName));
+        Error.throwIfNeeded(withPointerInt(repoPtr -> jniSetHead(repoPtr, refName)));
     }
 
     /**
@@ -378,14 +446,14 @@ public class Repository implements AutoCloseable {
      * @param oid Object id of the Commit the HEAD should point to
      */
     public void setHeadDetached(Oid oid) {
-        Error.throwIfNeeded(jniSetHeadDetached(getRawPointer(), oid));
+        Error.throwIfNeeded(withPointerInt(repoPtr -> jniSetHeadDetached(repoPtr, oid)));
     }
 
     /**
      * Detach the HEAD.
      */
     public void detachHead() {
-        Error.throwIfNeeded(jniDetachHead(getRawPointer()));
+        Error.throwIfNeeded(withPointerInt(Repository::jniDetachHead));
     }
 
     /**
@@ -396,7 +464,7 @@ public class Repository implements AutoCloseable {
      * @throws GitException if returned code is not a valid state.
      */
     public State state() {
-        int idx = jniState(getRawPointer());
+        int idx = withPointerInt(Repository::jniState);
         if (idx >= 0 && idx < State.values().length) {
             return State.values()[idx];
         }
@@ -409,7 +477,7 @@ public class Repository implements AutoCloseable {
      * @return the active namespace, or NULL if there isn't one
      */
     public String getNamespace() {
-        return jniGetNamespace(getRawPointer());
+        return withPointer(Repository::jniGetNamespace);
     }
 
     /**
@@ -422,14 +490,14 @@ public class Repository implements AutoCloseable {
      * @throws GitException git error
      */
     public void setNamespace(String namespace) {
-        Error.throwIfNeeded(jniSetNamespace(getRawPointer(), namespace));
+        Error.throwIfNeeded(withPointerInt(repoPtr -> jniSetNamespace(repoPtr, namespace)));
     }
 
     /**
      * Determine if the repository was a shallow clone.
      */
     public boolean isShadow() {
-        return jniIsShadow(getRawPointer()) == 1;
+        return withPointerInt(Repository::jniIsShadow) == 1;
     }
 
     //
@@ -438,7 +506,7 @@ public class Repository implements AutoCloseable {
     public Identity ident() {
         Identity identity = new Identity("", "");
         // outName.set("");
-        Error.throwIfNeeded(jniIdent(identity, getRawPointer()));
+        Error.throwIfNeeded(withPointerInt(repoPtr -> jniIdent(identity, repoPtr)));
         return identity;
     }
 
@@ -450,34 +518,20 @@ public class Repository implements AutoCloseable {
      * @throws GitException git error
      */
     public void setIdent(String name, String email) {
-        Error.throwIfNeeded(jniSetIdent(getRawPointer(), name, email));
+        Error.throwIfNeeded(withPointerInt(repoPtr -> jniSetIdent(repoPtr, name, email)));
     }
 
     /**
-     * Get raw pointer of the repo.
-     *
-     * @return pointer value in long
-     * @throws IllegalStateException if Repository has been closed
+     * Close the repository, no-op if not opened. Calls in flight on other threads finish first,
+     * see {@link CAutoCloseable}.
      */
-    long getRawPointer() {
-        long ptr = _rawPtr.get();
-        if (ptr == 0) {
-            throw new IllegalStateException("Repository has been closed");
-        }
-        return ptr;
+    public void free() {
+        close();
     }
 
     @Override
-    public void close() {
-        free();
-    }
-
-    /**
-     * Close the repository, no-op if not opened.
-     */
-    public void free() {
-        jniFree(_rawPtr.get());
-        _rawPtr.set(0);
+    protected void freeOnce(long rawPtr) {
+        Bindings.current().repositoryFree(rawPtr);
     }
 
     /**
@@ -487,9 +541,26 @@ public class Repository implements AutoCloseable {
      * @throws GitException git error.
      */
     public Reference head() {
-        AtomicLong outRef = new AtomicLong();
-        Error.throwIfNeeded(jniHead(outRef, _rawPtr.get()));
-        return new Reference(outRef.get());
+        long refPtr =
+                Error.handleOrThrow(
+                        withPointerLong(repoPtr -> Bindings.current().repositoryHead(repoPtr)));
+        return new Reference(refPtr);
+    }
+
+    /**
+     * Like {@link #head()}, but without creating an exception for a HEAD that does not resolve.
+     *
+     * @return the reference, or empty if HEAD is missing or points to an unborn branch
+     * @throws GitException other git errors.
+     */
+    public Optional<Reference> tryHead() {
+        long refPtr = withPointerLong(repoPtr -> Bindings.current().repositoryHead(repoPtr));
+        int error = Error.codeOf(refPtr);
+        if (error == GitException.ErrorCode.ENOTFOUND.getValue()
+                || error == GitException.ErrorCode.EUNBORNBRANCH.getValue()) {
+            return Optional.empty();
+        }
+        return Optional.of(new Reference(Error.handleOrThrow(refPtr)));
     }
 
     /**
@@ -500,9 +571,9 @@ public class Repository implements AutoCloseable {
      * @throws GitException git error.
      */
     public Reference headForWorkTree(String name) {
-        AtomicLong outRef = new AtomicLong();
-        Error.throwIfNeeded(jniHeadForWorktree(outRef, _rawPtr.get(), name));
-        return new Reference(outRef.get());
+        long refPtr =
+                Error.handleOrThrow(withPointerLong(repoPtr -> jniHeadForWorktree(repoPtr, name)));
+        return new Reference(refPtr);
     }
 
     /**
@@ -512,7 +583,7 @@ public class Repository implements AutoCloseable {
      * @throws GitException git error.
      */
     public boolean headDetached() {
-        int error = jniHeadDetached(_rawPtr.get());
+        int error = withPointerInt(Repository::jniHeadDetached);
         Error.throwIfNeeded(error);
         return error == 1;
     }
@@ -524,7 +595,7 @@ public class Repository implements AutoCloseable {
      * @throws GitException git error.
      */
     public boolean headUnborn() {
-        int error = jniHeadUnborn(_rawPtr.get());
+        int error = withPointerInt(Repository::jniHeadUnborn);
         Error.throwIfNeeded(error);
         return error == 1;
     }
@@ -536,7 +607,7 @@ public class Repository implements AutoCloseable {
      * @throws GitException git error.
      */
     public boolean isEmpty() {
-        int error = jniIsEmpty(_rawPtr.get());
+        int error = withPointerInt(Repository::jniIsEmpty);
         Error.throwIfNeeded(error);
         return error == 1;
     }
@@ -550,7 +621,7 @@ public class Repository implements AutoCloseable {
      */
     public Buf itemPath(Item item) {
         Buf buf = new Buf();
-        int error = jniItemPath(buf, _rawPtr.get(), item.ordinal());
+        int error = withPointerInt(repoPtr -> jniItemPath(buf, repoPtr, item.ordinal()));
         Error.throwIfNeeded(error);
         return buf;
     }
@@ -562,10 +633,10 @@ public class Repository implements AutoCloseable {
      * @throws GitException git error.
      */
     public Index index() {
-        AtomicLong outIdx = new AtomicLong();
-        int error = jniIndex(outIdx, _rawPtr.get());
-        Error.throwIfNeeded(error);
-        return new Index(outIdx);
+        long indexPtr =
+                Error.handleOrThrow(
+                        withPointerLong(repoPtr -> Bindings.current().repositoryIndex(repoPtr)));
+        return new Index(new AtomicLong(indexPtr));
     }
 
     public enum Item {
@@ -782,6 +853,59 @@ public class Repository implements AutoCloseable {
         public abstract int call(String remoteUrl, Oid oid, boolean isMerge);
     }
 
+    /** One entry of the FETCH_HEAD file. */
+    public static class FetchHead {
+        private final String refName;
+        private final String remoteUrl;
+        private final Oid oid;
+        private final boolean isMerge;
+
+        public FetchHead(String refName, String remoteUrl, Oid oid, boolean isMerge) {
+            this.refName = refName;
+            this.remoteUrl = remoteUrl;
+            this.oid = oid;
+            this.isMerge = isMerge;
+        }
+
+        static BatchBridge<FetchHead> bridge(BatchConsumer<FetchHead> consumer) {
+            return new BatchBridge<FetchHead>(consumer) {
+                @Override
+                List<FetchHead> decode(Cursor cursor, int count) {
+                    List<FetchHead> items = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        items.add(
+                                new FetchHead(
+                                        cursor.nextString(),
+                                        cursor.nextString(),
+                                        cursor.nextId(),
+                                        cursor.nextInt() != 0));
+                    }
+                    return items;
+                }
+            };
+        }
+
+        /** The reference name, e.g. "refs/heads/master". */
+        public String getRefName() {
+            return refName;
+        }
+
+        /** The remote URL. */
+        public String getRemoteUrl() {
+            return remoteUrl;
+        }
+
+        /** The reference target OID. */
+        public Oid getOid() {
+            return oid;
+        }
+
+        /** Was the reference the result of a merge. */
+        public boolean isMerge() {
+            return isMerge;
+        }
+    }
+
     public abstract static class MergeheadForeachCb {
         int accept(byte[] oidRaw) {
             return call(Oid.of(oidRaw));
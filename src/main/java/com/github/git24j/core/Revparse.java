@@ -1,19 +1,36 @@
 package com.github.git24j.core;
 
+import java.util.Arrays;
 import java.util.EnumSet;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.Optional;
 
 public class Revparse {
-    static native int jniCall(Revspec revspec, long repoPtr, String spec);
+    private static final Metrics.Operation CALL = Metrics.operation("Revparse.call");
+    private static final Metrics.Operation SINGLE = Metrics.operation("Revparse.single");
+    private static final Metrics.Operation RESOLVE_ALL = Metrics.operation("Revparse.resolveAll");
 
-    static native int jniSingle(AtomicLong outObj, long repoPtr, String spec);
+    // GENERATED NATIVES BEGIN: scripts/gen_bindings.py
+    static native int jniCall(long[] revspec, long repoPtr, String spec);
+    // GENERATED NATIVES END
 
-    static native int jniExt(AtomicLong outObj, AtomicLong outRef, long repoPtr, String spec);
+    static native long jniSingle(long repoPtr, String spec);
+
+    static native int jniExt(long[] outObjAndRef, long repoPtr, String spec);
+
+    static native int jniResolve(Oid outId, String[] outRefNames, long repoPtr, String spec);
+
+    static native int jniResolveAll(long repoPtr, String[] specs, byte[] outIds, int[] outStatus);
 
     public static Revspec call(Repository repository, String spec) {
-        Revspec revspec = new Revspec(null, null, EnumSet.noneOf(Mode.class));
-        Error.throwIfNeeded(jniCall(revspec, repository.getRawPointer(), spec));
-        return revspec;
+        long[] revspec = new long[3];
+        long start = Metrics.start();
+        int e = repository.withPointerInt(repoPtr -> jniCall(revspec, repoPtr, spec));
+        CALL.record(start, e, repository, 1);
+        Error.throwIfNeeded(e);
+        return new Revspec(
+                revspec[0] == 0 ? null : GitObject.create(revspec[0]),
+                revspec[1] == 0 ? null : GitObject.create(revspec[1]),
+                IBitEnum.parse((int) revspec[2], Mode.class));
     }
 
     /**
@@ -26,9 +43,32 @@ public class Revparse {
      * @throws IllegalStateException if repository has already been closed.
      */
     public static GitObject single(Repository repository, String spec) {
-        AtomicLong outObj = new AtomicLong();
-        Error.throwIfNeeded(jniSingle(outObj, repository.getRawPointer(), spec));
-        return new GitObject(outObj.get());
+        long start = Metrics.start();
+        long objPtr =
+                repository.withPointerLong(
+                        repoPtr -> Bindings.current().revparseSingle(repoPtr, spec));
+        SINGLE.record(start, Error.codeOf(objPtr), repository, 1);
+        return GitObject.create(Error.handleOrThrow(objPtr));
+    }
+
+    /**
+     * Like {@link #single}, but a spec that does not resolve is a normal outcome and creates no
+     * exception.
+     *
+     * @param repository the repository to search in
+     * @param spec the textual specification for an object (must not be null)
+     * @return output object, or empty if the spec does not resolve to an object
+     * @throws GitException git errors other than ENOTFOUND, e.g. EINVALIDSPEC or EAMBIGUOUS
+     * @throws IllegalStateException if repository has already been closed.
+     */
+    public static Optional<GitObject> trySingle(Repository repository, String spec) {
+        long start = Metrics.start();
+        long objPtr =
+                repository.withPointerLong(
+                        repoPtr -> Bindings.current().revparseSingle(repoPtr, spec));
+        SINGLE.record(start, Error.codeOf(objPtr), repository, 1);
+        objPtr = Error.handleOrZero(objPtr);
+        return objPtr == 0 ? Optional.empty() : Optional.of(GitObject.create(objPtr));
     }
 
     /**
@@ -41,12 +81,38 @@ public class Revparse {
      * @throws IllegalStateException if repository already closed.
      */
     public static ExtReturn ext(Repository repository, String spec) {
-        AtomicLong outObj = new AtomicLong();
-        AtomicLong outRef = new AtomicLong();
-        Error.throwIfNeeded(jniExt(outObj, outRef, repository.getRawPointer(), spec));
+        long[] outObjAndRef = new long[2];
+        Error.throwIfNeeded(
+                repository.withPointerInt(repoPtr -> jniExt(outObjAndRef, repoPtr, spec)));
         return new ExtReturn(
-                outObj.get() > 0 ? new GitObject(outObj.get()) : null,
-                outRef.get() > 0 ? new Reference(outRef.get()) : null);
+                outObjAndRef[0] != 0 ? GitObject.create(outObjAndRef[0]) : null,
+                outObjAndRef[1] != 0 ? new Reference(outObjAndRef[1]) : null);
+    }
+
+    /**
+     * Resolve many revision specs to object ids at once, like {@link #single} for each of them
+     * but in a single native call and without creating a {@link GitObject} per spec. Specs that
+     * fail to resolve do not throw, their status is recorded in the result instead.
+     *
+     * @param repository the repository to search in
+     * @param specs textual specifications for objects
+     * @return ids and status codes in the order of {@code specs}
+     * @throws IllegalStateException if repository has already been closed.
+     */
+    public static Resolved resolveAll(Repository repository, String[] specs) {
+        byte[] ids = new byte[specs.length * Oid.RAWSZ];
+        int[] status = new int[specs.length];
+        long start = Metrics.start();
+        int failed = Math.max(specs.length, 1);
+        try {
+            int resolved =
+                    repository.withPointerInt(
+                            repoPtr -> jniResolveAll(repoPtr, specs, ids, status));
+            failed = specs.length - resolved;
+            return new Resolved(ids, status, resolved);
+        } finally {
+            RESOLVE_ALL.recordBatch(start, repository, specs.length, failed);
+        }
     }
 
     public enum Mode implements IBitEnum {
@@ -110,29 +176,14 @@ public class Revparse {
             return from;
         }
 
-        /** setter exposed to jni. */
-        void setFrom(long fromPtr) {
-            this.from = new GitObject(fromPtr);
-        }
-
         public GitObject getTo() {
             return to;
         }
 
-        /** setter exposed to jni. */
-        void setTo(long toPtr) {
-            this.to = new GitObject(toPtr);
-        }
-
         public EnumSet<Mode> getFlags() {
             return flags;
         }
 
-        /** setter exposed to jni. */
-        void setFlags(int flags) {
-            this.flags = IBitEnum.parse(flags, Mode.class);
-        }
-
         @Override
         public void close() {
             if (from != null) {
@@ -143,4 +194,58 @@ public class Revparse {
             }
         }
     }
+
+    /** Outcome of {@link #resolveAll}: one id or error code per spec. */
+    public static class Resolved {
+        private final byte[] ids;
+        private final int[] status;
+        private final int resolvedCount;
+
+        Resolved(byte[] ids, int[] status, int resolvedCount) {
+            this.ids = ids;
+            this.status = status;
+            this.resolvedCount = resolvedCount;
+        }
+
+        /** Number of specs. */
+        public int size() {
+            return status.length;
+        }
+
+        /** Number of specs that resolved. */
+        public int getResolvedCount() {
+            return resolvedCount;
+        }
+
+        /** Whether the i-th spec resolved. */
+        public boolean isResolved(int i) {
+            return status[i] == 0;
+        }
+
+        /** Error of the i-th spec, {@code OK} if it resolved. */
+        public GitException.ErrorCode getStatus(int i) {
+            return GitException.ErrorCode.of(status[i]);
+        }
+
+        /** Raw libgit2 error code of the i-th spec, 0 if it resolved. */
+        public int getRawStatus(int i) {
+            return status[i];
+        }
+
+        /** Id of the i-th object, or null if its spec did not resolve. */
+        public Oid getId(int i) {
+            if (status[i] != 0) {
+                return null;
+            }
+            return Oid.of(Arrays.copyOfRange(ids, i * Oid.RAWSZ, (i + 1) * Oid.RAWSZ));
+        }
+
+        /**
+         * All ids packed back to back, {@link Oid#RAWSZ} bytes each; entries of specs that did not
+         * resolve are zero.
+         */
+        public byte[] getPackedIds() {
+            return ids.clone();
+        }
+    }
 }
@@ -0,0 +1,242 @@
+package com.github.git24j.core;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Memoizes revision specs of one repository, see {@link Revparse}, as object ids.
+ *
+ * <p>Each entry remembers the files its resolution depended on: {@code HEAD}, {@code packed-refs},
+ * the loose file of the reference the spec went through and of its symbolic target, and for
+ * specs like {@code master@{1}} the reflogs. A cached id is returned as long as none of these
+ * files changed (same file key, modification time and size; refs are replaced by renaming a lock
+ * file, so every update yields a new file). Specs that do not go through a reference, e.g. full
+ * ids and {@code <id>~3}, never change and are cached for good.
+ *
+ * <p>Changes that do not touch these files, such as creating a new reference that shadows the
+ * name a spec resolved through, or a custom refdb backend, must be announced with {@link
+ * #invalidate()} or {@link #invalidate(String)}. Specs that search all references, like {@code
+ * :/message}, are not cached.
+ *
+ * <p>A cache may be used from several threads, as far as the repository handle allows it.
+ */
+public final class RevparseCache {
+    private static final FileStamp MISSING = new FileStamp(null, -1, -1);
+
+    private final Repository repo;
+    private final Path gitDir;
+    private final Path commonDir;
+    private final long recheckNanos;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Cache that verifies the dependencies of an entry at most once per {@code recheckInterval}.
+     * Within the interval, a cached id may be stale by up to that long.
+     *
+     * @param repo repository to resolve specs in, must stay open while the cache is used
+     */
+    public RevparseCache(Repository repo, long recheckInterval, TimeUnit unit) {
+        this.repo = repo;
+        this.gitDir = Paths.get(repo.getPath());
+        this.commonDir = Paths.get(repo.getCommondir());
+        this.recheckNanos = unit.toNanos(recheckInterval);
+    }
+
+    /** Cache that verifies the dependencies of an entry on every lookup. */
+    public RevparseCache(Repository repo) {
+        this(repo, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Id of the object a revision spec resolves to.
+     *
+     * @param spec the textual specification for an object (must not be null)
+     * @throws GitException git error, e.g. ENOTFOUND if the spec does not resolve
+     */
+    public Oid resolve(String spec) {
+        Objects.requireNonNull(spec, "spec");
+        Entry cached = entries.get(spec);
+        if (cached != null && isCurrent(cached)) {
+            hits.increment();
+            return cached.id;
+        }
+        misses.increment();
+        String[] refNames = new String[2];
+        Oid id = resolveNow(spec, refNames);
+        if (spec.startsWith(":/")) {
+            return id;
+        }
+        if (refNames[0] == null) {
+            entries.put(spec, new Entry(id, new Path[0], new FileStamp[0], System.nanoTime()));
+            return id;
+        }
+        Path[] deps = dependencies(spec, refNames);
+        FileStamp[] stamps = stamps(deps);
+        // a reference may have moved between resolving and stamping, only keep what the
+        // stamps describe
+        Oid again = resolveNow(spec, new String[2]);
+        if (again.toString().equals(id.toString())) {
+            entries.put(spec, new Entry(id, deps, stamps, System.nanoTime()));
+        } else {
+            entries.remove(spec);
+        }
+        return again;
+    }
+
+    /** Drop all entries, e.g. after references were changed by other means than their files. */
+    public void invalidate() {
+        entries.clear();
+    }
+
+    /**
+     * Drop the entries that resolved through a reference.
+     *
+     * @param refName full name of the reference, e.g. {@code refs/heads/master}
+     */
+    public void invalidate(String refName) {
+        Path file = refFile(refName);
+        entries.values().removeIf(e -> e.dependsOn(file));
+    }
+
+    /** Number of cached specs. */
+    public int size() {
+        return entries.size();
+    }
+
+    /** Lookups answered from the cache. */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /** Lookups that resolved the spec. */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private Oid resolveNow(String spec, String[] outRefNames) {
+        Oid id = new Oid();
+        Error.throwIfNeeded(
+                repo.withPointerInt(
+                        repoPtr -> Revparse.jniResolve(id, outRefNames, repoPtr, spec)));
+        return id;
+    }
+
+    private boolean isCurrent(Entry entry) {
+        long now = System.nanoTime();
+        if (now - entry.checkedAt < recheckNanos) {
+            return true;
+        }
+        for (int i = 0; i < entry.deps.length; i++) {
+            if (!entry.stamps[i].equals(stamp(entry.deps[i]))) {
+                return false;
+            }
+        }
+        entry.checkedAt = now;
+        return true;
+    }
+
+    private Path[] dependencies(String spec, String[] refNames) {
+        List<Path> deps = new ArrayList<>(6);
+        deps.add(gitDir.resolve("HEAD"));
+        deps.add(commonDir.resolve("packed-refs"));
+        for (String name : refNames) {
+            if (name != null && !name.equals("HEAD")) {
+                deps.add(refFile(name));
+            }
+        }
+        if (spec.contains("@{")) {
+            deps.add(gitDir.resolve("logs").resolve("HEAD"));
+            deps.add(commonDir.resolve("logs").resolve(refNames[0]));
+        }
+        return deps.toArray(new Path[0]);
+    }
+
+    private Path refFile(String refName) {
+        return refName.equals("HEAD") ? gitDir.resolve("HEAD") : commonDir.resolve(refName);
+    }
+
+    private static FileStamp[] stamps(Path[] deps) {
+        FileStamp[] stamps = new FileStamp[deps.length];
+        for (int i = 0; i < deps.length; i++) {
+            stamps[i] = stamp(deps[i]);
+        }
+        return stamps;
+    }
+
+    private static FileStamp stamp(Path file) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            long mtime = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+            return new FileStamp(attrs.fileKey(), mtime, attrs.size());
+        } catch (NoSuchFileException e) {
+            return MISSING;
+        } catch (IOException e) {
+            // unknown state, never equal to a recorded stamp
+            return new FileStamp(new Object(), -1, -1);
+        }
+    }
+
+    private static final class Entry {
+        final Oid id;
+        final Path[] deps;
+        final FileStamp[] stamps;
+        volatile long checkedAt;
+
+        Entry(Oid id, Path[] deps, FileStamp[] stamps, long checkedAt) {
+            this.id = id;
+            this.deps = deps;
+            this.stamps = stamps;
+            this.checkedAt = checkedAt;
+        }
+
+        boolean dependsOn(Path file) {
+            for (Path dep : deps) {
+                if (dep.equals(file)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class FileStamp {
+        final Object fileKey;
+        final long mtimeNanos;
+        final long size;
+
+        FileStamp(Object fileKey, long mtimeNanos, long size) {
+            this.fileKey = fileKey;
+            this.mtimeNanos = mtimeNanos;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FileStamp)) {
+                return false;
+            }
+            FileStamp other = (FileStamp) o;
+            return Objects.equals(fileKey, other.fileKey)
+                    && mtimeNanos == other.mtimeNanos
+                    && size == other.size;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fileKey, mtimeNanos, size);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.git24j.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Daemon thread moving trace messages from the native ring buffer to a {@link Libgit2.TraceSink}.
+ *
+ * <p>Messages are taken in batches of {@link #BATCH}: a full batch is followed by the next one
+ * right away, otherwise the thread waits {@code interval} before looking again. The buffer is
+ * emptied one last time when the drain is stopped.
+ */
+final class TraceDrain implements Runnable {
+    static final int BATCH = 256;
+
+    /** Where messages come from, the native ring buffer unless testing. */
+    interface Source {
+        /** @return number of messages written to the start of the arrays */
+        int drain(int[] levels, long[] times, String[] messages);
+
+        /** @return number of messages dropped since the last call */
+        long dropped();
+    }
+
+    static final Source NATIVE =
+            new Source() {
+                @Override
+                public int drain(int[] levels, long[] times, String[] messages) {
+                    return Libgit2.jniTraceDrain(levels, times, messages);
+                }
+
+                @Override
+                public long dropped() {
+                    return Libgit2.jniTraceDropped();
+                }
+            };
+
+    private final Source source;
+    private final Libgit2.TraceSink sink;
+    private final long intervalNanos;
+    private final Thread thread;
+    private final int[] levels = new int[BATCH];
+    private final long[] times = new long[BATCH];
+    private final String[] messages = new String[BATCH];
+    private volatile boolean running = true;
+
+    TraceDrain(Source source, Libgit2.TraceSink sink, long interval, TimeUnit unit) {
+        this.source = source;
+        this.sink = sink;
+        this.intervalNanos = unit.toNanos(interval);
+        this.thread = new DrainThread(this);
+        this.thread.setDaemon(true);
+    }
+
+    /** Whether the caller runs on the thread of a drain, i.e. inside a sink. */
+    static boolean isDrainThread() {
+        return Thread.currentThread() instanceof DrainThread;
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /** Stop the thread after it delivered what is left in the buffer. */
+    void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            if (drainOnce() < BATCH) {
+                LockSupport.parkNanos(this, intervalNanos);
+            }
+        }
+        while (drainOnce() > 0) {
+            // deliver the rest
+        }
+    }
+
+    /** @return number of messages delivered */
+    int drainOnce() {
+        int n = source.drain(levels, times, messages);
+        for (int i = 0; i < n; i++) {
+            String message = messages[i];
+            messages[i] = null;
+            try {
+                sink.trace(Libgit2.TraceLevel.valueOf(levels[i]), times[i], message);
+            } catch (RuntimeException e) {
+                // a failing sink must not stop the drain, the message is lost
+            }
+        }
+        long dropped = source.dropped();
+        if (dropped > 0) {
+            try {
+                sink.dropped(dropped);
+            } catch (RuntimeException e) {
+                // as above
+            }
+        }
+        return n;
+    }
+
+    private static final class DrainThread extends Thread {
+        DrainThread(Runnable drain) {
+            super(drain, "git24j-trace");
+        }
+    }
+}
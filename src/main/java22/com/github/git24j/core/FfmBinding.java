@@ -0,0 +1,304 @@
+package com.github.git24j.core;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link Binding} that calls libgit2 through {@code java.lang.foreign} downcall handles, without
+ * the libgit24j glue. Arguments are marshalled in java: strings are passed as UTF-8 (not modified
+ * UTF-8 as through JNI), and blob content is handed out as a view of libgit2's memory.
+ *
+ * <p>Symbols are looked up in the libraries loaded by {@link Init}. Struct layouts assume an LP64
+ * platform.
+ */
+final class FfmBinding implements Binding {
+    private static final Linker LINKER = Linker.nativeLinker();
+    private static final SymbolLookup LOOKUP = SymbolLookup.loaderLookup();
+
+    /** struct git_error { char *message; int klass; } */
+    private static final StructLayout GIT_ERROR =
+            MemoryLayout.structLayout(
+                    ADDRESS.withName("message"),
+                    JAVA_INT.withName("klass"),
+                    MemoryLayout.paddingLayout(4));
+    /** struct git_buf { char *ptr; size_t asize; size_t size; } */
+    private static final StructLayout GIT_BUF =
+            MemoryLayout.structLayout(
+                    ADDRESS.withName("ptr"),
+                    JAVA_LONG.withName("asize"),
+                    JAVA_LONG.withName("size"));
+    private static final long ERROR_KLASS = offset(GIT_ERROR, "klass");
+    private static final long BUF_ASIZE = offset(GIT_BUF, "asize");
+    private static final long BUF_SIZE = offset(GIT_BUF, "size");
+
+    private static final MethodHandle ERROR_LAST =
+            downcall("git_error_last", FunctionDescriptor.of(ADDRESS));
+    private static final MethodHandle BUF_DISPOSE =
+            downcall("git_buf_dispose", FunctionDescriptor.ofVoid(ADDRESS));
+    private static final MethodHandle REPOSITORY_OPEN =
+            downcall("git_repository_open", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+    private static final MethodHandle REPOSITORY_FREE =
+            downcall("git_repository_free", FunctionDescriptor.ofVoid(ADDRESS));
+    private static final MethodHandle REPOSITORY_PATH =
+            downcall("git_repository_path", FunctionDescriptor.of(ADDRESS, ADDRESS));
+    private static final MethodHandle REPOSITORY_HEAD =
+            downcall("git_repository_head", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+    private static final MethodHandle REPOSITORY_INDEX =
+            downcall("git_repository_index", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+    private static final MethodHandle OBJECT_LOOKUP =
+            downcall(
+                    "git_object_lookup",
+                    FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, ADDRESS, JAVA_INT));
+    private static final MethodHandle OBJECT_TYPE =
+            downcall("git_object_type", FunctionDescriptor.of(JAVA_INT, ADDRESS));
+    private static final MethodHandle OBJECT_ID =
+            downcall("git_object_id", FunctionDescriptor.of(ADDRESS, ADDRESS));
+    private static final MethodHandle OBJECT_SHORT_ID =
+            downcall("git_object_short_id", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+    private static final MethodHandle OBJECT_FREE =
+            downcall("git_object_free", FunctionDescriptor.ofVoid(ADDRESS));
+    private static final MethodHandle REVPARSE_SINGLE =
+            downcall(
+                    "git_revparse_single",
+                    FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, ADDRESS));
+    private static final MethodHandle INDEX_ADD_BYPATH =
+            downcall("git_index_add_bypath", FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+    private static final MethodHandle INDEX_WRITE =
+            downcall("git_index_write", FunctionDescriptor.of(JAVA_INT, ADDRESS));
+    private static final MethodHandle INDEX_FREE =
+            downcall("git_index_free", FunctionDescriptor.ofVoid(ADDRESS));
+    private static final MethodHandle BLOB_RAWCONTENT =
+            downcall("git_blob_rawcontent", FunctionDescriptor.of(ADDRESS, ADDRESS));
+    private static final MethodHandle BLOB_RAWSIZE =
+            downcall("git_blob_rawsize", FunctionDescriptor.of(JAVA_LONG, ADDRESS));
+
+    private static MethodHandle downcall(String name, FunctionDescriptor descriptor) {
+        MemorySegment symbol =
+                LOOKUP.find(name).orElseThrow(() -> new UnsatisfiedLinkError("No symbol " + name));
+        return LINKER.downcallHandle(symbol, descriptor);
+    }
+
+    private static long offset(StructLayout layout, String field) {
+        return layout.byteOffset(MemoryLayout.PathElement.groupElement(field));
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        if (t instanceof java.lang.Error) {
+            throw (java.lang.Error) t;
+        }
+        return new IllegalStateException(t);
+    }
+
+    private static MemorySegment ptr(long address) {
+        return MemorySegment.ofAddress(address);
+    }
+
+    private static String cString(MemorySegment str) {
+        return str.equals(MemorySegment.NULL) ? null : str.reinterpret(Long.MAX_VALUE).getString(0);
+    }
+
+    /** Pointer stored in an out-parameter, or the error code if the call failed. */
+    private static long handleOrError(int error, MemorySegment out) {
+        return error < 0 ? Error.handleOf(error) : out.get(ADDRESS, 0).address();
+    }
+
+    @Override
+    public String name() {
+        return Bindings.FFM;
+    }
+
+    @Override
+    public GitException lastError() {
+        try {
+            MemorySegment error = (MemorySegment) ERROR_LAST.invokeExact();
+            if (error.equals(MemorySegment.NULL)) {
+                return null;
+            }
+            error = error.reinterpret(GIT_ERROR.byteSize());
+            int klass = error.get(JAVA_INT, ERROR_KLASS);
+            return new GitException(klass, cString(error.get(ADDRESS, 0)));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public long repositoryOpen(String path) {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment out = arena.allocate(ADDRESS);
+            int e = (int) REPOSITORY_OPEN.invokeExact(out, arena.allocateFrom(path));
+            return handleOrError(e, out);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public void repositoryFree(long repoPtr) {
+        try {
+            REPOSITORY_FREE.invokeExact(ptr(repoPtr));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public String repositoryPath(long repoPtr) {
+        try {
+            return cString((MemorySegment) REPOSITORY_PATH.invokeExact(ptr(repoPtr)));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public long repositoryHead(long repoPtr) {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment out = arena.allocate(ADDRESS);
+            int e = (int) REPOSITORY_HEAD.invokeExact(out, ptr(repoPtr));
+            return handleOrError(e, out);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public long repositoryIndex(long repoPtr) {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment out = arena.allocate(ADDRESS);
+            int e = (int) REPOSITORY_INDEX.invokeExact(out, ptr(repoPtr));
+            return handleOrError(e, out);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public long objectLookup(long repoPtr, byte[] id, int objType) {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment out = arena.allocate(ADDRESS);
+            MemorySegment oid = arena.allocate(Oid.RAWSZ);
+            MemorySegment.copy(id, 0, oid, JAVA_BYTE, 0, Math.min(id.length, Oid.RAWSZ));
+            int e = (int) OBJECT_LOOKUP.invokeExact(out, ptr(repoPtr), oid, objType);
+            return handleOrError(e, out);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int objectType(long objPtr) {
+        try {
+            return (int) OBJECT_TYPE.invokeExact(ptr(objPtr));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public void objectId(Oid outId, long objPtr) {
+        try {
+            MemorySegment oid = (MemorySegment) OBJECT_ID.invokeExact(ptr(objPtr));
+            outId.setId(oid.reinterpret(Oid.RAWSZ).toArray(JAVA_BYTE));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int objectShortId(Buf outBuf, long objPtr) {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment buf = arena.allocate(GIT_BUF);
+            int e = (int) OBJECT_SHORT_ID.invokeExact(buf, ptr(objPtr));
+            if (e == 0) {
+                long size = buf.get(JAVA_LONG, BUF_SIZE);
+                long asize = buf.get(JAVA_LONG, BUF_ASIZE);
+                byte[] bytes = buf.get(ADDRESS, 0).reinterpret(size).toArray(JAVA_BYTE);
+                outBuf.setPtr(new String(bytes, StandardCharsets.UTF_8));
+                outBuf.setSize((int) size);
+                outBuf.setAsize((int) asize);
+            }
+            BUF_DISPOSE.invokeExact(buf);
+            return e;
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public void objectFree(long objPtr) {
+        try {
+            OBJECT_FREE.invokeExact(ptr(objPtr));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public long revparseSingle(long repoPtr, String spec) {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment out = arena.allocate(ADDRESS);
+            int e = (int) REVPARSE_SINGLE.invokeExact(out, ptr(repoPtr), arena.allocateFrom(spec));
+            return handleOrError(e, out);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int indexAddByPath(long idxPtr, String path) {
+        try (Arena arena = Arena.ofConfined()) {
+            return (int) INDEX_ADD_BYPATH.invokeExact(ptr(idxPtr), arena.allocateFrom(path));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int indexWrite(long idxPtr) {
+        try {
+            return (int) INDEX_WRITE.invokeExact(ptr(idxPtr));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public void indexFree(long idxPtr) {
+        try {
+            INDEX_FREE.invokeExact(ptr(idxPtr));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public ByteBuffer blobRawContent(long blobPtr) {
+        try {
+            long size = (long) BLOB_RAWSIZE.invokeExact(ptr(blobPtr));
+            if (size == 0) {
+                return ByteBuffer.allocateDirect(0);
+            }
+            MemorySegment content = (MemorySegment) BLOB_RAWCONTENT.invokeExact(ptr(blobPtr));
+            return content.reinterpret(size).asByteBuffer();
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.git24j.core;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class BindingsTest {
+    @Test
+    public void selectJni() {
+        Binding binding = Bindings.select("jni");
+        Assert.assertTrue(binding instanceof JniBinding);
+        Assert.assertEquals("jni", binding.name());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void selectUnknown() {
+        Bindings.select("jna");
+    }
+
+    @Test
+    public void ffmUnavailable() {
+        boolean present;
+        try {
+            Class.forName("com.github.git24j.core.FfmBinding", false, getClass().getClassLoader());
+            present = true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            present = false;
+        }
+        Assume.assumeFalse(present);
+        try {
+            Bindings.select(Bindings.FFM);
+            Assert.fail("ffm binding should not be available");
+        } catch (IllegalStateException expected) {
+            Assert.assertTrue(expected.getMessage().contains("JDK 22"));
+        }
+    }
+}
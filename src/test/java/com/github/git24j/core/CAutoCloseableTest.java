@@ -0,0 +1,135 @@
+package com.github.git24j.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CAutoCloseableTest {
+    /** Records frees instead of calling into libgit2. */
+    private static class Handle extends CAutoCloseable {
+        final AtomicInteger frees = new AtomicInteger();
+        volatile long freedPtr;
+
+        Handle(long rawPointer) {
+            super(rawPointer);
+        }
+
+        @Override
+        protected void freeOnce(long rawPtr) {
+            freedPtr = rawPtr;
+            frees.incrementAndGet();
+        }
+    }
+
+    @Test
+    public void closeFreesOnce() {
+        Handle handle = new Handle(42);
+        Assert.assertEquals(42, handle.withPointerLong(ptr -> ptr));
+        handle.close();
+        handle.close();
+        Assert.assertEquals(1, handle.frees.get());
+        Assert.assertEquals(42, handle.freedPtr);
+        Assert.assertTrue(handle.isClosed());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void acquireAfterClose() {
+        Handle handle = new Handle(42);
+        handle.close();
+        handle.acquire();
+    }
+
+    @Test
+    public void closeDefersToCallInFlight() {
+        Handle handle = new Handle(42);
+        long ptr = handle.acquire();
+        handle.close();
+        Assert.assertEquals(0, handle.frees.get());
+        Assert.assertEquals(42, ptr);
+        handle.release();
+        Assert.assertEquals(1, handle.frees.get());
+    }
+
+    @Test
+    public void closeFromOtherThread() throws Exception {
+        Handle handle = new Handle(42);
+        CountDownLatch inCall = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> call =
+                    executor.submit(
+                            () ->
+                                    handle.withPointerInt(
+                                            ptr -> {
+                                                inCall.countDown();
+                                                await(closed);
+                                                // not freed under the running call
+                                                return handle.frees.get();
+                                            }));
+            await(inCall);
+            handle.close();
+            closed.countDown();
+            Assert.assertEquals(0, (int) call.get(10, TimeUnit.SECONDS));
+            Assert.assertEquals(1, handle.frees.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void concurrentCallsAndClose() throws Exception {
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 200; round++) {
+                Handle handle = new Handle(42);
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> calls = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    calls.add(
+                            executor.submit(
+                                    () -> {
+                                        await(start);
+                                        try {
+                                            while (true) {
+                                                handle.withPointerDo(
+                                                        ptr -> {
+                                                            if (handle.frees.get() != 0) {
+                                                                throw new AssertionError(
+                                                                        "used after free");
+                                                            }
+                                                        });
+                                            }
+                                        } catch (IllegalStateException closed) {
+                                            return null;
+                                        }
+                                    }));
+                }
+                start.countDown();
+                handle.close();
+                for (Future<?> call : calls) {
+                    call.get(10, TimeUnit.SECONDS);
+                }
+                Assert.assertEquals(1, handle.frees.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -28,4 +28,37 @@ public class ErrorTest {
         lastError = Error.jniLast();
         Assert.assertNull(lastError);
     }
+
+    @Test
+    public void stackless() {
+        boolean before = GitException.isStackless();
+        try {
+            GitException.setStackless(true);
+            Assert.assertEquals(0, new GitException(0, "no trace").getStackTrace().length);
+            GitException.setStackless(false);
+            Assert.assertTrue(new GitException(0, "trace").getStackTrace().length > 0);
+        } finally {
+            GitException.setStackless(before);
+        }
+    }
+
+    @Test
+    public void handleEncoding() {
+        // high pointers, e.g. tagged ones on Android, are handles and not errors
+        long tagged = 0xb400007a5c3a1e40L;
+        Assert.assertEquals(tagged, Error.handleOrThrow(tagged));
+        Assert.assertEquals(0x80001000L, Error.handleOrThrow(0x80001000L));
+        Assert.assertEquals(0, Error.codeOf(tagged));
+
+        int notFound = GitException.ErrorCode.ENOTFOUND.getValue();
+        Assert.assertEquals(notFound, Error.codeOf(Error.handleOf(notFound)));
+        Assert.assertEquals(0, Error.handleOrZero(Error.handleOf(notFound)));
+        Assert.assertEquals(Integer.MIN_VALUE, Error.codeOf(Error.handleOf(Integer.MIN_VALUE)));
+        try {
+            Error.handleOrThrow(Error.handleOf(GitException.ErrorCode.EAMBIGUOUS.getValue()));
+            Assert.fail("error handle accepted as a pointer");
+        } catch (GitException e) {
+            Assert.assertEquals(GitException.ErrorCode.EAMBIGUOUS, e.getCode());
+        }
+    }
 }
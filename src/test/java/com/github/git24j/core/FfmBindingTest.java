@@ -0,0 +1,55 @@
+package com.github.git24j.core;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+
+/** Runs with the {@code jdk22} profile, skipped where the ffm binding is not available. */
+public class FfmBindingTest extends TestBase {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+    private Binding ffm;
+    private final Binding jni = new JniBinding();
+
+    @Before
+    public void setUp() {
+        try {
+            ffm = Bindings.select(Bindings.FFM);
+        } catch (IllegalStateException e) {
+            Assume.assumeNoException(e);
+        }
+    }
+
+    @Test
+    public void smoke() {
+        Path path = TestRepo.SIMPLE1.tempCopy(folder);
+        long repoPtr = Error.handleOrThrow(ffm.repositoryOpen(path.toString()));
+        try {
+            Assert.assertEquals(jni.repositoryPath(repoPtr), ffm.repositoryPath(repoPtr));
+
+            long blobPtr = Error.handleOrThrow(ffm.revparseSingle(repoPtr, "HEAD:README.md"));
+            try {
+                Assert.assertEquals(GitObject.Type.BLOB.getValue(), ffm.objectType(blobPtr));
+                Oid viaFfm = new Oid();
+                Oid viaJni = new Oid();
+                ffm.objectId(viaFfm, blobPtr);
+                jni.objectId(viaJni, blobPtr);
+                Assert.assertEquals(viaJni.toString(), viaFfm.toString());
+                Assert.assertEquals(jni.blobRawContent(blobPtr), ffm.blobRawContent(blobPtr));
+            } finally {
+                ffm.objectFree(blobPtr);
+            }
+
+            long missing = ffm.revparseSingle(repoPtr, "no-such-branch");
+            Assert.assertEquals(
+                    GitException.ErrorCode.ENOTFOUND.getValue(), Error.codeOf(missing));
+            Assert.assertNotNull(ffm.lastError());
+        } finally {
+            ffm.repositoryFree(repoPtr);
+        }
+    }
+}
@@ -5,6 +5,9 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 public class GitObjectTest extends TestBase {
 
     @Rule public TemporaryFolder folder = new TemporaryFolder();
@@ -28,6 +31,31 @@ public class GitObjectTest extends TestBase {
         Assert.assertEquals(lookedUp.getRawPointer(), obj.getRawPointer());
     }
 
+    @Test
+    public void tryLookup() {
+        Repository testRepo = TestRepo.SIMPLE1.tempRepo(folder);
+        Oid head = Revparse.single(testRepo, "HEAD").id();
+        Assert.assertTrue(GitObject.tryLookup(testRepo, head, GitObject.Type.COMMIT).isPresent());
+        Assert.assertTrue(
+                GitObject.tryLookupPrefix(testRepo, head, 7, GitObject.Type.ANY).isPresent());
+        Oid missing = Oid.of("0000000000000000000000000000000000000001");
+        Assert.assertFalse(GitObject.tryLookup(testRepo, missing, GitObject.Type.ANY).isPresent());
+        Assert.assertFalse(
+                GitObject.tryLookupPrefix(testRepo, missing, 40, GitObject.Type.ANY).isPresent());
+    }
+
+    @Test
+    public void blobRawContent() {
+        Repository testRepo = TestRepo.SIMPLE1.tempRepo(folder);
+        try (GitObject obj = Revparse.single(testRepo, "HEAD:a")) {
+            ByteBuffer content = ((Blob) obj).rawContent();
+            Assert.assertTrue(content.isReadOnly());
+            byte[] bytes = new byte[content.remaining()];
+            content.get(bytes);
+            Assert.assertEquals("a\n", new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+
     @Test
     public void shortId() {
         Repository testRepo = TestRepo.SIMPLE1.tempRepo(folder);
@@ -0,0 +1,79 @@
+package com.github.git24j.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+public class InMemoryOdbBackendTest {
+    private static Oid idOf(int i) {
+        byte[] raw = new byte[Oid.RAWSZ];
+        // collide on the hash bytes to exercise probing
+        raw[0] = (byte) (i % 3);
+        raw[19] = (byte) i;
+        raw[18] = (byte) (i >> 8);
+        return Oid.of(raw);
+    }
+
+    private static ByteBuffer contentOf(int i) {
+        return ByteBuffer.wrap(("object " + i).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void writeRead() {
+        InMemoryOdbBackend backend = new InMemoryOdbBackend(64);
+        int n = 3000;
+        for (int i = 0; i < n; i++) {
+            backend.write(idOf(i), GitObject.Type.BLOB, contentOf(i));
+        }
+        // rewriting is a no-op
+        backend.write(idOf(0), GitObject.Type.BLOB, contentOf(0));
+        Assert.assertEquals(n, backend.size());
+
+        for (int i = 0; i < n; i++) {
+            OdbBackend.RawObject obj = backend.read(idOf(i));
+            Assert.assertEquals(GitObject.Type.BLOB, obj.getType());
+            Assert.assertEquals(contentOf(i), obj.getData());
+            Assert.assertTrue(obj.getData().isDirect());
+            Assert.assertEquals(contentOf(i).remaining(), backend.readHeader(idOf(i)).getSize());
+        }
+        Assert.assertNull(backend.read(idOf(n)));
+        Assert.assertFalse(backend.exists(idOf(n)));
+    }
+
+    @Test
+    public void largeObjects() {
+        InMemoryOdbBackend backend = new InMemoryOdbBackend(64);
+        ByteBuffer large = ByteBuffer.allocate(1000);
+        large.put(999, (byte) 7);
+        backend.write(idOf(1), GitObject.Type.COMMIT, large);
+        backend.write(idOf(2), GitObject.Type.TREE, contentOf(2));
+        Assert.assertEquals(large, backend.read(idOf(1)).getData());
+        Assert.assertEquals(contentOf(2), backend.read(idOf(2)).getData());
+        Assert.assertEquals(1000 + contentOf(2).remaining(), backend.dataSize());
+    }
+
+    @Test
+    public void forEachAndClose() {
+        InMemoryOdbBackend backend = new InMemoryOdbBackend();
+        Set<String> written = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            backend.write(idOf(i), GitObject.Type.BLOB, contentOf(i));
+            written.add(idOf(i).toString());
+        }
+        Set<String> visited = new HashSet<>();
+        backend.forEach(id -> visited.add(id.toString()));
+        Assert.assertEquals(written, visited);
+
+        int[] seen = {0};
+        backend.forEach(id -> ++seen[0] < 10);
+        Assert.assertEquals(10, seen[0]);
+
+        backend.close();
+        Assert.assertEquals(0, backend.size());
+        Assert.assertNull(backend.read(idOf(1)));
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.git24j.core;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+public class InMemoryRefdbBackendTest {
+    private static Oid idOf(int i) {
+        byte[] raw = new byte[Oid.RAWSZ];
+        raw[19] = (byte) i;
+        return Oid.of(raw);
+    }
+
+    private static List<String> names(Iterator<RefIterator.Entry> it) {
+        List<String> names = new ArrayList<>();
+        it.forEachRemaining(ref -> names.add(ref.getName()));
+        return names;
+    }
+
+    private static GitException.ErrorCode codeOf(Runnable r) {
+        try {
+            r.run();
+        } catch (GitException e) {
+            return e.getCode();
+        }
+        return GitException.ErrorCode.OK;
+    }
+
+    @Test
+    public void compareAndSet() {
+        InMemoryRefdbBackend backend = new InMemoryRefdbBackend();
+        RefIterator.Entry master = new RefIterator.Entry("refs/heads/master", idOf(1), null);
+        backend.write(master, false, null, null);
+        Assert.assertEquals(
+                GitException.ErrorCode.EEXISTS,
+                codeOf(() -> backend.write(master, false, null, null)));
+
+        RefIterator.Entry moved = new RefIterator.Entry("refs/heads/master", idOf(2), null);
+        Assert.assertEquals(
+                GitException.ErrorCode.EMODIFIED,
+                codeOf(() -> backend.write(moved, true, idOf(3), null)));
+        backend.write(moved, true, idOf(1), null);
+        Assert.assertEquals(2, backend.lookup("refs/heads/master").getTarget().getId()[19]);
+
+        Assert.assertEquals(
+                GitException.ErrorCode.EMODIFIED,
+                codeOf(() -> backend.delete("refs/heads/master", idOf(1), null)));
+        backend.delete("refs/heads/master", idOf(2), null);
+        Assert.assertFalse(backend.exists("refs/heads/master"));
+        Assert.assertEquals(
+                GitException.ErrorCode.ENOTFOUND,
+                codeOf(() -> backend.delete("refs/heads/master", null, null)));
+    }
+
+    @Test
+    public void iterateByGlob() {
+        InMemoryRefdbBackend backend = new InMemoryRefdbBackend();
+        String[] names = {
+            "refs/heads/a", "refs/heads/b/c", "refs/tags/v1.0", "refs/tags/v1.1", "refs/tags/v2.0"
+        };
+        for (int i = 0; i < names.length; i++) {
+            backend.write(new RefIterator.Entry(names[i], idOf(i), null), false, null, null);
+        }
+        backend.write(new RefIterator.Entry("HEAD", null, "refs/heads/a"), false, null, null);
+
+        Assert.assertEquals(6, names(backend.iterator(null)).size());
+        Assert.assertEquals(
+                Arrays.asList("refs/heads/a", "refs/heads/b/c"),
+                names(backend.iterator("refs/heads/*")));
+        Assert.assertEquals(
+                Arrays.asList("refs/tags/v1.0", "refs/tags/v1.1"),
+                names(backend.iterator("refs/tags/v1.*")));
+        Assert.assertEquals(
+                Arrays.asList("refs/tags/v1.1"), names(backend.iterator("refs/tags/v1.1")));
+        Assert.assertTrue(names(backend.iterator("refs/remotes/*")).isEmpty());
+        Assert.assertEquals("refs/heads/a", backend.lookup("HEAD").getSymbolicTarget());
+    }
+
+    @Test
+    public void globMatching() {
+        Assert.assertTrue(RefdbBackend.matches("refs/*", "refs/heads/master"));
+        Assert.assertTrue(RefdbBackend.matches("refs/*/master", "refs/heads/master"));
+        Assert.assertTrue(RefdbBackend.matches("refs/tags/v?.[0-9]", "refs/tags/v1.2"));
+        Assert.assertFalse(RefdbBackend.matches("refs/tags/v?.[!0-9]", "refs/tags/v1.2"));
+        Assert.assertFalse(RefdbBackend.matches("refs/heads/*", "refs/tags/v1"));
+        Assert.assertFalse(RefdbBackend.matches("refs/heads/a", "refs/heads/ab"));
+    }
+
+    @Test
+    public void locks() {
+        InMemoryRefdbBackend backend = new InMemoryRefdbBackend();
+        backend.lock("refs/heads/master");
+        Assert.assertEquals(
+                GitException.ErrorCode.ELOCKED, codeOf(() -> backend.lock("refs/heads/master")));
+        backend.unlock("refs/heads/master");
+        backend.lock("refs/heads/master");
+    }
+}
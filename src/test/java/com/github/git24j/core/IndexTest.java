@@ -8,10 +8,17 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 public class IndexTest extends TestBase {
     @Rule public TemporaryFolder folder = new TemporaryFolder();
@@ -43,4 +50,98 @@ public class IndexTest extends TestBase {
         }
         FileUtils.copyDirectory(repoPath.toFile(), new File("/tmp/test-indexAddByPath"));
     }
+
+    @Test
+    public void parallelAddAll() throws IOException {
+        Path repoPath = tempCopyOf(TestRepo.SIMPLE1, folder.getRoot().toPath());
+        FileUtils.writeStringToFile(repoPath.resolve("a").toFile(), "test");
+        FileUtils.writeStringToFile(repoPath.resolve("dir/b").toFile(), "test b");
+        try (Repository repo = Repository.open(repoPath.toString())) {
+            try (Index index = repo.index()) {
+                int added =
+                        new ParallelIndexUpdater(repo, 2)
+                                .addAll(index, Collections.singletonList("."));
+                Assert.assertEquals(7, added);
+            }
+            for (String path : new String[] {".gitignore", "README.md", "b", "c", "d"}) {
+                try (GitObject staged = Revparse.single(repo, ":" + path)) {
+                    Assert.assertEquals(GitObject.Type.BLOB, staged.type());
+                }
+            }
+            try (GitObject staged = Revparse.single(repo, ":a")) {
+                Assert.assertEquals(blobId("test"), staged.id().toString());
+            }
+            try (GitObject staged = Revparse.single(repo, ":dir/b")) {
+                Assert.assertEquals(GitObject.Type.BLOB, staged.type());
+                Assert.assertEquals(blobId("test b"), staged.id().toString());
+            }
+        }
+    }
+
+    @Test
+    public void parallelAddAllWritesBlobs() throws IOException {
+        Path repoPath = tempCopyOf(TestRepo.SIMPLE1, folder.getRoot().toPath());
+        FileUtils.writeStringToFile(repoPath.resolve("new").toFile(), "only in the work tree");
+        try (Repository repo = Repository.open(repoPath.toString())) {
+            try (Index index = repo.index()) {
+                new ParallelIndexUpdater(repo, 2).addAll(index, Collections.singletonList("."));
+                List<String> staged = new ArrayList<>();
+                for (Oid id : index.objectIds()) {
+                    staged.add(id.toString());
+                    Optional<GitObject> blob = GitObject.tryLookup(repo, id, GitObject.Type.BLOB);
+                    Assert.assertTrue(id.toString(), blob.isPresent());
+                    blob.get().close();
+                }
+                Assert.assertTrue(staged.contains(blobId("only in the work tree")));
+            }
+        }
+    }
+
+    /** Id git gives a blob with this content. */
+    private static String blobId(String content) {
+        try {
+            byte[] data = content.getBytes(StandardCharsets.UTF_8);
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            sha1.update(("blob " + data.length + "\0").getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : sha1.digest(data)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    public void indexAddAllBatched() throws IOException {
+        Path repoPath = tempCopyOf(TestRepo.SIMPLE1, folder.getRoot().toPath());
+        FileUtils.writeStringToFile(repoPath.resolve("a").toFile(), "test");
+        FileUtils.writeStringToFile(repoPath.resolve("b").toFile(), "test b");
+        FileUtils.writeStringToFile(repoPath.resolve("c").toFile(), "test c");
+        List<List<String>> batches = new ArrayList<>();
+        try (Repository repo = Repository.open(repoPath.toString())) {
+            try (Index index = repo.index()) {
+                boolean completed =
+                        index.addAll(
+                                new String[] {"."},
+                                EnumSet.of(Index.AddOption.DEFAULT),
+                                2,
+                                batch -> {
+                                    batches.add(new ArrayList<>(batch));
+                                    return 0;
+                                });
+                Assert.assertTrue(completed);
+                FileUtils.writeStringToFile(repoPath.resolve("d").toFile(), "test d");
+                Assert.assertFalse(
+                        index.addAll(
+                                new String[] {"."},
+                                EnumSet.of(Index.AddOption.DEFAULT),
+                                1,
+                                batch -> 1));
+            }
+        }
+        Assert.assertTrue(batches.stream().allMatch(b -> b.size() <= 2));
+        Assert.assertTrue(batches.stream().anyMatch(b -> b.contains("a")));
+    }
 }
@@ -0,0 +1,130 @@
+package com.github.git24j.core;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+
+public class InitTest {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private ClassLoader jarWith(String git2, String git24j, boolean digests) throws Exception {
+        Path root = folder.newFolder().toPath();
+        Path dir = root.resolve("native/" + Init.platform());
+        Files.createDirectories(dir);
+        if (git2 != null) {
+            writeLib(dir, Init.NativeLib.GIT2, git2, digests);
+        }
+        writeLib(dir, Init.NativeLib.GIT24J, git24j, digests);
+        return new URLClassLoader(new URL[] {root.toUri().toURL()}, null);
+    }
+
+    private static void writeLib(Path dir, Init.NativeLib lib, String content, boolean digest)
+            throws Exception {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        Files.write(dir.resolve(lib.mappedLibraryName()), bytes);
+        if (digest) {
+            Path sha = dir.resolve(lib.mappedLibraryName() + ".sha256");
+            Files.write(sha, (Init.sha256(bytes) + "\n").getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    private static String read(Path file) throws Exception {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void extractsOncePerContent() throws Exception {
+        Path cache = folder.newFolder().toPath();
+        Path dir = Init.extractBundled(jarWith("git2 v1", "git24j v1", false), cache);
+        Assert.assertEquals(cache, dir.getParent());
+        Assert.assertEquals("git2 v1", read(dir.resolve(Init.NativeLib.GIT2.mappedLibraryName())));
+        Assert.assertEquals(
+                "git24j v1", read(dir.resolve(Init.NativeLib.GIT24J.mappedLibraryName())));
+
+        // same content from a jar with digests: same directory, nothing rewritten
+        Path lib = dir.resolve(Init.NativeLib.GIT2.mappedLibraryName());
+        long modified = Files.getLastModifiedTime(lib).toMillis() - 10_000;
+        Files.setLastModifiedTime(lib, FileTime.fromMillis(modified));
+        Assert.assertEquals(dir, Init.extractBundled(jarWith("git2 v1", "git24j v1", true), cache));
+        Assert.assertEquals(modified, Files.getLastModifiedTime(lib).toMillis());
+
+        Path other = Init.extractBundled(jarWith("git2 v2", "git24j v1", true), cache);
+        Assert.assertNotEquals(dir, other);
+        Assert.assertEquals(
+                "git2 v2", read(other.resolve(Init.NativeLib.GIT2.mappedLibraryName())));
+    }
+
+    @Test
+    public void replacesTamperedLibrary() throws Exception {
+        Path cache = folder.newFolder().toPath();
+        ClassLoader jar = jarWith("git2 v1", "git24j v1", true);
+        Path dir = Init.extractBundled(jar, cache);
+        Path lib = dir.resolve(Init.NativeLib.GIT24J.mappedLibraryName());
+        Files.write(lib, "evil".getBytes(StandardCharsets.UTF_8));
+        Init.extractBundled(jar, cache);
+        Assert.assertEquals("git24j v1", read(lib));
+    }
+
+    @Test
+    public void cacheDirIsPrivate() throws Exception {
+        Path cache = folder.getRoot().toPath().resolve("cache");
+        Assume.assumeTrue(cache.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        Init.extractBundled(jarWith("git2 v1", "git24j v1", true), cache);
+        Assert.assertEquals(
+                PosixFilePermissions.fromString("rwx------"),
+                Files.getPosixFilePermissions(cache));
+
+        Files.setPosixFilePermissions(cache, PosixFilePermissions.fromString("rwxrwxrwx"));
+        try {
+            Init.extractBundled(jarWith("git2 v1", "git24j v1", true), cache);
+            Assert.fail("a cache directory writable by others must be refused");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getCause().getMessage().contains("writable by other users"));
+        }
+    }
+
+    @Test
+    public void nothingBundled() throws Exception {
+        ClassLoader empty = new URLClassLoader(new URL[0], null);
+        Assert.assertNull(Init.extractBundled(empty, folder.newFolder().toPath()));
+    }
+
+    @Test
+    public void staticallyLinkedBundle() throws Exception {
+        Path cache = folder.newFolder().toPath();
+        Path dir = Init.extractBundled(jarWith(null, "git24j static", true), cache);
+        Assert.assertTrue(Files.exists(dir.resolve(Init.NativeLib.GIT24J.mappedLibraryName())));
+        Assert.assertFalse(Files.exists(dir.resolve(Init.NativeLib.GIT2.mappedLibraryName())));
+    }
+
+    @Test
+    public void locateWithoutLibgit2() throws Exception {
+        Path dir = folder.newFolder().toPath();
+        Path git24j = dir.resolve(Init.NativeLib.GIT24J.mappedLibraryName());
+        Files.write(git24j, new byte[1]);
+        String prop = "com.github.shijinglu.lg24j.library_path";
+        String old = System.getProperty(prop);
+        System.setProperty(prop, dir.toString());
+        try {
+            Path[] libs = Init.locateLibraries();
+            Assert.assertNull(libs[0]);
+            Assert.assertEquals(git24j.toAbsolutePath(), libs[1]);
+        } finally {
+            if (old == null) {
+                System.clearProperty(prop);
+            } else {
+                System.setProperty(prop, old);
+            }
+        }
+    }
+}
@@ -37,4 +37,30 @@ public class Libgit2Test {
         int res = featuresSet.stream().map(f -> f.code).reduce(0, (acc, inc) -> acc | inc);
         Assert.assertEquals(features, res);
     }
+
+    @Test
+    public void traceOnAndOff() {
+        Libgit2.setTrace(Libgit2.TraceLevel.TRACE, (level, epochNanos, message) -> {});
+        Libgit2.setTrace(Libgit2.TraceLevel.NONE, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void traceRejectsSampling() {
+        Libgit2.setTrace(Libgit2.TraceLevel.TRACE, (level, epochNanos, message) -> {}, 0, 0);
+    }
+
+    @Test
+    public void shutdownKeepsImplicitReference() {
+        Libgit2.ensureInit();
+        // one more than this class took
+        Libgit2.shutdown();
+        Libgit2.shutdown();
+        try {
+            // still initialized, so this is the second initialization
+            Assert.assertEquals(2, Libgit2.jniInit());
+        } finally {
+            Libgit2.jniShutdown();
+            Libgit2.init();
+        }
+    }
 }
@@ -0,0 +1,94 @@
+package com.github.git24j.core;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MetricsTest {
+    @After
+    public void tearDown() {
+        Metrics.setEnabled(false);
+        Metrics.reset();
+    }
+
+    @Test
+    public void histogramBuckets() {
+        for (long v : new long[] {0, 1, 7, 8, 15, 16, 17, 1000, 123_456_789L, Long.MAX_VALUE}) {
+            int index = Metrics.Histogram.index(v);
+            Assert.assertTrue(v + " above lower bound", Metrics.Histogram.lowerBound(index) <= v);
+            Assert.assertTrue(v + " below upper bound", Metrics.Histogram.upperBound(index) >= v);
+        }
+        long v = 1_000_000;
+        int index = Metrics.Histogram.index(v);
+        long width = Metrics.Histogram.upperBound(index) - Metrics.Histogram.lowerBound(index);
+        Assert.assertTrue(width <= v / 8);
+    }
+
+    @Test
+    public void disabledRecordsNothing() {
+        Metrics.Operation op = Metrics.operation("MetricsTest.disabled");
+        op.record(Metrics.start(), 0);
+        Assert.assertEquals(0, op.snapshot().getCount());
+    }
+
+    @Test
+    public void countsErrorsAndLatency() {
+        Metrics.setEnabled(true);
+        Metrics.Operation op = Metrics.operation("MetricsTest.op");
+        for (int i = 0; i < 100; i++) {
+            op.record(System.nanoTime() - 1000, i < 10 ? -3 : 0);
+        }
+        op.record(System.nanoTime() - 1_000_000, 12345);
+        Metrics.Snapshot snapshot = Metrics.snapshot().get("MetricsTest.op");
+        Assert.assertEquals(101, snapshot.getCount());
+        Assert.assertEquals(10, snapshot.getErrors());
+        Assert.assertTrue(snapshot.getMaxNanos() >= 1_000_000);
+        Assert.assertTrue(snapshot.percentile(0.5) >= 1000);
+        Assert.assertTrue(snapshot.percentile(0.5) < 1_000_000);
+        Assert.assertTrue(snapshot.percentile(1.0) >= 1_000_000);
+        Metrics.reset();
+        Assert.assertEquals(0, op.snapshot().getCount());
+        Assert.assertEquals(0, op.snapshot().percentile(0.99));
+    }
+
+    @Test
+    public void batchCountsFailedItems() {
+        Metrics.setEnabled(true);
+        Metrics.Operation op = Metrics.operation("MetricsTest.batch");
+        op.recordBatch(Metrics.start(), null, 5, 2);
+        op.recordBatch(Metrics.start(), null, 3, 0);
+        Assert.assertEquals(2, op.snapshot().getCount());
+        Assert.assertEquals(2, op.snapshot().getErrors());
+    }
+
+    @Test
+    public void flightRecorderEvent() throws Exception {
+        Metrics.setEnabled(true);
+        Metrics.Operation op = Metrics.operation("MetricsTest.event");
+        Path dump = Files.createTempFile("git24j-metrics", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.github.git24j.NativeCall");
+            recording.start();
+            op.record(System.nanoTime(), -3, "/tmp/repo/.git/", 7);
+            recording.stop();
+            recording.dump(dump);
+            List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+            RecordedEvent event =
+                    events.stream()
+                            .filter(e -> "MetricsTest.event".equals(e.getString("operation")))
+                            .findFirst()
+                            .orElseThrow(AssertionError::new);
+            Assert.assertEquals("/tmp/repo/.git/", event.getString("repository"));
+            Assert.assertEquals(-3, event.getInt("error"));
+            Assert.assertEquals(7, event.getInt("objects"));
+        } finally {
+            Files.deleteIfExists(dump);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.github.git24j.core;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class MultiPackIndexTest extends TestBase {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writeVerifyFind() {
+        Path path = TestRepo.SIMPLE1.tempCopy(folder);
+        try (Repository repo = Repository.open(path.toString())) {
+            List<Oid> ids = new ArrayList<>();
+            try (Odb odb = repo.odb()) {
+                for (int p = 0; p < 3; p++) {
+                    try (PackWriter writer = new PackWriter(odb)) {
+                        for (int i = 0; i < 10; i++) {
+                            ids.add(writer.write(GitObject.Type.BLOB, (p + "/" + i).getBytes()));
+                        }
+                        // shared by all packs
+                        writer.write(GitObject.Type.BLOB, "shared".getBytes());
+                        writer.commit();
+                    }
+                }
+            }
+            Assert.assertNull(MultiPackIndex.open(repo));
+            Assert.assertEquals(31, MultiPackIndex.write(repo));
+
+            MultiPackIndex midx = MultiPackIndex.open(repo);
+            Assert.assertEquals(3, midx.packNames().size());
+            Assert.assertTrue(midx.verify().isEmpty());
+            for (Oid id : ids) {
+                MultiPackIndex.Location loc = midx.find(id);
+                Assert.assertNotNull(loc);
+                Assert.assertTrue(loc.getOffset() >= 12);
+            }
+            Assert.assertFalse(midx.contains(Oid.of(new byte[Oid.RAWSZ])));
+        }
+    }
+}
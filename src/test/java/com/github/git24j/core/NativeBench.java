@@ -0,0 +1,103 @@
+package com.github.git24j.core;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntSupplier;
+
+/**
+ * Measures small, frequent native calls, run by {@code make bench} once per build profile.
+ *
+ * <p>Usage: {@code NativeBench <label> <repository> [<baseline label>]}. Results are written to
+ * {@code target/bench/<label>.tsv}; with a baseline, its results are printed alongside.
+ */
+public class NativeBench {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+    private static final int CALLS_PER_ROUND = 200_000;
+    private static final Path OUT_DIR = Paths.get("target", "bench");
+    /** keeps the JIT from dropping the measured calls */
+    static volatile long blackhole;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: NativeBench <label> <repository> [<baseline label>]");
+            System.exit(2);
+        }
+        String label = args[0];
+        Map<String, Double> baseline = args.length > 2 ? read(args[2]) : new HashMap<>();
+        Libgit2.init();
+        List<String> lines = new ArrayList<>();
+        try (Repository repo = Repository.open(args[1]);
+                GitObject head = Revparse.single(repo, "HEAD")) {
+            Oid headId = head.id();
+            Map<String, IntSupplier> ops = new LinkedHashMap<>();
+            ops.put("object.type", () -> head.type().ordinal());
+            ops.put("object.id", () -> head.id().getId()[0]);
+            ops.put("repository.path", () -> repo.getPath().length());
+            ops.put(
+                    "object.lookup",
+                    () -> {
+                        try (GitObject obj =
+                                GitObject.lookup(repo, headId, GitObject.Type.COMMIT)) {
+                            return obj.type().ordinal();
+                        }
+                    });
+            ops.put(
+                    "revparse.single",
+                    () -> {
+                        try (GitObject obj = Revparse.single(repo, "HEAD~1")) {
+                            return obj.type().ordinal();
+                        }
+                    });
+            System.out.printf("%-18s %12s %12s%n", "op (" + label + ")", "ns/call", "baseline");
+            for (Map.Entry<String, IntSupplier> op : ops.entrySet()) {
+                double ns = measure(op.getValue());
+                lines.add(op.getKey() + "\t" + ns);
+                Double base = baseline.get(op.getKey());
+                System.out.printf(
+                        "%-18s %12.1f %12s%n",
+                        op.getKey(), ns, base == null ? "" : String.format("%.1f", base));
+            }
+        }
+        Files.createDirectories(OUT_DIR);
+        Files.write(OUT_DIR.resolve(label + ".tsv"), lines, StandardCharsets.UTF_8);
+    }
+
+    /** Best of several rounds, in nanoseconds per call. */
+    private static double measure(IntSupplier op) {
+        long sink = 0;
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < CALLS_PER_ROUND; i++) {
+                sink += op.getAsInt();
+            }
+            double ns = (System.nanoTime() - start) / (double) CALLS_PER_ROUND;
+            if (round >= WARMUP_ROUNDS) {
+                best = Math.min(best, ns);
+            }
+        }
+        blackhole = sink;
+        return best;
+    }
+
+    private static Map<String, Double> read(String label) throws IOException {
+        Map<String, Double> results = new HashMap<>();
+        Path file = OUT_DIR.resolve(label + ".tsv");
+        if (Files.exists(file)) {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                String[] parts = line.split("\t");
+                results.put(parts[0], Double.parseDouble(parts[1]));
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,169 @@
+package com.github.git24j.core;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class ObjectCacheTest extends TestBase {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String TREE_ID = "d8ac1ef9ebb1a2bd5fe2eaaafc8fe4e1f4325e3c";
+    private static final String PARENT_ID = "476f0c95825ef4479cab580b71f264e4ea7d7c04";
+
+    private static byte[] idOf(int i) {
+        byte[] raw = new byte[Oid.RAWSZ];
+        raw[0] = (byte) (i >> 8);
+        raw[19] = (byte) i;
+        return raw;
+    }
+
+    @Test
+    public void parseCommit() {
+        String raw =
+                "tree "
+                        + TREE_ID
+                        + "\nparent "
+                        + PARENT_ID
+                        + "\nauthor A U Thor <author@example.com> 1570000000 +0130"
+                        + "\ncommitter C O Mitter <committer@example.com> 1570000100 -0800"
+                        + "\ngpgsig -----BEGIN PGP SIGNATURE-----\n \n -----END PGP SIGNATURE-----"
+                        + "\n\nsubject\n\nbody\n";
+        ObjectCache.CommitInfo commit =
+                ObjectCache.CommitInfo.parse(raw.getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(TREE_ID, commit.getTree().toString());
+        Assert.assertEquals(1, commit.getParents().size());
+        Assert.assertEquals(PARENT_ID, commit.getParents().get(0).toString());
+        Assert.assertEquals("A U Thor", commit.getAuthor().getName());
+        Assert.assertEquals("author@example.com", commit.getAuthor().getEmail());
+        Assert.assertEquals(1570000000L, commit.getAuthor().getTime());
+        Assert.assertEquals(90, commit.getAuthor().getOffsetMinutes());
+        Assert.assertEquals(-480, commit.getCommitter().getOffsetMinutes());
+        Assert.assertNull(commit.getMessageEncoding());
+        Assert.assertEquals("subject\n\nbody\n", commit.getMessage());
+    }
+
+    @Test
+    public void parseTree() throws Exception {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        raw.write("100644 a.txt\0".getBytes(StandardCharsets.UTF_8));
+        raw.write(idOf(1));
+        raw.write("40000 dir\0".getBytes(StandardCharsets.UTF_8));
+        raw.write(idOf(2));
+        raw.write("160000 sub\0".getBytes(StandardCharsets.UTF_8));
+        raw.write(idOf(3));
+        ObjectCache.TreeEntries tree = ObjectCache.TreeEntries.parse(raw.toByteArray());
+        Assert.assertEquals(3, tree.size());
+        Assert.assertEquals("a.txt", tree.getName(0));
+        Assert.assertEquals(0100644, tree.getMode(0));
+        Assert.assertEquals(GitObject.Type.BLOB, tree.getType(0));
+        Assert.assertEquals(GitObject.Type.TREE, tree.getType(1));
+        Assert.assertEquals(GitObject.Type.COMMIT, tree.getType(2));
+        Assert.assertEquals(Oid.of(idOf(2)).toString(), tree.getId(1).toString());
+        Assert.assertEquals(2, tree.indexOf("sub"));
+        Assert.assertEquals(-1, tree.indexOf("missing"));
+    }
+
+    @Test
+    public void evictsWithinBudget() {
+        ObjectCache cache = new ObjectCache(1000);
+        for (int i = 0; i < 20; i++) {
+            cache.put(idOf(i), "v" + i, 100);
+        }
+        ObjectCache.Stats stats = cache.stats();
+        Assert.assertEquals(10, stats.getEntries());
+        Assert.assertEquals(1000, stats.getWeight());
+        Assert.assertEquals(10, stats.getEvictions());
+        Assert.assertNull(cache.getIfPresent(idOf(0)));
+        Assert.assertEquals("v19", cache.getIfPresent(idOf(19)));
+
+        cache.put(idOf(100), "too large", 1001);
+        Assert.assertNull(cache.getIfPresent(idOf(100)));
+    }
+
+    @Test
+    public void hotEntriesSurviveScan() {
+        ObjectCache cache = new ObjectCache(1000);
+        for (int i = 0; i < 5; i++) {
+            cache.put(idOf(i), "hot" + i, 100);
+            Assert.assertNotNull(cache.getIfPresent(idOf(i)));
+        }
+        for (int i = 1000; i < 1100; i++) {
+            cache.put(idOf(i), "scan" + i, 100);
+        }
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals("hot" + i, cache.getIfPresent(idOf(i)));
+        }
+        Assert.assertTrue(cache.stats().getWeight() <= 1000);
+    }
+
+    @Test
+    public void invalidate() {
+        ObjectCache cache = new ObjectCache(1000);
+        cache.put(idOf(1), "one", 100);
+        cache.put(idOf(2), "two", 100);
+        cache.getIfPresent(idOf(2));
+        cache.invalidate(Oid.of(idOf(2)));
+        Assert.assertNull(cache.getIfPresent(idOf(2)));
+        Assert.assertEquals(100, cache.stats().getWeight());
+        cache.invalidateAll();
+        Assert.assertEquals(0, cache.stats().getEntries());
+        Assert.assertEquals(0, cache.stats().getWeight());
+    }
+
+    @Test
+    public void sharedPerPath() {
+        ObjectCache a = ObjectCache.shared(Paths.get("/tmp/repo/.git/"), 1000);
+        ObjectCache b = ObjectCache.shared(Paths.get("/tmp/repo/.git/objects/.."), 2000);
+        Assert.assertSame(a, b);
+        Assert.assertEquals(1000, b.getMaxBytes());
+        ObjectCache.removeShared(Paths.get("/tmp/repo/.git"));
+        Assert.assertNotSame(a, ObjectCache.shared(Paths.get("/tmp/repo/.git"), 2000));
+        ObjectCache.removeShared(Paths.get("/tmp/repo/.git"));
+    }
+
+    @Test
+    public void loadsThroughRepository() {
+        Path path = TestRepo.SIMPLE1.tempCopy(folder);
+        ObjectCache cache = new ObjectCache(1 << 20);
+        try (Repository repo = Repository.open(path.toString());
+                GitObject head = Revparse.single(repo, "HEAD")) {
+            ObjectCache.CommitInfo commit = cache.commit(repo, head.id());
+            Assert.assertSame(commit, cache.commit(repo, head.id()));
+            assertCounts(cache, 1, 1, 1);
+
+            ObjectCache.TreeEntries tree = cache.tree(repo, commit.getTree());
+            Assert.assertSame(tree, cache.tree(repo, commit.getTree()));
+            assertCounts(cache, 2, 2, 2);
+
+            Oid blobId = tree.getId(tree.indexOf("a"));
+            ByteBuffer blob = cache.blob(repo, blobId);
+            try (GitObject expected = GitObject.lookup(repo, blobId, GitObject.Type.BLOB)) {
+                Assert.assertEquals(((Blob) expected).rawContent(), blob);
+            }
+            Assert.assertEquals(blob, cache.blob(repo, blobId));
+            assertCounts(cache, 3, 3, 3);
+
+            try {
+                cache.commit(repo, commit.getTree());
+                Assert.fail("a tree is not a commit");
+            } catch (GitException e) {
+                // cached as a tree, still counted as a hit
+            }
+            assertCounts(cache, 4, 3, 3);
+        }
+    }
+
+    private static void assertCounts(ObjectCache cache, long hits, long misses, int entries) {
+        ObjectCache.Stats stats = cache.stats();
+        Assert.assertEquals(hits, stats.getHits());
+        Assert.assertEquals(misses, stats.getMisses());
+        Assert.assertEquals(entries, stats.getEntries());
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.git24j.core;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class ObjectMaintenanceTest extends TestBase {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void repack() {
+        Path path = TestRepo.SIMPLE1.tempCopy(folder);
+        try (Repository repo = Repository.open(path.toString())) {
+            try (Odb odb = repo.odb()) {
+                odb.write(GitObject.Type.BLOB, ByteBuffer.wrap("unreachable".getBytes()));
+                for (int i = 0; i < 2; i++) {
+                    try (PackWriter writer = new PackWriter(odb)) {
+                        writer.write(GitObject.Type.BLOB, ("packed " + i).getBytes());
+                        writer.commit();
+                    }
+                }
+            }
+            ObjectMaintenance.Stats before = ObjectMaintenance.stats(repo);
+            Assert.assertEquals(2, before.getPacks());
+            Assert.assertTrue(before.getLooseObjects() > 1);
+
+            ObjectMaintenance.Result result =
+                    ObjectMaintenance.repack(repo, new ObjectMaintenance.Options().setThreads(2));
+            Assert.assertEquals(2, result.getRemovedPacks());
+            Assert.assertEquals(0, result.getPrunedLoose());
+            ObjectMaintenance.Stats after = ObjectMaintenance.stats(repo);
+            Assert.assertEquals(1, after.getPacks());
+            // only the young unreachable blob stays loose
+            Assert.assertEquals(1, after.getLooseObjects());
+            try (GitObject head = Revparse.single(repo, "HEAD^{tree}")) {
+                Assert.assertEquals(GitObject.Type.TREE, head.type());
+            }
+
+            result =
+                    ObjectMaintenance.repack(
+                            repo,
+                            new ObjectMaintenance.Options().setPruneAge(0, TimeUnit.MILLISECONDS));
+            Assert.assertEquals(1, result.getPrunedLoose());
+            Assert.assertEquals(0, ObjectMaintenance.stats(repo).getLooseObjects());
+        }
+    }
+
+    @Test
+    public void repackKeepsStagedObjects() throws Exception {
+        Path path = TestRepo.SIMPLE1.tempCopy(folder);
+        try (Repository repo = Repository.open(path.toString())) {
+            Oid staged;
+            try (Odb odb = repo.odb()) {
+                staged = odb.write(GitObject.Type.BLOB, ByteBuffer.wrap("staged".getBytes()));
+            }
+            Files.write(path.resolve("staged"), "staged".getBytes());
+            try (Index index = repo.index()) {
+                index.add("staged");
+                index.write();
+            }
+
+            ObjectMaintenance.Result result =
+                    ObjectMaintenance.repack(
+                            repo,
+                            new ObjectMaintenance.Options().setPruneAge(0, TimeUnit.MILLISECONDS));
+            Assert.assertEquals(0, result.getPrunedLoose());
+            Assert.assertEquals(0, ObjectMaintenance.stats(repo).getLooseObjects());
+            try (GitObject blob = GitObject.lookup(repo, staged, GitObject.Type.BLOB)) {
+                Assert.assertEquals(GitObject.Type.BLOB, blob.type());
+            }
+        }
+    }
+
+    @Test
+    public void multiPackIndexTaskReplacesStaleIndex() throws Exception {
+        Path path = TestRepo.SIMPLE1.tempCopy(folder);
+        Path packDir = path.resolve(".git/objects/pack");
+        MaintenanceScheduler.Task task = ObjectMaintenance.multiPackIndexTask(1);
+        try (Repository repo = Repository.open(path.toString())) {
+            writePack(repo, "first");
+            task.run(repo);
+            List<String> first = MultiPackIndex.open(repo).packNames();
+            Assert.assertEquals(1, first.size());
+
+            // same number of packs, different names
+            writePack(repo, "second");
+            String idx = first.get(0);
+            Files.delete(packDir.resolve(idx));
+            Files.delete(packDir.resolve(idx.replace(".idx", ".pack")));
+            task.run(repo);
+            List<String> second = MultiPackIndex.open(repo).packNames();
+            Assert.assertEquals(1, second.size());
+            Assert.assertNotEquals(first, second);
+            Assert.assertTrue(Files.exists(packDir.resolve(second.get(0))));
+        }
+    }
+
+    private static void writePack(Repository repo, String content) {
+        try (Odb odb = repo.odb();
+                PackWriter writer = new PackWriter(odb)) {
+            writer.write(GitObject.Type.BLOB, content.getBytes());
+            writer.commit();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.git24j.core;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class OdbTest extends TestBase {
+    private static final String LOOSE_ID = "a76d47342eafd220a8cb892febf264f57819c2e9";
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void inMemoryBackendTakesWrites() throws IOException {
+        Path path = TestRepo.SIMPLE1.tempCopy(folder);
+        FileUtils.writeStringToFile(path.resolve("a").toFile(), "kept in memory");
+        InMemoryOdbBackend backend = new InMemoryOdbBackend();
+        try (Repository repo = Repository.open(path.toString())) {
+            try (Odb odb = repo.odb()) {
+                odb.addBackend(backend, 10);
+            }
+            try (Index index = repo.index()) {
+                index.add("a");
+            }
+            Assert.assertEquals(1, backend.size());
+            try (GitObject blob = Revparse.single(repo, ":a")) {
+                Assert.assertEquals(GitObject.Type.BLOB, blob.type());
+            }
+            // objects on disk are still found through the default backends
+            try (GitObject head = Revparse.single(repo, "HEAD")) {
+                Assert.assertEquals(GitObject.Type.COMMIT, head.type());
+            }
+        }
+    }
+
+    @Test
+    public void writeAndPack() throws IOException {
+        Path path = TestRepo.SIMPLE1.tempCopy(folder);
+        try (Repository repo = Repository.open(path.toString());
+                Odb odb = repo.odb()) {
+            Oid loose =
+                    odb.write(
+                            GitObject.Type.BLOB,
+                            ByteBuffer.wrap("loose".getBytes(StandardCharsets.UTF_8)));
+            // same id as `printf loose | git hash-object --stdin`
+            Assert.assertEquals(LOOSE_ID, loose.toString());
+
+            List<Oid> ids = new ArrayList<>();
+            try (PackWriter writer = new PackWriter(odb)) {
+                for (int i = 0; i < 100; i++) {
+                    ids.add(writer.write(GitObject.Type.BLOB, ("packed " + i).getBytes()));
+                }
+                Assert.assertEquals(100, writer.commit());
+            }
+            try (GitObject blob = Revparse.single(repo, ids.get(42).toString())) {
+                Assert.assertEquals(GitObject.Type.BLOB, blob.type());
+            }
+            try (DirectoryStream<Path> packs =
+                    Files.newDirectoryStream(path.resolve(".git/objects/pack"), "*.idx")) {
+                Assert.assertTrue(packs.iterator().hasNext());
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.git24j.core;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class PackBuilderTest extends TestBase {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writeAndStream() throws IOException {
+        Path path = TestRepo.SIMPLE1.tempCopy(folder);
+        Path out = folder.newFolder("packs").toPath();
+        try (Repository repo = Repository.open(path.toString());
+                PackBuilder pb = PackBuilder.create(repo)) {
+            pb.setThreads(2);
+            List<PackBuilder.Stage> stages = new ArrayList<>();
+            pb.setProgress((stage, current, total) -> stages.add(stage), 0, TimeUnit.MILLISECONDS);
+            pb.insertCommit(Reference.nameToId(repo, "HEAD"));
+            Assert.assertTrue(pb.objectCount() > 2);
+
+            PackBuilder.Stats stats = pb.write(out);
+            Assert.assertEquals(pb.objectCount(), stats.getWritten());
+            Assert.assertTrue(
+                    Files.exists(out.resolve("pack-" + pb.hash().toString() + ".idx")));
+            Assert.assertTrue(stages.contains(PackBuilder.Stage.DELTAFICATION));
+
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            pb.writeTo(Channels.newChannel(stream));
+            Assert.assertEquals("PACK", new String(stream.toByteArray(), 0, 4, "US-ASCII"));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.git24j.core;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RefMaintenanceTest extends TestBase {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void compact() {
+        Path path = TestRepo.SIMPLE1.tempCopy(folder);
+        try (Repository repo = Repository.open(path.toString())) {
+            Oid head = Reference.nameToId(repo, "HEAD");
+            new RefTransaction(repo, null).create("refs/tags/loose", head).commit();
+            Assert.assertTrue(RefMaintenance.stats(repo).getLooseRefs() > 0);
+            RefMaintenance.compact(repo);
+            RefMaintenance.Stats stats = RefMaintenance.stats(repo);
+            Assert.assertEquals(0, stats.getLooseRefs());
+            Assert.assertTrue(stats.getPackedRefsSize() > 0);
+            Assert.assertEquals(
+                    head.toString(), Reference.nameToId(repo, "refs/tags/loose").toString());
+        }
+    }
+
+    @Test
+    public void scheduledCompact() throws Exception {
+        Path path = TestRepo.SIMPLE1.tempCopy(folder);
+        try (Repository repo = Repository.open(path.toString())) {
+            Oid head = Reference.nameToId(repo, "HEAD");
+            new RefTransaction(repo, null).create("refs/tags/loose", head).commit();
+            Assert.assertTrue(RefMaintenance.stats(repo).getLooseRefs() > 0);
+        }
+        AtomicInteger runs = new AtomicInteger();
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        try (MaintenanceScheduler scheduler = new MaintenanceScheduler(2, errors::add)) {
+            MaintenanceScheduler.Task compact = RefMaintenance.compactTask(1);
+            scheduler
+                    .runNow(
+                            path.toString(),
+                            repo -> {
+                                Assert.assertTrue(
+                                        Thread.currentThread()
+                                                .getName()
+                                                .startsWith("git24j-maintenance-"));
+                                compact.run(repo);
+                                runs.incrementAndGet();
+                            })
+                    .get(10, TimeUnit.SECONDS);
+        }
+        Assert.assertEquals(Collections.emptyList(), errors);
+        Assert.assertEquals(1, runs.get());
+        try (Repository repo = Repository.open(path.toString())) {
+            RefMaintenance.Stats stats = RefMaintenance.stats(repo);
+            Assert.assertEquals(0, stats.getLooseRefs());
+            Assert.assertTrue(stats.getPackedRefsSize() > 0);
+        }
+    }
+
+    @Test
+    public void schedulerReportsErrors() throws Exception {
+        Path path = TestRepo.SIMPLE1.tempCopy(folder);
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        try (MaintenanceScheduler scheduler = new MaintenanceScheduler(1, errors::add)) {
+            scheduler
+                    .runNow(
+                            path.toString(),
+                            repo -> {
+                                throw new AssertionError("task failed");
+                            })
+                    .get(10, TimeUnit.SECONDS);
+        }
+        Assert.assertEquals(1, errors.size());
+        Assert.assertTrue(errors.get(0) instanceof AssertionError);
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.git24j.core;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+
+public class RefTransactionTest extends TestBase {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void createUpdateDelete() {
+        Path path = TestRepo.SIMPLE1.tempCopy(folder);
+        try (Repository repo = Repository.open(path.toString())) {
+            Oid head = Reference.nameToId(repo, "HEAD");
+            new RefTransaction(repo, "test")
+                    .create("refs/heads/tx1", head)
+                    .create("refs/heads/tx2", head)
+                    .commit();
+            Assert.assertEquals(
+                    head.toString(), Reference.nameToId(repo, "refs/heads/tx1").toString());
+
+            RefTransaction stale =
+                    new RefTransaction(repo, "test")
+                            .delete("refs/heads/tx1", head)
+                            .create("refs/heads/tx2", head);
+            try {
+                stale.commit();
+                Assert.fail("tx2 already exists");
+            } catch (GitException e) {
+                Assert.assertEquals("refs/heads/tx2", stale.failedRef());
+            }
+            // nothing has been applied
+            Assert.assertEquals(
+                    head.toString(), Reference.nameToId(repo, "refs/heads/tx1").toString());
+
+            new RefTransaction(repo, "test").delete("refs/heads/tx1", head).commit();
+            Assert.assertTrue(RefIterator.list(repo, "refs/heads/tx1").isEmpty());
+        }
+    }
+}
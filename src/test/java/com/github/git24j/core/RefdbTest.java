@@ -0,0 +1,39 @@
+package com.github.git24j.core;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.List;
+
+public class RefdbTest extends TestBase {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void inMemoryBackend() {
+        Path path = TestRepo.SIMPLE1.tempCopy(folder);
+        InMemoryRefdbBackend backend = new InMemoryRefdbBackend();
+        try (Repository repo = Repository.open(path.toString())) {
+            Oid head = Reference.nameToId(repo, "HEAD");
+            try (Refdb refdb = Refdb.create(repo)) {
+                refdb.setBackend(backend);
+                repo.setRefdb(refdb);
+            }
+            new RefTransaction(repo, "test")
+                    .create("refs/heads/mem1", head)
+                    .create("refs/heads/mem2", head)
+                    .commit();
+            Assert.assertEquals(2, backend.size());
+
+            List<RefIterator.Entry> refs = RefIterator.list(repo, "refs/heads/*");
+            Assert.assertEquals(2, refs.size());
+            Assert.assertEquals("refs/heads/mem1", refs.get(0).getName());
+            Assert.assertEquals(head.toString(), refs.get(1).getTarget().toString());
+            try (Reference ref = Reference.lookup(repo, "refs/heads/mem2")) {
+                Assert.assertEquals(head.toString(), ref.target().toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.git24j.core;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.List;
+
+public class ReferenceTest extends TestBase {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void lookupResolvePeel() {
+        Path path = TestRepo.SIMPLE1.tempCopy(folder);
+        try (Repository repo = Repository.open(path.toString());
+                Reference head = Reference.lookup(repo, "HEAD")) {
+            Assert.assertEquals("HEAD", head.name());
+            Assert.assertEquals(Reference.ReferenceType.SYMBOLIC, head.type());
+            Assert.assertNull(head.target());
+            try (Reference resolved = head.resolve();
+                    GitObject commit = head.peel(GitObject.Type.COMMIT)) {
+                Assert.assertEquals(head.symbolicTarget(), resolved.name());
+                Assert.assertEquals(Reference.ReferenceType.DIRECT, resolved.type());
+                Assert.assertEquals(
+                        resolved.target().toString(),
+                        Reference.nameToId(repo, "HEAD").toString());
+                Assert.assertEquals(GitObject.Type.COMMIT, commit.type());
+            }
+        }
+    }
+
+    @Test
+    public void iterateInBatches() {
+        Path path = TestRepo.SIMPLE1.tempCopy(folder);
+        try (Repository repo = Repository.open(path.toString())) {
+            List<RefIterator.Entry> heads = RefIterator.list(repo, "refs/heads/*");
+            Assert.assertFalse(heads.isEmpty());
+            for (RefIterator.Entry e : heads) {
+                Assert.assertTrue(e.getName().startsWith("refs/heads/"));
+                Assert.assertEquals(
+                        Reference.nameToId(repo, e.getName()).toString(),
+                        e.getTarget().toString());
+            }
+            int total = 0;
+            try (RefIterator iter = RefIterator.create(repo)) {
+                RefIterator.Batch batch = new RefIterator.Batch(1);
+                while (iter.next(batch)) {
+                    Assert.assertEquals(1, batch.size());
+                    total++;
+                }
+            }
+            Assert.assertTrue(total >= heads.size());
+        }
+    }
+}
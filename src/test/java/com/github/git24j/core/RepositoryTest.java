@@ -42,6 +42,7 @@ public class RepositoryTest extends TestBase {
         try (Repository repo = Repository.init(repoPath.toString(), false)) {
             Assert.assertTrue(repo.isEmpty());
             Assert.assertTrue(repo.headUnborn());
+            Assert.assertFalse(repo.tryHead().isPresent());
         }
     }
 
@@ -5,6 +5,9 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.EnumSet;
 
 public class RevparseTest extends TestBase {
@@ -27,6 +30,13 @@ public class RevparseTest extends TestBase {
         }
     }
 
+    @Test
+    public void trySingle() {
+        Repository repository = TestRepo.SIMPLE1.tempRepo(folder);
+        Assert.assertTrue(Revparse.trySingle(repository, "HEAD").isPresent());
+        Assert.assertFalse(Revparse.trySingle(repository, "no-such-branch").isPresent());
+    }
+
     @Test
     public void ext() {
         Repository testRepo = TestRepo.SIMPLE1.tempRepo(folder);
@@ -35,4 +45,64 @@ public class RevparseTest extends TestBase {
             Assert.assertNotNull(ret.getRef());
         }
     }
+
+    @Test
+    public void cache() throws Exception {
+        Path gitDir = TestRepo.SIMPLE1.tempCopy(folder).resolve(".git");
+        Repository repository = Repository.open(gitDir.toString());
+        RevparseCache cache = new RevparseCache(repository);
+        Oid parent = cache.resolve("master~1");
+        Oid master = cache.resolve("master");
+        Assert.assertEquals(master.toString(), cache.resolve("master").toString());
+        Assert.assertEquals(1, cache.getHits());
+
+        Path lock = gitDir.resolve("refs/heads/master.lock");
+        Files.write(lock, (parent + "\n").getBytes());
+        Files.move(lock, gitDir.resolve("refs/heads/master"), StandardCopyOption.ATOMIC_MOVE);
+        Assert.assertEquals(parent.toString(), cache.resolve("master").toString());
+        Assert.assertEquals(parent.toString(), cache.resolve(master.toString()).toString());
+
+        cache.invalidate("refs/heads/master");
+        Assert.assertEquals(1, cache.size());
+        cache.invalidate();
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void resolveAll() {
+        Repository repository = TestRepo.SIMPLE1.tempRepo(folder);
+        Revparse.Resolved resolved =
+                Revparse.resolveAll(repository, new String[] {"master", "no-such-ref", "HEAD"});
+        Assert.assertEquals(3, resolved.size());
+        Assert.assertEquals(2, resolved.getResolvedCount());
+        Assert.assertEquals(
+                "476f0c95825ef4479cab580b71f8b85f9dea4ee4", resolved.getId(0).toString());
+        Assert.assertFalse(resolved.isResolved(1));
+        Assert.assertNull(resolved.getId(1));
+        Assert.assertEquals(GitException.ErrorCode.ENOTFOUND, resolved.getStatus(1));
+        Assert.assertEquals(resolved.getId(0).toString(), resolved.getId(2).toString());
+    }
+
+    @Test
+    public void resolveAllMetrics() {
+        Repository repository = TestRepo.SIMPLE1.tempRepo(folder);
+        Metrics.reset();
+        Metrics.setEnabled(true);
+        try {
+            Revparse.resolveAll(repository, new String[] {"master", "no-such-ref", "nope"});
+            repository.close();
+            try {
+                Revparse.resolveAll(repository, new String[] {"master"});
+                Assert.fail("closed repository");
+            } catch (IllegalStateException expected) {
+                // still recorded
+            }
+            Metrics.Snapshot snapshot = Metrics.snapshot().get("Revparse.resolveAll");
+            Assert.assertEquals(2, snapshot.getCount());
+            Assert.assertEquals(3, snapshot.getErrors());
+        } finally {
+            Metrics.setEnabled(false);
+            Metrics.reset();
+        }
+    }
 }
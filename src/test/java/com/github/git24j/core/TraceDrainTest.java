@@ -0,0 +1,125 @@
+package com.github.git24j.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TraceDrainTest {
+    /** Stands in for the native ring buffer. */
+    private static class Buffer implements TraceDrain.Source {
+        final ConcurrentLinkedQueue<String> queue = new ConcurrentLinkedQueue<>();
+        final AtomicLong dropped = new AtomicLong();
+
+        @Override
+        public int drain(int[] levels, long[] times, String[] messages) {
+            int n = 0;
+            String message;
+            while (n < messages.length && (message = queue.poll()) != null) {
+                levels[n] = Libgit2.TraceLevel.DEBUG.code;
+                times[n] = n;
+                messages[n] = message;
+                n++;
+            }
+            return n;
+        }
+
+        @Override
+        public long dropped() {
+            return dropped.getAndSet(0);
+        }
+    }
+
+    private static class Sink implements Libgit2.TraceSink {
+        final List<String> messages = new ArrayList<>();
+        long dropped;
+
+        @Override
+        public void trace(Libgit2.TraceLevel level, long epochNanos, String message) {
+            Assert.assertEquals(Libgit2.TraceLevel.DEBUG, level);
+            if (message.equals("fail")) {
+                throw new IllegalStateException(message);
+            }
+            messages.add(message);
+        }
+
+        @Override
+        public void dropped(long count) {
+            dropped += count;
+        }
+    }
+
+    @Test
+    public void deliversInOrderAcrossBatches() {
+        Buffer buffer = new Buffer();
+        int total = TraceDrain.BATCH * 2 + 3;
+        for (int i = 0; i < total; i++) {
+            buffer.queue.add("m" + i);
+        }
+        buffer.dropped.set(5);
+        Sink sink = new Sink();
+        TraceDrain drain = new TraceDrain(buffer, sink, 1, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(TraceDrain.BATCH, drain.drainOnce());
+        Assert.assertEquals(TraceDrain.BATCH, drain.drainOnce());
+        Assert.assertEquals(3, drain.drainOnce());
+        Assert.assertEquals(0, drain.drainOnce());
+        Assert.assertEquals(total, sink.messages.size());
+        for (int i = 0; i < total; i++) {
+            Assert.assertEquals("m" + i, sink.messages.get(i));
+        }
+        Assert.assertEquals(5, sink.dropped);
+    }
+
+    @Test
+    public void failingSinkKeepsDraining() {
+        Buffer buffer = new Buffer();
+        buffer.queue.add("a");
+        buffer.queue.add("fail");
+        buffer.queue.add("b");
+        Sink sink = new Sink();
+        new TraceDrain(buffer, sink, 1, TimeUnit.MILLISECONDS).drainOnce();
+        Assert.assertEquals(2, sink.messages.size());
+        Assert.assertEquals("b", sink.messages.get(1));
+    }
+
+    @Test
+    public void stopDeliversTheRest() {
+        Buffer buffer = new Buffer();
+        Sink sink = new Sink();
+        // long interval: only stop() wakes the thread up again
+        TraceDrain drain = new TraceDrain(buffer, sink, 1, TimeUnit.HOURS);
+        drain.start();
+        for (int i = 0; i < 10; i++) {
+            buffer.queue.add("m" + i);
+        }
+        drain.stop();
+        Assert.assertEquals(10, sink.messages.size());
+        Assert.assertTrue(buffer.queue.isEmpty());
+    }
+
+    @Test
+    public void sinkCanNotReplaceItself() {
+        Buffer buffer = new Buffer();
+        buffer.queue.add("m");
+        List<Throwable> errors = new ArrayList<>();
+        TraceDrain drain =
+                new TraceDrain(
+                        buffer,
+                        (level, epochNanos, message) -> {
+                            try {
+                                Libgit2.setTrace(Libgit2.TraceLevel.NONE, null);
+                            } catch (IllegalStateException e) {
+                                errors.add(e);
+                            }
+                        },
+                        1,
+                        TimeUnit.HOURS);
+        drain.start();
+        drain.stop();
+        Assert.assertEquals(1, errors.size());
+        Assert.assertFalse(TraceDrain.isDrainThread());
+    }
+}